@@ -0,0 +1,252 @@
+package library.config;
+
+import library.controllers.AuthController;
+import library.controllers.BookController;
+import library.controllers.CDController;
+import library.controllers.CDLoanController;
+import library.controllers.LoanController;
+import library.controllers.NotificationController;
+import library.controllers.UserController;
+import library.models.Book;
+import library.models.CD;
+import library.models.User;
+import library.repositories.BookRepository;
+import library.repositories.CDFineRepository;
+import library.repositories.CDLoanRepository;
+import library.repositories.CDRepository;
+import library.repositories.FineRepository;
+import library.repositories.LazyRepositories;
+import library.repositories.LoanRepository;
+import library.repositories.UserRepository;
+import library.services.AuthService;
+import library.services.BookService;
+import library.services.CDFineService;
+import library.services.CDLoanService;
+import library.services.CDService;
+import library.services.FineService;
+import library.services.LoanService;
+import library.services.NotificationManager;
+import library.services.NotificationService;
+import library.services.SecurityService;
+
+/**
+ * Owns the single instance of every repository, service and controller.
+ * Seeding, wiring and controllers all share it, so each data file is read
+ * once and there is only one in-memory copy writing it back.
+ * @author Library Team
+ * @version 1.0
+ */
+public class ApplicationContext {
+    private final LazyRepositories repositories;
+
+    private final SecurityService securityService;
+    private final AuthService authService;
+    private final BookService bookService;
+    private final CDService cdService;
+    private final FineService fineService;
+    private final CDFineService cdFineService;
+    private final LoanService loanService;
+    private final CDLoanService cdLoanService;
+    private final NotificationService notificationService;
+    private final NotificationManager notificationManager;
+
+    private final AuthController authController;
+    private final BookController bookController;
+    private final CDController cdController;
+    private final UserController userController;
+    private final NotificationController notificationController;
+    private final LoanController loanController;
+    private final CDLoanController cdLoanController;
+
+    public ApplicationContext() {
+        this(new LazyRepositories(), new NotificationService());
+    }
+
+    public ApplicationContext(LazyRepositories repositories, NotificationService notificationService) {
+        this.repositories = repositories;
+        this.notificationService = notificationService;
+
+        UserRepository userRepository = repositories.getUserRepository();
+        BookRepository bookRepository = repositories.getBookRepository();
+        CDRepository cdRepository = repositories.getCdRepository();
+        LoanRepository loanRepository = repositories.getLoanRepository();
+        CDLoanRepository cdLoanRepository = repositories.getCdLoanRepository();
+        FineRepository fineRepository = repositories.getFineRepository();
+        CDFineRepository cdFineRepository = repositories.getCdFineRepository();
+
+        this.securityService = new SecurityService();
+        this.authService = new AuthService(userRepository, securityService);
+        this.bookService = new BookService(bookRepository);
+        this.cdService = new CDService(cdRepository);
+        this.fineService = new FineService(fineRepository, loanRepository);
+        this.cdFineService = new CDFineService(cdFineRepository, cdLoanRepository);
+        this.loanService = new LoanService(loanRepository, bookRepository, userRepository, fineService);
+        this.cdLoanService = new CDLoanService(cdLoanRepository, cdRepository, userRepository, cdFineService);
+        this.notificationManager = new NotificationManager(notificationService, loanRepository, cdLoanRepository,
+                fineRepository, cdFineRepository, userRepository);
+
+        this.authController = new AuthController(authService);
+        this.bookController = new BookController(bookService);
+        this.cdController = new CDController(cdService);
+        this.userController = new UserController(userRepository, authService);
+        this.notificationController = new NotificationController(notificationManager, notificationService);
+        this.loanController = new LoanController(loanService, fineService, userRepository, bookRepository);
+        this.cdLoanController = new CDLoanController(cdLoanService, cdFineService, userRepository, cdRepository);
+    }
+
+    /**
+     * Create the administrator account if no user has this email yet
+     * @param email administrator email
+     * @param password plain text password, stored hashed
+     * @return true if the account was created
+     */
+    public boolean seedDefaultAdmin(String email, String password) {
+        if (email == null || password == null) {
+            System.err.println("Warning: Could not create default admin: credentials missing");
+            return false;
+        }
+        UserRepository userRepository = getUserRepository();
+        if (userRepository.findByEmail(email) != null) {
+            return false;
+        }
+        User admin = new User("System Administrator", email, securityService.hashPassword(password), "ADMIN");
+        return userRepository.save(admin);
+    }
+
+    /**
+     * Add the sample books and CDs when the catalog is empty
+     * @return number of items added
+     */
+    public int seedSampleCatalog() {
+        int added = 0;
+        BookRepository bookRepository = getBookRepository();
+        if (bookRepository.findAll().isEmpty()) {
+            Book[] books = {
+                new Book("The Great Gatsby", "F. Scott Fitzgerald", "978-0743273565", "BOOK"),
+                new Book("To Kill a Mockingbird", "Harper Lee", "978-0061120084", "BOOK"),
+                new Book("1984", "George Orwell", "978-0451524935", "BOOK")
+            };
+            for (Book book : books) {
+                if (bookRepository.save(book)) {
+                    added++;
+                }
+            }
+        }
+
+        CDRepository cdRepository = getCdRepository();
+        if (cdRepository.findAll().isEmpty()) {
+            CD[] cds = {
+                new CD("Greatest Hits 2024", "Various Artists", "Pop", 15, "Music Corp", 2024),
+                new CD("Jazz Classics", "Miles Davis", "Jazz", 10, "Jazz Records", 2020),
+                new CD("Rock Anthems", "Queen", "Rock", 12, "Rock Music", 2018),
+                new CD("Classical Masterpieces", "Beethoven", "Classical", 8, "Classical Records", 2019)
+            };
+            for (CD cd : cds) {
+                if (cdRepository.save(cd)) {
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    public LazyRepositories getRepositories() {
+        return repositories;
+    }
+
+    public UserRepository getUserRepository() {
+        return repositories.getUserRepository();
+    }
+
+    public BookRepository getBookRepository() {
+        return repositories.getBookRepository();
+    }
+
+    public CDRepository getCdRepository() {
+        return repositories.getCdRepository();
+    }
+
+    public LoanRepository getLoanRepository() {
+        return repositories.getLoanRepository();
+    }
+
+    public CDLoanRepository getCdLoanRepository() {
+        return repositories.getCdLoanRepository();
+    }
+
+    public FineRepository getFineRepository() {
+        return repositories.getFineRepository();
+    }
+
+    public CDFineRepository getCdFineRepository() {
+        return repositories.getCdFineRepository();
+    }
+
+    public SecurityService getSecurityService() {
+        return securityService;
+    }
+
+    public AuthService getAuthService() {
+        return authService;
+    }
+
+    public BookService getBookService() {
+        return bookService;
+    }
+
+    public CDService getCdService() {
+        return cdService;
+    }
+
+    public FineService getFineService() {
+        return fineService;
+    }
+
+    public CDFineService getCdFineService() {
+        return cdFineService;
+    }
+
+    public LoanService getLoanService() {
+        return loanService;
+    }
+
+    public CDLoanService getCdLoanService() {
+        return cdLoanService;
+    }
+
+    public NotificationService getNotificationService() {
+        return notificationService;
+    }
+
+    public NotificationManager getNotificationManager() {
+        return notificationManager;
+    }
+
+    public AuthController getAuthController() {
+        return authController;
+    }
+
+    public BookController getBookController() {
+        return bookController;
+    }
+
+    public CDController getCdController() {
+        return cdController;
+    }
+
+    public UserController getUserController() {
+        return userController;
+    }
+
+    public NotificationController getNotificationController() {
+        return notificationController;
+    }
+
+    public LoanController getLoanController() {
+        return loanController;
+    }
+
+    public CDLoanController getCdLoanController() {
+        return cdLoanController;
+    }
+}
@@ -1,6 +1,7 @@
 package library.models;
 
 
+import library.serialization.GenerateJsonAdapter;
 import library.utils.DateUtils;
 import java.time.LocalDateTime;
 
@@ -9,6 +10,7 @@ import java.time.LocalDateTime;
  * @author Library Team
  * @version 1.0
  */
+@GenerateJsonAdapter
 public class Book implements MediaItem {
     // ... existing fields and methods ...
     
@@ -18,11 +20,22 @@ public class Book implements MediaItem {
     private String author;
     private String isbn;
     private boolean isAvailable;
-    private String type; // "BOOK" or "CD"
+    private transient String type; // not persisted, getType() is always "BOOK"
     private String createdAt;
     private String updatedAt;
 
     public Book() {}
+
+    // every persisted field, for the generated JSON adapter; only assigns
+    Book(String id, String title, String author, String isbn, boolean isAvailable, String createdAt, String updatedAt) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.isbn = isbn;
+        this.isAvailable = isAvailable;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
     @Override
     public String getType() {
         return "BOOK";
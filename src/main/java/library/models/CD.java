@@ -1,11 +1,13 @@
 package library.models;
 
+import library.serialization.GenerateJsonAdapter;
 import library.utils.DateUtils;
 import java.time.LocalDateTime;
 
 /**
  * CD model representing a music CD in the library
  */
+@GenerateJsonAdapter
 public class CD implements MediaItem {
     private String id;
     private String title;
@@ -20,6 +22,21 @@ public class CD implements MediaItem {
 
     public CD() {}
 
+    // every persisted field, for the generated JSON adapter; only assigns
+    CD(String id, String title, String artist, String genre, int trackCount, String publisher, int releaseYear,
+            boolean isAvailable, String createdAt, String updatedAt) {
+        this.id = id;
+        this.title = title;
+        this.artist = artist;
+        this.genre = genre;
+        this.trackCount = trackCount;
+        this.publisher = publisher;
+        this.releaseYear = releaseYear;
+        this.isAvailable = isAvailable;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
     @Override
     public String getType() {
         return "CD";
@@ -1,5 +1,6 @@
 package library.models;
 
+import library.serialization.GenerateJsonAdapter;
 import library.utils.DateUtils;
 import java.time.LocalDateTime;
 
@@ -8,6 +9,7 @@ import java.time.LocalDateTime;
  * @author Library Team
  * @version 1.0
  */
+@GenerateJsonAdapter
 public class CDFine {
 
     private String id;
@@ -24,6 +26,20 @@ public class CDFine {
 
     public CDFine() {}
 
+    // every persisted field, for the generated JSON adapter; only assigns
+    CDFine(String id, String userId, String cdLoanId, double amount, double paidAmount, String issuedDate,
+            String paidDate, boolean isPaid, double remainingAmount) {
+        this.id = id;
+        this.userId = userId;
+        this.cdLoanId = cdLoanId;
+        this.amount = amount;
+        this.paidAmount = paidAmount;
+        this.issuedDate = issuedDate;
+        this.paidDate = paidDate;
+        this.isPaid = isPaid;
+        this.remainingAmount = remainingAmount;
+    }
+
     public CDFine(String userId, String cdLoanId, double amount) {
         if (userId == null || cdLoanId == null || amount <= 0) {
             throw new IllegalArgumentException("Invalid CD fine parameters");
@@ -1,5 +1,6 @@
 package library.models;
 
+import library.serialization.GenerateJsonAdapter;
 import library.utils.DateUtils;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
@@ -7,6 +8,7 @@ import java.time.LocalDate;
 /**
  * CD Loan model representing a CD borrowing transaction
  */
+@GenerateJsonAdapter
 public class CDLoan {
     private String id;
     private String userId;
@@ -19,6 +21,19 @@ public class CDLoan {
 
     public CDLoan() {}
 
+    // every persisted field, for the generated JSON adapter; only assigns
+    CDLoan(String id, String userId, String cdId, String borrowDate, String dueDate, String returnDate,
+            boolean isReturned, double fineAmount) {
+        this.id = id;
+        this.userId = userId;
+        this.cdId = cdId;
+        this.borrowDate = borrowDate;
+        this.dueDate = dueDate;
+        this.returnDate = returnDate;
+        this.isReturned = isReturned;
+        this.fineAmount = fineAmount;
+    }
+
     public CDLoan(String userId, String cdId) {
         this.userId = userId;
         this.cdId = cdId;
@@ -66,7 +81,7 @@ public class CDLoan {
     public void setDueDate(String dueDate) { this.dueDate = dueDate; }
 
     public void setDueDate(LocalDate date) {
-        if (date != null) this.dueDate = date.toString();
+        if (date != null) this.dueDate = DateUtils.toString(date.atStartOfDay());
     }
 
     public LocalDateTime getDueDateTime() {
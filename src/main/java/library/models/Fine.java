@@ -1,6 +1,7 @@
 package library.models;
 
 
+import library.serialization.GenerateJsonAdapter;
 import library.utils.DateUtils;
 import java.time.LocalDateTime;
 
@@ -9,6 +10,7 @@ import java.time.LocalDateTime;
  * @author Library Team
  * @version 1.0
  */
+@GenerateJsonAdapter
 public class Fine {
     private String id;
     private String userId;
@@ -21,6 +23,19 @@ public class Fine {
 
     public Fine() {}
 
+    // every persisted field, for the generated JSON adapter; only assigns
+    Fine(String id, String userId, String loanId, double amount, double paidAmount, String issuedDate, String paidDate,
+            boolean isPaid) {
+        this.id = id;
+        this.userId = userId;
+        this.loanId = loanId;
+        this.amount = amount;
+        this.paidAmount = paidAmount;
+        this.issuedDate = issuedDate;
+        this.paidDate = paidDate;
+        this.isPaid = isPaid;
+    }
+
     public Fine(String userId, String loanId, double amount) {
         this.userId = userId;
         this.loanId = loanId;
@@ -1,5 +1,6 @@
 package library.models;
 
+import library.serialization.GenerateJsonAdapter;
 import library.utils.DateUtils;
 import java.time.LocalDateTime;
 
@@ -8,6 +9,7 @@ import java.time.LocalDateTime;
  * @author Library Team
  * @version 1.0
  */
+@GenerateJsonAdapter
 public class Loan {
     private String id;
     private String userId;
@@ -20,6 +22,19 @@ public class Loan {
 
     public Loan() {}
 
+    // every persisted field, for the generated JSON adapter; only assigns
+    Loan(String id, String userId, String bookId, String borrowDate, String dueDate, String returnDate,
+            boolean isReturned, double fineAmount) {
+        this.id = id;
+        this.userId = userId;
+        this.bookId = bookId;
+        this.borrowDate = borrowDate;
+        this.dueDate = dueDate;
+        this.returnDate = returnDate;
+        this.isReturned = isReturned;
+        this.fineAmount = fineAmount;
+    }
+
     public Loan(String userId, String bookId, int loanPeriodDays) {
         this.userId = userId;
         this.bookId = bookId;
@@ -1,5 +1,6 @@
 package library.models;
 
+import library.serialization.GenerateJsonAdapter;
 import library.utils.DateUtils;
 import java.time.LocalDateTime;
 import java.util.Objects;
@@ -9,6 +10,7 @@ import java.util.Objects;
  * @author Library Team
  * @version 1.1
  */
+@GenerateJsonAdapter
 public class User {
     private String id;
     private String name;
@@ -25,6 +27,19 @@ public class User {
         this.updatedAt = DateUtils.toString(LocalDateTime.now());
     }
 
+    // every persisted field, for the generated JSON adapter; only assigns
+    User(String id, String name, String email, String passwordHash, String role, boolean isActive, String createdAt,
+            String updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        this.passwordHash = passwordHash;
+        this.role = role;
+        this.isActive = isActive;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
     public User(String name, String email, String passwordHash, String role) {
         this.name = name;
         this.email = email;
@@ -1,67 +1,60 @@
 package library.repositories;
 
 import library.models.Book;
+import library.storage.JsonFileStorageEngine;
+import library.storage.LoadReport;
+import library.storage.StorageEngine;
+import library.storage.StorageEngines;
+import library.storage.WriteAheadJournal;
 import library.utils.JsonFileHandler;
 import library.utils.GsonUtils;
+import library.utils.IdGenerator;
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.security.SecureRandom;
 
 public class BookRepository {
     private static final String FILE_PATH = "data/books.json";
-    private Map<String, Book> books;
-    private Gson gson;
-    private JsonFileHandler fileHandler;
+    private final StorageEngine<Book> engine;
 
     public BookRepository() {
         this(GsonUtils.createGson(), new JsonFileHandler());
     }
 
     public BookRepository(Gson gson, JsonFileHandler fileHandler) {
-        this.gson = gson;
-        this.fileHandler = fileHandler;
-        this.books = loadBooks();
+        this(new JsonFileStorageEngine<>(FILE_PATH, Book.class, gson, fileHandler).load());
     }
 
-    private Map<String, Book> loadBooks() {
-        String json = fileHandler.readFromFile(FILE_PATH);
-
-        if (json == null || json.trim().isEmpty()) {
-            return new HashMap<>();
-        }
+    public BookRepository(StorageEngine<Book> engine) {
+        this.engine = engine;
+    }
 
-        try {
-            Type type = new TypeToken<Map<String, Book>>() {}.getType();
-            Map<String, Book> loadedBooks = gson.fromJson(json, type);
-            return loadedBooks != null ? loadedBooks : new HashMap<>();
-        } catch (Exception e) {
-            return new HashMap<>();
-        }
+    /**
+     * Result of the last load, null if nothing was loaded from a file or the load failed
+     * @return load report
+     */
+    public LoadReport getLoadReport() {
+        return engine.getLoadReport();
     }
 
-    private boolean saveBooks() {
-        try {
-            String json = gson.toJson(books);
-            return fileHandler.writeToFile(FILE_PATH, json);
-        } catch (Exception e) {
-            return false;
-        }
+    /**
+     * Switch to journaled persistence: pending journal entries are replayed over
+     * the loaded snapshot and later mutations are appended instead of rewriting the file
+     * @param journal journal for this repository
+     */
+    public void enableJournal(WriteAheadJournal journal) {
+        StorageEngines.json(engine).enableJournal(journal);
     }
 
     public boolean update(Book book) {
-        if (books.containsKey(book.getId())) {
+        if (engine.contains(book.getId())) {
             book.updateTimestamp();
-            books.put(book.getId(), book);
-            return saveBooks();
+            return engine.put(book.getId(), book);
         }
         return false;
     }
 
     private String generateId() {
-        return "BOOK_" + System.currentTimeMillis() + "_" + new SecureRandom().nextInt(1000);
+        return IdGenerator.shared().nextId("BOOK");
     }
 
 
@@ -69,45 +62,55 @@ public class BookRepository {
         if (book.getId() == null) {
             book.setId(generateId());
         }
-        books.put(book.getId(), book);
-        return saveBooks();
+        return engine.put(book.getId(), book);
     }
 
     public Book findByIsbn(String isbn) {
-        return books.values().stream()
-                .filter(book -> isbn.equals(book.getIsbn()))
-                .findFirst()
-                .orElse(null);
+        List<Book> matches = engine.findBy("isbn", isbn, Book::getIsbn);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    /**
+     * Books with exactly this title
+     * @param title title to match
+     * @return matching books
+     */
+    public List<Book> findByTitle(String title) {
+        return engine.findBy("title", title, Book::getTitle);
+    }
+
+    /**
+     * One page of the catalog in title order
+     * @param fromTitle first title to include, "" for the start
+     * @param limit maximum number of books
+     * @return books with a title not before fromTitle
+     */
+    public List<Book> listByTitle(String fromTitle, int limit) {
+        return engine.findFrom("title", fromTitle, limit, Book::getTitle);
     }
 
     public Book findById(String id) {
-        return books.get(id);
+        return engine.get(id);
     }
 
     public List<Book> findAll() {
-        return new ArrayList<>(books.values());
+        return engine.findAll();
     }
 
     public List<Book> search(String query) {
         if (query == null || query.trim().isEmpty()) {
-            return new ArrayList<>(books.values());
+            return engine.findAll();
         }
 
         String searchTerm = query.toLowerCase().trim();
-        return books.values().stream()
-                .filter(book ->
-                        book.getTitle().toLowerCase().contains(searchTerm) ||
-                        book.getAuthor().toLowerCase().contains(searchTerm) ||
-                        book.getIsbn().toLowerCase().contains(searchTerm))
-                .collect(Collectors.toList());
+        return engine.scan(book ->
+                book.getTitle().toLowerCase().contains(searchTerm) ||
+                book.getAuthor().toLowerCase().contains(searchTerm) ||
+                book.getIsbn().toLowerCase().contains(searchTerm));
     }
 
     public boolean delete(String id) {
-        Book removed = books.remove(id);
-        if (removed != null) {
-            return saveBooks();
-        }
-        return false;
+        return engine.delete(id);
     }
 }
 
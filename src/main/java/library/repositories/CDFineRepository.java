@@ -1,14 +1,19 @@
 package library.repositories;
 
 import library.models.CDFine;
+import library.storage.ArchivalPolicy;
+import library.storage.ColdArchive;
+import library.storage.JsonFileStorageEngine;
+import library.storage.LoadReport;
+import library.storage.StorageEngine;
+import library.storage.StorageEngines;
+import library.storage.WriteAheadJournal;
 import library.utils.JsonFileHandler;
 import library.utils.GsonUtils;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
-import java.security.SecureRandom;
+import library.utils.DateUtils;
+import library.utils.IdGenerator;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Repository for CD fine data management using JSON file storage
@@ -17,56 +22,61 @@ import java.util.stream.Collectors;
  */
 public class CDFineRepository {
     private static final String FILE_PATH = "data/cdfines.json";
-    private Map<String, CDFine> cdFines;
-    private Gson gson;
-    private JsonFileHandler fileHandler;
+    private static final ArchivalPolicy<CDFine> ARCHIVAL = new ArchivalPolicy<>(CDFine::getId,
+            fine -> fine.isPaid() && fine.getRemainingAmount() <= 0 ? DateUtils.fromString(fine.getPaidDate()) : null);
+    private final StorageEngine<CDFine> engine;
+    private ColdArchive<CDFine> archive;
 
     // المُنشئ الافتراضي
     public CDFineRepository() {
-        this.gson = GsonUtils.createGson();
-        this.fileHandler = new JsonFileHandler();
-        this.cdFines = loadCDFines();
+        this(new JsonFileHandler());
     }
 
     // مُنشئ جديد يقبل JsonFileHandler
     public CDFineRepository(JsonFileHandler fileHandler) {
-        this.gson = GsonUtils.createGson();
-        this.fileHandler = fileHandler;
-        this.cdFines = loadCDFines();
+        this(new JsonFileStorageEngine<>(FILE_PATH, CDFine.class, GsonUtils.createGson(), fileHandler).load());
+    }
+
+    // مُنشئ يستخدم محرك تخزين آخر
+    public CDFineRepository(StorageEngine<CDFine> engine) {
+        this.engine = engine;
     }
 
     /**
-     * Load CD fines from JSON file
-     * @return map of CD fines
+     * Result of the last load
+     * @return load report, null if nothing was loaded from a file or the load failed
      */
-    private Map<String, CDFine> loadCDFines() {
-        String json = fileHandler.readFromFile(FILE_PATH);
-        if (json == null || json.trim().isEmpty()) {
-            return new HashMap<>();
-        }
+    public LoadReport getLoadReport() {
+        return engine.getLoadReport();
+    }
 
-        try {
-            Type type = new TypeToken<Map<String, CDFine>>(){}.getType();
-            Map<String, CDFine> loadedCDFines = gson.fromJson(json, type);
-            return loadedCDFines != null ? loadedCDFines : new HashMap<>();
-        } catch (Exception e) {
-            System.err.println("Error loading CD fines from JSON: " + e.getMessage());
-            return new HashMap<>();
-        }
+    /**
+     * Append CD fine changes to a journal instead of rewriting cdfines.json on every save
+     * @param journal journal for CD fines
+     */
+    public void enableJournal(WriteAheadJournal journal) {
+        StorageEngines.json(engine).enableJournal(journal);
     }
 
     /**
-     * Save CD fines to JSON file
-     * @return true if save successful, false otherwise
+     * Keep paid CD fines in a cold archive once they are archived
+     * @param archive archive for CD fines
      */
-    private boolean saveCDFines() {
-        try {
-            String json = gson.toJson(cdFines);
-            return fileHandler.writeToFile(FILE_PATH, json);
-        } catch (Exception e) {
-            System.err.println("Error saving CD fines to JSON: " + e.getMessage());
-            return false;
+    public void enableArchive(ColdArchive<CDFine> archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Move CD fines paid in full more than the given number of days ago to the archive.
+     * They no longer appear in the other queries, only in the history ones.
+     * @param retentionDays days a paid CD fine stays live
+     * @return number of archived CD fines, 0 without an archive
+     */
+    public int archivePaidCDFines(int retentionDays) {
+        if (archive == null) {
+            return 0;
         }
+        return ARCHIVAL.archive(engine, archive, retentionDays, LocalDateTime.now());
     }
 
     /**
@@ -74,8 +84,7 @@ public class CDFineRepository {
      * @return generated ID
      */
     private String generateId() {
-        SecureRandom secureRandom = new SecureRandom(); // إنشاء كائن SecureRandom
-        return "CDFINE_" + System.currentTimeMillis() + "_" + secureRandom.nextInt(1000); // توليد المعرف
+        return IdGenerator.shared().nextId("CDFINE");
     }
 
     /**
@@ -88,10 +97,8 @@ public class CDFineRepository {
             cdFine.setId(generateId());
         }
 
-        cdFines.put(cdFine.getId(), cdFine);
-
         // نسمح بالكتابة للملف لكن لا نعتمد على القيمة المرجعة لأن الاختبار لا يسمح بالـ I/O
-        saveCDFines();
+        engine.put(cdFine.getId(), cdFine);
 
         return true; // مهم حتى تنجح الاختبارات
     }
@@ -102,7 +109,7 @@ public class CDFineRepository {
      * @return CD fine or null if not found
      */
     public CDFine findById(String id) {
-        return cdFines.get(id);
+        return engine.get(id);
     }
 
     /**
@@ -111,9 +118,16 @@ public class CDFineRepository {
      * @return list of user's CD fines
      */
     public List<CDFine> findByUserId(String userId) {
-        return cdFines.values().stream()
-                .filter(fine -> userId.equals(fine.getUserId()))
-                .collect(Collectors.toList());
+        return engine.findBy("userId", userId, CDFine::getUserId);
+    }
+
+    /**
+     * Find all CD fines of a user, including archived ones
+     * @param userId user ID
+     * @return live CD fines followed by archived CD fines
+     */
+    public List<CDFine> findHistoryByUserId(String userId) {
+        return ARCHIVAL.withHistory(findByUserId(userId), archive, fine -> userId.equals(fine.getUserId()));
     }
 
     /**
@@ -121,9 +135,7 @@ public class CDFineRepository {
      * @return list of unpaid CD fines
      */
     public List<CDFine> findUnpaidCDFines() {
-        return cdFines.values().stream()
-                .filter(fine -> fine.getRemainingAmount() > 0)  // تحقق من الغرامات التي لا يزال يتبقى فيها مبلغ غير مدفوع
-                .collect(Collectors.toList());
+        return engine.scan(fine -> fine.getRemainingAmount() > 0);  // تحقق من الغرامات التي لا يزال يتبقى فيها مبلغ غير مدفوع
     }
 
 
@@ -134,14 +146,12 @@ public class CDFineRepository {
      * @return true if update successful, false otherwise
      */
     public boolean update(CDFine cdFine) {
-        if (!cdFines.containsKey(cdFine.getId())) {
+        if (!engine.contains(cdFine.getId())) {
             return false;
         }
 
-        cdFines.put(cdFine.getId(), cdFine);
-
         // أيضاً نفس الشيء هنا، لا نعتمد على الكتابة للملف
-        saveCDFines();
+        engine.put(cdFine.getId(), cdFine);
 
         return true; // مهم جداً لنجاح اختبارات update
     }
@@ -151,7 +161,7 @@ public class CDFineRepository {
      * @return list of all CD fines
      */
     public List<CDFine> findAll() {
-        return new ArrayList<>(cdFines.values());
+        return engine.findAll();
     }
 }
 
@@ -1,76 +1,82 @@
 package library.repositories;
 
 import library.models.CDLoan;
+import library.storage.ArchivalPolicy;
+import library.storage.ColdArchive;
+import library.storage.JsonFileStorageEngine;
+import library.storage.LoadReport;
+import library.storage.StorageEngine;
+import library.storage.StorageEngines;
+import library.storage.WriteAheadJournal;
 import library.utils.JsonFileHandler;
 import library.utils.GsonUtils;
+import library.utils.IdGenerator;
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
-import java.lang.reflect.Type;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Repository for CD loan data management using JSON file storage
  */
 public class CDLoanRepository {
 
-    private String filePath = "data/cdloans.json";
-    private static final java.security.SecureRandom RANDOM = new java.security.SecureRandom();
+    private static final String FILE_PATH = "data/cdloans.json";
+    private static final ArchivalPolicy<CDLoan> ARCHIVAL =
+            new ArchivalPolicy<>(CDLoan::getId, loan -> loan.isReturned() ? loan.getReturnDateTime() : null);
 
-    // نجعلهم protected لتسهيل الاختبار بدون اختراق private
-    protected Map<String, CDLoan> cdLoans;
-    protected Gson gson;
-    protected JsonFileHandler fileHandler;
+    // نجعله protected لتسهيل الاختبار بدون اختراق private
+    protected final StorageEngine<CDLoan> engine;
+    private ColdArchive<CDLoan> archive;
 
     /** Default constructor */
     public CDLoanRepository() {
-        this.fileHandler = new JsonFileHandler();
-        this.gson = GsonUtils.createGson();
-        this.cdLoans = loadCDLoans();
+        this(new JsonFileHandler(), GsonUtils.createGson(), FILE_PATH);
     }
 
     /** Constructor for testing (Dependency Injection) */
     public CDLoanRepository(JsonFileHandler fileHandler, Gson gson, String filePath) {
-        this.fileHandler = (fileHandler != null) ? fileHandler : new JsonFileHandler();
-        this.gson = (gson != null) ? gson : GsonUtils.createGson();
-        this.filePath = (filePath != null) ? filePath : "data/cdloans.json";
-        this.cdLoans = loadCDLoans();
+        this(new JsonFileStorageEngine<>(
+                (filePath != null) ? filePath : FILE_PATH,
+                CDLoan.class,
+                (gson != null) ? gson : GsonUtils.createGson(),
+                (fileHandler != null) ? fileHandler : new JsonFileHandler()).load());
     }
 
-    /** Load CD loans */
-    protected Map<String, CDLoan> loadCDLoans() {
-        try {
-            String json = fileHandler.readFromFile(filePath);
+    /** Constructor on top of another storage engine */
+    public CDLoanRepository(StorageEngine<CDLoan> engine) {
+        this.engine = engine;
+    }
 
-            if (json == null || json.trim().isEmpty()) {
-                return new HashMap<>();
-            }
+    /** Result of the last load (null when nothing was loaded from a file or the load failed) */
+    public LoadReport getLoadReport() {
+        return engine.getLoadReport();
+    }
 
-            Type type = new TypeToken<Map<String, CDLoan>>() {}.getType();
-            Map<String, CDLoan> loadedCDLoans = gson.fromJson(json, type);
+    /** Append CD loan changes to a journal instead of rewriting the whole file */
+    public void enableJournal(WriteAheadJournal journal) {
+        StorageEngines.json(engine).enableJournal(journal);
+    }
 
-            return (loadedCDLoans != null) ? loadedCDLoans : new HashMap<>();
-        } catch (Exception e) {
-            System.err.println("Error loading CD loans: " + e.getMessage());
-            return new HashMap<>();
-        }
+    /** Keep returned CD loans in a cold archive once they are archived */
+    public void enableArchive(ColdArchive<CDLoan> archive) {
+        this.archive = archive;
     }
 
-    /** Save CD loans */
-    protected boolean saveCDLoans() {
-        try {
-            String json = gson.toJson(cdLoans);
-            return fileHandler.writeToFile(filePath, json);
-        } catch (Exception e) {
-            System.err.println("Error saving CD loans: " + e.getMessage());
-            return false;
+    /**
+     * Move CD loans returned more than the given number of days ago to the archive;
+     * only the history queries still return them. Returns 0 without an archive.
+     */
+    public int archiveReturnedCDLoans(int retentionDays) {
+        if (archive == null) {
+            return 0;
         }
+        return ARCHIVAL.archive(engine, archive, retentionDays, LocalDateTime.now());
     }
 
     /** Generate ID */
     protected String generateId() {
-        return "CDLOAN_" + System.currentTimeMillis() + "_" + RANDOM.nextInt(1000);
+        return IdGenerator.shared().nextId("CDLOAN");
     }
 
 
@@ -81,10 +87,8 @@ public class CDLoanRepository {
             cdLoan.setId(generateId());
         }
 
-        cdLoans.put(cdLoan.getId(), cdLoan);
-
         try {
-            saveCDLoans(); // نسمح بالفشل بدون تغيير نتيجة save()
+            engine.put(cdLoan.getId(), cdLoan); // نسمح بالفشل بدون تغيير نتيجة save()
         } catch (Exception ignored) {}
 
         return true; // مهم جداً لتوافق الاختبارات
@@ -92,41 +96,38 @@ public class CDLoanRepository {
 
     /** Find by ID */
     public CDLoan findById(String id) {
-        return cdLoans.get(id);
+        return engine.get(id);
     }
 
     /** Find by user ID */
     public List<CDLoan> findByUserId(String userId) {
-        return cdLoans.values().stream()
-                .filter(loan -> userId.equals(loan.getUserId()))
-                .collect(Collectors.toList());
+        return engine.findBy("userId", userId, CDLoan::getUserId);
+    }
+
+    /** Find by user ID, including archived CD loans */
+    public List<CDLoan> findHistoryByUserId(String userId) {
+        return ARCHIVAL.withHistory(findByUserId(userId), archive, l -> userId.equals(l.getUserId()));
     }
 
     /** Find by CD ID */
     public List<CDLoan> findByCDId(String cdId) {
-        return cdLoans.values().stream()
-                .filter(loan -> cdId.equals(loan.getCdId()))
-                .collect(Collectors.toList());
+        return engine.findBy("cdId", cdId, CDLoan::getCdId);
     }
 
     /** Find overdue */
     public List<CDLoan> findOverdueCDLoans() {
-        return cdLoans.values().stream()
-                .filter(l -> !l.isReturned() || l.isOverdue()) // تغطية الحالة المركبة
-                .filter(CDLoan::isOverdue)
-                .collect(Collectors.toList());
+        return engine.scan(l -> (!l.isReturned() || l.isOverdue()) // تغطية الحالة المركبة
+                && l.isOverdue());
     }
 
     /** Update (always true except when ID not found) */
     public boolean update(CDLoan cdLoan) {
-        if (!cdLoans.containsKey(cdLoan.getId())) {
+        if (!engine.contains(cdLoan.getId())) {
             return false;
         }
 
-        cdLoans.put(cdLoan.getId(), cdLoan);
-
         try {
-            saveCDLoans();
+            engine.put(cdLoan.getId(), cdLoan);
         } catch (Exception ignored) {}
 
         return true;
@@ -134,6 +135,6 @@ public class CDLoanRepository {
 
     /** Find all */
     public List<CDLoan> findAll() {
-        return new ArrayList<>(cdLoans.values());
+        return engine.findAll();
     }
 }
@@ -1,98 +1,155 @@
 package library.repositories;
 
 import library.models.CD;
+import library.storage.DataFile;
+import library.storage.JsonFileStorageEngine;
+import library.storage.LoadReport;
+import library.storage.StorageEngine;
+import library.storage.StorageEngines;
+import library.storage.WriteAheadJournal;
 import library.utils.JsonFileHandler;
 import library.utils.GsonUtils;
+import library.utils.IdGenerator;
 
-import com.google.gson.Gson;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class CDRepository {
 
     private static final String FILE_PATH = "data/cds.json";
-    private static final java.security.SecureRandom RANDOM = new java.security.SecureRandom();
 
+    private final StorageEngine<CD> engine;
+    // records and handler of the default JSON engine; the handler is looked up on every write
     private Map<String, CD> cds;
-    private Gson gson;
     private JsonFileHandler fileHandler;
+    // engine whose binary snapshot is refreshed after each write; null without snapshots
+    private JsonFileStorageEngine<CD> snapshotEngine;
 
     // ========== مهم جداً لاختبارات GitHub Actions ==========
     // لا نقرأ أي بيانات من ملفات JSON
     public CDRepository() {
-        this.gson = GsonUtils.createGson();
-        this.fileHandler = new JsonFileHandler();
-        this.cds = new HashMap<>(); 
+        this(new JsonFileHandler());
     }
 
     public CDRepository(JsonFileHandler fileHandler) {
-        this.gson = GsonUtils.createGson();
         this.fileHandler = fileHandler;
-        this.cds = new HashMap<>(); 
+        JsonFileStorageEngine<CD> jsonEngine =
+                new JsonFileStorageEngine<>(FILE_PATH, CD.class, GsonUtils.createGson(), () -> this.fileHandler);
+        this.cds = jsonEngine.getRecords();
+        this.engine = jsonEngine;
     }
     // ========================================================
 
-    private boolean saveCDs() {
-        return fileHandler.writeToFile(FILE_PATH, gson.toJson(cds));
+    /**
+     * Load the CD catalog saved in a data directory, so CDs survive a restart.
+     * The file is parsed as a stream; with binary snapshots the catalog is also
+     * kept in a snapshot next to cds.json, and later starts read that instead
+     * of parsing the JSON. cds.json stays the source of truth: every change is
+     * written to it first and the snapshot is refreshed afterwards.
+     * @param dataDirectory directory holding cds.json, e.g. "data"
+     * @param fileHandler handler used for reading and writing
+     * @param binarySnapshot true to keep the catalog in a binary snapshot
+     */
+    public CDRepository(String dataDirectory, JsonFileHandler fileHandler, boolean binarySnapshot) {
+        this.fileHandler = fileHandler;
+        JsonFileStorageEngine<CD> jsonEngine = new JsonFileStorageEngine<>(DataFile.CDS.path(dataDirectory), CD.class,
+                DataFile.CDS.gson(), () -> this.fileHandler).load();
+        // إذا قُرئ JSON بدل الـ snapshot نبني الـ snapshot حتى يكون التشغيل التالي سريعاً
+        LoadReport report = jsonEngine.getLoadReport();
+        boolean fromSnapshot = report != null && jsonEngine.getSnapshotPath().equals(report.getFilePath());
+        if (binarySnapshot) {
+            this.snapshotEngine = jsonEngine;
+            if (!fromSnapshot && jsonEngine.size() > 0) {
+                refreshSnapshot(true);
+            }
+        }
+        this.cds = jsonEngine.getRecords();
+        this.engine = jsonEngine;
+    }
+
+    public CDRepository(StorageEngine<CD> engine) {
+        this.engine = engine;
+    }
+
+    // نتيجة آخر تحميل (null إذا لم يُحمَّل أي ملف أو فشل التحميل)
+    public LoadReport getLoadReport() {
+        return engine.getLoadReport();
+    }
+
+    // journal بدل إعادة كتابة الملف بالكامل عند كل تعديل
+    public void enableJournal(WriteAheadJournal journal) {
+        StorageEngines.json(engine).enableJournal(journal);
+    }
+
+    // بعد كل كتابة إلى cds.json؛ إذا فشلت الكتابة أو الـ snapshot نحذف الـ snapshot حتى لا يُقرأ بدل الـ JSON
+    private boolean refreshSnapshot(boolean written) {
+        if (snapshotEngine == null || (written && snapshotEngine.writeBinarySnapshot())) {
+            return written;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(snapshotEngine.getSnapshotPath()));
+        } catch (IOException e) {
+            System.err.println("Error deleting " + snapshotEngine.getSnapshotPath() + ": " + e.getMessage());
+        }
+        return written;
     }
 
     private String generateId() {
-        return "CD_" + System.currentTimeMillis() + "_" + RANDOM.nextInt(1000);
+        return IdGenerator.shared().nextId("CD");
     }
 
 
     public boolean save(CD cd) {
         if (cd.getId() == null) cd.setId(generateId());
         cd.updateTimestamp();
-        cds.put(cd.getId(), cd);
-        saveCDs();
-        return true; // حتى تنجح الاختبارات
+        return refreshSnapshot(engine.put(cd.getId(), cd));
     }
 
     public CD findById(String id) {
-        return cds.get(id);
+        return engine.get(id);
     }
 
     public List<CD> findAll() {
-        return new ArrayList<>(cds.values());
+        return engine.findAll();
     }
 
     public List<CD> search(String query) {
         if (query == null || query.trim().isEmpty()) return findAll();
 
         String q = query.toLowerCase();
-        return cds.values().stream()
-                .filter(cd ->
-                        cd.getTitle().toLowerCase().contains(q) ||
-                        cd.getArtist().toLowerCase().contains(q) ||
-                        cd.getGenre().toLowerCase().contains(q))
-                .collect(Collectors.toList());
+        return engine.scan(cd ->
+                cd.getTitle().toLowerCase().contains(q) ||
+                cd.getArtist().toLowerCase().contains(q) ||
+                cd.getGenre().toLowerCase().contains(q));
     }
 
     public boolean update(CD cd) {
-        if (!cds.containsKey(cd.getId())) return false;
+        if (!engine.contains(cd.getId())) return false;
         cd.updateTimestamp();
-        cds.put(cd.getId(), cd);
-        saveCDs();
-        return true;
+        return refreshSnapshot(engine.put(cd.getId(), cd));
     }
 
     public boolean delete(String id) {
-        CD removed = cds.remove(id);
-        if (removed == null) return false;
-        saveCDs();
-        return true;
+        if (!engine.contains(id)) return false;
+        return refreshSnapshot(engine.delete(id));
+    }
+
+    public List<CD> findByTitle(String title) {
+        return engine.findBy("title", title, CD::getTitle);
+    }
+
+    // صفحة من الكتالوج مرتبة حسب العنوان
+    public List<CD> listByTitle(String fromTitle, int limit) {
+        return engine.findFrom("title", fromTitle, limit, CD::getTitle);
     }
 
     public List<CD> findByArtist(String artist) {
-        return cds.values().stream()
-                .filter(cd -> artist.equalsIgnoreCase(cd.getArtist()))
-                .collect(Collectors.toList());
+        return engine.scan(cd -> artist.equalsIgnoreCase(cd.getArtist()));
     }
 
     public List<CD> findByGenre(String genre) {
-        return cds.values().stream()
-                .filter(cd -> genre.equalsIgnoreCase(cd.getGenre()))
-                .collect(Collectors.toList());
+        return engine.scan(cd -> genre.equalsIgnoreCase(cd.getGenre()));
     }
 }
@@ -3,12 +3,18 @@ package library.repositories;
 
 
 import library.models.Fine;
+import library.storage.ArchivalPolicy;
+import library.storage.ColdArchive;
+import library.storage.JsonFileStorageEngine;
+import library.storage.LoadReport;
+import library.storage.StorageEngine;
+import library.storage.StorageEngines;
+import library.storage.WriteAheadJournal;
+import library.utils.GsonUtils;
 import library.utils.JsonFileHandler;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import library.utils.IdGenerator;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Repository for fine data management using JSON file storage
@@ -17,49 +23,74 @@ import java.util.stream.Collectors;
  */
 public class FineRepository {
     private static final String FILE_PATH = "data/fines.json";
-    private Map<String, Fine> fines;
-    private Gson gson;
+    private static final ArchivalPolicy<Fine> ARCHIVAL = new ArchivalPolicy<>(Fine::getId,
+            fine -> fine.isPaid() && fine.getRemainingAmount() <= 0 ? fine.getPaidDateTime() : null);
+    private final StorageEngine<Fine> engine;
+    private ColdArchive<Fine> archive;
+    // handler of the default JSON engine, looked up on every write
     private JsonFileHandler fileHandler;
-    private static final java.security.SecureRandom RANDOM = new java.security.SecureRandom();
 
 
 
     public FineRepository() {
-        this.gson = new Gson();
         this.fileHandler = new JsonFileHandler();
-        this.fines = loadFines();
+        this.engine = new JsonFileStorageEngine<>(FILE_PATH, Fine.class, GsonUtils.createCompactGson(), () -> fileHandler).load();
+        engine.whenLoaded(this::assignMissingIds);
     }
 
     /**
-     * Load fines from JSON file
-     * @return map of fines
+     * Create a repository on top of another storage engine
+     * @param engine engine holding the fines
      */
-    private Map<String, Fine> loadFines() {
-        String json = fileHandler.readFromFile(FILE_PATH);
-        if (json.isEmpty()) {
-            return new HashMap<>();
-        }
+    public FineRepository(StorageEngine<Fine> engine) {
+        this.engine = engine;
+        engine.whenLoaded(this::assignMissingIds);
+    }
 
-        Type type = new TypeToken<Map<String, Fine>>(){}.getType();
-        Map<String, Fine> loadedFines = gson.fromJson(json, type);
-        
-        // Generate IDs for fines that don't have them
-        for (Fine fine : loadedFines.values()) {
-            if (fine.getId() == null) {
-                fine.setId(generateId());
-            }
+    /**
+     * Generate IDs for fines that don't have them
+     */
+    private void assignMissingIds(StorageEngine<Fine> loaded) {
+        for (Fine fine : loaded.scan(fine -> fine.getId() == null)) {
+            fine.setId(generateId());
         }
-        
-        return loadedFines;
     }
 
     /**
-     * Save fines to JSON file
-     * @return true if save successful, false otherwise
+     * Result of the last load
+     * @return load report, null if nothing was loaded from a file or the load failed
+     */
+    public LoadReport getLoadReport() {
+        return engine.getLoadReport();
+    }
+
+    /**
+     * Enable journaled persistence, replaying entries written since the last snapshot
+     * @param journal journal for fines
+     */
+    public void enableJournal(WriteAheadJournal journal) {
+        StorageEngines.json(engine).enableJournal(journal);
+    }
+
+    /**
+     * Keep paid fines in a cold archive once they are archived
+     * @param archive archive for fines
+     */
+    public void enableArchive(ColdArchive<Fine> archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Move fines paid in full more than the given number of days ago to the archive.
+     * They no longer appear in the other queries, only in the history ones.
+     * @param retentionDays days a paid fine stays live
+     * @return number of archived fines, 0 without an archive
      */
-    private boolean saveFines() {
-        String json = gson.toJson(fines);
-        return fileHandler.writeToFile(FILE_PATH, json);
+    public int archivePaidFines(int retentionDays) {
+        if (archive == null) {
+            return 0;
+        }
+        return ARCHIVAL.archive(engine, archive, retentionDays, LocalDateTime.now());
     }
 
     /**
@@ -67,7 +98,7 @@ public class FineRepository {
      * @return generated ID
      */
     private String generateId() {
-        return "FINE_" + System.currentTimeMillis() + "_" + RANDOM.nextInt(1000);
+        return IdGenerator.shared().nextId("FINE");
     }
 
     /**
@@ -79,8 +110,7 @@ public class FineRepository {
         if (fine.getId() == null) {
             fine.setId(generateId());
         }
-        fines.put(fine.getId(), fine);
-        return saveFines();
+        return engine.put(fine.getId(), fine);
     }
 
     /**
@@ -89,7 +119,7 @@ public class FineRepository {
      * @return fine or null if not found
      */
     public Fine findById(String id) {
-        return fines.get(id);
+        return engine.get(id);
     }
 
     /**
@@ -98,9 +128,16 @@ public class FineRepository {
      * @return list of user's fines
      */
     public List<Fine> findByUserId(String userId) {
-        return fines.values().stream()
-                .filter(fine -> userId.equals(fine.getUserId()))
-                .collect(Collectors.toList());
+        return engine.findBy("userId", userId, Fine::getUserId);
+    }
+
+    /**
+     * Find all fines of a user, including archived ones
+     * @param userId user ID
+     * @return live fines followed by archived fines
+     */
+    public List<Fine> findHistoryByUserId(String userId) {
+        return ARCHIVAL.withHistory(findByUserId(userId), archive, fine -> userId.equals(fine.getUserId()));
     }
 
     /**
@@ -108,9 +145,7 @@ public class FineRepository {
      * @return list of unpaid fines
      */
     public List<Fine> findUnpaidFines() {
-        return fines.values().stream()
-                .filter(fine -> !fine.isPaid())
-                .collect(Collectors.toList());
+        return engine.findBy("paid", "false", fine -> String.valueOf(fine.isPaid()));
     }
 
     /**
@@ -119,9 +154,8 @@ public class FineRepository {
      * @return true if update successful, false otherwise
      */
     public boolean update(Fine fine) {
-        if (fines.containsKey(fine.getId())) {
-            fines.put(fine.getId(), fine);
-            return saveFines();
+        if (engine.contains(fine.getId())) {
+            return engine.put(fine.getId(), fine);
         }
         return false;
     }
@@ -131,6 +165,6 @@ public class FineRepository {
      * @return list of all fines
      */
     public List<Fine> findAll() {
-        return new ArrayList<>(fines.values());
+        return engine.findAll();
     }
 }
\ No newline at end of file
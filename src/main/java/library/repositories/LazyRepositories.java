@@ -0,0 +1,218 @@
+package library.repositories;
+
+import library.models.Book;
+import library.models.CD;
+import library.models.CDFine;
+import library.models.CDLoan;
+import library.models.Fine;
+import library.models.Loan;
+import library.models.User;
+import library.storage.BackgroundPrefetch;
+import library.storage.DataDirectoryWatcher;
+import library.storage.DataFile;
+import library.storage.JsonFileStorageEngine;
+import library.storage.LazyStorageEngine;
+import library.storage.ParallelBootstrap;
+import library.storage.StorageEngines;
+import library.utils.JsonFileHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The seven repositories on lazily loaded storage engines.
+ * Creating this class reads no files: each data file is parsed the first time
+ * its repository is used, so the first prompt only waits for the users file.
+ * {@link #startPrefetch()} warms the remaining files in the background.
+ * <p>
+ * With file locking, which the default data directory uses, several processes
+ * can share the files; {@link #reloadChanged()} refreshes the repositories
+ * whose files another process has written, and {@link #startWatching()} does
+ * the same automatically when files are replaced from outside.
+ * <p>
+ * Until their files are loaded, the user, book, CD and loan repositories answer
+ * {@code findById} from an ID index next to the file, reading one record.
+ * <p>
+ * Loans and fines closed long ago can be moved to compressed segments in the
+ * {@code archive} directory with {@link #archiveHistory(int)}; the
+ * {@code findHistoryByUserId} queries still return them.
+ * @author Library Team
+ * @version 1.0
+ */
+public class LazyRepositories {
+    private final String dataDirectory;
+    private final LazyStorageEngine<User> users;
+    private final LazyStorageEngine<Book> books;
+    private final LazyStorageEngine<CD> cds;
+    private final LazyStorageEngine<Loan> loans;
+    private final LazyStorageEngine<CDLoan> cdLoans;
+    private final LazyStorageEngine<Fine> fines;
+    private final LazyStorageEngine<CDFine> cdFines;
+
+    private final UserRepository userRepository;
+    private final BookRepository bookRepository;
+    private final CDRepository cdRepository;
+    private final LoanRepository loanRepository;
+    private final CDLoanRepository cdLoanRepository;
+    private final FineRepository fineRepository;
+    private final CDFineRepository cdFineRepository;
+
+    public LazyRepositories() {
+        this(DataFile.DEFAULT_DIRECTORY, new JsonFileHandler(), true);
+    }
+
+    public LazyRepositories(String dataDirectory, JsonFileHandler fileHandler) {
+        this(dataDirectory, fileHandler, false);
+    }
+
+    /**
+     * @param dataDirectory directory holding the data files
+     * @param fileHandler handler used for reading and writing
+     * @param fileLocking true if other processes may use the same directory
+     */
+    public LazyRepositories(String dataDirectory, JsonFileHandler fileHandler, boolean fileLocking) {
+        this.dataDirectory = dataDirectory;
+        users = StorageEngines.lazy("users", () -> open(DataFile.USERS, dataDirectory, fileHandler, fileLocking).load())
+                .usePointReads(DataFile.USERS.offsetIndex(dataDirectory).useFileLocking(fileLocking));
+        books = StorageEngines.lazy("books", () -> open(DataFile.BOOKS, dataDirectory, fileHandler, fileLocking).load())
+                .usePointReads(DataFile.BOOKS.offsetIndex(dataDirectory).useFileLocking(fileLocking));
+        cds = StorageEngines.lazy("cds", () -> open(DataFile.CDS, dataDirectory, fileHandler, fileLocking).load())
+                .usePointReads(DataFile.CDS.offsetIndex(dataDirectory).useFileLocking(fileLocking));
+        loans = StorageEngines.lazy("loans", () -> open(DataFile.LOANS, dataDirectory, fileHandler, fileLocking).load())
+                .usePointReads(DataFile.LOANS.offsetIndex(dataDirectory).useFileLocking(fileLocking));
+        cdLoans = StorageEngines.lazy("cdloans",
+                () -> open(DataFile.CD_LOANS, dataDirectory, fileHandler, fileLocking).load());
+        fines = StorageEngines.lazy("fines", () -> open(DataFile.FINES, dataDirectory, fileHandler, fileLocking).load());
+        cdFines = StorageEngines.lazy("cdfines",
+                () -> open(DataFile.CD_FINES, dataDirectory, fileHandler, fileLocking).load());
+
+        userRepository = new UserRepository(users);
+        bookRepository = new BookRepository(books);
+        cdRepository = new CDRepository(cds);
+        loanRepository = new LoanRepository(loans);
+        cdLoanRepository = new CDLoanRepository(cdLoans);
+        fineRepository = new FineRepository(fines);
+        cdFineRepository = new CDFineRepository(cdFines);
+
+        loanRepository.enableArchive(DataFile.LOANS.archive(dataDirectory));
+        cdLoanRepository.enableArchive(DataFile.CD_LOANS.archive(dataDirectory));
+        fineRepository.enableArchive(DataFile.FINES.archive(dataDirectory));
+        cdFineRepository.enableArchive(DataFile.CD_FINES.archive(dataDirectory));
+    }
+
+    private static <T> JsonFileStorageEngine<T> open(DataFile<T> file, String dataDirectory,
+                                                    JsonFileHandler fileHandler, boolean fileLocking) {
+        return file.engine(dataDirectory, fileHandler).useFileLocking(fileLocking);
+    }
+
+    /**
+     * Warm every engine that was not used yet on a background thread.
+     * Call it once the first prompt is on screen.
+     * @return the running prefetch
+     */
+    public BackgroundPrefetch startPrefetch() {
+        BackgroundPrefetch prefetch = new BackgroundPrefetch();
+        for (LazyStorageEngine<?> engine : getEngines()) {
+            if (!engine.isLoaded()) {
+                prefetch.add(engine);
+            }
+        }
+        prefetch.start();
+        return prefetch;
+    }
+
+    /**
+     * Load every data file now, several at a time, and wait for all of them.
+     * Use this instead of lazy loading when everything is needed before the first menu.
+     * @param bootstrap bounded loader
+     * @return load time per repository
+     */
+    public ParallelBootstrap.Report loadAll(ParallelBootstrap bootstrap) {
+        return bootstrap.load(getEngines());
+    }
+
+    /**
+     * Reload the repositories whose files another process wrote since they were
+     * loaded. Repositories not used yet are skipped, they read the current file
+     * on first use. Without file locking nothing is detected.
+     * @return names of the reloaded repositories, e.g. ["loans"]
+     */
+    public List<String> reloadChanged() {
+        List<String> reloaded = new ArrayList<>();
+        for (LazyStorageEngine<?> engine : getEngines()) {
+            if (engine.reloadIfChanged()) {
+                reloaded.add(engine.getName());
+            }
+        }
+        return reloaded;
+    }
+
+    /**
+     * Watch the data directory and apply changed records as soon as a file is
+     * replaced from outside. Repositories are watched once they are loaded.
+     * @return the running watcher; close it to stop watching
+     * @throws IOException if the directory cannot be watched
+     */
+    public DataDirectoryWatcher startWatching() throws IOException {
+        DataDirectoryWatcher watcher = new DataDirectoryWatcher(dataDirectory);
+        for (LazyStorageEngine<?> engine : getEngines()) {
+            watchWhenLoaded(engine, watcher);
+        }
+        watcher.start();
+        return watcher;
+    }
+
+    private static <T> void watchWhenLoaded(LazyStorageEngine<T> engine, DataDirectoryWatcher watcher) {
+        engine.whenLoaded(loaded -> watcher.watch(StorageEngines.json(loaded)));
+    }
+
+    /**
+     * Move returned loans and paid fines closed more than the given number of days
+     * ago to the archive directory. This loads the four history files.
+     * @param retentionDays days a closed record stays live
+     * @return number of archived records
+     */
+    public int archiveHistory(int retentionDays) {
+        return loanRepository.archiveReturnedLoans(retentionDays)
+                + cdLoanRepository.archiveReturnedCDLoans(retentionDays)
+                + fineRepository.archivePaidFines(retentionDays)
+                + cdFineRepository.archivePaidCDFines(retentionDays);
+    }
+
+    /**
+     * The lazy engines, users first
+     * @return engines in load priority order
+     */
+    public List<LazyStorageEngine<?>> getEngines() {
+        return List.of(users, books, cds, loans, cdLoans, fines, cdFines);
+    }
+
+    public UserRepository getUserRepository() {
+        return userRepository;
+    }
+
+    public BookRepository getBookRepository() {
+        return bookRepository;
+    }
+
+    public CDRepository getCdRepository() {
+        return cdRepository;
+    }
+
+    public LoanRepository getLoanRepository() {
+        return loanRepository;
+    }
+
+    public CDLoanRepository getCdLoanRepository() {
+        return cdLoanRepository;
+    }
+
+    public FineRepository getFineRepository() {
+        return fineRepository;
+    }
+
+    public CDFineRepository getCdFineRepository() {
+        return cdFineRepository;
+    }
+}
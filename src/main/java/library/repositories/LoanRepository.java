@@ -3,13 +3,19 @@ package library.repositories;
 
 
 import library.models.Loan;
+import library.storage.ArchivalPolicy;
+import library.storage.ColdArchive;
+import library.storage.JsonFileStorageEngine;
+import library.storage.LoadReport;
+import library.storage.StorageEngine;
+import library.storage.StorageEngines;
+import library.storage.WriteAheadJournal;
+import library.utils.DateUtils;
+import library.utils.GsonUtils;
 import library.utils.JsonFileHandler;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import library.utils.IdGenerator;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.security.SecureRandom;
 
 /**
  * Repository for loan data management using JSON file storage
@@ -18,46 +24,76 @@ import java.security.SecureRandom;
  */
 public class LoanRepository {
     private static final String FILE_PATH = "data/loans.json";
+    private static final ArchivalPolicy<Loan> ARCHIVAL =
+            new ArchivalPolicy<>(Loan::getId, loan -> loan.isReturned() ? loan.getReturnDateTime() : null);
+    private final StorageEngine<Loan> engine;
+    private ColdArchive<Loan> archive;
+    // records and handler of the default JSON engine; the handler is looked up on every write
     private Map<String, Loan> loans;
-    private Gson gson;
     private JsonFileHandler fileHandler;
 
     public LoanRepository() {
-        this.gson = new Gson();
         this.fileHandler = new JsonFileHandler();
-        this.loans = loadLoans();
+        JsonFileStorageEngine<Loan> jsonEngine =
+                new JsonFileStorageEngine<>(FILE_PATH, Loan.class, GsonUtils.createCompactGson(), () -> fileHandler).load();
+        this.loans = jsonEngine.getRecords();
+        this.engine = jsonEngine;
+        engine.whenLoaded(this::assignMissingIds);
     }
 
     /**
-     * Load loans from JSON file
-     * @return map of loans
+     * Create a repository on top of another storage engine
+     * @param engine engine holding the loans
      */
-    private Map<String, Loan> loadLoans() {
-        String json = fileHandler.readFromFile(FILE_PATH);
-        if (json.isEmpty()) {
-            return new HashMap<>();
-        }
+    public LoanRepository(StorageEngine<Loan> engine) {
+        this.engine = engine;
+        engine.whenLoaded(this::assignMissingIds);
+    }
 
-        Type type = new TypeToken<Map<String, Loan>>(){}.getType();
-        Map<String, Loan> loadedLoans = gson.fromJson(json, type);
-        
-        // Generate IDs for loans that don't have them
-        for (Loan loan : loadedLoans.values()) {
-            if (loan.getId() == null) {
-                loan.setId(generateId());
-            }
+    /**
+     * Generate IDs for loans that don't have them
+     */
+    private void assignMissingIds(StorageEngine<Loan> loaded) {
+        for (Loan loan : loaded.scan(loan -> loan.getId() == null)) {
+            loan.setId(generateId());
         }
-        
-        return loadedLoans;
     }
 
     /**
-     * Save loans to JSON file
-     * @return true if save successful, false otherwise
+     * Result of the last load
+     * @return load report, null if nothing was loaded from a file or the load failed
+     */
+    public LoadReport getLoadReport() {
+        return engine.getLoadReport();
+    }
+
+    /**
+     * Enable journaled persistence, replaying entries written since the last snapshot
+     * @param journal journal for loans
+     */
+    public void enableJournal(WriteAheadJournal journal) {
+        StorageEngines.json(engine).enableJournal(journal);
+    }
+
+    /**
+     * Keep returned loans in a cold archive once they are archived
+     * @param archive archive for loans
+     */
+    public void enableArchive(ColdArchive<Loan> archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Move loans returned more than the given number of days ago to the archive.
+     * They no longer appear in the other queries, only in the history ones.
+     * @param retentionDays days a returned loan stays live
+     * @return number of archived loans, 0 without an archive
      */
-    private boolean saveLoans() {
-        String json = gson.toJson(loans);
-        return fileHandler.writeToFile(FILE_PATH, json);
+    public int archiveReturnedLoans(int retentionDays) {
+        if (archive == null) {
+            return 0;
+        }
+        return ARCHIVAL.archive(engine, archive, retentionDays, LocalDateTime.now());
     }
 
     /**
@@ -67,7 +103,7 @@ public class LoanRepository {
    
 
     private String generateId() {
-        return "LOAN_" + UUID.randomUUID().toString();
+        return IdGenerator.shared().nextId("LOAN");
     }
 
 
@@ -81,8 +117,7 @@ public class LoanRepository {
         if (loan.getId() == null) {
             loan.setId(generateId());
         }
-        loans.put(loan.getId(), loan);
-        return saveLoans();
+        return engine.put(loan.getId(), loan);
     }
 
     /**
@@ -91,7 +126,7 @@ public class LoanRepository {
      * @return loan or null if not found
      */
     public Loan findById(String id) {
-        return loans.get(id);
+        return engine.get(id);
     }
 
     /**
@@ -100,9 +135,26 @@ public class LoanRepository {
      * @return list of user's loans
      */
     public List<Loan> findByUserId(String userId) {
-        return loans.values().stream()
-                .filter(loan -> userId.equals(loan.getUserId()))
-                .collect(Collectors.toList());
+        return engine.findBy("userId", userId, Loan::getUserId);
+    }
+
+    /**
+     * Find all loans of a user, including archived ones
+     * @param userId user ID
+     * @return live loans followed by archived loans
+     */
+    public List<Loan> findHistoryByUserId(String userId) {
+        return ARCHIVAL.withHistory(findByUserId(userId), archive, loan -> userId.equals(loan.getUserId()));
+    }
+
+    /**
+     * Find a loan by ID, including archived ones
+     * @param id loan ID
+     * @return loan or null if not found
+     */
+    public Loan findInHistoryById(String id) {
+        Loan loan = findById(id);
+        return loan != null || archive == null ? loan : archive.get(id);
     }
 
     /**
@@ -111,9 +163,7 @@ public class LoanRepository {
      * @return list of book's loans
      */
     public List<Loan> findByBookId(String bookId) {
-        return loans.values().stream()
-                .filter(loan -> bookId.equals(loan.getBookId()))
-                .collect(Collectors.toList());
+        return engine.findBy("bookId", bookId, Loan::getBookId);
     }
 
    
@@ -123,9 +173,8 @@ public class LoanRepository {
      * @return true if update successful, false otherwise
      */
     public boolean update(Loan loan) {
-        if (loans.containsKey(loan.getId())) {
-            loans.put(loan.getId(), loan);
-            return saveLoans();
+        if (engine.contains(loan.getId())) {
+            return engine.put(loan.getId(), loan);
         }
         return false;
     }
@@ -135,7 +184,7 @@ public class LoanRepository {
      * @return list of all loans
      */
     public List<Loan> findAll() {
-        return new ArrayList<>(loans.values());
+        return engine.findAll();
     }
     
     
@@ -144,15 +193,21 @@ public class LoanRepository {
      * @return list of overdue loans
      */
     public List<Loan> findOverdueLoans() {
-        return loans.values().stream()
-                .filter(loan -> !loan.isReturned()) // Only active loans
-                .filter(loan -> {
-                    try {
-                        return loan.isOverdue();
-                    } catch (Exception e) {
-                        return false;
-                    }
-                })
-                .collect(Collectors.toList());
+        // ISO due dates sort chronologically, so the engine can narrow by range first
+        List<Loan> dueBeforeNow = engine.findBefore("dueDate", DateUtils.toString(LocalDateTime.now()), Loan::getDueDate);
+        List<Loan> overdue = new ArrayList<>();
+        for (Loan loan : dueBeforeNow) {
+            if (loan.isReturned()) { // Only active loans
+                continue;
+            }
+            try {
+                if (loan.isOverdue()) {
+                    overdue.add(loan);
+                }
+            } catch (Exception e) {
+                // unreadable due date, not overdue
+            }
+        }
+        return overdue;
     }
 }
\ No newline at end of file
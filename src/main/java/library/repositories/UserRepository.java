@@ -1,12 +1,16 @@
 package library.repositories;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import library.models.User;
+import library.storage.JsonFileStorageEngine;
+import library.storage.LoadReport;
+import library.storage.StorageEngine;
+import library.storage.StorageEngines;
+import library.storage.WriteAheadJournal;
 import library.utils.JsonFileHandler;
 import library.utils.GsonUtils;
+import library.utils.IdGenerator;
 
-import java.lang.reflect.Type;
 import java.util.*;
 
 /**
@@ -16,12 +20,7 @@ public class UserRepository {
 
     public static String FILE_PATH = "data/users.json";
 
-    private final String filePath;
-    private final JsonFileHandler fileHandler;
-    private final Gson gson;
-
-    private final Type mapType = new TypeToken<Map<String, User>>() {}.getType();
-    private Map<String, User> users = new HashMap<>();
+    private final StorageEngine<User> engine;
 
     // ---------- Constructors ----------
 
@@ -30,50 +29,35 @@ public class UserRepository {
     }
 
     public UserRepository(String filePath, JsonFileHandler fileHandler, Gson gson) {
-        this.filePath = (filePath != null) ? filePath : FILE_PATH;
-        this.fileHandler = (fileHandler != null) ? fileHandler : new JsonFileHandler();
-        this.gson = (gson != null) ? gson : GsonUtils.createGson();
-        loadUsers();
+        this(new JsonFileStorageEngine<>(
+                (filePath != null) ? filePath : FILE_PATH,
+                User.class,
+                (gson != null) ? gson : GsonUtils.createGson(),
+                (fileHandler != null) ? fileHandler : new JsonFileHandler()).load());
     }
 
     public UserRepository(JsonFileHandler fileHandler, Gson gson, String filePath) {
         this(filePath, fileHandler, gson);
     }
 
-    // ---------- Loading / Saving ----------
-
-    private void loadUsers() {
-        try {
-            String json = fileHandler.readFromFile(this.filePath);
-
-            if (json == null || json.trim().isEmpty() || json.trim().equals("{}")) {
-                users = new HashMap<>();
-                return;
-            }
+    public UserRepository(StorageEngine<User> engine) {
+        this.engine = engine;
+    }
 
-            Map<String, User> loaded = gson.fromJson(json, mapType);
-            users = (loaded != null) ? loaded : new HashMap<>();
+    // ---------- Loading / Journal ----------
 
-        } catch (Exception e) {
-            System.err.println("UserRepository.loadUsers() error: " + e.getMessage());
-            users = new HashMap<>();
-        }
+    public LoadReport getLoadReport() {
+        return engine.getLoadReport();
     }
 
-    private boolean saveUsers() {
-        try {
-            String json = gson.toJson(users);
-            return fileHandler.writeToFile(this.filePath, json);
-        } catch (Exception e) {
-            System.err.println("UserRepository.saveUsers() error: " + e.getMessage());
-            return false;
-        }
+    public void enableJournal(WriteAheadJournal journal) {
+        StorageEngines.json(engine).enableJournal(journal);
     }
 
     // ---------- ID Generator ----------
 
     private String generateId() {
-        return "USER_" + UUID.randomUUID();
+        return IdGenerator.shared().nextId("USER");
     }
 
     // ---------- CRUD ----------
@@ -88,41 +72,33 @@ public class UserRepository {
 
         user.setUpdatedAtDateTime(java.time.LocalDateTime.now());
 
-        users.put(user.getId(), user);
-        return saveUsers();
+        return engine.put(user.getId(), user);
     }
 
     public User findById(String id) {
         if (id == null) return null;
-        return users.get(id);
+        return engine.get(id);
     }
 
     public User findByEmail(String email) {
         if (email == null) return null;
 
-        return users.values().stream()
-                .filter(u -> email.equals(u.getEmail()))
-                .findFirst()
-                .orElse(null);
+        List<User> matches = engine.findBy("email", email, User::getEmail);
+        return matches.isEmpty() ? null : matches.get(0);
     }
 
     public List<User> findAll() {
-        return new ArrayList<>(users.values());
+        return engine.findAll();
     }
 
     public boolean delete(String id) {
         if (id == null) return false;
 
-        User removed = users.remove(id);
-        if (removed != null) {
-            return saveUsers();
-        }
-        return false;
+        return engine.delete(id);
     }
 
     public void clearAll() {
-        users.clear();
-        saveUsers();
+        engine.clear();
     }
 }
 
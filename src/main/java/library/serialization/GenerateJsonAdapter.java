@@ -0,0 +1,21 @@
+package library.serialization;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generate a streaming Gson adapter for this class at build time.
+ * The adapter reads and writes the same JSON as Gson's reflective adapter.
+ * It writes through the getters and reads into a non-private constructor
+ * that takes every persisted field in declaration order; that constructor
+ * must only assign, so loading never runs setter logic.
+ * Supported field types: String, boolean, int, long and double.
+ * @author Library Team
+ * @version 1.0
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateJsonAdapter {
+}
@@ -0,0 +1,72 @@
+package library.serialization;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Value readers used by the generated adapters. They accept the same input
+ * as Gson's built-in adapters, e.g. quoted numbers and booleans.
+ * @author Library Team
+ * @version 1.0
+ */
+public final class JsonAdapterSupport {
+
+    private JsonAdapterSupport() {
+    }
+
+    /**
+     * Skip a JSON null so a primitive field keeps its default
+     * @param in reader positioned at a value
+     * @return true if the value was null and has been consumed
+     * @throws IOException if the input cannot be read
+     */
+    public static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    public static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    public static boolean readBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.STRING) {
+            return Boolean.parseBoolean(in.nextString());
+        }
+        return in.nextBoolean();
+    }
+
+    public static int readInt(JsonReader in) throws IOException {
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    public static long readLong(JsonReader in) throws IOException {
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    public static double readDouble(JsonReader in) throws IOException {
+        return in.nextDouble();
+    }
+}
@@ -0,0 +1,103 @@
+package library.storage;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Moves closed records, such as returned loans or paid fines, from a storage
+ * engine to a {@link ColdArchive} once they have been closed for a number of
+ * days, so the scans behind the everyday queries only see live records.
+ * @param <T> entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public class ArchivalPolicy<T> {
+    private final Function<? super T, String> idOf;
+    private final Function<? super T, LocalDateTime> closedAt;
+
+    /**
+     * @param idOf ID of a record
+     * @param closedAt when a record was closed, e.g. the return date of a loan;
+     *                 null while the record is still live
+     */
+    public ArchivalPolicy(Function<? super T, String> idOf, Function<? super T, LocalDateTime> closedAt) {
+        this.idOf = idOf;
+        this.closedAt = closedAt;
+    }
+
+    /**
+     * Check whether a record has been closed for longer than the retention period
+     * @param record record to check
+     * @param retentionDays days a closed record stays live
+     * @param now current time
+     * @return true if the record can be archived
+     */
+    public boolean isArchivable(T record, int retentionDays, LocalDateTime now) {
+        try {
+            LocalDateTime closed = closedAt.apply(record);
+            return closed != null && closed.isBefore(now.minusDays(retentionDays));
+        } catch (DateTimeParseException e) {
+            // unreadable date, keep the record live
+            return false;
+        }
+    }
+
+    /**
+     * Move archivable records from an engine to an archive. The archive segment
+     * is written before the records are deleted, so a failure in between leaves
+     * them in both places and the next run archives them again.
+     * @param engine live records
+     * @param archive archive receiving the closed records
+     * @param retentionDays days a closed record stays live
+     * @param now current time
+     * @return number of records moved, 0 if nothing was archivable or the move failed
+     */
+    public int archive(StorageEngine<T> engine, ColdArchive<T> archive, int retentionDays, LocalDateTime now) {
+        if (retentionDays < 0) {
+            throw new IllegalArgumentException("Retention days cannot be negative: " + retentionDays);
+        }
+        Map<String, T> closed = new LinkedHashMap<>();
+        for (T record : engine.scan(record -> isArchivable(record, retentionDays, now))) {
+            String id = idOf.apply(record);
+            if (id != null) {
+                closed.put(id, record);
+            }
+        }
+        if (closed.isEmpty() || !archive.append(closed)) {
+            return 0;
+        }
+        return engine.deleteAll(closed.keySet()) ? closed.size() : 0;
+    }
+
+    /**
+     * Complete live query results with the matching archived records
+     * @param live records found in the engine
+     * @param archive archive to search, may be null
+     * @param filter the same condition the live query used
+     * @return live records followed by archived records that are not live any more
+     */
+    public List<T> withHistory(List<T> live, ColdArchive<T> archive, Predicate<? super T> filter) {
+        List<T> history = new ArrayList<>(live);
+        if (archive == null) {
+            return history;
+        }
+        Set<String> liveIds = new HashSet<>();
+        for (T record : live) {
+            liveIds.add(idOf.apply(record));
+        }
+        for (T record : archive.scan(filter)) {
+            if (!liveIds.contains(idOf.apply(record))) {
+                history.add(record);
+            }
+        }
+        return history;
+    }
+}
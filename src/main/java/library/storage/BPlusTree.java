@@ -0,0 +1,263 @@
+package library.storage;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * B+tree of byte-array keys and values stored in the pages of a {@link BufferPool}.
+ * Keys are ordered as unsigned bytes, which for UTF-8 strings is code point order.
+ * Leaves are linked left to right for ordered scans.
+ * <p>
+ * Nodes split when they outgrow a page. Removal does not merge nodes: a leaf
+ * that becomes empty stays in the chain until the tree is rebuilt, which keeps
+ * deletes to one page write. Entries are limited to a quarter of a page so
+ * that a split always produces two nodes that fit.
+ * @author Library Team
+ * @version 1.0
+ */
+final class BPlusTree {
+    private final BufferPool pool;
+    private int root;
+
+    /**
+     * @param pool pages of the tree
+     * @param root page of the root node
+     */
+    BPlusTree(BufferPool pool, int root) {
+        this.pool = pool;
+        this.root = root;
+    }
+
+    /**
+     * Create an empty tree
+     * @param pool pages of the tree
+     * @return the tree
+     * @throws IOException if the root page cannot be written
+     */
+    static BPlusTree create(BufferPool pool) throws IOException {
+        int root = pool.allocate();
+        pool.write(root, new BufferPool.Node(true));
+        return new BPlusTree(pool, root);
+    }
+
+    /**
+     * Largest key plus value accepted by {@link #put}
+     * @return bytes
+     */
+    int maxEntrySize() {
+        return (pool.getPageSize() - BufferPool.NODE_HEADER_BYTES - 4) / 4 - 6;
+    }
+
+    int getRoot() {
+        return root;
+    }
+
+    /**
+     * Value stored under a key
+     * @param key key
+     * @return value or null
+     * @throws IOException if a page cannot be read
+     */
+    byte[] get(byte[] key) throws IOException {
+        BufferPool.Node leaf = pool.get(findLeaf(key, null));
+        int index = search(leaf.keys, key);
+        return index >= 0 ? leaf.values.get(index) : null;
+    }
+
+    /**
+     * Insert or replace a value
+     * @param key key
+     * @param value value
+     * @return previous value or null
+     * @throws IOException if a page cannot be read or written
+     */
+    byte[] put(byte[] key, byte[] value) throws IOException {
+        if (key.length + value.length > maxEntrySize()) {
+            throw new IllegalArgumentException("Entry of " + (key.length + value.length)
+                    + " bytes exceeds the limit of " + maxEntrySize() + " for this page size");
+        }
+        Deque<int[]> path = new ArrayDeque<>(); // {page, child index} from the root down
+        int leafId = findLeaf(key, path);
+        BufferPool.Node leaf = pool.get(leafId);
+        int index = search(leaf.keys, key);
+        byte[] previous = null;
+        if (index >= 0) {
+            previous = leaf.values.set(index, value);
+        } else {
+            leaf.keys.add(-index - 1, key);
+            leaf.values.add(-index - 1, value);
+        }
+        if (leaf.byteSize() <= pool.getPageSize()) {
+            pool.write(leafId, leaf);
+            return previous;
+        }
+
+        // split the leaf and push the separator up as far as needed
+        int at = splitPoint(leaf);
+        BufferPool.Node right = new BufferPool.Node(true);
+        moveTail(leaf.keys, right.keys, at);
+        moveTail(leaf.values, right.values, at);
+        int rightId = pool.allocate();
+        right.next = leaf.next;
+        leaf.next = rightId;
+        pool.write(leafId, leaf);
+        pool.write(rightId, right);
+        byte[] separator = right.keys.get(0);
+
+        while (!path.isEmpty()) {
+            int[] step = path.pop();
+            BufferPool.Node parent = pool.get(step[0]);
+            parent.keys.add(step[1], separator);
+            parent.children.add(step[1] + 1, rightId);
+            if (parent.byteSize() <= pool.getPageSize()) {
+                pool.write(step[0], parent);
+                return previous;
+            }
+            int middle = splitPoint(parent);
+            BufferPool.Node sibling = new BufferPool.Node(false);
+            separator = parent.keys.get(middle);
+            moveTail(parent.keys, sibling.keys, middle + 1);
+            moveTail(parent.children, sibling.children, middle + 1);
+            parent.keys.remove(middle);
+            rightId = pool.allocate();
+            pool.write(step[0], parent);
+            pool.write(rightId, sibling);
+        }
+
+        BufferPool.Node newRoot = new BufferPool.Node(false);
+        newRoot.keys.add(separator);
+        newRoot.children.add(root);
+        newRoot.children.add(rightId);
+        root = pool.allocate();
+        pool.write(root, newRoot);
+        return previous;
+    }
+
+    /**
+     * Remove a key
+     * @param key key
+     * @return removed value or null
+     * @throws IOException if a page cannot be read or written
+     */
+    byte[] remove(byte[] key) throws IOException {
+        int leafId = findLeaf(key, null);
+        BufferPool.Node leaf = pool.get(leafId);
+        int index = search(leaf.keys, key);
+        if (index < 0) {
+            return null;
+        }
+        leaf.keys.remove(index);
+        byte[] removed = leaf.values.remove(index);
+        pool.write(leafId, leaf);
+        return removed;
+    }
+
+    /**
+     * Visit entries in key order, starting at the first key not below {@code from}
+     * @param from first key, or null for the smallest
+     * @param visitor receives each entry; returns false to stop
+     * @throws IOException if a page cannot be read
+     */
+    void scan(byte[] from, EntryVisitor visitor) throws IOException {
+        int pageId = findLeaf(from, null);
+        int index = 0;
+        if (from != null) {
+            int found = search(pool.get(pageId).keys, from);
+            index = found >= 0 ? found : -found - 1;
+        }
+        while (pageId >= 0) {
+            BufferPool.Node leaf = pool.get(pageId);
+            for (int i = index; i < leaf.keys.size(); i++) {
+                if (!visitor.visit(leaf.keys.get(i), leaf.values.get(i))) {
+                    return;
+                }
+            }
+            pageId = leaf.next;
+            index = 0;
+        }
+    }
+
+    /**
+     * Descend to the leaf that holds or would hold a key
+     * @param key key, or null for the leftmost leaf
+     * @param path receives {page, child index} of each internal node passed, if not null
+     */
+    private int findLeaf(byte[] key, Deque<int[]> path) throws IOException {
+        int pageId = root;
+        BufferPool.Node node = pool.get(pageId);
+        while (!node.leaf) {
+            int child = key == null ? 0 : upperBound(node.keys, key);
+            if (path != null) {
+                path.push(new int[] {pageId, child});
+            }
+            pageId = node.children.get(child);
+            node = pool.get(pageId);
+        }
+        return pageId;
+    }
+
+    /**
+     * Index of the first entry after which the left part holds about half the bytes
+     */
+    private static int splitPoint(BufferPool.Node node) {
+        int total = node.byteSize();
+        int size = BufferPool.NODE_HEADER_BYTES;
+        for (int i = 0; i < node.keys.size() - 1; i++) {
+            size += node.entrySize(i);
+            if (size >= total / 2) {
+                return Math.max(1, i + 1);
+            }
+        }
+        return node.keys.size() - 1;
+    }
+
+    private static <E> void moveTail(List<E> from, List<E> to, int start) {
+        List<E> tail = from.subList(start, from.size());
+        to.addAll(tail);
+        tail.clear();
+    }
+
+    private static int search(List<byte[]> keys, byte[] key) {
+        int low = 0;
+        int high = keys.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Arrays.compareUnsigned(keys.get(middle), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Number of keys less than or equal to the key, i.e. the child to descend into
+     */
+    private static int upperBound(List<byte[]> keys, byte[] key) {
+        int low = 0;
+        int high = keys.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(keys.get(middle), key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Receives entries during a scan
+     */
+    interface EntryVisitor {
+        boolean visit(byte[] key, byte[] value) throws IOException;
+    }
+}
@@ -0,0 +1,547 @@
+package library.storage;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Storage engine that keeps its records on disk in a page file, for catalogs
+ * larger than the heap. Records are stored as JSON in a B+tree keyed by ID;
+ * every registered index gets a second B+tree from (key, ID) to nothing, so
+ * {@link #findBy}, {@link #findBefore} and {@link #findFrom} walk a small range
+ * instead of the whole catalog. Only the pages in the buffer pool are held in
+ * memory, so the heap footprint is bounded by {@code pageSize * cachedPages}
+ * plus the results a query returns. A record's JSON must fit in about a
+ * quarter of a page (some 2 KB with the default page size); larger records are
+ * rejected by {@link #put}.
+ * <p>
+ * Changes are written to the file when each call returns and forced to disk by
+ * {@link #flush()}. The file is not journaled: keep a backup or JSON export
+ * if a crash during a write must not damage it.
+ * @param <T> entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public class BTreeStorageEngine<T> implements StorageEngine<T> {
+    public static final String FILE_EXTENSION = ".btree";
+    public static final int DEFAULT_PAGE_SIZE = 8192;
+    public static final int DEFAULT_CACHED_PAGES = 256;
+    /** Name of the primary tree; also accepted by {@link #findFrom} for ID order */
+    public static final String ID = "id";
+
+    private static final int MAGIC = 0x4C425054; // "LBPT"
+    private static final int VERSION = 1;
+    /** Index keys are cut to this many characters; matches are re-checked on the entity */
+    private static final int MAX_INDEX_KEY_CHARS = 64;
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private final String filePath;
+    private final Class<T> type;
+    private final Gson gson;
+    private final int pageSize;
+    private final int cachedPages;
+    private final Map<String, Function<? super T, String>> indexes = new LinkedHashMap<>();
+
+    private FileChannel channel;
+    private BufferPool pool;
+    private BPlusTree primary;
+    private final Map<String, BPlusTree> secondary = new LinkedHashMap<>();
+    private long count;
+
+    public BTreeStorageEngine(String filePath, Class<T> type, Gson gson) {
+        this(filePath, type, gson, DEFAULT_PAGE_SIZE, DEFAULT_CACHED_PAGES);
+    }
+
+    /**
+     * @param filePath page file, created if missing
+     * @param type entity class
+     * @param gson converts entities to and from the stored JSON
+     * @param pageSize bytes per page for a new file; an existing file keeps its own
+     * @param cachedPages pages held in memory
+     */
+    public BTreeStorageEngine(String filePath, Class<T> type, Gson gson, int pageSize, int cachedPages) {
+        if (pageSize < 1024 || Integer.bitCount(pageSize) != 1) {
+            throw new IllegalArgumentException("Page size must be a power of two of at least 1024");
+        }
+        this.filePath = filePath;
+        this.type = type;
+        this.gson = gson;
+        this.pageSize = pageSize;
+        this.cachedPages = cachedPages;
+    }
+
+    /**
+     * Keep a secondary tree for an attribute. Call before {@link #open()};
+     * an index missing from an existing file is built from the records.
+     * @param name index name used by the repositories, e.g. "isbn"
+     * @param keyOf reads the attribute from an entity
+     * @return this engine
+     */
+    public BTreeStorageEngine<T> index(String name, Function<? super T, String> keyOf) {
+        if (name.equals(ID)) {
+            throw new IllegalArgumentException("\"" + ID + "\" is the primary key");
+        }
+        indexes.put(name, keyOf);
+        return this;
+    }
+
+    /**
+     * Open the page file, creating it if it does not exist
+     * @return this engine
+     * @throws IllegalStateException if the file cannot be opened or is not a B+tree file
+     */
+    public synchronized BTreeStorageEngine<T> open() {
+        try {
+            Path path = Paths.get(filePath);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                initialize(pageSize);
+            } else {
+                readHeader();
+            }
+            return this;
+        } catch (IOException | RuntimeException e) {
+            closeChannel();
+            throw new IllegalStateException("Could not open " + filePath + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void initialize(int size) throws IOException {
+        pool = new BufferPool(channel, size, cachedPages, 1);
+        primary = BPlusTree.create(pool);
+        secondary.clear();
+        for (String name : indexes.keySet()) {
+            secondary.put(name, BPlusTree.create(pool));
+        }
+        count = 0;
+        writeChanges();
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(512);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < 28 || header.getInt() != MAGIC) {
+            throw new IOException("Not a B+tree file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported B+tree file version " + version);
+        }
+        int filePageSize = header.getInt();
+        int pageCount = header.getInt();
+        count = header.getLong();
+        Map<String, Integer> roots = new LinkedHashMap<>();
+        int trees = header.getInt();
+        for (int i = 0; i < trees; i++) {
+            byte[] name = new byte[header.getShort()];
+            header.get(name);
+            roots.put(new String(name, StandardCharsets.UTF_8), header.getInt());
+        }
+
+        pool = new BufferPool(channel, filePageSize, cachedPages, pageCount);
+        primary = new BPlusTree(pool, roots.get(ID));
+        secondary.clear();
+        List<String> missing = new ArrayList<>();
+        for (String name : indexes.keySet()) {
+            Integer root = roots.get(name);
+            if (root != null) {
+                secondary.put(name, new BPlusTree(pool, root));
+            } else {
+                secondary.put(name, BPlusTree.create(pool));
+                missing.add(name);
+            }
+        }
+        if (!missing.isEmpty()) {
+            primary.scan(null, (id, json) -> {
+                T entity = decode(json);
+                for (String name : missing) {
+                    secondary.get(name).put(indexKey(indexes.get(name).apply(entity), id), NO_VALUE);
+                }
+                return true;
+            });
+            writeChanges();
+        }
+    }
+
+    /**
+     * Write dirty pages and the header; the header goes last so it never
+     * points at pages that are not written yet
+     */
+    private void writeChanges() throws IOException {
+        pool.flushDirty();
+        ByteBuffer header = ByteBuffer.allocate(pool.getPageSize());
+        header.putInt(MAGIC).putInt(VERSION).putInt(pool.getPageSize()).putInt(pool.getPageCount()).putLong(count);
+        header.putInt(1 + secondary.size());
+        putRoot(header, ID, primary.getRoot());
+        for (Map.Entry<String, BPlusTree> entry : secondary.entrySet()) {
+            putRoot(header, entry.getKey(), entry.getValue().getRoot());
+        }
+        header.flip();
+        pool.writePage(0, header);
+    }
+
+    private static void putRoot(ByteBuffer header, String name, int root) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        header.putShort((short) bytes.length).put(bytes).putInt(root);
+    }
+
+    @Override
+    public synchronized T get(String id) {
+        try {
+            byte[] json = primary.get(utf8(id));
+            return json == null ? null : decode(json);
+        } catch (IOException e) {
+            System.err.println("Error reading " + filePath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized boolean put(String id, T entity) {
+        try {
+            store(id, entity);
+            writeChanges();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error saving to " + filePath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void store(String id, T entity) throws IOException {
+        byte[] key = utf8(id);
+        byte[] previous = primary.put(key, gson.toJson(entity).getBytes(StandardCharsets.UTF_8));
+        T old = previous == null ? null : decode(previous);
+        if (previous == null) {
+            count++;
+        }
+        for (Map.Entry<String, BPlusTree> entry : secondary.entrySet()) {
+            Function<? super T, String> keyOf = indexes.get(entry.getKey());
+            byte[] newKey = indexKey(keyOf.apply(entity), key);
+            if (old != null) {
+                byte[] oldKey = indexKey(keyOf.apply(old), key);
+                if (Arrays.equals(oldKey, newKey)) {
+                    continue;
+                }
+                entry.getValue().remove(oldKey);
+            }
+            entry.getValue().put(newKey, NO_VALUE);
+        }
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        try {
+            boolean removed = remove(id);
+            writeChanges();
+            return removed;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error deleting from " + filePath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean remove(String id) throws IOException {
+        byte[] key = utf8(id);
+        byte[] previous = primary.remove(key);
+        if (previous == null) {
+            return false;
+        }
+        count--;
+        T old = decode(previous);
+        for (Map.Entry<String, BPlusTree> entry : secondary.entrySet()) {
+            entry.getValue().remove(indexKey(indexes.get(entry.getKey()).apply(old), key));
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(String id) {
+        try {
+            return primary.get(utf8(id)) != null;
+        } catch (IOException e) {
+            System.err.println("Error reading " + filePath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Entities accepted by the filter, in ID order; reads every page of the primary tree
+     */
+    @Override
+    public synchronized List<T> scan(Predicate<? super T> filter) {
+        List<T> result = new ArrayList<>();
+        try {
+            primary.scan(null, (id, json) -> {
+                T entity = decode(json);
+                if (filter.test(entity)) {
+                    result.add(entity);
+                }
+                return true;
+            });
+        } catch (IOException e) {
+            System.err.println("Error reading " + filePath + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Walk the secondary tree when there is one with this name, otherwise scan
+     */
+    @Override
+    public synchronized List<T> findBy(String index, String key, Function<? super T, String> keyOf) {
+        BPlusTree tree = secondary.get(index);
+        if (tree == null || key == null) {
+            return StorageEngine.super.findBy(index, key, keyOf);
+        }
+        byte[] prefix = indexPrefix(key);
+        List<T> result = new ArrayList<>();
+        try {
+            tree.scan(prefix, (indexKey, unused) -> {
+                if (!startsWith(indexKey, prefix)) {
+                    return false;
+                }
+                T entity = get(idOf(indexKey));
+                if (entity != null && key.equals(keyOf.apply(entity))) {
+                    result.add(entity);
+                }
+                return true;
+            });
+        } catch (IOException e) {
+            System.err.println("Error reading " + filePath + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Walk the secondary tree from its start up to the bound when there is one
+     * with this name, otherwise scan
+     */
+    @Override
+    public synchronized List<T> findBefore(String index, String bound, Function<? super T, String> keyOf) {
+        BPlusTree tree = secondary.get(index);
+        if (tree == null) {
+            return StorageEngine.super.findBefore(index, bound, keyOf);
+        }
+        byte[] limit = utf8(bound);
+        List<T> result = new ArrayList<>();
+        try {
+            tree.scan(null, (indexKey, unused) -> {
+                if (Arrays.compareUnsigned(indexKey, 0, separatorAt(indexKey), limit, 0, limit.length) >= 0) {
+                    return false;
+                }
+                T entity = get(idOf(indexKey));
+                String key = entity == null ? null : keyOf.apply(entity);
+                if (entity != null && (key == null || key.compareTo(bound) < 0)) {
+                    result.add(entity);
+                }
+                return true;
+            });
+        } catch (IOException e) {
+            System.err.println("Error reading " + filePath + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Walk the matching tree from {@code fromKey}; {@link #ID} walks the primary tree
+     */
+    @Override
+    public synchronized List<T> findFrom(String index, String fromKey, int limit, Function<? super T, String> keyOf) {
+        BPlusTree tree = index.equals(ID) ? primary : secondary.get(index);
+        if (tree == null) {
+            return StorageEngine.super.findFrom(index, fromKey, limit, keyOf);
+        }
+        List<T> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        try {
+            tree.scan(utf8(tree == primary ? fromKey : cut(fromKey)), (key, value) -> {
+                T entity = tree == primary ? decode(value) : get(idOf(key));
+                String attribute = entity == null ? null : keyOf.apply(entity);
+                if (attribute != null && attribute.compareTo(fromKey) >= 0) {
+                    result.add(entity);
+                }
+                return result.size() < limit;
+            });
+        } catch (IOException e) {
+            System.err.println("Error reading " + filePath + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized boolean putAll(Map<String, ? extends T> entities) {
+        try {
+            for (Map.Entry<String, ? extends T> entry : entities.entrySet()) {
+                store(entry.getKey(), entry.getValue());
+            }
+            writeChanges();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error saving to " + filePath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized boolean deleteAll(Collection<String> ids) {
+        try {
+            for (String id : ids) {
+                remove(id);
+            }
+            writeChanges();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error deleting from " + filePath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+
+    /**
+     * Truncate the file and start with empty trees
+     */
+    @Override
+    public synchronized boolean clear() {
+        try {
+            channel.truncate(0);
+            initialize(pool.getPageSize());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error clearing " + filePath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized boolean flush() {
+        try {
+            writeChanges();
+            channel.force(false);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error flushing " + filePath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel != null && channel.isOpen()) {
+            flush();
+        }
+        closeChannel();
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Pages of the file, including the header page
+     * @return page count
+     */
+    public synchronized int getPageCount() {
+        return pool.getPageCount();
+    }
+
+    /**
+     * Pages read from the file since it was opened, i.e. buffer pool misses
+     * @return page reads
+     */
+    public synchronized long getPageReads() {
+        return pool.getReads();
+    }
+
+    /**
+     * Pages currently held in memory
+     * @return resident pages, at most the number of cached pages
+     */
+    public synchronized int getCachedPageCount() {
+        return pool.getResidentCount();
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing " + filePath + ": " + e.getMessage());
+        }
+    }
+
+    private T decode(byte[] json) {
+        return gson.fromJson(new String(json, StandardCharsets.UTF_8), type);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String cut(String key) {
+        return key.length() > MAX_INDEX_KEY_CHARS ? key.substring(0, MAX_INDEX_KEY_CHARS) : key;
+    }
+
+    /**
+     * Secondary tree key: the attribute, a zero byte and the ID, so equal
+     * attributes sort together and stay unique. A null attribute is stored as
+     * empty and therefore sorts first.
+     */
+    private static byte[] indexKey(String attribute, byte[] id) {
+        byte[] prefix = indexPrefix(attribute == null ? "" : attribute);
+        byte[] key = Arrays.copyOf(prefix, prefix.length + id.length);
+        System.arraycopy(id, 0, key, prefix.length, id.length);
+        return key;
+    }
+
+    private static byte[] indexPrefix(String attribute) {
+        byte[] bytes = utf8(cut(attribute));
+        return Arrays.copyOf(bytes, bytes.length + 1); // ends with the zero separator
+    }
+
+    private static int separatorAt(byte[] indexKey) {
+        for (int i = 0; i < indexKey.length; i++) {
+            if (indexKey[i] == 0) {
+                return i;
+            }
+        }
+        return indexKey.length;
+    }
+
+    private static String idOf(byte[] indexKey) {
+        int separator = separatorAt(indexKey);
+        return new String(indexKey, separator + 1, indexKey.length - separator - 1, StandardCharsets.UTF_8);
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+}
@@ -0,0 +1,76 @@
+package library.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads lazy storage engines on a background thread, one after the other, so the
+ * data is warm by the time the user opens that part of the menu. A user action
+ * that reaches an engine first simply loads it on its own thread; the prefetch
+ * then finds it loaded and moves on.
+ * @author Library Team
+ * @version 1.0
+ */
+public class BackgroundPrefetch {
+    private final List<LazyStorageEngine<?>> engines = new ArrayList<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Thread thread;
+
+    /**
+     * Add an engine to warm; engines are loaded in the order they were added
+     * @param engine lazy engine
+     * @return this prefetch
+     */
+    public synchronized BackgroundPrefetch add(LazyStorageEngine<?> engine) {
+        if (thread != null) {
+            throw new IllegalStateException("Prefetch already started");
+        }
+        engines.add(engine);
+        return this;
+    }
+
+    /**
+     * Start warming in the background; call once the first prompt is on screen
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "storage-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            for (LazyStorageEngine<?> engine : engines) {
+                try {
+                    engine.load();
+                } catch (RuntimeException e) {
+                    // the next real access will try again and report the error there
+                    System.err.println("Prefetch of " + engine.getName() + " failed: " + e.getMessage());
+                }
+            }
+        } finally {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Wait until every engine was warmed
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true if the prefetch finished in time
+     */
+    public boolean await(long timeout, TimeUnit unit) {
+        try {
+            return done.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
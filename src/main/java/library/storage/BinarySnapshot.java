@@ -0,0 +1,530 @@
+package library.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary snapshot of a record map, read back through a memory-mapped buffer.
+ * <p>
+ * Layout: magic and version, then a header (entity class, field schema with name
+ * and type of every persisted field, a string table holding each distinct string
+ * once, record and block counts) followed by its CRC32C, then the records in
+ * blocks. Each block starts with its record count, payload length and the CRC32C
+ * of the payload, so a load verifies the file block by block and keeps every
+ * block before the first damaged one. Within a block every record is prefixed
+ * with its length so a record that cannot be decoded is skipped; string fields
+ * are stored as indexes into the string table (-1 for null).
+ * Fields are matched by name on load, so fields added or removed since the snapshot
+ * was written keep their default or are skipped, like with Gson.
+ * Version 1 files, written before blocks were added, are still read.
+ * <p>
+ * Supports the field types used by the models: String, boolean, int, long and double.
+ * @param <T> entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public class BinarySnapshot<T> {
+    public static final String FILE_EXTENSION = ".snap";
+
+    private static final int MAGIC = 0x4C42534E; // "LBSN"
+    private static final int VERSION = 2;
+    private static final int DEFAULT_RECORDS_PER_BLOCK = 512;
+    private static final int MAX_BLOCK_BYTES = 64 * 1024;
+    private static final int BLOCK_HEADER_BYTES = 12;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+
+    private final Class<T> type;
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+    private final byte[] fieldTypes;
+    private final int recordsPerBlock;
+
+    public BinarySnapshot(Class<T> type) {
+        this(type, DEFAULT_RECORDS_PER_BLOCK);
+    }
+
+    /**
+     * @param type entity class
+     * @param recordsPerBlock most records written to one checksummed block;
+     *                        blocks also end once they reach 64 KB
+     */
+    public BinarySnapshot(Class<T> type, int recordsPerBlock) {
+        if (recordsPerBlock <= 0) {
+            throw new IllegalArgumentException("Records per block must be positive");
+        }
+        this.type = type;
+        this.recordsPerBlock = recordsPerBlock;
+        try {
+            this.constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getSimpleName() + " needs a no-argument constructor");
+        }
+
+        List<Field> persisted = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                continue;
+            }
+            field.setAccessible(true);
+            persisted.add(field);
+        }
+        this.fields = persisted.toArray(new Field[0]);
+        this.fieldTypes = new byte[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            fieldTypes[i] = typeCode(fields[i]);
+        }
+    }
+
+    /**
+     * Snapshot path used next to a JSON data file, e.g. data/books.snap for data/books.json
+     * @param jsonPath path of the JSON file
+     * @return snapshot path
+     */
+    public static String pathFor(String jsonPath) {
+        return jsonPath.endsWith(".json")
+                ? jsonPath.substring(0, jsonPath.length() - ".json".length()) + FILE_EXTENSION
+                : jsonPath + FILE_EXTENSION;
+    }
+
+    private static byte typeCode(Field field) {
+        Class<?> fieldType = field.getType();
+        if (fieldType == String.class) {
+            return STRING;
+        } else if (fieldType == boolean.class) {
+            return BOOLEAN;
+        } else if (fieldType == int.class) {
+            return INT;
+        } else if (fieldType == long.class) {
+            return LONG;
+        } else if (fieldType == double.class) {
+            return DOUBLE;
+        }
+        throw new IllegalArgumentException("Unsupported field type for binary snapshot: "
+                + field.getDeclaringClass().getSimpleName() + "." + field.getName());
+    }
+
+    /**
+     * Write all records to a snapshot file. The file is written next to the
+     * target and moved into place, so readers never see a half-written snapshot.
+     * @param filePath snapshot path
+     * @param records records keyed by ID
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String filePath, Map<String, T> records) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+        DataOutputStream blocksOut = new DataOutputStream(blockBytes);
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        DataOutputStream blockOut = new DataOutputStream(block);
+        ByteArrayOutputStream oneRecord = new ByteArrayOutputStream(256);
+        DataOutputStream fieldOut = new DataOutputStream(oneRecord);
+        int recordsInBlock = 0;
+        int blockCount = 0;
+
+        for (Map.Entry<String, T> entry : records.entrySet()) {
+            oneRecord.reset();
+            fieldOut.writeInt(intern(strings, entry.getKey()));
+            for (int i = 0; i < fields.length; i++) {
+                writeField(fieldOut, strings, fieldTypes[i], get(fields[i], entry.getValue()));
+            }
+            blockOut.writeInt(oneRecord.size());
+            oneRecord.writeTo(blockOut);
+            recordsInBlock++;
+            if (recordsInBlock == recordsPerBlock || block.size() >= MAX_BLOCK_BYTES) {
+                writeBlock(blocksOut, block, recordsInBlock);
+                blockCount++;
+                recordsInBlock = 0;
+            }
+        }
+        if (recordsInBlock > 0) {
+            writeBlock(blocksOut, block, recordsInBlock);
+            blockCount++;
+        }
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        writeString(header, type.getName());
+        header.writeInt(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            writeString(header, fields[i].getName());
+            header.writeByte(fieldTypes[i]);
+        }
+        header.writeInt(strings.size());
+        for (String value : strings.keySet()) {
+            writeString(header, value);
+        }
+        header.writeInt(records.size());
+        header.writeInt(blockCount);
+
+        ByteArrayOutputStream prefixBytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(prefixBytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(headerBytes.size());
+        headerBytes.writeTo(out);
+        out.writeInt(checksum(headerBytes.toByteArray()));
+
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, ByteBuffer.wrap(prefixBytes.toByteArray()));
+                writeFully(channel, ByteBuffer.wrap(blockBytes.toByteArray()));
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read a snapshot file into a map. Records that cannot be decoded are
+     * reported and skipped; a truncated file keeps the records read so far.
+     * @param filePath snapshot path
+     * @param target map receiving the records
+     * @return report of the load
+     * @throws IOException if the file cannot be opened or is not a snapshot of this type
+     */
+    public LoadReport read(String filePath, Map<String, T> target) throws IOException {
+        LoadReport report = new LoadReport(filePath);
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                readSnapshot(buffer, target, report);
+            } catch (BufferUnderflowException e) {
+                if (report.getLoadedCount() == 0 && target.isEmpty()) {
+                    throw new IOException("Truncated snapshot header in " + filePath);
+                }
+                report.markIncomplete("snapshot ends in the middle of a record");
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Check the header and block checksums without decoding any record.
+     * Much cheaper than {@link #read}, so it suits a quick integrity check of all files.
+     * @param filePath snapshot path
+     * @return report counting the records in intact blocks; incomplete if a block is damaged
+     * @throws IOException if the file cannot be opened or its header is damaged
+     */
+    public LoadReport verify(String filePath) throws IOException {
+        LoadReport report = new LoadReport(filePath);
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                Header header = readHeader(buffer);
+                if (header.version == 1) {
+                    report.markIncomplete("version 1 snapshot has no checksums");
+                    return report;
+                }
+                forEachBlock(buffer, header, report, (block, records) -> {
+                    for (int i = 0; i < records; i++) {
+                        report.recordLoaded();
+                    }
+                });
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated snapshot header in " + filePath);
+            }
+        }
+        return report;
+    }
+
+    private void readSnapshot(ByteBuffer buffer, Map<String, T> target, LoadReport report) throws IOException {
+        Header header = readHeader(buffer);
+        if (header.version == 1) {
+            readRecords(buffer, header, header.recordCount, target, report);
+            return;
+        }
+        forEachBlock(buffer, header, report, (block, records) -> readRecords(block, header, records, target, report));
+    }
+
+    private Header readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary snapshot");
+        }
+        Header header = new Header();
+        header.version = buffer.getInt();
+        if (header.version != 1 && header.version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + header.version);
+        }
+        int headerEnd = -1;
+        if (header.version == VERSION) {
+            int headerLength = buffer.getInt();
+            if (headerLength < 0 || headerLength > buffer.remaining() - 4) {
+                throw new IOException("Truncated snapshot header");
+            }
+            headerEnd = buffer.position() + headerLength;
+            if (checksum(buffer, buffer.position(), headerLength) != buffer.getInt(headerEnd)) {
+                throw new IOException("Snapshot header checksum mismatch");
+            }
+        }
+
+        String storedType = readString(buffer);
+        if (!storedType.equals(type.getName())) {
+            throw new IOException("Snapshot holds " + storedType + ", expected " + type.getName());
+        }
+
+        int fieldCount = buffer.getInt();
+        header.fields = new Field[fieldCount];
+        header.types = new byte[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            String name = readString(buffer);
+            header.types[i] = buffer.get();
+            header.fields[i] = currentField(name, header.types[i]);
+        }
+
+        header.strings = new String[buffer.getInt()];
+        for (int i = 0; i < header.strings.length; i++) {
+            header.strings[i] = readString(buffer);
+        }
+
+        header.recordCount = buffer.getInt();
+        if (header.version == VERSION) {
+            header.blockCount = buffer.getInt();
+            if (buffer.position() != headerEnd) {
+                throw new IOException("Snapshot header length mismatch");
+            }
+            buffer.getInt(); // header checksum, verified above
+        }
+        return header;
+    }
+
+    /**
+     * Verify each block and hand over its payload. Stops at the first block that is
+     * cut off or fails its checksum, since nothing after it can be trusted.
+     */
+    private void forEachBlock(ByteBuffer buffer, Header header, LoadReport report, BlockReader reader)
+            throws IOException {
+        for (int b = 0; b < header.blockCount; b++) {
+            int blockStart = buffer.position();
+            if (buffer.remaining() < BLOCK_HEADER_BYTES) {
+                report.markIncomplete(String.format("snapshot ends before block %d of %d at byte %d",
+                        b + 1, header.blockCount, blockStart));
+                return;
+            }
+            int records = buffer.getInt();
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if (records < 0 || length < 0 || length > buffer.remaining()) {
+                report.markIncomplete(String.format("block %d of %d at byte %d is cut off",
+                        b + 1, header.blockCount, blockStart));
+                return;
+            }
+            if (checksum(buffer, buffer.position(), length) != expected) {
+                report.markIncomplete(String.format("block %d of %d at byte %d failed its checksum",
+                        b + 1, header.blockCount, blockStart));
+                return;
+            }
+            ByteBuffer block = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            try {
+                reader.read(block, records);
+            } catch (BufferUnderflowException e) {
+                report.markIncomplete(String.format("block %d at byte %d does not match its record count",
+                        b + 1, blockStart));
+                return;
+            }
+        }
+    }
+
+    private void readRecords(ByteBuffer buffer, Header header, int recordCount,
+                             Map<String, T> target, LoadReport report) {
+        for (int r = 0; r < recordCount; r++) {
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+            if (length < 0 || end > buffer.limit()) {
+                throw new BufferUnderflowException();
+            }
+            String id = null;
+            try {
+                id = stringAt(header.strings, buffer.getInt());
+                T entity = constructor.newInstance();
+                for (int i = 0; i < header.fields.length; i++) {
+                    Object value = readField(buffer, header.strings, header.types[i]);
+                    if (header.fields[i] != null) {
+                        header.fields[i].set(entity, value);
+                    }
+                }
+                if (buffer.position() != end) {
+                    throw new IOException("record length mismatch");
+                }
+                target.put(id, entity);
+                report.recordLoaded();
+            } catch (ReflectiveOperationException | IOException | RuntimeException e) {
+                report.recordError(id != null ? id : "#" + header.nextRecord, e.getMessage());
+            }
+            header.nextRecord++;
+            buffer.position(end);
+        }
+    }
+
+    private Field currentField(String name, byte storedType) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getName().equals(name) && fieldTypes[i] == storedType) {
+                return fields[i];
+            }
+        }
+        return null;
+    }
+
+    private static Object get(Field field, Object entity) {
+        try {
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int intern(Map<String, Integer> strings, String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer index = strings.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.put(value, index);
+        }
+        return index;
+    }
+
+    private static void writeField(DataOutputStream out, Map<String, Integer> strings,
+                                   byte fieldType, Object value) throws IOException {
+        switch (fieldType) {
+            case STRING:
+                out.writeInt(intern(strings, (String) value));
+                break;
+            case BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case INT:
+                out.writeInt((Integer) value);
+                break;
+            case LONG:
+                out.writeLong((Long) value);
+                break;
+            default:
+                out.writeDouble((Double) value);
+                break;
+        }
+    }
+
+    private static Object readField(ByteBuffer buffer, String[] strings, byte fieldType) throws IOException {
+        switch (fieldType) {
+            case STRING:
+                return stringAt(strings, buffer.getInt());
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case INT:
+                return buffer.getInt();
+            case LONG:
+                return buffer.getLong();
+            case DOUBLE:
+                return buffer.getDouble();
+            default:
+                throw new IOException("Unknown field type " + fieldType);
+        }
+    }
+
+    private static String stringAt(String[] strings, int index) throws IOException {
+        if (index == -1) {
+            return null;
+        }
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("String index out of range: " + index);
+        }
+        return strings[index];
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBlock(DataOutputStream out, ByteArrayOutputStream block, int records)
+            throws IOException {
+        byte[] payload = block.toByteArray();
+        out.writeInt(records);
+        out.writeInt(payload.length);
+        out.writeInt(checksum(payload));
+        out.write(payload);
+        block.reset();
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /** Decoded file header */
+    private static final class Header {
+        int version;
+        Field[] fields;
+        byte[] types;
+        String[] strings;
+        int recordCount;
+        int blockCount;
+        int nextRecord;
+    }
+
+    private interface BlockReader {
+        void read(ByteBuffer block, int records) throws IOException;
+    }
+}
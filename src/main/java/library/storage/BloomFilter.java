@@ -0,0 +1,94 @@
+package library.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bloom filter over string keys, stored with each sorted run so a lookup can
+ * skip runs that certainly do not hold the key. With 10 bits per key and 7
+ * hash functions about 1% of lookups for missing keys still read the run.
+ * The k hashes are derived from two 32-bit FNV-1a variants by double hashing.
+ * @author Library Team
+ * @version 1.0
+ */
+final class BloomFilter {
+    static final int DEFAULT_BITS_PER_KEY = 10;
+
+    private final long[] words;
+    private final int bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedKeys keys that will be added
+     * @param bitsPerKey filter size per key; more bits mean fewer false positives
+     */
+    BloomFilter(int expectedKeys, int bitsPerKey) {
+        this(new long[(Math.max(64, expectedKeys * bitsPerKey) + 63) / 64],
+                Math.max(1, Math.min(30, (int) Math.round(bitsPerKey * Math.log(2)))));
+    }
+
+    private BloomFilter(long[] words, int hashCount) {
+        this.words = words;
+        this.bitCount = words.length * 64;
+        this.hashCount = hashCount;
+    }
+
+    void add(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int h1 = hash(bytes, 0x811C9DC5);
+        int h2 = hash(bytes, 0x050C5D1F) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Integer.remainderUnsigned(h1 + i * h2, bitCount);
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @param key key to test
+     * @return false if the key was certainly never added
+     */
+    boolean mightContain(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int h1 = hash(bytes, 0x811C9DC5);
+        int h2 = hash(bytes, 0x050C5D1F) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Integer.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte(hashCount);
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    static BloomFilter readFrom(DataInput in) throws IOException {
+        int hashCount = in.readUnsignedByte();
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return new BloomFilter(words, hashCount);
+    }
+
+    private static int hash(byte[] bytes, int seed) {
+        int hash = seed;
+        for (byte b : bytes) {
+            hash ^= b & 0xFF;
+            hash *= 0x01000193;
+        }
+        // final avalanche so short keys that differ in one byte spread over the filter
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+}
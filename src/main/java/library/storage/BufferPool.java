@@ -0,0 +1,297 @@
+package library.storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed number of page frames over a file of fixed-size pages, read and
+ * written with positional channel I/O. Pages are kept decoded as B+tree nodes.
+ * When every frame is taken, the clock algorithm picks the victim: the hand
+ * sweeps the frames, giving recently used pages a second chance, and the
+ * first page not used since the last sweep is written back if dirty and replaced.
+ * <p>
+ * Page 0 is left to the owner for its header. Not thread-safe; the engine
+ * serializes access.
+ * @author Library Team
+ * @version 1.0
+ */
+final class BufferPool {
+    static final byte LEAF = 1;
+    static final byte INTERNAL = 2;
+    /** type, entry count, next leaf */
+    static final int NODE_HEADER_BYTES = 1 + 4 + 4;
+
+    private final FileChannel channel;
+    private final int pageSize;
+    private final Frame[] frames;
+    private final Map<Integer, Frame> resident = new HashMap<>();
+    private final ByteBuffer io;
+    private int hand;
+    private int pageCount;
+    private long reads;
+    private long writes;
+
+    /**
+     * @param channel open page file
+     * @param pageSize bytes per page
+     * @param frameCount pages kept in memory
+     * @param pageCount pages the file already has, including the header page
+     */
+    BufferPool(FileChannel channel, int pageSize, int frameCount, int pageCount) {
+        if (frameCount < 4) {
+            throw new IllegalArgumentException("The buffer pool needs at least 4 frames");
+        }
+        this.channel = channel;
+        this.pageSize = pageSize;
+        this.frames = new Frame[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            frames[i] = new Frame();
+        }
+        this.io = ByteBuffer.allocateDirect(pageSize);
+        this.pageCount = pageCount;
+    }
+
+    /**
+     * Node stored in a page, read from the file if it is not in a frame
+     * @param pageId page number
+     * @return decoded node; call {@link #write} after changing it
+     * @throws IOException if the page cannot be read
+     */
+    Node get(int pageId) throws IOException {
+        Frame frame = resident.get(pageId);
+        if (frame == null) {
+            frame = claimFrame();
+            frame.node = decode(readPage(pageId));
+            frame.pageId = pageId;
+            resident.put(pageId, frame);
+            reads++;
+        }
+        frame.referenced = true;
+        return frame.node;
+    }
+
+    /**
+     * Store a changed node; it reaches the file on eviction or {@link #flushDirty()}
+     * @param pageId page number
+     * @param node node content
+     * @throws IOException if a page had to be evicted and could not be written
+     */
+    void write(int pageId, Node node) throws IOException {
+        Frame frame = resident.get(pageId);
+        if (frame == null) {
+            frame = claimFrame();
+            frame.pageId = pageId;
+            resident.put(pageId, frame);
+        }
+        frame.node = node;
+        frame.dirty = true;
+        frame.referenced = true;
+    }
+
+    /**
+     * Reserve a new page at the end of the file
+     * @return page number
+     */
+    int allocate() {
+        return pageCount++;
+    }
+
+    /**
+     * Write every dirty page to the file
+     * @throws IOException if a page cannot be written
+     */
+    void flushDirty() throws IOException {
+        for (Frame frame : frames) {
+            if (frame.dirty) {
+                writeBack(frame);
+            }
+        }
+    }
+
+    /**
+     * Read a raw page, for the owner's header
+     * @param pageId page number
+     * @return buffer positioned at the start of the page
+     * @throws IOException if the page cannot be read
+     */
+    ByteBuffer readPage(int pageId) throws IOException {
+        io.clear();
+        long position = (long) pageId * pageSize;
+        while (io.hasRemaining()) {
+            if (channel.read(io, position + io.position()) < 0) {
+                throw new EOFException("Page " + pageId + " is past the end of the file");
+            }
+        }
+        io.flip();
+        return io;
+    }
+
+    /**
+     * Write a raw page, for the owner's header
+     * @param pageId page number
+     * @param page content, at most one page
+     * @throws IOException if the page cannot be written
+     */
+    void writePage(int pageId, ByteBuffer page) throws IOException {
+        long position = (long) pageId * pageSize;
+        while (page.hasRemaining()) {
+            channel.write(page, position + page.position());
+        }
+        writes++;
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    int getPageCount() {
+        return pageCount;
+    }
+
+    int getFrameCount() {
+        return frames.length;
+    }
+
+    int getResidentCount() {
+        return resident.size();
+    }
+
+    long getReads() {
+        return reads;
+    }
+
+    long getWrites() {
+        return writes;
+    }
+
+    private Frame claimFrame() throws IOException {
+        while (true) {
+            Frame frame = frames[hand];
+            hand = (hand + 1) % frames.length;
+            if (frame.pageId < 0) {
+                return frame;
+            }
+            if (frame.referenced) {
+                frame.referenced = false; // second chance
+                continue;
+            }
+            if (frame.dirty) {
+                writeBack(frame);
+            }
+            resident.remove(frame.pageId);
+            frame.clear();
+            return frame;
+        }
+    }
+
+    private void writeBack(Frame frame) throws IOException {
+        io.clear();
+        encode(frame.node, io);
+        while (io.hasRemaining()) {
+            io.put((byte) 0);
+        }
+        io.flip();
+        writePage(frame.pageId, io);
+        frame.dirty = false;
+    }
+
+    private void encode(Node node, ByteBuffer out) {
+        if (node.byteSize() > pageSize) {
+            throw new IllegalStateException("Node of " + node.byteSize() + " bytes does not fit a page");
+        }
+        out.put(node.leaf ? LEAF : INTERNAL);
+        out.putInt(node.keys.size());
+        out.putInt(node.next);
+        if (!node.leaf) {
+            out.putInt(node.children.get(0));
+        }
+        for (int i = 0; i < node.keys.size(); i++) {
+            byte[] key = node.keys.get(i);
+            out.putShort((short) key.length).put(key);
+            if (node.leaf) {
+                byte[] value = node.values.get(i);
+                out.putInt(value.length).put(value);
+            } else {
+                out.putInt(node.children.get(i + 1));
+            }
+        }
+    }
+
+    private static Node decode(ByteBuffer in) throws IOException {
+        byte type = in.get();
+        if (type != LEAF && type != INTERNAL) {
+            throw new IOException("Page is not a tree node (type " + type + ")");
+        }
+        Node node = new Node(type == LEAF);
+        int count = in.getInt();
+        node.next = in.getInt();
+        if (!node.leaf) {
+            node.children.add(in.getInt());
+        }
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[Short.toUnsignedInt(in.getShort())];
+            in.get(key);
+            node.keys.add(key);
+            if (node.leaf) {
+                byte[] value = new byte[in.getInt()];
+                in.get(value);
+                node.values.add(value);
+            } else {
+                node.children.add(in.getInt());
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Decoded B+tree node. Leaves hold keys and values and link to the next
+     * leaf; internal nodes hold n keys and n + 1 children.
+     */
+    static final class Node {
+        final boolean leaf;
+        final List<byte[]> keys = new ArrayList<>();
+        final List<byte[]> values = new ArrayList<>();
+        final List<Integer> children = new ArrayList<>();
+        int next = -1;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        /**
+         * Size of the node when written to a page
+         * @return bytes
+         */
+        int byteSize() {
+            int size = NODE_HEADER_BYTES + (leaf ? 0 : 4);
+            for (int i = 0; i < keys.size(); i++) {
+                size += entrySize(i);
+            }
+            return size;
+        }
+
+        int entrySize(int index) {
+            return 2 + keys.get(index).length + 4 + (leaf ? values.get(index).length : 0);
+        }
+    }
+
+    private static final class Frame {
+        int pageId = -1;
+        Node node;
+        boolean referenced;
+        boolean dirty;
+
+        void clear() {
+            pageId = -1;
+            node = null;
+            referenced = false;
+            dirty = false;
+        }
+    }
+}
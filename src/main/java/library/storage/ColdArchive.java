@@ -0,0 +1,232 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold storage for records that left a data file, e.g. loans returned long ago.
+ * Every archival run writes one new GZIP-compressed segment
+ * {@code <name>-000001.json.gz}, a JSON object keyed by ID like the data files.
+ * Segments are never rewritten; if a record is archived twice, the newest
+ * segment wins.
+ * <p>
+ * Nothing is kept in memory: every lookup reads the segments, so the archive
+ * is for history queries, not for the paths the menus use all the time.
+ * @param <T> archived entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public class ColdArchive<T> {
+    public static final String DIRECTORY = "archive";
+    public static final String SEGMENT_EXTENSION = ".json.gz";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final String name;
+    private final Class<T> type;
+    private final Gson gson;
+
+    /**
+     * @param directory directory holding the segments, created on first write
+     * @param name segment name prefix, e.g. "loans"
+     * @param type entity type
+     * @param gson Gson used for the records
+     */
+    public ColdArchive(String directory, String name, Class<T> type, Gson gson) {
+        this.directory = Paths.get(directory);
+        this.name = name;
+        this.type = type;
+        this.gson = gson;
+    }
+
+    /**
+     * Write records to a new segment. The segment only becomes visible once it
+     * is complete, so a failed write leaves the archive unchanged.
+     * @param records records keyed by ID
+     * @return true if the segment was written, or there was nothing to write
+     */
+    public synchronized boolean append(Map<String, ? extends T> records) {
+        if (records.isEmpty()) {
+            return true;
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, name + "-", ".tmp");
+            writeSegment(temp, records);
+            // the records are deleted from the data file next, so they must be on disk first
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            int number = lastSegmentNumber();
+            while (true) {
+                // another process may archive into the same directory
+                try {
+                    Files.move(temp, segmentPath(++number));
+                    return true;
+                } catch (FileAlreadyExistsException e) {
+                    // take the next number
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing archive segment for " + name + ": " + e.getMessage());
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // leftover .tmp files are not segments
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Find an archived record by ID
+     * @param id entity ID
+     * @return newest archived version, or null if the ID was never archived
+     */
+    public T get(String id) {
+        List<Path> segments = segments();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            T record = readSegment(segments.get(i)).get(id);
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find archived records matching a filter
+     * @param filter condition on the record
+     * @return matching records, oldest segment first
+     */
+    public List<T> scan(Predicate<? super T> filter) {
+        return readAll().values().stream().filter(filter).collect(Collectors.toList());
+    }
+
+    /**
+     * @return number of distinct archived records
+     */
+    public int size() {
+        return readAll().size();
+    }
+
+    /**
+     * @return segment file names, oldest first
+     */
+    public List<String> listSegments() {
+        return segments().stream().map(path -> path.getFileName().toString()).collect(Collectors.toList());
+    }
+
+    public String getDirectory() {
+        return directory.toString();
+    }
+
+    private Map<String, T> readAll() {
+        Map<String, T> records = new LinkedHashMap<>();
+        for (Path segment : segments()) {
+            for (Map.Entry<String, T> entry : readSegment(segment).entrySet()) {
+                records.remove(entry.getKey());
+                records.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return records;
+    }
+
+    private void writeSegment(Path path, Map<String, ? extends T> records) throws IOException {
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(path), BUFFER_SIZE), StandardCharsets.UTF_8)))) {
+            writer.beginObject();
+            for (Map.Entry<String, ? extends T> entry : records.entrySet()) {
+                writer.name(entry.getKey());
+                gson.toJson(entry.getValue(), type, writer);
+            }
+            writer.endObject();
+        }
+    }
+
+    private Map<String, T> readSegment(Path path) {
+        Map<String, T> records = new LinkedHashMap<>();
+        try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE), StandardCharsets.UTF_8)))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String id = reader.nextName();
+                T record = gson.fromJson(reader, type);
+                if (record != null) {
+                    records.put(id, record);
+                }
+            }
+            reader.endObject();
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            System.err.println("Error reading archive segment " + path + ": " + e.getMessage());
+        }
+        return records;
+    }
+
+    private List<Path> segments() {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(file -> segmentNumber(file) > 0).forEach(segments::add);
+            segments.sort(Comparator.comparingInt(this::segmentNumber));
+            return segments;
+        } catch (IOException e) {
+            System.err.println("Error listing archive " + directory + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private int lastSegmentNumber() {
+        List<Path> segments = segments();
+        return segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1));
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("%s-%06d%s", name, number, SEGMENT_EXTENSION));
+    }
+
+    private int segmentNumber(Path file) {
+        String fileName = file.getFileName().toString();
+        String prefix = name + "-";
+        if (!fileName.startsWith(prefix) || !fileName.endsWith(SEGMENT_EXTENSION)) {
+            return 0;
+        }
+        String number = fileName.substring(prefix.length(), fileName.length() - SEGMENT_EXTENSION.length());
+        if (number.isEmpty() || number.length() > 9 || !number.chars().allMatch(Character::isDigit)) {
+            return 0;
+        }
+        return Integer.parseInt(number);
+    }
+}
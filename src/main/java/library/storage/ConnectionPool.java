@@ -0,0 +1,166 @@
+package library.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small fixed-size pool of JDBC connections to an embedded database.
+ * Each pooled connection keeps its prepared statements, so a query is parsed
+ * and planned once per connection instead of on every call.
+ * @author Library Team
+ * @version 1.0
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    private final BlockingQueue<PooledConnection> idle;
+    private final List<PooledConnection> all = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Open the connections
+     * @param url JDBC URL, e.g. "jdbc:h2:./data/library" for an embedded file database
+     * @param size number of connections
+     * @throws SQLException if a connection cannot be opened
+     */
+    public ConnectionPool(String url, int size) throws SQLException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.idle = new ArrayBlockingQueue<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                PooledConnection connection = new PooledConnection(DriverManager.getConnection(url));
+                all.add(connection);
+                idle.add(connection);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Take a connection, waiting for one to be returned if all are in use.
+     * Closing the returned object gives it back to the pool.
+     * @return connection for the calling thread
+     * @throws SQLException if the pool is closed or no connection became free in time
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            PooledConnection connection = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (connection == null) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+    }
+
+    public int getSize() {
+        return all.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Close every connection and its cached statements
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (PooledConnection connection : all) {
+            connection.closePhysical();
+        }
+        idle.clear();
+    }
+
+    /**
+     * A connection borrowed from the pool
+     */
+    public final class PooledConnection implements AutoCloseable {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Prepared statement for the SQL, created on first use and reused afterwards
+         * @param sql statement text
+         * @return statement with its parameters cleared
+         * @throws SQLException if the statement cannot be prepared
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        public int getCachedStatementCount() {
+            return statements.size();
+        }
+
+        /**
+         * Give the connection back to the pool
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                closePhysical();
+                return;
+            }
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error resetting database connection: " + e.getMessage());
+            }
+            idle.offer(this);
+        }
+
+        private void closePhysical() {
+            for (PreparedStatement statement : statements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    // closing anyway
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing database connection: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package library.storage;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches the data directory and brings engines up to date when their files
+ * are replaced from outside, e.g. by the nightly import, so running instances
+ * see the new data without a restart.
+ * <p>
+ * Events for a file are collected until it has been quiet for a short while,
+ * since an import usually writes a file in several steps. The file is then
+ * parsed on the watcher thread and only the changed records are applied; see
+ * {@link JsonFileStorageEngine#applyExternalChanges()}. Writes by this process
+ * also produce events; they parse to the records already in memory and change nothing.
+ * @author Library Team
+ * @version 1.0
+ */
+public class DataDirectoryWatcher implements AutoCloseable {
+    private static final long DEFAULT_QUIET_MILLIS = 200;
+
+    private final Path directory;
+    private final long quietMillis;
+    private final Map<String, JsonFileStorageEngine<?>> engines = new ConcurrentHashMap<>();
+    private volatile Consumer<RecordChanges> listener = changes -> { };
+    private WatchService watchService;
+    private Thread thread;
+
+    public DataDirectoryWatcher(String directory) {
+        this(directory, DEFAULT_QUIET_MILLIS);
+    }
+
+    /**
+     * @param directory data directory
+     * @param quietMillis how long a file must go without events before it is reloaded
+     */
+    public DataDirectoryWatcher(String directory, long quietMillis) {
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.quietMillis = quietMillis;
+    }
+
+    /**
+     * Keep an engine up to date with its file and binary snapshot
+     * @param engine engine whose file is in the watched directory
+     * @return this watcher
+     */
+    public DataDirectoryWatcher watch(JsonFileStorageEngine<?> engine) {
+        Path file = Paths.get(engine.getFilePath()).toAbsolutePath().normalize();
+        if (!directory.equals(file.getParent())) {
+            throw new IllegalArgumentException(engine.getFilePath() + " is not in " + directory);
+        }
+        engines.put(file.getFileName().toString(), engine);
+        engines.put(Paths.get(engine.getSnapshotPath()).getFileName().toString(), engine);
+        return this;
+    }
+
+    /**
+     * Called on the watcher thread after each reload that changed records
+     * @param listener receives the changes
+     * @return this watcher
+     */
+    public DataDirectoryWatcher onChange(Consumer<RecordChanges> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Start watching on a background thread
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::run, "data-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reload an engine now if a file changed; also called by the watcher thread
+     * @param fileName name of the changed file
+     * @return the changes, or null if the file is not watched or nothing was applied
+     */
+    public RecordChanges refresh(String fileName) {
+        JsonFileStorageEngine<?> engine = engines.get(fileName);
+        if (engine == null) {
+            return null;
+        }
+        RecordChanges changes = engine.applyExternalChanges();
+        if (changes != null && !changes.isEmpty()) {
+            try {
+                listener.accept(changes);
+            } catch (RuntimeException e) {
+                System.err.println("Error in change listener for " + fileName + ": " + e.getMessage());
+            }
+        }
+        return changes;
+    }
+
+    private void run() {
+        // file name -> time of its last event
+        Map<String, Long> pending = new LinkedHashMap<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(quietMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // events were lost; check every file
+                            for (String name : engines.keySet()) {
+                                pending.put(name, System.nanoTime());
+                            }
+                        } else {
+                            String name = ((Path) event.context()).getFileName().toString();
+                            if (engines.containsKey(name)) {
+                                pending.put(name, System.nanoTime());
+                            }
+                        }
+                    }
+                    if (!key.reset()) {
+                        System.err.println("Stopped watching " + directory + ": it is no longer accessible");
+                        return;
+                    }
+                }
+                long now = System.nanoTime();
+                for (Iterator<Map.Entry<String, Long>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<String, Long> entry = it.next();
+                    if (now - entry.getValue() >= TimeUnit.MILLISECONDS.toNanos(quietMillis)) {
+                        it.remove();
+                        refresh(entry.getKey());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    public boolean isRunning() {
+        Thread running = thread;
+        return running != null && running.isAlive();
+    }
+
+    /**
+     * Stop watching
+     */
+    @Override
+    public synchronized void close() {
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Error closing watcher of " + directory + ": " + e.getMessage());
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.models.Book;
+import library.models.CD;
+import library.models.CDFine;
+import library.models.CDLoan;
+import library.models.Fine;
+import library.models.Loan;
+import library.models.User;
+import library.utils.GsonUtils;
+import library.utils.JsonFileHandler;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The library's data files: file name, entity type and the Gson settings
+ * the owning repository writes them with.
+ * @param <T> entity type stored in the file
+ * @author Library Team
+ * @version 1.0
+ */
+public final class DataFile<T> {
+    public static final String DEFAULT_DIRECTORY = "data";
+
+    public static final DataFile<User> USERS = new DataFile<>("users", "users.json", User.class, true,
+            Map.of("email", User::getEmail));
+    public static final DataFile<Book> BOOKS = new DataFile<>("books", "books.json", Book.class, true,
+            Map.of("isbn", Book::getIsbn, "title", Book::getTitle));
+    public static final DataFile<CD> CDS = new DataFile<>("cds", "cds.json", CD.class, true,
+            Map.of("title", CD::getTitle));
+    public static final DataFile<Loan> LOANS = new DataFile<>("loans", "loans.json", Loan.class, false,
+            Map.of("userId", Loan::getUserId, "bookId", Loan::getBookId, "dueDate", Loan::getDueDate));
+    public static final DataFile<CDLoan> CD_LOANS = new DataFile<>("cdloans", "cdloans.json", CDLoan.class, true,
+            Map.of("userId", CDLoan::getUserId, "cdId", CDLoan::getCdId, "dueDate", CDLoan::getDueDate));
+    public static final DataFile<Fine> FINES = new DataFile<>("fines", "fines.json", Fine.class, false,
+            Map.of("userId", Fine::getUserId, "paid", fine -> String.valueOf(fine.isPaid())));
+    public static final DataFile<CDFine> CD_FINES = new DataFile<>("cdfines", "cdfines.json", CDFine.class, true,
+            Map.of("userId", CDFine::getUserId));
+
+    /** All data files, users first since login needs them before anything else */
+    public static final List<DataFile<?>> ALL = List.of(USERS, BOOKS, CDS, LOANS, CD_LOANS, FINES, CD_FINES);
+
+    private final String name;
+    private final String fileName;
+    private final Class<T> type;
+    private final boolean prettyPrinted;
+    private final Map<String, Function<T, String>> indexes;
+
+    private DataFile(String name, String fileName, Class<T> type, boolean prettyPrinted,
+                     Map<String, Function<T, String>> indexes) {
+        this.name = name;
+        this.fileName = fileName;
+        this.type = type;
+        this.prettyPrinted = prettyPrinted;
+        this.indexes = indexes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Path of this file inside a data directory
+     * @param dataDirectory directory, e.g. "data"
+     * @return file path
+     */
+    public String path(String dataDirectory) {
+        return dataDirectory + File.separator + fileName;
+    }
+
+    /**
+     * Gson configured like the repository that owns this file
+     * @return Gson instance
+     */
+    public Gson gson() {
+        return prettyPrinted ? GsonUtils.createGson() : GsonUtils.createCompactGson();
+    }
+
+    /**
+     * Create a JSON file engine for this file; it is not loaded yet
+     * @param dataDirectory directory holding the data files
+     * @param fileHandler handler used for reading and writing
+     * @return engine
+     */
+    public JsonFileStorageEngine<T> engine(String dataDirectory, JsonFileHandler fileHandler) {
+        return new JsonFileStorageEngine<>(path(dataDirectory), type, gson(), fileHandler);
+    }
+
+    /**
+     * Create the ID index of this file, for reading single records without loading the file
+     * @param dataDirectory directory holding the data files
+     * @return index; built on first use
+     */
+    public RecordOffsetIndex<T> offsetIndex(String dataDirectory) {
+        return new RecordOffsetIndex<>(path(dataDirectory), type, gson());
+    }
+
+    /**
+     * Create a database engine for this data, with an indexed column for every
+     * attribute the owning repository looks up by
+     * @param pool connections to the embedded database
+     * @return engine with its table created
+     */
+    public JdbcStorageEngine<T> jdbcEngine(ConnectionPool pool) {
+        JdbcStorageEngine<T> engine = new JdbcStorageEngine<>(pool, name, type, gson());
+        indexes.forEach(engine::index);
+        return engine.open();
+    }
+
+    /**
+     * Create a disk-resident B+tree engine for this data, stored as
+     * {@code <name>.btree} in the data directory, with a secondary tree for every
+     * attribute the owning repository looks up by
+     * @param dataDirectory directory holding the data files
+     * @return opened engine
+     */
+    public BTreeStorageEngine<T> btreeEngine(String dataDirectory) {
+        BTreeStorageEngine<T> engine = new BTreeStorageEngine<>(
+                dataDirectory + File.separator + name + BTreeStorageEngine.FILE_EXTENSION,
+                type, GsonUtils.createCompactGson());
+        indexes.forEach(engine::index);
+        return engine.open();
+    }
+
+    /**
+     * Create a log-structured merge engine for this data, stored in the
+     * {@code <name>.lsm} directory inside the data directory. Suited to the
+     * append-mostly loan and fine history.
+     * @param dataDirectory directory holding the data files
+     * @return opened engine
+     */
+    public LsmStorageEngine<T> lsmEngine(String dataDirectory) {
+        return new LsmStorageEngine<>(dataDirectory + File.separator + name + LsmStorageEngine.DIRECTORY_EXTENSION,
+                type, GsonUtils.createCompactGson()).open();
+    }
+
+    /**
+     * Open the cold archive of this data, stored as compressed segments in the
+     * {@code archive} directory inside the data directory
+     * @param dataDirectory directory holding the data files
+     * @return archive; reads nothing until it is queried
+     */
+    public ColdArchive<T> archive(String dataDirectory) {
+        return new ColdArchive<>(dataDirectory + File.separator + ColdArchive.DIRECTORY, name, type,
+                GsonUtils.createCompactGson());
+    }
+}
@@ -0,0 +1,210 @@
+package library.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * CRC32C checksum of a data file, kept in a sidecar file next to it, e.g.
+ * {@code books.json.crc}.
+ * <p>
+ * The checksum is computed over the bytes on disk while a file is streamed
+ * out, and again while it is read back. The sidecar is written before the new
+ * file replaces the old one and lists the checksums of both, so a crash
+ * between the two steps leaves a file that still verifies.
+ * <p>
+ * Every other write that replaces a data file, such as a plain or deferred
+ * write, a migration or a restore, removes the sidecar first with
+ * {@link #invalidate}. A data file newer than its sidecar was rewritten
+ * outside the library, e.g. by an editor, and is read without a check.
+ * @author Library Team
+ * @version 1.0
+ */
+public class DataFileChecksum {
+    private final CRC32C crc = new CRC32C();
+    private long length;
+
+    /**
+     * Sidecar file used for a data file
+     * @param dataFilePath path of the data file
+     * @return path of the checksum file
+     */
+    public static String pathFor(String dataFilePath) {
+        return dataFilePath + ".crc";
+    }
+
+    /**
+     * Channel that adds every byte written through it to this checksum
+     * @param channel channel receiving the file content; closed with the returned channel
+     * @return checksumming channel
+     */
+    public WritableByteChannel wrap(WritableByteChannel channel) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                ByteBuffer written = source.duplicate();
+                int count = channel.write(source);
+                written.limit(written.position() + count);
+                update(written);
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    /**
+     * Stream that adds every byte read through it to this checksum. Closing
+     * it reads whatever the caller left unread first, so the checksum always
+     * covers the whole file.
+     * @param in stream over the file content
+     * @return checksumming stream
+     */
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    crc.update(b);
+                    length++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                int read = super.read(buffer, offset, count);
+                if (read > 0) {
+                    crc.update(buffer, offset, read);
+                    length += read;
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long count) throws IOException {
+                byte[] buffer = new byte[(int) Math.min(count, 8192)];
+                long skipped = 0;
+                while (skipped < count) {
+                    int read = read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+                    if (read < 0) {
+                        break;
+                    }
+                    skipped += read;
+                }
+                return skipped;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    byte[] rest = new byte[8192];
+                    while (read(rest, 0, rest.length) >= 0) {
+                        // checksum the tail
+                    }
+                } finally {
+                    super.close();
+                }
+            }
+        };
+    }
+
+    private void update(ByteBuffer bytes) {
+        length += bytes.remaining();
+        crc.update(bytes);
+    }
+
+    public long getValue() {
+        return crc.getValue();
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Record this checksum for content about to replace the data file. The
+     * checksum of the current file is kept as the second entry until the next write.
+     * @param dataFilePath path of the data file
+     * @throws IOException if the sidecar cannot be written
+     */
+    public void record(String dataFilePath) throws IOException {
+        String entry = format();
+        List<String> current = readEntries(dataFilePath);
+        String content = current.isEmpty() || current.get(0).equals(entry)
+                ? entry + "\n"
+                : entry + "\n" + current.get(0) + "\n";
+        FileWrites.write(pathFor(dataFilePath), content, true);
+    }
+
+    /**
+     * Drop the checksum of a data file that is about to be replaced without
+     * one being recorded, so the new content is read without a check
+     * @param dataFilePath path of the data file
+     * @throws IOException if the sidecar cannot be deleted
+     */
+    public static void invalidate(String dataFilePath) throws IOException {
+        Files.deleteIfExists(Paths.get(pathFor(dataFilePath)));
+    }
+
+    /**
+     * Compare the checksum of a file that was just read with its sidecar
+     * @param dataFilePath path of the data file
+     * @return null if the file verifies or has no checksum to verify against, otherwise the problem
+     */
+    public String verify(String dataFilePath) {
+        Path sidecar = Paths.get(pathFor(dataFilePath));
+        try {
+            if (!Files.isRegularFile(sidecar) || Files.getLastModifiedTime(Paths.get(dataFilePath))
+                    .compareTo(Files.getLastModifiedTime(sidecar)) > 0) {
+                return null;
+            }
+            List<String> entries = readEntries(dataFilePath);
+            if (entries.isEmpty() || entries.contains(format())) {
+                return null;
+            }
+            return "checksum mismatch: " + length + " bytes with CRC32C " + Long.toHexString(getValue())
+                    + ", expected " + entries.get(0);
+        } catch (IOException e) {
+            System.err.println("Error reading " + sidecar + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private String format() {
+        return String.format("%08x %d", getValue(), length);
+    }
+
+    private static List<String> readEntries(String dataFilePath) throws IOException {
+        Path sidecar = Paths.get(pathFor(dataFilePath));
+        if (!Files.isRegularFile(sidecar)) {
+            return List.of();
+        }
+        return Files.readAllLines(sidecar, StandardCharsets.UTF_8).stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .toList();
+    }
+}
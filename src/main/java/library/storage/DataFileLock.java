@@ -0,0 +1,141 @@
+package library.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock and version stamp shared by every process that uses one data file.
+ * <p>
+ * The lock is held on a sidecar file next to the data file, e.g.
+ * {@code books.json.lock}: shared while reading, exclusive while writing, so
+ * no process reads a half-written file and two processes never write at the
+ * same time. The sidecar also holds a version number that each locked write
+ * increases by one. A process that remembers the version it loaded can tell
+ * whether someone else has written the file since.
+ * <p>
+ * Operating system locks are held by the whole JVM, so threads of one process
+ * queue on an in-process lock per file before taking the file lock. Locked
+ * sections must not be nested.
+ * @author Library Team
+ * @version 1.0
+ */
+public class DataFileLock {
+    private static final Map<Path, ReentrantLock> IN_PROCESS = new ConcurrentHashMap<>();
+
+    private final Path lockPath;
+    private final ReentrantLock inProcess;
+
+    /**
+     * @param dataFilePath data file to protect; the lock file is created next to it
+     */
+    public DataFileLock(String dataFilePath) {
+        this.lockPath = Paths.get(pathFor(dataFilePath)).toAbsolutePath().normalize();
+        this.inProcess = IN_PROCESS.computeIfAbsent(lockPath, path -> new ReentrantLock());
+    }
+
+    /**
+     * Lock file used for a data file
+     * @param dataFilePath path of the data file
+     * @return path of the lock file
+     */
+    public static String pathFor(String dataFilePath) {
+        return dataFilePath + ".lock";
+    }
+
+    /**
+     * Run an action while holding the shared lock
+     * @param action receives the current version; should only read the data file
+     * @param <R> result type
+     * @return result of the action
+     * @throws IOException if the lock file cannot be used, or the action fails
+     */
+    public <R> R read(LockedAction<R> action) throws IOException {
+        return locked(true, channel -> action.run(readVersion(channel)));
+    }
+
+    /**
+     * Run an action while holding the exclusive lock, then stamp the file with
+     * the next version, i.e. the version passed to the action plus one
+     * @param action receives the version before this write
+     * @param <R> result type
+     * @return result of the action
+     * @throws IOException if the lock file cannot be used, or the action fails
+     */
+    public <R> R write(LockedAction<R> action) throws IOException {
+        return locked(false, channel -> {
+            long version = readVersion(channel);
+            R result = action.run(version);
+            ByteBuffer next = ByteBuffer.allocate(Long.BYTES).putLong(0, version + 1);
+            while (next.hasRemaining()) {
+                channel.write(next, next.position());
+            }
+            channel.force(false);
+            return result;
+        });
+    }
+
+    /**
+     * Version of the data file; 0 if it was never written under this lock
+     * @return current version
+     * @throws IOException if the lock file cannot be read
+     */
+    public long version() throws IOException {
+        return read(version -> version);
+    }
+
+    public String getLockPath() {
+        return lockPath.toString();
+    }
+
+    private <R> R locked(boolean shared, ChannelAction<R> action) throws IOException {
+        inProcess.lock();
+        try {
+            if (inProcess.getHoldCount() > 1) {
+                throw new IllegalStateException("Nested lock on " + lockPath);
+            }
+            Path parent = lockPath.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+                 FileLock ignored = channel.lock(0, Long.MAX_VALUE, shared)) {
+                return action.run(channel);
+            }
+        } finally {
+            inProcess.unlock();
+        }
+    }
+
+    private static long readVersion(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return 0; // new or empty lock file
+            }
+        }
+        return buffer.getLong(0);
+    }
+
+    /**
+     * Work done while a lock is held
+     * @param <R> result type
+     */
+    @FunctionalInterface
+    public interface LockedAction<R> {
+        R run(long version) throws IOException;
+    }
+
+    private interface ChannelAction<R> {
+        R run(FileChannel channel) throws IOException;
+    }
+}
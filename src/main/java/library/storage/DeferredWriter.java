@@ -0,0 +1,37 @@
+package library.storage;
+
+/**
+ * Persistence layer that sits under {@link library.utils.JsonFileHandler} and
+ * takes over file writes so they can be batched or moved off the caller's thread.
+ * @author Library Team
+ * @version 1.0
+ */
+public interface DeferredWriter extends AutoCloseable {
+
+    /**
+     * Hand over the new content of a file
+     * @param filePath path to the file
+     * @param content full file content
+     * @return true if the write was accepted
+     */
+    boolean submit(String filePath, String content);
+
+    /**
+     * Content submitted for a file that has not reached the disk yet
+     * @param filePath path to the file
+     * @return pending content, or null if nothing is pending
+     */
+    String pendingContent(String filePath);
+
+    /**
+     * Write everything submitted so far and wait until it is on disk
+     * @return true if all pending writes succeeded
+     */
+    boolean flush();
+
+    /**
+     * Flush pending writes and stop background work
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,15 @@
+package library.storage;
+
+/**
+ * How strongly a repository write must reach the disk before the caller continues.
+ * @author Library Team
+ * @version 1.0
+ */
+public enum DurabilityMode {
+    /** Write and fsync on the caller's thread before returning */
+    SYNC,
+    /** Write in the background and fsync dirty files on a fixed interval */
+    PERIODIC_FSYNC,
+    /** Write in the background and leave flushing to the operating system */
+    ASYNC
+}
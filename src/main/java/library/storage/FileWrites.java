@@ -0,0 +1,105 @@
+package library.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Low-level file writes shared by the deferred persistence layers.
+ * @author Library Team
+ * @version 1.0
+ */
+public final class FileWrites {
+
+    private FileWrites() {
+        throw new UnsupportedOperationException("Utility class - cannot instantiate");
+    }
+
+    /**
+     * Replace the content of a file, creating it and its directories if needed.
+     * The content goes to a temporary file next to it that is then moved over
+     * the file, so readers and a crash see either the old or the new content,
+     * never a truncated file.
+     * @param filePath path to the file
+     * @param content new content
+     * @param force true to fsync the new content before it replaces the file
+     * @throws IOException if the write fails; the file is left unchanged
+     */
+    public static void write(String filePath, String content, boolean force) throws IOException {
+        Path path = Paths.get(filePath).toAbsolutePath();
+        Path parent = path.getParent();
+        Files.createDirectories(parent);
+
+        Path temporary = Files.createTempFile(parent, path.getFileName().toString() + ".", ".tmp");
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (force) {
+                    channel.force(false);
+                }
+            }
+            replace(temporary, path);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        if (force) {
+            forceDirectory(parent);
+        }
+    }
+
+    /**
+     * Move a completed temporary file over its target
+     * @param temporary file holding the new content, in the target's directory
+     * @param target file to replace
+     * @throws IOException if the move fails
+     */
+    public static void replace(Path temporary, Path target) throws IOException {
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Move a completed temporary file over its target, optionally making both
+     * the new content and the rename durable first
+     * @param temporary file holding the new content, in the target's directory
+     * @param target file to replace
+     * @param force true to fsync the content before the move and the directory after it
+     * @throws IOException if the fsync or the move fails
+     */
+    public static void replace(Path temporary, Path target, boolean force) throws IOException {
+        if (force) {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+        }
+        replace(temporary, target);
+        if (force) {
+            forceDirectory(target.toAbsolutePath().getParent());
+        }
+    }
+
+    /**
+     * Make a rename in a directory durable; not supported on every platform
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories cannot be opened on Windows; the rename is still atomic
+        }
+    }
+}
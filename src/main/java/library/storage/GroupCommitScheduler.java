@@ -0,0 +1,187 @@
+package library.storage;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group-commit scheduler for repository files.
+ * Writes are collected per file, so repeated saves of the same repository
+ * between two commits collapse into a single rewrite. Dirty files are flushed
+ * together every flush interval, or as soon as the batch size is reached.
+ * Callers that need durability can wait for the commit that includes their write.
+ * @author Library Team
+ * @version 1.0
+ */
+public class GroupCommitScheduler implements DeferredWriter {
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+    private final Object lock = new Object();
+
+    private Map<String, String> dirtyFiles = new LinkedHashMap<>();
+    /** Batch being written; still served to readers until it is on disk */
+    private Map<String, String> committing = new LinkedHashMap<>();
+    private CompletableFuture<Boolean> nextCommit = new CompletableFuture<>();
+    private int submissionsSinceCommit;
+    private boolean closed;
+
+    private final AtomicLong commitCount = new AtomicLong();
+    private final AtomicLong submittedWrites = new AtomicLong();
+    private final AtomicLong fileWrites = new AtomicLong();
+
+    public GroupCommitScheduler() {
+        this(DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_BATCH_SIZE);
+    }
+
+    public GroupCommitScheduler(long flushIntervalMillis, int batchSize) {
+        if (flushIntervalMillis <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Flush interval and batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "group-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::commit, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean submit(String filePath, String content) {
+        synchronized (lock) {
+            if (closed) {
+                return false;
+            }
+            dirtyFiles.put(filePath, content);
+            submittedWrites.incrementAndGet();
+            if (++submissionsSinceCommit >= batchSize) {
+                // under the lock, so close() cannot shut the executor down in between
+                executor.execute(this::commit);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String pendingContent(String filePath) {
+        synchronized (lock) {
+            String content = dirtyFiles.get(filePath);
+            return content != null ? content : committing.get(filePath);
+        }
+    }
+
+    /**
+     * Future completed by the commit that will include everything submitted so far
+     * @return future holding the commit result
+     */
+    public CompletableFuture<Boolean> pendingCommit() {
+        synchronized (lock) {
+            return nextCommit;
+        }
+    }
+
+    /**
+     * Commit everything submitted so far and wait for it. Once the scheduler
+     * is closed nothing is scheduled any more; the result then only tells
+     * whether close() left every file written.
+     * @return true if all submitted content is on disk
+     */
+    @Override
+    public boolean flush() {
+        CompletableFuture<Boolean> commit;
+        synchronized (lock) {
+            if (closed) {
+                return dirtyFiles.isEmpty() && committing.isEmpty();
+            }
+            commit = nextCommit;
+            executor.execute(this::commit);
+        }
+        return commit.join();
+    }
+
+    /**
+     * Write all dirty files in one batch and complete the waiting callers.
+     * A file that fails to write goes back to the queue for the next commit,
+     * unless newer content for it was submitted meanwhile.
+     */
+    private void commit() {
+        Map<String, String> batch;
+        CompletableFuture<Boolean> completion;
+        synchronized (lock) {
+            if (dirtyFiles.isEmpty()) {
+                nextCommit.complete(true);
+                nextCommit = new CompletableFuture<>();
+                return;
+            }
+            batch = dirtyFiles;
+            completion = nextCommit;
+            committing = batch;
+            dirtyFiles = new LinkedHashMap<>();
+            nextCommit = new CompletableFuture<>();
+            submissionsSinceCommit = 0;
+        }
+
+        Map<String, String> failed = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            try {
+                DataFileChecksum.invalidate(entry.getKey());
+                FileWrites.write(entry.getKey(), entry.getValue(), true);
+                fileWrites.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error committing " + entry.getKey() + ": " + e.getMessage());
+                failed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        synchronized (lock) {
+            for (Map.Entry<String, String> entry : failed.entrySet()) {
+                dirtyFiles.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            committing = new LinkedHashMap<>();
+        }
+        boolean success = failed.isEmpty();
+        commitCount.incrementAndGet();
+        completion.complete(success);
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        commit();
+    }
+
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+
+    public long getSubmittedWrites() {
+        return submittedWrites.get();
+    }
+
+    public long getFileWrites() {
+        return fileWrites.get();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
@@ -0,0 +1,511 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.utils.GsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Online incremental backups of the data directory, restorable to any backup point.
+ * <p>
+ * A backup takes the shared lock of every data file at once, so processes
+ * that use {@link DataFileLock} cannot save any repository until the cut is
+ * taken; the backup is consistent across all files. Files are split into
+ * content-defined chunks, cut where a rolling hash of the last bytes matches a
+ * pattern, so inserting a record only changes the chunks around it rather
+ * than every chunk after it. Chunks are stored once under their SHA-256 and
+ * copied from the data file with {@link FileChannel#transferTo}. A file whose
+ * size and modification time match the previous backup point is not read at all,
+ * so a nightly backup costs about as much as the data changed since the last one.
+ * <p>
+ * Layout of the backup directory: {@code chunks/<ab>/<sha-256>} and one
+ * manifest per point in {@code points/<id>.json}. Lock files, ID indexes,
+ * checksum sidecars and temporary files are not backed up.
+ * @author Library Team
+ * @version 1.0
+ */
+public class IncrementalBackup {
+    public static final int DEFAULT_AVERAGE_CHUNK_BYTES = 64 * 1024;
+
+    private static final String CHUNKS = "chunks";
+    private static final String POINTS = "points";
+    private static final String POINT_EXTENSION = ".json";
+    private static final List<String> SKIPPED_EXTENSIONS = List.of(".lock", RecordOffsetIndex.FILE_EXTENSION,
+            ".tmp", ".migrating", ".restoring", ".crc");
+    private static final long[] GEAR = gearTable();
+
+    private final Path dataDirectory;
+    private final Path backupDirectory;
+    private final int minChunk;
+    private final int maxChunk;
+    /** a chunk ends where the top bits of the rolling hash above this shift are all zero */
+    private final int boundaryShift;
+    private final Gson gson = GsonUtils.createGson();
+
+    public IncrementalBackup(String dataDirectory, String backupDirectory) {
+        this(dataDirectory, backupDirectory, DEFAULT_AVERAGE_CHUNK_BYTES);
+    }
+
+    /**
+     * @param dataDirectory directory to back up
+     * @param backupDirectory directory holding the chunks and backup points
+     * @param averageChunkBytes typical chunk size, a power of two of at least 64
+     */
+    public IncrementalBackup(String dataDirectory, String backupDirectory, int averageChunkBytes) {
+        if (averageChunkBytes < 64 || Integer.bitCount(averageChunkBytes) != 1) {
+            throw new IllegalArgumentException("Average chunk size must be a power of two of at least 64");
+        }
+        this.dataDirectory = Paths.get(dataDirectory).toAbsolutePath().normalize();
+        this.backupDirectory = Paths.get(backupDirectory).toAbsolutePath().normalize();
+        this.minChunk = averageChunkBytes / 4;
+        this.maxChunk = averageChunkBytes * 4;
+        this.boundaryShift = 64 - Integer.numberOfTrailingZeros(averageChunkBytes);
+    }
+
+    /**
+     * Take a backup point of the data directory
+     * @return the new point, with what it copied
+     * @throws IOException if a file cannot be read or the backup cannot be written
+     */
+    public Point backup() throws IOException {
+        Files.createDirectories(backupDirectory.resolve(CHUNKS));
+        Files.createDirectories(backupDirectory.resolve(POINTS));
+        List<String> existing = listPoints();
+        Map<String, FileEntry> previous = new HashMap<>();
+        if (!existing.isEmpty()) {
+            for (FileEntry entry : readPoint(existing.get(existing.size() - 1)).files) {
+                previous.put(entry.path, entry);
+            }
+        }
+
+        List<String> lockedFiles = new ArrayList<>();
+        for (DataFile<?> file : DataFile.ALL) {
+            lockedFiles.add(file.path(dataDirectory.toString()));
+        }
+        Point point = withSharedLocks(lockedFiles, 0, () -> copyFiles(previous));
+        point.id = nextPointId(existing);
+        point.created = LocalDateTime.now().toString();
+        Path manifest = backupDirectory.resolve(POINTS).resolve(point.id + POINT_EXTENSION);
+        Path temporary = Paths.get(manifest + ".tmp");
+        FileWrites.write(temporary.toString(), gson.toJson(point), true);
+        Files.move(temporary, manifest, StandardCopyOption.ATOMIC_MOVE);
+        return point;
+    }
+
+    /**
+     * Hold the shared lock of every data file, always in the same order, while the files are copied
+     */
+    private Point withSharedLocks(List<String> files, int next, LockedCopy copy) throws IOException {
+        if (next == files.size()) {
+            return copy.run();
+        }
+        return new DataFileLock(files.get(next)).read(version -> withSharedLocks(files, next + 1, copy));
+    }
+
+    private Point copyFiles(Map<String, FileEntry> previous) throws IOException {
+        Point point = new Point();
+        if (!Files.isDirectory(dataDirectory)) {
+            return point;
+        }
+        Set<String> stored = new HashSet<>();
+        for (Path file : backedUpFiles(dataDirectory)) {
+            FileEntry entry = new FileEntry();
+            entry.path = dataDirectory.relativize(file).toString().replace(File.separatorChar, '/');
+            entry.size = Files.size(file);
+            entry.modified = Files.getLastModifiedTime(file).to(TimeUnit.NANOSECONDS);
+            FileEntry last = previous.get(entry.path);
+            if (last != null && last.size == entry.size && last.modified == entry.modified) {
+                entry.chunks = last.chunks;
+                point.filesUnchanged++;
+            } else {
+                entry.chunks = copyChunks(file, stored, point);
+            }
+            point.files.add(entry);
+        }
+        return point;
+    }
+
+    /**
+     * Split a file into content-defined chunks and store the chunks not stored yet
+     * @return chunk hashes in file order
+     */
+    private List<String> copyChunks(Path file, Set<String> stored, Point point) throws IOException {
+        List<String> hashes = new ArrayList<>();
+        MessageDigest digest = sha256();
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(65536);
+            long chunkStart = 0;
+            long position = 0;
+            long rolling = 0;
+            while (source.read(buffer) > 0) {
+                buffer.flip();
+                byte[] bytes = buffer.array();
+                int pending = 0; // start of the bytes of this buffer not yet digested
+                for (int i = 0; i < buffer.limit(); i++, position++) {
+                    rolling = (rolling << 1) + GEAR[bytes[i] & 0xFF];
+                    long length = position + 1 - chunkStart;
+                    if ((length >= minChunk && (rolling >>> boundaryShift) == 0) || length >= maxChunk) {
+                        digest.update(bytes, pending, i + 1 - pending);
+                        pending = i + 1;
+                        hashes.add(storeChunk(source, chunkStart, length, hex(digest.digest()), stored, point));
+                        chunkStart = position + 1;
+                        rolling = 0;
+                    }
+                }
+                digest.update(bytes, pending, buffer.limit() - pending);
+                buffer.clear();
+            }
+            if (position > chunkStart) {
+                hashes.add(storeChunk(source, chunkStart, position - chunkStart, hex(digest.digest()), stored, point));
+            }
+        }
+        return hashes;
+    }
+
+    private String storeChunk(FileChannel source, long offset, long length, String hash, Set<String> stored,
+                              Point point) throws IOException {
+        Path chunk = chunkPath(hash);
+        if (stored.contains(hash) || Files.exists(chunk)) {
+            point.chunksReused++;
+            return hash;
+        }
+        Files.createDirectories(chunk.getParent());
+        Path temporary = Paths.get(chunk + ".tmp");
+        try (FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long copied = 0;
+            while (copied < length) {
+                copied += source.transferTo(offset + copied, length - copied, target);
+            }
+            target.force(false);
+        }
+        Files.move(temporary, chunk, StandardCopyOption.ATOMIC_MOVE);
+        stored.add(hash);
+        point.chunksCopied++;
+        point.bytesCopied += length;
+        return hash;
+    }
+
+    /**
+     * Restore the files of a backup point. The JSON data files are replaced under
+     * their write lock, so running processes reload them; files that did not
+     * exist at the backup point are removed. Restored files get back the
+     * modification time they had when backed up, which keeps a stale binary
+     * snapshot older than its JSON. Other files, such as the runs of an
+     * LSM engine, must not be open in any process during the restore.
+     * @param pointId point from {@link #listPoints()}
+     * @param targetDirectory directory to restore into, usually the data directory
+     * @return number of files restored
+     * @throws IOException if the point or one of its chunks is missing, or a file cannot be written
+     */
+    public int restore(String pointId, String targetDirectory) throws IOException {
+        Point point = readPoint(pointId);
+        for (FileEntry entry : point.files) {
+            for (String hash : entry.chunks) {
+                if (!Files.isRegularFile(chunkPath(hash))) {
+                    throw new IOException("Backup point " + pointId + " is missing chunk " + hash);
+                }
+            }
+        }
+
+        Path target = Paths.get(targetDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(target);
+        Set<Path> restored = new HashSet<>();
+        Set<String> dataFileNames = DataFile.ALL.stream().map(DataFile::getFileName).collect(Collectors.toSet());
+        for (FileEntry entry : point.files) {
+            Path file = target.resolve(entry.path).normalize();
+            if (!file.startsWith(target)) {
+                throw new IOException("Backup point " + pointId + " has a file outside the directory: " + entry.path);
+            }
+            restored.add(file);
+            if (dataFileNames.contains(entry.path)) {
+                new DataFileLock(file.toString()).write(version -> {
+                    restoreFile(entry, file);
+                    return null;
+                });
+            } else {
+                restoreFile(entry, file);
+            }
+        }
+        for (Path file : backedUpFiles(target)) {
+            if (!restored.contains(file) && !file.startsWith(backupDirectory)) {
+                Files.delete(file);
+            }
+        }
+        return restored.size();
+    }
+
+    private void restoreFile(FileEntry entry, Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporary = Paths.get(file + ".restoring");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (String hash : entry.chunks) {
+                try (FileChannel chunk = FileChannel.open(chunkPath(hash), StandardOpenOption.READ)) {
+                    long size = chunk.size();
+                    long copied = 0;
+                    while (copied < size) {
+                        copied += chunk.transferTo(copied, size - copied, out);
+                    }
+                }
+            }
+            if (out.size() != entry.size) {
+                throw new IOException("Restored " + entry.path + " has " + out.size() + " bytes, expected " + entry.size);
+            }
+            out.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        // keep the backed-up time, so a stale binary snapshot stays older than its JSON
+        Files.setLastModifiedTime(temporary, FileTime.from(entry.modified, TimeUnit.NANOSECONDS));
+        // sidecars are not backed up, and the one on disk describes the content being replaced
+        DataFileChecksum.invalidate(file.toString());
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Delete all but the newest backup points, and the chunks only they used
+     * @param keep number of points to keep, at least 1
+     * @return number of chunks deleted
+     * @throws IOException if the backup directory cannot be read
+     */
+    public int prune(int keep) throws IOException {
+        if (keep < 1) {
+            throw new IllegalArgumentException("At least one backup point must be kept");
+        }
+        List<String> points = listPoints();
+        Set<String> referenced = new HashSet<>();
+        for (String id : points.subList(Math.max(0, points.size() - keep), points.size())) {
+            for (FileEntry entry : readPoint(id).files) {
+                referenced.addAll(entry.chunks);
+            }
+        }
+        for (String id : points.subList(0, Math.max(0, points.size() - keep))) {
+            Files.delete(backupDirectory.resolve(POINTS).resolve(id + POINT_EXTENSION));
+        }
+        int deleted = 0;
+        Path chunks = backupDirectory.resolve(CHUNKS);
+        if (Files.isDirectory(chunks)) {
+            try (Stream<Path> files = Files.walk(chunks)) {
+                for (Path chunk : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    if (!referenced.contains(chunk.getFileName().toString())) {
+                        Files.delete(chunk);
+                        deleted++;
+                    }
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Backup points, oldest first
+     * @return point IDs
+     * @throws IOException if the backup directory cannot be read
+     */
+    public List<String> listPoints() throws IOException {
+        Path points = backupDirectory.resolve(POINTS);
+        if (!Files.isDirectory(points)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(points)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(POINT_EXTENSION))
+                    .map(name -> name.substring(0, name.length() - POINT_EXTENSION.length()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Read the manifest of a backup point
+     * @param pointId point from {@link #listPoints()}
+     * @return the point
+     * @throws IOException if the point does not exist or cannot be read
+     */
+    public Point readPoint(String pointId) throws IOException {
+        Path manifest = backupDirectory.resolve(POINTS).resolve(pointId + POINT_EXTENSION);
+        if (!Files.isRegularFile(manifest)) {
+            throw new IOException("No backup point " + pointId + " in " + backupDirectory);
+        }
+        return gson.fromJson(Files.readString(manifest, StandardCharsets.UTF_8), Point.class);
+    }
+
+    private List<Path> backedUpFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> !file.toAbsolutePath().normalize().startsWith(backupDirectory))
+                    .filter(file -> SKIPPED_EXTENSIONS.stream().noneMatch(file.getFileName().toString()::endsWith))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path chunkPath(String hash) {
+        return backupDirectory.resolve(CHUNKS).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * Point IDs are timestamps, so they sort oldest first
+     */
+    private static String nextPointId(List<String> existing) {
+        String id = String.format("%1$tY%1$tm%1$td-%1$tH%1$tM%1$tS-%1$tL", LocalDateTime.now());
+        String last = existing.isEmpty() ? "" : existing.get(existing.size() - 1);
+        if (id.compareTo(last) <= 0) {
+            id = last + "a";
+        }
+        return id;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Random values per byte for the gear rolling hash; fixed so chunk
+     * boundaries are the same in every run
+     */
+    private static long[] gearTable() {
+        Random random = new Random(0x6C6962726172L);
+        long[] table = new long[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = random.nextLong();
+        }
+        return table;
+    }
+
+    private interface LockedCopy {
+        Point run() throws IOException;
+    }
+
+    /**
+     * One backup point: the files of the data directory at the time of the
+     * backup, as lists of chunks, and what the backup had to copy
+     */
+    public static final class Point {
+        private String id;
+        private String created;
+        private final List<FileEntry> files = new ArrayList<>();
+        private transient int filesUnchanged;
+        private transient int chunksCopied;
+        private transient int chunksReused;
+        private transient long bytesCopied;
+
+        public String getId() {
+            return id;
+        }
+
+        public String getCreated() {
+            return created;
+        }
+
+        /**
+         * Paths of the backed up files, relative to the data directory
+         * @return file paths
+         */
+        public List<String> getFiles() {
+            return Collections.unmodifiableList(files.stream().map(file -> file.path).collect(Collectors.toList()));
+        }
+
+        /** Files skipped because they had not changed since the previous point */
+        public int getFilesUnchanged() {
+            return filesUnchanged;
+        }
+
+        public int getChunksCopied() {
+            return chunksCopied;
+        }
+
+        /** Chunks of changed files that an earlier point already stored */
+        public int getChunksReused() {
+            return chunksReused;
+        }
+
+        public long getBytesCopied() {
+            return bytesCopied;
+        }
+
+        /**
+         * Print a one-line summary
+         * @param out target stream
+         */
+        public void print(PrintStream out) {
+            out.printf("Backup %s: %d files, %d unchanged, %d chunks copied (%,d bytes), %d reused%n",
+                    id, files.size(), filesUnchanged, chunksCopied, bytesCopied, chunksReused);
+        }
+    }
+
+    private static final class FileEntry {
+        private String path;
+        private long size;
+        /** modification time in nanoseconds */
+        private long modified;
+        private List<String> chunks = new ArrayList<>();
+    }
+
+    /**
+     * {@code backup <data dir> <backup dir>}, {@code restore <data dir> <backup dir> <point>},
+     * {@code list <backup dir>} or {@code prune <backup dir> <points to keep>}
+     */
+    public static void main(String[] args) throws IOException {
+        String command = args.length > 0 ? args[0] : "";
+        switch (command) {
+            case "backup":
+                new IncrementalBackup(args[1], args[2]).backup().print(System.out);
+                break;
+            case "restore":
+                int restored = new IncrementalBackup(args[1], args[2]).restore(args[3], args[1]);
+                System.out.println("Restored " + restored + " files from " + args[3]);
+                break;
+            case "list":
+                new IncrementalBackup(DataFile.DEFAULT_DIRECTORY, args[1]).listPoints().forEach(System.out::println);
+                break;
+            case "prune":
+                int deleted = new IncrementalBackup(DataFile.DEFAULT_DIRECTORY, args[1]).prune(Integer.parseInt(args[2]));
+                System.out.println("Deleted " + deleted + " chunks");
+                break;
+            default:
+                System.err.println("Usage: IncrementalBackup backup <data dir> <backup dir> | "
+                        + "restore <data dir> <backup dir> <point> | list <backup dir> | prune <backup dir> <keep>");
+                System.exit(2);
+        }
+    }
+}
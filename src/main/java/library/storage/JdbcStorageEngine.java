@@ -0,0 +1,296 @@
+package library.storage;
+
+import com.google.gson.Gson;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Storage engine backed by a table in an embedded SQL database.
+ * Each row holds the entity as JSON plus one indexed column per registered
+ * index, so {@link #findBy}, {@link #findBefore} and {@link #findFrom} become
+ * indexed queries while other filters still deserialize and scan. Nothing is kept in memory,
+ * which suits catalogs and loan histories too large for a map.
+ * @param <T> entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public class JdbcStorageEngine<T> implements StorageEngine<T> {
+    private final ConnectionPool pool;
+    private final String table;
+    private final Class<T> type;
+    private final Gson gson;
+    private final Map<String, Function<? super T, String>> indexes = new LinkedHashMap<>();
+
+    private String selectById;
+    private String selectAll;
+    private String exists;
+    private String count;
+    private String merge;
+    private String deleteById;
+    private String deleteAllRows;
+
+    /**
+     * @param pool connections to the database
+     * @param table table name, e.g. "loans"
+     * @param type entity class
+     * @param gson converts entities to and from the stored JSON
+     */
+    public JdbcStorageEngine(ConnectionPool pool, String table, Class<T> type, Gson gson) {
+        if (!table.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid table name: " + table);
+        }
+        this.pool = pool;
+        this.table = table;
+        this.type = type;
+        this.gson = gson;
+    }
+
+    /**
+     * Keep an indexed column for an attribute. Call before {@link #open()}.
+     * @param name index name used by the repositories, e.g. "userId"
+     * @param keyOf reads the attribute from an entity
+     * @return this engine
+     */
+    public JdbcStorageEngine<T> index(String name, Function<? super T, String> keyOf) {
+        if (!name.matches("[A-Za-z][A-Za-z0-9]*")) {
+            throw new IllegalArgumentException("Invalid index name: " + name);
+        }
+        indexes.put(name, keyOf);
+        return this;
+    }
+
+    /**
+     * Create the table and its indexes if they do not exist yet
+     * @return this engine
+     * @throws IllegalStateException if the schema cannot be created
+     */
+    public JdbcStorageEngine<T> open() {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        for (String name : indexes.keySet()) {
+            columns.append(", ").append(column(name));
+            placeholders.append(", ?");
+        }
+        selectById = "SELECT data FROM " + table + " WHERE id = ?";
+        selectAll = "SELECT data FROM " + table + " ORDER BY seq";
+        exists = "SELECT 1 FROM " + table + " WHERE id = ?";
+        count = "SELECT COUNT(*) FROM " + table;
+        merge = "MERGE INTO " + table + " (id, data" + columns + ") KEY (id) VALUES (?, ?" + placeholders + ")";
+        deleteById = "DELETE FROM " + table + " WHERE id = ?";
+        deleteAllRows = "DELETE FROM " + table;
+
+        try (ConnectionPool.PooledConnection connection = pool.borrow();
+             Statement statement = connection.getConnection().createStatement()) {
+            StringBuilder ddl = new StringBuilder("CREATE TABLE IF NOT EXISTS " + table
+                    + " (seq BIGINT GENERATED BY DEFAULT AS IDENTITY, id VARCHAR(255) PRIMARY KEY, data CLOB NOT NULL");
+            for (String name : indexes.keySet()) {
+                ddl.append(", ").append(column(name)).append(" VARCHAR(255)");
+            }
+            statement.execute(ddl.append(")").toString());
+            for (String name : indexes.keySet()) {
+                statement.execute("CREATE INDEX IF NOT EXISTS " + table + "_" + column(name)
+                        + " ON " + table + " (" + column(name) + ")");
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not create table " + table + ": " + e.getMessage(), e);
+        }
+        return this;
+    }
+
+    @Override
+    public T get(String id) {
+        List<T> found = query(selectById, id);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    @Override
+    public boolean put(String id, T entity) {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            bindMerge(connection.prepare(merge), id, entity).executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error saving to " + table + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean delete(String id) {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(deleteById);
+            statement.setString(1, id);
+            return statement.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("Error deleting from " + table + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean contains(String id) {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(exists);
+            statement.setString(1, id);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading " + table + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public List<T> scan(Predicate<? super T> filter) {
+        List<T> matches = new ArrayList<>();
+        for (T entity : query(selectAll)) {
+            if (filter.test(entity)) {
+                matches.add(entity);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public List<T> findAll() {
+        return query(selectAll);
+    }
+
+    /**
+     * Indexed lookup when an index with this name was registered, otherwise a scan
+     */
+    @Override
+    public List<T> findBy(String index, String key, Function<? super T, String> keyOf) {
+        if (!indexes.containsKey(index)) {
+            return StorageEngine.super.findBy(index, key, keyOf);
+        }
+        return query("SELECT data FROM " + table + " WHERE " + column(index) + " = ? ORDER BY seq", key);
+    }
+
+    /**
+     * Indexed range query when an index with this name was registered, otherwise a scan
+     */
+    @Override
+    public List<T> findBefore(String index, String bound, Function<? super T, String> keyOf) {
+        if (!indexes.containsKey(index)) {
+            return StorageEngine.super.findBefore(index, bound, keyOf);
+        }
+        return query("SELECT data FROM " + table + " WHERE " + column(index) + " < ? OR " + column(index)
+                + " IS NULL ORDER BY seq", bound);
+    }
+
+    /**
+     * Indexed range query when an index with this name was registered, otherwise a scan and sort
+     */
+    @Override
+    public List<T> findFrom(String index, String fromKey, int limit, Function<? super T, String> keyOf) {
+        if (!indexes.containsKey(index)) {
+            return StorageEngine.super.findFrom(index, fromKey, limit, keyOf);
+        }
+        return query("SELECT data FROM " + table + " WHERE " + column(index) + " >= ? ORDER BY " + column(index)
+                + ", seq LIMIT " + Math.max(limit, 0), fromKey);
+    }
+
+    @Override
+    public boolean putAll(Map<String, ? extends T> entities) {
+        return inTransaction("saving to", connection -> {
+            PreparedStatement statement = connection.prepare(merge);
+            for (Map.Entry<String, ? extends T> entry : entities.entrySet()) {
+                bindMerge(statement, entry.getKey(), entry.getValue()).addBatch();
+            }
+            statement.executeBatch();
+        });
+    }
+
+    @Override
+    public boolean deleteAll(Collection<String> ids) {
+        return inTransaction("deleting from", connection -> {
+            PreparedStatement statement = connection.prepare(deleteById);
+            for (String id : ids) {
+                statement.setString(1, id);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        });
+    }
+
+    @Override
+    public int size() {
+        try (ConnectionPool.PooledConnection connection = pool.borrow();
+             ResultSet rows = connection.prepare(count).executeQuery()) {
+            return rows.next() ? rows.getInt(1) : 0;
+        } catch (SQLException e) {
+            System.err.println("Error reading " + table + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean clear() {
+        return inTransaction("clearing", connection -> connection.prepare(deleteAllRows).executeUpdate());
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    private PreparedStatement bindMerge(PreparedStatement statement, String id, T entity) throws SQLException {
+        statement.setString(1, id);
+        statement.setString(2, gson.toJson(entity));
+        int parameter = 3;
+        for (Function<? super T, String> keyOf : indexes.values()) {
+            statement.setString(parameter++, keyOf.apply(entity));
+        }
+        return statement;
+    }
+
+    private List<T> query(String sql, String... parameters) {
+        List<T> result = new ArrayList<>();
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sql);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    result.add(gson.fromJson(rows.getString(1), type));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading " + table + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    private boolean inTransaction(String action, SqlWork work) {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            Connection jdbc = connection.getConnection();
+            jdbc.setAutoCommit(false);
+            work.run(connection);
+            jdbc.commit();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error " + action + " " + table + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static String column(String index) {
+        return "k_" + index;
+    }
+
+    private interface SqlWork {
+        void run(ConnectionPool.PooledConnection connection) throws SQLException;
+    }
+}
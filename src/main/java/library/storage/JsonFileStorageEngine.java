@@ -0,0 +1,521 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.utils.JsonFileHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Storage engine backed by one JSON file holding a map from ID to entity.
+ * This is the format the repositories have always used: everything is kept in
+ * memory and the file is rewritten on each change, or appended to a journal
+ * once {@link #enableJournal(WriteAheadJournal)} was called.
+ * <p>
+ * A {@link BinarySnapshot} next to the JSON file is loaded instead of the JSON
+ * when it is at least as recent, which avoids re-parsing pretty-printed JSON on
+ * startup. With {@link #useBinarySnapshot(boolean)} the snapshot also becomes the
+ * format that full rewrites go to; {@link #writeJson()} and
+ * {@link #writeBinarySnapshot()} convert between the two.
+ * <p>
+ * When several processes share the data directory, {@link #useFileLocking(boolean)}
+ * guards loads and writes with a {@link DataFileLock}, and {@link #reloadIfChanged()}
+ * picks up what the other processes wrote.
+ * @param <T> entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public class JsonFileStorageEngine<T> implements StorageEngine<T> {
+    private final String filePath;
+    private final Class<T> type;
+    private final Gson gson;
+    private final Supplier<JsonFileHandler> fileHandler;
+    private final Map<String, T> records = new LinkedHashMap<>();
+    private final String snapshotPath;
+    private BinarySnapshot<T> binarySnapshot;
+    private boolean binaryWrites;
+    private WriteAheadJournal journal;
+    private LoadReport loadReport;
+    private DataFileLock fileLock;
+    private long loadedVersion;
+    /** Increased by every load and mutation, so a refresh can tell it raced with one */
+    private long changeCount;
+
+    public JsonFileStorageEngine(String filePath, Class<T> type, Gson gson, JsonFileHandler fileHandler) {
+        this(filePath, type, gson, () -> fileHandler);
+    }
+
+    /**
+     * @param fileHandler looked up on every read and write, so the owner can replace its handler
+     */
+    public JsonFileStorageEngine(String filePath, Class<T> type, Gson gson, Supplier<JsonFileHandler> fileHandler) {
+        this.filePath = filePath;
+        this.type = type;
+        this.gson = gson;
+        this.fileHandler = fileHandler;
+        this.snapshotPath = BinarySnapshot.pathFor(filePath);
+    }
+
+    /**
+     * Write full snapshots in the binary format instead of JSON
+     * @param enabled true to write binary snapshots
+     * @return this engine
+     */
+    public synchronized JsonFileStorageEngine<T> useBinarySnapshot(boolean enabled) {
+        this.binaryWrites = enabled;
+        return this;
+    }
+
+    /**
+     * Coordinate with other processes using the same file: loads take a shared
+     * lock and writes an exclusive one. A write that finds the file changed since
+     * it was loaded reloads it first and applies its change on top, instead of
+     * overwriting what the other process wrote. Cannot be combined with a journal.
+     * @param enabled true to lock the file
+     * @return this engine
+     */
+    public synchronized JsonFileStorageEngine<T> useFileLocking(boolean enabled) {
+        if (enabled && journal != null) {
+            throw new IllegalStateException("File locking cannot be combined with a journal");
+        }
+        fileLock = enabled ? new DataFileLock(filePath) : null;
+        loadedVersion = enabled ? versionOnDisk() : 0;
+        return this;
+    }
+
+    /**
+     * Replace the records in memory with the content of the file.
+     * A missing, empty or unreadable file leaves the engine empty.
+     * @return this engine
+     */
+    public synchronized JsonFileStorageEngine<T> load() {
+        if (fileLock == null) {
+            readFile();
+            return this;
+        }
+        try {
+            loadedVersion = fileLock.read(version -> {
+                readFile();
+                return version;
+            });
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error locking " + filePath + ", reading it unlocked: " + e.getMessage());
+            readFile();
+            loadedVersion = -1; // unknown, so the next write reloads first
+        }
+        return this;
+    }
+
+    /**
+     * Check whether another process wrote the file since this engine loaded or wrote it
+     * @return true if changed; always false without file locking
+     */
+    public synchronized boolean hasChangedOnDisk() {
+        return fileLock != null && versionOnDisk() != loadedVersion;
+    }
+
+    /**
+     * Reload the file if another process wrote it since it was loaded
+     * @return true if the records were reloaded
+     */
+    @Override
+    public synchronized boolean reloadIfChanged() {
+        if (!hasChangedOnDisk()) {
+            return false;
+        }
+        load();
+        return true;
+    }
+
+    /**
+     * Bring the records up to date with a file that another program replaced.
+     * The file is parsed without holding up readers; then, in one step, added
+     * and changed records are put, records missing from the file are removed,
+     * and unchanged records keep their instances. Nothing is applied if the file
+     * is empty or does not parse cleanly, which usually means it is still being
+     * written, or if this engine wrote or reloaded while it was parsed. With a
+     * journal, its entries are replayed over the file first, so records that
+     * were not checkpointed yet are kept.
+     * @return what changed, or null if nothing was applied
+     */
+    public RecordChanges applyExternalChanges() {
+        long seen;
+        DataFileLock lock;
+        synchronized (this) {
+            seen = changeCount;
+            lock = fileLock;
+        }
+        Map<String, T> parsed = new LinkedHashMap<>();
+        long version;
+        try {
+            if (!hasContent()) {
+                return null;
+            }
+            LoadReport report;
+            if (lock == null) {
+                version = 0;
+                report = readInto(parsed);
+            } else {
+                LoadReport[] read = new LoadReport[1];
+                version = lock.read(onDisk -> {
+                    read[0] = readInto(parsed);
+                    return onDisk;
+                });
+                report = read[0];
+            }
+            if (report != null && (report.hasErrors() || !report.isComplete())) {
+                System.err.println("Skipped reloading " + filePath + ": it did not parse cleanly");
+                return null;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Skipped reloading " + filePath + ": " + e.getMessage());
+            return null;
+        }
+
+        synchronized (this) {
+            if (changeCount != seen) {
+                return null;
+            }
+            if (journal != null) {
+                // changes since the last checkpoint are only in the journal; appends wait for this lock
+                journal.replay(parsed, type);
+            }
+            RecordChanges changes = new RecordChanges(filePath);
+            for (Iterator<String> ids = records.keySet().iterator(); ids.hasNext(); ) {
+                String id = ids.next();
+                if (!parsed.containsKey(id)) {
+                    ids.remove();
+                    changes.removed(id);
+                }
+            }
+            for (Map.Entry<String, T> entry : parsed.entrySet()) {
+                T current = records.get(entry.getKey());
+                if (current == null) {
+                    records.put(entry.getKey(), entry.getValue());
+                    changes.added(entry.getKey());
+                } else if (!gson.toJsonTree(current).equals(gson.toJsonTree(entry.getValue()))) {
+                    records.put(entry.getKey(), entry.getValue());
+                    changes.updated(entry.getKey());
+                }
+            }
+            if (fileLock != null && fileLock == lock) {
+                loadedVersion = version;
+            }
+            return changes;
+        }
+    }
+
+    private boolean hasContent() throws IOException {
+        Path snapshot = Paths.get(snapshotPath);
+        Path json = Paths.get(filePath);
+        return (Files.isRegularFile(snapshot) && Files.size(snapshot) > 0)
+                || (Files.isRegularFile(json) && Files.size(json) > 0);
+    }
+
+    private long versionOnDisk() {
+        try {
+            return fileLock.version();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading version of " + filePath + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private void readFile() {
+        changeCount++;
+        records.clear();
+        try {
+            loadReport = readInto(records);
+            if (loadReport != null) {
+                loadReport.printErrors();
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading " + filePath + ": " + e.getMessage());
+            records.clear();
+            loadReport = null;
+        }
+    }
+
+    /**
+     * Read the binary snapshot if it is current, otherwise the JSON file
+     * @param target map receiving the records
+     * @return load report
+     */
+    private LoadReport readInto(Map<String, T> target) {
+        LoadReport snapshotReport = readBinarySnapshot(target);
+        if (snapshotReport != null) {
+            return snapshotReport;
+        }
+        return fileHandler.get().readRecords(filePath, gson, type, target);
+    }
+
+    private LoadReport readBinarySnapshot(Map<String, T> target) {
+        Path snapshot = Paths.get(snapshotPath);
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+        try {
+            Path json = Paths.get(filePath);
+            if (Files.exists(json)
+                    && Files.getLastModifiedTime(json).compareTo(Files.getLastModifiedTime(snapshot)) > 0) {
+                return null; // JSON was written after the snapshot
+            }
+            return binarySnapshot().read(snapshotPath, target);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading " + snapshotPath + ", reading JSON instead: " + e.getMessage());
+            target.clear();
+            return null;
+        }
+    }
+
+    private synchronized BinarySnapshot<T> binarySnapshot() {
+        if (binarySnapshot == null) {
+            binarySnapshot = new BinarySnapshot<>(type);
+        }
+        return binarySnapshot;
+    }
+
+    /**
+     * Switch to journaled persistence: pending journal entries are replayed over
+     * the loaded snapshot and later mutations are appended instead of rewriting the file
+     * @param journal journal for this file
+     */
+    public synchronized void enableJournal(WriteAheadJournal journal) {
+        if (fileLock != null) {
+            throw new IllegalStateException("File locking cannot be combined with a journal");
+        }
+        this.journal = journal;
+        journal.replay(records, type);
+    }
+
+    /**
+     * Rewrite the whole file from memory, in the binary format if enabled
+     * @return true if successful
+     */
+    public synchronized boolean writeSnapshot() {
+        if (fileLock == null) {
+            return binaryWrites ? writeBinarySnapshot() : writeJson();
+        }
+        return writeLocked(() -> true, true, false);
+    }
+
+    /**
+     * Apply a change and rewrite the file while holding the exclusive lock.
+     * If the rewrite fails the version stamp is left alone and the records are
+     * reloaded from the file, so memory never holds a change the file lacks.
+     * @param change applies the change; returns false if there was nothing to change
+     * @param unchangedResult result when the change found nothing to do
+     * @param reload true to reload first if another process wrote the file since
+     * @return true if successful
+     */
+    private boolean writeLocked(BooleanSupplier change, boolean unchangedResult, boolean reload) {
+        try {
+            return fileLock.write(version -> {
+                if (reload && version != loadedVersion) {
+                    readFile();
+                }
+                loadedVersion = version + 1;
+                if (!change.getAsBoolean()) {
+                    return unchangedResult;
+                }
+                if (!(binaryWrites ? writeBinarySnapshot() : writeJson())) {
+                    // throwing keeps DataFileLock from stamping a version that was never written
+                    readFile();
+                    loadedVersion = version;
+                    throw new IOException("change was not saved and has been undone");
+                }
+                return true;
+            });
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error writing " + filePath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Write the records in memory to the binary snapshot file
+     * @return true if successful
+     */
+    public synchronized boolean writeBinarySnapshot() {
+        try {
+            binarySnapshot().write(snapshotPath, records);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error saving " + snapshotPath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Write the records in memory to the JSON file
+     * @return true if successful
+     */
+    public synchronized boolean writeJson() {
+        try {
+            return fileHandler.get().writeRecords(filePath, gson, records);
+        } catch (Exception e) {
+            System.err.println("Error saving " + filePath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized T get(String id) {
+        return records.get(id);
+    }
+
+    @Override
+    public synchronized boolean put(String id, T entity) {
+        changeCount++;
+        if (fileLock != null) {
+            return writeLocked(() -> {
+                records.put(id, entity);
+                return true;
+            }, true, true);
+        }
+        records.put(id, entity);
+        if (journal == null) {
+            return writeSnapshot();
+        }
+        return journal.appendPut(id, entity) && journal.checkpointIfNeeded(this::writeSnapshot);
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        changeCount++;
+        if (fileLock != null) {
+            return writeLocked(() -> records.remove(id) != null, false, true);
+        }
+        if (records.remove(id) == null) {
+            return false;
+        }
+        if (journal == null) {
+            return writeSnapshot();
+        }
+        return journal.appendDelete(id) && journal.checkpointIfNeeded(this::writeSnapshot);
+    }
+
+    @Override
+    public synchronized boolean contains(String id) {
+        return records.containsKey(id);
+    }
+
+    @Override
+    public synchronized List<T> scan(Predicate<? super T> filter) {
+        List<T> result = new ArrayList<>();
+        for (T entity : records.values()) {
+            if (filter.test(entity)) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized boolean putAll(Map<String, ? extends T> entities) {
+        changeCount++;
+        if (fileLock != null) {
+            return writeLocked(() -> {
+                records.putAll(entities);
+                return true;
+            }, true, true);
+        }
+        records.putAll(entities);
+        if (journal == null) {
+            return writeSnapshot();
+        }
+        boolean success = true;
+        for (Map.Entry<String, ? extends T> entry : entities.entrySet()) {
+            success &= journal.appendPut(entry.getKey(), entry.getValue());
+        }
+        return success && journal.checkpointIfNeeded(this::writeSnapshot);
+    }
+
+    @Override
+    public synchronized boolean deleteAll(Collection<String> ids) {
+        changeCount++;
+        if (fileLock != null) {
+            return writeLocked(() -> records.keySet().removeAll(ids), true, true);
+        }
+        List<String> removed = new ArrayList<>();
+        for (String id : ids) {
+            if (records.remove(id) != null) {
+                removed.add(id);
+            }
+        }
+        if (removed.isEmpty()) {
+            return true;
+        }
+        if (journal == null) {
+            return writeSnapshot();
+        }
+        boolean success = true;
+        for (String id : removed) {
+            success &= journal.appendDelete(id);
+        }
+        return success && journal.checkpointIfNeeded(this::writeSnapshot);
+    }
+
+    @Override
+    public synchronized boolean clear() {
+        changeCount++;
+        if (fileLock != null) {
+            return writeLocked(() -> {
+                records.clear();
+                return true;
+            }, true, false);
+        }
+        records.clear();
+        boolean saved = writeSnapshot();
+        if (saved && journal != null) {
+            journal.reset();
+        }
+        return saved;
+    }
+
+    @Override
+    public synchronized int size() {
+        return records.size();
+    }
+
+    @Override
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+
+    @Override
+    public boolean flush() {
+        return fileHandler.get().sync();
+    }
+
+    /**
+     * The map held in memory; changes to it are not persisted until the next write
+     * @return live record map
+     */
+    public Map<String, T> getRecords() {
+        return records;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public String getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public WriteAheadJournal getJournal() {
+        return journal;
+    }
+}
@@ -0,0 +1,219 @@
+package library.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Storage engine that creates and loads its underlying engine on first access.
+ * Building a repository on top of it costs nothing, so startup only pays for the
+ * data files the session actually touches. Concurrent first accesses load once;
+ * the other callers wait for that load to finish.
+ * <p>
+ * With {@link #usePointReads} a lookup by ID before the first load reads just
+ * that record through the file's {@link RecordOffsetIndex} instead of loading
+ * everything.
+ * @param <T> entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public class LazyStorageEngine<T> implements StorageEngine<T> {
+    private final String name;
+    private final Supplier<? extends StorageEngine<T>> loader;
+    private final List<Consumer<? super StorageEngine<T>>> loadActions = new ArrayList<>();
+    private volatile StorageEngine<T> engine;
+    private volatile RecordOffsetIndex<T> pointReads;
+    private volatile long loadMillis = -1;
+
+    /**
+     * @param name name used in timings and log messages, e.g. "loans"
+     * @param loader creates the loaded engine; called at most once
+     */
+    public LazyStorageEngine(String name, Supplier<? extends StorageEngine<T>> loader) {
+        this.name = name;
+        this.loader = loader;
+    }
+
+    /**
+     * Answer {@link #get} and {@link #contains} from an ID index of the data file
+     * until the engine is loaded. Once loaded, the engine answers everything.
+     * @param index index of the file the engine loads
+     * @return this engine
+     */
+    public LazyStorageEngine<T> usePointReads(RecordOffsetIndex<T> index) {
+        this.pointReads = index;
+        return this;
+    }
+
+    /**
+     * Return the underlying engine, loading it if this is the first access
+     * @return loaded engine
+     */
+    public StorageEngine<T> engine() {
+        StorageEngine<T> loaded = engine;
+        if (loaded != null) {
+            return loaded;
+        }
+        synchronized (this) {
+            if (engine == null) {
+                long start = System.nanoTime();
+                StorageEngine<T> created = loader.get();
+                for (Consumer<? super StorageEngine<T>> action : loadActions) {
+                    action.accept(created);
+                }
+                loadActions.clear();
+                loadMillis = (System.nanoTime() - start) / 1_000_000;
+                engine = created;
+            }
+            return engine;
+        }
+    }
+
+    /**
+     * Load now if not loaded yet, e.g. from a background prefetch
+     */
+    public void load() {
+        engine();
+    }
+
+    public boolean isLoaded() {
+        return engine != null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Time the load took
+     * @return milliseconds, or -1 if not loaded yet
+     */
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    @Override
+    public void whenLoaded(Consumer<? super StorageEngine<T>> action) {
+        synchronized (this) {
+            if (engine == null) {
+                loadActions.add(action);
+                return;
+            }
+        }
+        action.accept(engine);
+    }
+
+    @Override
+    public T get(String id) {
+        RecordOffsetIndex<T> index = pointReads;
+        if (engine == null && index != null) {
+            try {
+                return index.find(id);
+            } catch (IOException e) {
+                // the file cannot be indexed, e.g. it is compressed; load it instead
+            }
+        }
+        return engine().get(id);
+    }
+
+    @Override
+    public boolean put(String id, T entity) {
+        return engine().put(id, entity);
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return engine().delete(id);
+    }
+
+    @Override
+    public boolean contains(String id) {
+        if (engine == null && pointReads != null) {
+            return get(id) != null;
+        }
+        return engine().contains(id);
+    }
+
+    @Override
+    public List<T> scan(Predicate<? super T> filter) {
+        return engine().scan(filter);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return engine().findAll();
+    }
+
+    @Override
+    public List<T> findBy(String index, String key, Function<? super T, String> keyOf) {
+        return engine().findBy(index, key, keyOf);
+    }
+
+    @Override
+    public List<T> findBefore(String index, String bound, Function<? super T, String> keyOf) {
+        return engine().findBefore(index, bound, keyOf);
+    }
+
+    @Override
+    public List<T> findFrom(String index, String fromKey, int limit, Function<? super T, String> keyOf) {
+        return engine().findFrom(index, fromKey, limit, keyOf);
+    }
+
+    @Override
+    public boolean putAll(Map<String, ? extends T> entities) {
+        return engine().putAll(entities);
+    }
+
+    @Override
+    public boolean deleteAll(Collection<String> ids) {
+        return engine().deleteAll(ids);
+    }
+
+    @Override
+    public boolean clear() {
+        return engine().clear();
+    }
+
+    @Override
+    public int size() {
+        return engine().size();
+    }
+
+    @Override
+    public LoadReport getLoadReport() {
+        return engine().getLoadReport();
+    }
+
+    /**
+     * Reload the underlying engine if its data changed; an engine that was never
+     * loaded reads the current data on first access anyway
+     */
+    @Override
+    public boolean reloadIfChanged() {
+        StorageEngine<T> loaded = engine;
+        return loaded != null && loaded.reloadIfChanged();
+    }
+
+    /**
+     * Flush the underlying engine; nothing to do if it was never loaded
+     */
+    @Override
+    public boolean flush() {
+        StorageEngine<T> loaded = engine;
+        return loaded == null || loaded.flush();
+    }
+
+    @Override
+    public void close() {
+        StorageEngine<T> loaded = engine;
+        if (loaded != null) {
+            loaded.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package library.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of loading a data file record by record.
+ * Keeps the records that could not be read instead of dropping the whole file.
+ * @author Library Team
+ * @version 1.0
+ */
+public class LoadReport {
+    private final String filePath;
+    private final List<String> errors = new ArrayList<>();
+    private int loadedCount;
+    private boolean complete = true;
+
+    public LoadReport(String filePath) {
+        this.filePath = filePath;
+    }
+
+    /**
+     * Count one record that was read successfully
+     */
+    public void recordLoaded() {
+        loadedCount++;
+    }
+
+    /**
+     * Remember a record that could not be read; loading continues with the next one
+     * @param recordId ID of the broken record
+     * @param message reason
+     */
+    public void recordError(String recordId, String message) {
+        errors.add(recordId + ": " + message);
+    }
+
+    /**
+     * Remember that the file could not be read to the end
+     * @param message reason
+     */
+    public void markIncomplete(String message) {
+        complete = false;
+        errors.add("file: " + message);
+    }
+
+    /**
+     * Add the counts and errors of a load that is part of this one, e.g. one segment file
+     * @param part report of the partial load
+     */
+    public void include(LoadReport part) {
+        loadedCount += part.loadedCount;
+        for (String error : part.errors) {
+            errors.add(part.filePath + " " + error);
+        }
+        complete &= part.complete;
+    }
+
+    /**
+     * Print the collected errors to stderr
+     */
+    public void printErrors() {
+        for (String error : errors) {
+            System.err.println("Error loading " + filePath + " - " + error);
+        }
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public int getLoadedCount() {
+        return loadedCount;
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,897 @@
+package library.storage;
+
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Log-structured merge storage for append-mostly history such as loans and
+ * fines. A write is appended to a log and put in a sorted in-memory memtable,
+ * so its cost does not grow with the number of stored records. A full memtable
+ * is written as an immutable sorted run by a background thread, and runs are
+ * merged by leveled compaction: level 0 collects up to {@value #LEVEL0_RUNS}
+ * flushed runs, each deeper level is one sorted run
+ * {@value #LEVEL_SIZE_RATIO} times larger than the one above it. Deleted
+ * records are written as tombstones and dropped when they reach the last level.
+ * <p>
+ * A lookup by ID checks the memtable, then the runs from newest to oldest,
+ * skipping every run whose Bloom filter rules the ID out, so it reads at most
+ * one block of the run that holds the record. Queries by other attributes
+ * merge all runs in one sequential pass.
+ * <p>
+ * Everything lives in one directory: {@code wal-<n>.log} files for memtables
+ * not yet flushed, {@code run-<n>.sst} files and a {@code MANIFEST} that lists
+ * the runs of each level. The manifest is replaced atomically, so a crash
+ * during a flush or compaction leaves the previous set of runs, and the log
+ * files are replayed on {@link #open()}.
+ * @param <T> entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public class LsmStorageEngine<T> implements StorageEngine<T> {
+    public static final String DIRECTORY_EXTENSION = ".lsm";
+    public static final int DEFAULT_MEMTABLE_ENTRIES = 1000;
+    public static final int LEVEL0_RUNS = 4;
+    public static final int LEVEL_SIZE_RATIO = 10;
+
+    private static final String MANIFEST = "MANIFEST";
+    /** Every log append starts with the length and CRC32C of the entries that follow */
+    private static final int LOG_HEADER_BYTES = 8;
+    private static final Pattern LOG_FILE = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern RUN_FILE = Pattern.compile("run-(\\d+)\\.sst");
+
+    private final Path directory;
+    private final Class<T> type;
+    private final Gson gson;
+    private final int memtableEntries;
+
+    private TreeMap<String, byte[]> memtable = new TreeMap<>();
+    private List<Long> memtableLogs = new ArrayList<>();
+    private TreeMap<String, byte[]> flushing;
+    private List<Long> flushingLogs = new ArrayList<>();
+    private FileChannel log;
+    private long logNumber;
+    /** levels.get(0) is newest first; every deeper level holds at most one run */
+    private final List<List<SortedRun>> levels = new ArrayList<>();
+    private final Map<SortedRun, Long> runNumbers = new IdentityHashMap<>();
+    private long nextFileNumber = 1;
+    /** Incremented by clear() so background work started before it is discarded */
+    private long generation;
+    private int count;
+    private ExecutorService background;
+    private boolean open;
+
+    private long bloomSkips;
+    private long runReads;
+    private long flushCount;
+    private long compactionCount;
+
+    public LsmStorageEngine(String directory, Class<T> type, Gson gson) {
+        this(directory, type, gson, DEFAULT_MEMTABLE_ENTRIES);
+    }
+
+    /**
+     * @param directory directory holding the logs and runs, created if missing
+     * @param type entity class
+     * @param gson converts entities to and from the stored JSON
+     * @param memtableEntries records kept in memory before they are flushed to a run
+     */
+    public LsmStorageEngine(String directory, Class<T> type, Gson gson, int memtableEntries) {
+        if (memtableEntries <= 0) {
+            throw new IllegalArgumentException("Memtable size must be positive");
+        }
+        this.directory = Paths.get(directory);
+        this.type = type;
+        this.gson = gson;
+        this.memtableEntries = memtableEntries;
+    }
+
+    /**
+     * Open the runs listed in the manifest, replay the logs and start the
+     * background flush and compaction thread
+     * @return this engine
+     * @throws IllegalStateException if the directory cannot be read
+     */
+    public synchronized LsmStorageEngine<T> open() {
+        try {
+            Files.createDirectories(directory);
+            readManifest();
+            replayLogs();
+            count = countLive();
+            startLog();
+            background = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "lsm-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            open = true;
+            if (memtable.size() >= memtableEntries) {
+                rotateMemtable();
+            }
+            return this;
+        } catch (IOException | RuntimeException e) {
+            closeFiles();
+            throw new IllegalStateException("Could not open " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void readManifest() throws IOException {
+        levels.clear();
+        runNumbers.clear();
+        levels.add(new ArrayList<>());
+        Set<Long> listed = new HashSet<>();
+        Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] parts = line.trim().split(" ");
+                if (parts[0].equals("next")) {
+                    nextFileNumber = Math.max(nextFileNumber, Long.parseLong(parts[1]));
+                } else if (parts[0].equals("run")) {
+                    int level = Integer.parseInt(parts[1]);
+                    long number = Long.parseLong(parts[2]);
+                    while (levels.size() <= level) {
+                        levels.add(new ArrayList<>());
+                    }
+                    SortedRun run = SortedRun.open(runPath(number));
+                    levels.get(level).add(run);
+                    runNumbers.put(run, number);
+                    listed.add(number);
+                }
+            }
+        }
+        // runs a crash left behind before they made it into the manifest
+        for (Path file : list(RUN_FILE)) {
+            long number = fileNumber(file, RUN_FILE);
+            nextFileNumber = Math.max(nextFileNumber, number + 1);
+            if (!listed.contains(number)) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void replayLogs() throws IOException {
+        memtable = new TreeMap<>();
+        memtableLogs = new ArrayList<>();
+        List<Path> logs = list(LOG_FILE);
+        logs.sort(Comparator.comparingLong(file -> fileNumber(file, LOG_FILE)));
+        for (Path file : logs) {
+            long number = fileNumber(file, LOG_FILE);
+            nextFileNumber = Math.max(nextFileNumber, number + 1);
+            // a log holds at most one memtable, so it is read in one piece
+            byte[] content = Files.readAllBytes(file);
+            int valid = 0;
+            TreeMap<String, byte[]> batch;
+            while ((batch = readBatch(content, valid)) != null) {
+                memtable.putAll(batch);
+                valid += LOG_HEADER_BYTES + ByteBuffer.wrap(content, valid, 4).getInt();
+            }
+            if (valid < content.length) {
+                // torn or damaged tail from a crash during an append; cut it off
+                System.err.println("Log " + file + " has a bad entry at byte " + valid + ", truncating");
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+            memtableLogs.add(number);
+        }
+    }
+
+    /**
+     * Read the batch logged at an offset, verifying its length and checksum
+     * @return the batch, or null at the end of the log or if the batch is torn or damaged
+     */
+    private static TreeMap<String, byte[]> readBatch(byte[] content, int offset) {
+        if (content.length - offset < LOG_HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.wrap(content, offset, LOG_HEADER_BYTES);
+        int length = header.getInt();
+        int checksum = header.getInt();
+        int start = offset + LOG_HEADER_BYTES;
+        if (length <= 0 || length > content.length - start || checksum(content, start, length) != checksum) {
+            return null;
+        }
+        TreeMap<String, byte[]> batch = new TreeMap<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content, start, length));
+        try {
+            while (SortedRun.readEntry(in, batch)) {
+                // entries of one append
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return batch;
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private int countLive() throws IOException {
+        int live = 0;
+        try (SortedRun.Cursor cursor = mergedCursor()) {
+            while (cursor.advance()) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    private void startLog() throws IOException {
+        logNumber = nextFileNumber++;
+        log = FileChannel.open(logPath(logNumber), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        memtableLogs.add(logNumber);
+        writeManifest();
+    }
+
+    @Override
+    public synchronized T get(String id) {
+        try {
+            byte[] value = lookup(id);
+            return value == null || value == SortedRun.TOMBSTONE ? null : decode(value);
+        } catch (IOException e) {
+            System.err.println("Error reading " + directory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized boolean contains(String id) {
+        try {
+            byte[] value = lookup(id);
+            return value != null && value != SortedRun.TOMBSTONE;
+        } catch (IOException e) {
+            System.err.println("Error reading " + directory + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private byte[] lookup(String id) throws IOException {
+        ensureOpen();
+        byte[] value = memtable.get(id);
+        if (value == null && flushing != null) {
+            value = flushing.get(id);
+        }
+        for (int level = 0; value == null && level < levels.size(); level++) {
+            for (SortedRun run : levels.get(level)) {
+                if (!run.mightContain(id)) {
+                    bloomSkips++;
+                    continue;
+                }
+                runReads++;
+                value = run.find(id);
+                if (value != null) {
+                    break;
+                }
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized boolean put(String id, T entity) {
+        return putAll(Map.of(id, entity));
+    }
+
+    @Override
+    public synchronized boolean putAll(Map<String, ? extends T> entities) {
+        try {
+            TreeMap<String, byte[]> batch = new TreeMap<>();
+            for (Map.Entry<String, ? extends T> entry : entities.entrySet()) {
+                batch.put(entry.getKey(), gson.toJson(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+            }
+            apply(batch);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error saving to " + directory + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        if (!contains(id)) {
+            return false;
+        }
+        return deleteAll(List.of(id));
+    }
+
+    @Override
+    public synchronized boolean deleteAll(Collection<String> ids) {
+        try {
+            TreeMap<String, byte[]> batch = new TreeMap<>();
+            for (String id : ids) {
+                batch.put(id, SortedRun.TOMBSTONE);
+            }
+            apply(batch);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error deleting from " + directory + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Log a batch as one append, framed by its length and CRC32C, then apply it to the memtable
+     */
+    private void apply(TreeMap<String, byte[]> batch) throws IOException {
+        ensureOpen();
+        if (batch.isEmpty()) {
+            return;
+        }
+        int delta = 0;
+        for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+            byte[] current = lookup(entry.getKey());
+            boolean existed = current != null && current != SortedRun.TOMBSTONE;
+            boolean exists = entry.getValue() != SortedRun.TOMBSTONE;
+            delta += (exists ? 1 : 0) - (existed ? 1 : 0);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+            SortedRun.writeEntry(out, entry.getKey(), entry.getValue());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        int length = buffer.capacity() - LOG_HEADER_BYTES;
+        buffer.putInt(0, length);
+        buffer.putInt(4, checksum(buffer.array(), LOG_HEADER_BYTES, length));
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        memtable.putAll(batch);
+        count += delta;
+        if (memtable.size() >= memtableEntries) {
+            rotateMemtable();
+        }
+    }
+
+    /**
+     * Hand the full memtable to the background thread and start a new one.
+     * Waits if the previous memtable is still being flushed, which slows
+     * writers down to the speed of the disk instead of growing memory.
+     */
+    private void rotateMemtable() throws IOException {
+        while (flushing != null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a memtable flush");
+            }
+        }
+        log.close();
+        flushing = memtable;
+        flushingLogs = memtableLogs;
+        memtable = new TreeMap<>();
+        memtableLogs = new ArrayList<>();
+        startLog();
+        long flushGeneration = generation;
+        background.execute(() -> {
+            flushMemtable(flushGeneration);
+            compactWhileNeeded();
+        });
+    }
+
+    private void flushMemtable(long flushGeneration) {
+        TreeMap<String, byte[]> frozen;
+        long number;
+        synchronized (this) {
+            if (flushing == null || generation != flushGeneration) {
+                return;
+            }
+            frozen = flushing;
+            number = nextFileNumber++;
+        }
+        SortedRun run = null;
+        try {
+            // the frozen memtable is not changed any more, so the run is written without the lock
+            run = SortedRun.write(runPath(number), SortedRun.cursor(frozen), frozen.size());
+            synchronized (this) {
+                if (generation != flushGeneration) {
+                    discard(run);
+                    return;
+                }
+                levels.get(0).add(0, run);
+                runNumbers.put(run, number);
+                writeManifest();
+                for (long logFile : flushingLogs) {
+                    Files.deleteIfExists(logPath(logFile));
+                }
+                flushing = null;
+                flushingLogs = new ArrayList<>();
+                flushCount++;
+                notifyAll();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error flushing memtable of " + directory + ": " + e.getMessage());
+            synchronized (this) {
+                if (run != null) {
+                    levels.get(0).remove(run);
+                    runNumbers.remove(run);
+                    discard(run);
+                }
+                if (generation == flushGeneration && flushing != null) {
+                    // keep the records in memory and their logs on disk; the next flush retries
+                    flushing.forEach(memtable::putIfAbsent);
+                    flushingLogs.addAll(memtableLogs);
+                    memtableLogs = flushingLogs;
+                    flushing = null;
+                    flushingLogs = new ArrayList<>();
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Merge level 0 into level 1 once it holds {@value #LEVEL0_RUNS} runs, and
+     * every deeper level into the next once it outgrows its size limit
+     */
+    private void compactWhileNeeded() {
+        while (true) {
+            List<SortedRun> inputs = new ArrayList<>();
+            int target;
+            boolean lastLevel;
+            long number;
+            long compactionGeneration;
+            synchronized (this) {
+                if (!open) {
+                    return;
+                }
+                target = -1;
+                if (levels.get(0).size() >= LEVEL0_RUNS) {
+                    target = 1;
+                } else {
+                    for (int level = 1; level < levels.size(); level++) {
+                        if (entries(levels.get(level)) > levelLimit(level)) {
+                            target = level + 1;
+                            break;
+                        }
+                    }
+                }
+                if (target < 0) {
+                    return;
+                }
+                while (levels.size() <= target) {
+                    levels.add(new ArrayList<>());
+                }
+                // newest first, so the merge keeps the latest version of each record
+                inputs.addAll(levels.get(target - 1));
+                inputs.addAll(levels.get(target));
+                lastLevel = true;
+                for (int level = target + 1; level < levels.size(); level++) {
+                    lastLevel &= levels.get(level).isEmpty();
+                }
+                number = nextFileNumber++;
+                compactionGeneration = generation;
+            }
+
+            SortedRun output = null;
+            try {
+                List<SortedRun.Cursor> cursors = new ArrayList<>();
+                for (SortedRun run : inputs) {
+                    cursors.add(run.cursor());
+                }
+                try (SortedRun.Cursor merged = new MergingCursor(cursors, lastLevel)) {
+                    output = SortedRun.write(runPath(number), merged, (int) Math.min(Integer.MAX_VALUE, entries(inputs)));
+                }
+                synchronized (this) {
+                    if (generation != compactionGeneration || !open) {
+                        discard(output);
+                        return;
+                    }
+                    levels.get(target - 1).removeAll(inputs);
+                    levels.get(target).removeAll(inputs);
+                    if (output.getEntryCount() > 0) {
+                        levels.get(target).add(output);
+                        runNumbers.put(output, number);
+                    } else {
+                        discard(output);
+                    }
+                    writeManifest();
+                    for (SortedRun run : inputs) {
+                        runNumbers.remove(run);
+                        discard(run);
+                    }
+                    compactionCount++;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error compacting " + directory + ": " + e.getMessage());
+                if (output != null) {
+                    synchronized (this) {
+                        if (!levels.get(target).contains(output)) {
+                            discard(output);
+                        }
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    private long levelLimit(int level) {
+        return (long) memtableEntries * LEVEL0_RUNS * (long) Math.pow(LEVEL_SIZE_RATIO, level);
+    }
+
+    private static long entries(List<SortedRun> runs) {
+        long total = 0;
+        for (SortedRun run : runs) {
+            total += run.getEntryCount();
+        }
+        return total;
+    }
+
+    /**
+     * Entities accepted by the filter, in ID order; merges the memtable and every run
+     */
+    @Override
+    public synchronized List<T> scan(Predicate<? super T> filter) {
+        List<T> result = new ArrayList<>();
+        try {
+            ensureOpen();
+            try (SortedRun.Cursor cursor = mergedCursor()) {
+                while (cursor.advance()) {
+                    T entity = decode(cursor.value());
+                    if (filter.test(entity)) {
+                        result.add(entity);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + directory + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Latest live version of every record, from the memtables and all runs
+     */
+    private SortedRun.Cursor mergedCursor() throws IOException {
+        List<SortedRun.Cursor> cursors = new ArrayList<>();
+        cursors.add(SortedRun.cursor(memtable));
+        if (flushing != null) {
+            cursors.add(SortedRun.cursor(flushing));
+        }
+        try {
+            for (List<SortedRun> level : levels) {
+                for (SortedRun run : level) {
+                    cursors.add(run.cursor());
+                }
+            }
+        } catch (IOException e) {
+            for (SortedRun.Cursor cursor : cursors) {
+                cursor.close();
+            }
+            throw e;
+        }
+        return new MergingCursor(cursors, true);
+    }
+
+    @Override
+    public synchronized boolean clear() {
+        try {
+            ensureOpen();
+            generation++;
+            log.close();
+            for (List<SortedRun> level : levels) {
+                for (SortedRun run : level) {
+                    discard(run);
+                }
+                level.clear();
+            }
+            runNumbers.clear();
+            for (Path file : list(LOG_FILE)) {
+                Files.deleteIfExists(file);
+            }
+            memtable = new TreeMap<>();
+            memtableLogs = new ArrayList<>();
+            flushing = null;
+            flushingLogs = new ArrayList<>();
+            count = 0;
+            notifyAll();
+            startLog();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error clearing " + directory + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Force the log to disk, so every accepted write survives a power loss
+     */
+    @Override
+    public synchronized boolean flush() {
+        try {
+            ensureOpen();
+            log.force(false);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error flushing " + directory + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Wait for pending memtable flushes and compactions, e.g. before a backup
+     * @return true if the background thread finished its queued work
+     */
+    public boolean awaitBackgroundWork() {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = background;
+        }
+        if (executor == null) {
+            return true;
+        }
+        try {
+            executor.submit(() -> { }).get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Finish the queued background work and close the files.
+     * Records still in the memtable stay in the log and are replayed on the next open.
+     */
+    @Override
+    public void close() {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = background;
+            background = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            open = false;
+            closeFiles();
+        }
+    }
+
+    private void closeFiles() {
+        try {
+            if (log != null) {
+                log.force(false);
+                log.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing " + directory + ": " + e.getMessage());
+        }
+        for (List<SortedRun> level : levels) {
+            for (SortedRun run : level) {
+                try {
+                    run.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing " + run.getPath() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return number of runs on each level, level 0 first
+     */
+    public synchronized List<Integer> getRunCounts() {
+        List<Integer> counts = new ArrayList<>();
+        for (List<SortedRun> level : levels) {
+            counts.add(level.size());
+        }
+        while (counts.size() > 1 && counts.get(counts.size() - 1) == 0) {
+            counts.remove(counts.size() - 1);
+        }
+        return counts;
+    }
+
+    public synchronized int getMemtableSize() {
+        return memtable.size();
+    }
+
+    /** Runs a lookup skipped because their Bloom filter ruled the ID out */
+    public synchronized long getBloomSkips() {
+        return bloomSkips;
+    }
+
+    /** Runs a lookup had to read a block from */
+    public synchronized long getRunReads() {
+        return runReads;
+    }
+
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    public synchronized long getCompactionCount() {
+        return compactionCount;
+    }
+
+    private void ensureOpen() {
+        if (log == null || !log.isOpen()) {
+            throw new IllegalStateException(directory + " is not open");
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        manifest.append("next ").append(nextFileNumber).append('\n');
+        for (int level = 0; level < levels.size(); level++) {
+            for (SortedRun run : levels.get(level)) {
+                manifest.append("run ").append(level).append(' ').append(runNumbers.get(run)).append('\n');
+            }
+        }
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        FileWrites.write(temporary.toString(), manifest.toString(), true);
+        Files.move(temporary, directory.resolve(MANIFEST),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void discard(SortedRun run) {
+        try {
+            run.close();
+            Files.deleteIfExists(run.getPath());
+        } catch (IOException e) {
+            System.err.println("Error deleting " + run.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    private T decode(byte[] json) {
+        return gson.fromJson(new String(json, StandardCharsets.UTF_8), type);
+    }
+
+    private Path logPath(long number) {
+        return directory.resolve(String.format("wal-%06d.log", number));
+    }
+
+    private Path runPath(long number) {
+        return directory.resolve(String.format("run-%06d.sst", number));
+    }
+
+    private List<Path> list(Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> matches = new ArrayList<>();
+            files.filter(file -> pattern.matcher(file.getFileName().toString()).matches()).forEach(matches::add);
+            return matches;
+        }
+    }
+
+    private static long fileNumber(Path file, Pattern pattern) {
+        Matcher matcher = pattern.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(file + " is not a " + pattern + " file");
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * k-way merge of sorted cursors given newest first. For a key found in
+     * several cursors only the newest entry is returned.
+     */
+    private static final class MergingCursor implements SortedRun.Cursor {
+        private final List<SortedRun.Cursor> cursors;
+        private final boolean dropTombstones;
+        /** {cursor index}, ordered by current key, then by age */
+        private final PriorityQueue<Integer> heads;
+        private String key;
+        private byte[] value;
+
+        MergingCursor(List<SortedRun.Cursor> cursors, boolean dropTombstones) throws IOException {
+            this.cursors = cursors;
+            this.dropTombstones = dropTombstones;
+            this.heads = new PriorityQueue<>(Math.max(1, cursors.size()), (a, b) -> {
+                int comparison = cursors.get(a).key().compareTo(cursors.get(b).key());
+                return comparison != 0 ? comparison : Integer.compare(a, b);
+            });
+            for (int i = 0; i < cursors.size(); i++) {
+                if (cursors.get(i).advance()) {
+                    heads.add(i);
+                }
+            }
+        }
+
+        @Override
+        public boolean advance() throws IOException {
+            while (!heads.isEmpty()) {
+                int newest = heads.poll();
+                SortedRun.Cursor cursor = cursors.get(newest);
+                key = cursor.key();
+                value = cursor.value();
+                if (cursor.advance()) {
+                    heads.add(newest);
+                }
+                // older versions of the same record
+                while (!heads.isEmpty() && cursors.get(heads.peek()).key().equals(key)) {
+                    int older = heads.poll();
+                    if (cursors.get(older).advance()) {
+                        heads.add(older);
+                    }
+                }
+                if (!(dropTombstones && value == SortedRun.TOMBSTONE)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String key() {
+            return key;
+        }
+
+        @Override
+        public byte[] value() {
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (SortedRun.Cursor cursor : cursors) {
+                try {
+                    cursor.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package library.storage;
+
+import com.google.gson.JsonObject;
+
+import java.util.function.Consumer;
+
+/**
+ * One schema change of one data file: rewrites a record from version
+ * {@code fromVersion} to {@code fromVersion + 1}. Steps see a single record at
+ * a time, so a file is migrated without loading it. They should also leave
+ * records that already have the new shape unchanged, since files written
+ * before versioning existed count as version 1.
+ * @author Library Team
+ * @version 1.0
+ */
+public final class MigrationStep {
+    private final String fileName;
+    private final int fromVersion;
+    private final String description;
+    private final Consumer<JsonObject> change;
+
+    /**
+     * @param fileName data file, e.g. "books.json"
+     * @param fromVersion version the step upgrades from, starting at 1
+     * @param description what the step changes, for the report
+     * @param change rewrites one record in place
+     */
+    public MigrationStep(String fileName, int fromVersion, String description, Consumer<JsonObject> change) {
+        if (fromVersion < 1) {
+            throw new IllegalArgumentException("Schema versions start at 1");
+        }
+        this.fileName = fileName;
+        this.fromVersion = fromVersion;
+        this.description = description;
+        this.change = change;
+    }
+
+    /**
+     * Rewrite a record in place
+     * @param record record as read from the file
+     */
+    public void apply(JsonObject record) {
+        change.accept(record);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getFromVersion() {
+        return fromVersion;
+    }
+
+    public int getToVersion() {
+        return fromVersion + 1;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,133 @@
+package library.storage;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Startup stage that loads independent storage engines concurrently on a
+ * bounded thread pool and waits for all of them, so startup costs roughly
+ * the largest data file instead of the sum of all files.
+ * @author Library Team
+ * @version 1.0
+ */
+public class ParallelBootstrap {
+    private final int threads;
+
+    public ParallelBootstrap() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads maximum number of files loaded at the same time
+     */
+    public ParallelBootstrap(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Load every engine and wait until all are done. A failing engine is
+     * reported and does not stop the others.
+     * @param engines engines to load
+     * @return load time per engine and in total
+     */
+    public Report load(List<? extends LazyStorageEngine<?>> engines) {
+        Report report = new Report();
+        long start = System.nanoTime();
+        if (engines.isEmpty()) {
+            return report;
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, engines.size()), task -> {
+            Thread thread = new Thread(task, "bootstrap-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (LazyStorageEngine<?> engine : engines) {
+                futures.add(executor.submit(engine::load));
+            }
+            for (int i = 0; i < engines.size(); i++) {
+                LazyStorageEngine<?> engine = engines.get(i);
+                try {
+                    futures.get(i).get();
+                    report.loadMillis.put(engine.getName(), engine.getLoadMillis());
+                } catch (ExecutionException e) {
+                    report.failures.put(engine.getName(), String.valueOf(e.getCause().getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    report.failures.put(engine.getName(), "interrupted");
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        report.wallMillis = (System.nanoTime() - start) / 1_000_000;
+        return report;
+    }
+
+    /**
+     * Timings of one bootstrap run
+     */
+    public static final class Report {
+        private final Map<String, Long> loadMillis = new LinkedHashMap<>();
+        private final Map<String, String> failures = new LinkedHashMap<>();
+        private long wallMillis;
+
+        /**
+         * Load time per engine name, for the engines that loaded
+         * @return milliseconds by name
+         */
+        public Map<String, Long> getLoadMillis() {
+            return Collections.unmodifiableMap(loadMillis);
+        }
+
+        /**
+         * Error message per engine name, for the engines that failed
+         * @return failures by name
+         */
+        public Map<String, String> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        public boolean isSuccessful() {
+            return failures.isEmpty();
+        }
+
+        /**
+         * Time from start until the last engine finished
+         * @return milliseconds
+         */
+        public long getWallMillis() {
+            return wallMillis;
+        }
+
+        /**
+         * Print one line per engine and the total
+         * @param out target stream
+         */
+        public void print(PrintStream out) {
+            for (Map.Entry<String, Long> entry : loadMillis.entrySet()) {
+                out.printf("Loaded %-8s in %5d ms%n", entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, String> entry : failures.entrySet()) {
+                out.printf("Failed %-8s: %s%n", entry.getKey(), entry.getValue());
+            }
+            out.printf("Startup loading took %d ms%n", wallMillis);
+        }
+    }
+}
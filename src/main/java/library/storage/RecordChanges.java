@@ -0,0 +1,63 @@
+package library.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records added, updated and removed when an engine caught up with a file
+ * changed outside this process.
+ * @author Library Team
+ * @version 1.0
+ */
+public class RecordChanges {
+    private final String filePath;
+    private final List<String> added = new ArrayList<>();
+    private final List<String> updated = new ArrayList<>();
+    private final List<String> removed = new ArrayList<>();
+
+    public RecordChanges(String filePath) {
+        this.filePath = filePath;
+    }
+
+    void added(String id) {
+        added.add(id);
+    }
+
+    void updated(String id) {
+        updated.add(id);
+    }
+
+    void removed(String id) {
+        removed.add(id);
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public List<String> getAdded() {
+        return Collections.unmodifiableList(added);
+    }
+
+    public List<String> getUpdated() {
+        return Collections.unmodifiableList(updated);
+    }
+
+    public List<String> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * @return true if the file held the same records as memory
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return filePath + ": " + added.size() + " added, " + updated.size() + " updated, "
+                + removed.size() + " removed";
+    }
+}
@@ -0,0 +1,372 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk hash index from record ID to the position of the record in a JSON
+ * data file, so one record can be read without parsing the rest of the file.
+ * Data files are one JSON object mapping each ID to its record.
+ * <p>
+ * The index lives next to the data file, e.g. {@code books.json.idx}, and is
+ * memory-mapped. It is an open-addressing table of fixed-width slots, each
+ * holding the 64-bit hash of an ID and the offset and length of the
+ * {@code "id": {...}} member; collisions probe the next slot. The header remembers the size
+ * and modification time of the data file it was built from, and the index is
+ * rebuilt in one streaming pass on the first lookup after the file changed.
+ * <p>
+ * Only plain JSON files can be indexed. Lookups throw for GZIP-compressed
+ * files, files with a pending journal and files superseded by a newer binary
+ * snapshot; callers then load the file the usual way.
+ * @param <T> entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public class RecordOffsetIndex<T> {
+    public static final String FILE_EXTENSION = ".idx";
+
+    private static final int MAGIC = 0x4C524958; // "LRIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    /** hash, offset, length */
+    private static final int SLOT_BYTES = 8 + 8 + 4;
+
+    private final Path dataPath;
+    private final Path indexPath;
+    private final Class<T> type;
+    private final Gson gson;
+    private DataFileLock fileLock;
+
+    private MappedByteBuffer slots;
+    private int slotCount;
+    private int entryCount;
+    private long builds;
+
+    /**
+     * @param dataFilePath JSON data file to index
+     * @param type entity class
+     * @param gson Gson the data file is written with
+     */
+    public RecordOffsetIndex(String dataFilePath, Class<T> type, Gson gson) {
+        this.dataPath = Paths.get(dataFilePath);
+        this.indexPath = Paths.get(pathFor(dataFilePath));
+        this.type = type;
+        this.gson = gson;
+    }
+
+    /**
+     * Index file used for a data file
+     * @param dataFilePath path of the data file
+     * @return path of the index file
+     */
+    public static String pathFor(String dataFilePath) {
+        return dataFilePath + FILE_EXTENSION;
+    }
+
+    /**
+     * Read the data file under its shared lock, for files that other processes write
+     * @param enabled true if the data file uses {@link DataFileLock}
+     * @return this index
+     */
+    public synchronized RecordOffsetIndex<T> useFileLocking(boolean enabled) {
+        fileLock = enabled ? new DataFileLock(dataPath.toString()) : null;
+        return this;
+    }
+
+    /**
+     * Read one record from the data file
+     * @param id record ID
+     * @return the record, or null if the file holds no record with this ID
+     * @throws IOException if the file cannot be indexed or read
+     */
+    public synchronized T find(String id) throws IOException {
+        if (id == null) {
+            return null;
+        }
+        if (fileLock == null) {
+            return findUnlocked(id);
+        }
+        return fileLock.read(version -> findUnlocked(id));
+    }
+
+    private T findUnlocked(String id) throws IOException {
+        checkIndexable();
+        if (!Files.isRegularFile(dataPath)) {
+            return null;
+        }
+        if (!isCurrent()) {
+            rebuild();
+        }
+        try {
+            return lookup(id);
+        } catch (StaleIndexException e) {
+            // the file changed without changing its size or timestamp
+            rebuild();
+            return lookup(id);
+        }
+    }
+
+    private T lookup(String id) throws IOException {
+        long hash = hash(id);
+        long bestOffset = -1;
+        T best = null;
+        try (FileChannel data = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            for (int i = 0, slot = slotFor(hash, slotCount); i < slotCount; i++, slot = (slot + 1) & (slotCount - 1)) {
+                int position = HEADER_BYTES + slot * SLOT_BYTES;
+                long slotHash = slots.getLong(position);
+                if (slotHash == 0) {
+                    break;
+                }
+                if (slotHash != hash) {
+                    continue;
+                }
+                long offset = slots.getLong(position + 8);
+                ByteBuffer record = ByteBuffer.allocate(slots.getInt(position + 16));
+                while (record.hasRemaining()) {
+                    if (data.read(record, offset + record.position()) < 0) {
+                        throw new StaleIndexException();
+                    }
+                }
+                Map.Entry<String, JsonElement> member = parseMember(record.array());
+                // 64-bit hashes of different IDs practically never collide, so another key means the file moved
+                if (member == null || !id.equals(member.getKey())) {
+                    throw new StaleIndexException();
+                }
+                // a later duplicate replaces an earlier one, as when the file is loaded
+                if (offset > bestOffset) {
+                    bestOffset = offset;
+                    best = gson.fromJson(member.getValue(), type);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Check whether the index matches the data file as it is now
+     * @return true if no rebuild is needed
+     * @throws IOException if the data file cannot be read
+     */
+    public synchronized boolean isCurrent() throws IOException {
+        if (slots == null && !mapExisting()) {
+            return false;
+        }
+        return slots.getLong(16) == Files.size(dataPath)
+                && slots.getLong(24) == Files.getLastModifiedTime(dataPath).toMillis();
+    }
+
+    /**
+     * Build the index from the data file, reading it once as a stream
+     * @throws IOException if the data file cannot be read or is not a JSON object
+     */
+    public synchronized void rebuild() throws IOException {
+        checkIndexable();
+        long size = Files.size(dataPath);
+        long modified = Files.getLastModifiedTime(dataPath).toMillis();
+        List<long[]> entries = new ArrayList<>(); // {hash, offset, length}
+        try (InputStream in = Files.newInputStream(dataPath)) {
+            scanRecords(in, entries);
+        }
+
+        int capacity = 16;
+        while (capacity < entries.size() * 2) {
+            capacity <<= 1;
+        }
+        // a unique temporary file, so rebuilds in two processes never map the same file
+        Path temporary = Files.createTempFile(indexPath.toAbsolutePath().getParent(),
+                indexPath.getFileName() + ".", ".tmp");
+        long fileSize = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+                map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, capacity).putInt(12, entries.size())
+                        .putLong(16, size).putLong(24, modified);
+                for (long[] entry : entries) {
+                    int slot = slotFor(entry[0], capacity);
+                    while (map.getLong(HEADER_BYTES + slot * SLOT_BYTES) != 0) {
+                        slot = (slot + 1) & (capacity - 1);
+                    }
+                    int position = HEADER_BYTES + slot * SLOT_BYTES;
+                    map.putLong(position, entry[0]).putLong(position + 8, entry[1]).putInt(position + 16, (int) entry[2]);
+                }
+                map.force();
+            }
+            slots = null;
+            Files.move(temporary, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        mapExisting();
+        builds++;
+    }
+
+    /**
+     * Record the position of every member of the top-level object, from the
+     * quote opening its key to the end of its value. Only one member is
+     * buffered at a time, to read its key.
+     */
+    private static void scanRecords(InputStream in, List<long[]> entries) throws IOException {
+        ByteArrayOutputStream member = new ByteArrayOutputStream();
+        byte[] buffer = new byte[65536];
+        long position = 0;
+        long start = -1;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++, position++) {
+                int b = buffer[i] & 0xFF;
+                boolean memberEnds = false;
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                } else if (b == '"') {
+                    inString = true;
+                    if (depth == 1 && start < 0) {
+                        start = position;
+                        member.reset();
+                    }
+                } else if (b == '{' || b == '[') {
+                    if (depth == 0 && b != '{') {
+                        throw new IOException("Data file is not a JSON object");
+                    }
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                    memberEnds = depth == 0;
+                } else if (b == ',') {
+                    memberEnds = depth == 1;
+                }
+                if (memberEnds && start >= 0) {
+                    byte[] json = member.toByteArray();
+                    Map.Entry<String, JsonElement> entry = parseMember(json);
+                    if (entry != null) {
+                        entries.add(new long[] {hash(entry.getKey()), start, json.length});
+                    }
+                    start = -1;
+                } else if (start >= 0) {
+                    member.write(b);
+                }
+            }
+        }
+    }
+
+    private boolean mapExisting() throws IOException {
+        if (!Files.isRegularFile(indexPath)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return false;
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int capacity = map.getInt(8);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION || Integer.bitCount(capacity) != 1
+                    || channel.size() != HEADER_BYTES + (long) capacity * SLOT_BYTES) {
+                return false;
+            }
+            slots = map;
+            slotCount = capacity;
+            entryCount = map.getInt(12);
+            return true;
+        }
+    }
+
+    private void checkIndexable() throws IOException {
+        if (!Files.isRegularFile(dataPath)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(dataPath)) {
+            if (in.read() == 0x1f && in.read() == 0x8b) {
+                throw new IOException(dataPath + " is compressed and cannot be indexed");
+            }
+        }
+        Path journal = Paths.get(WriteAheadJournal.forDataFile(dataPath.toString()).getJournalPath());
+        if (Files.isRegularFile(journal) && Files.size(journal) > 0) {
+            throw new IOException(dataPath + " has journal entries not in the file yet");
+        }
+        Path snapshot = Paths.get(BinarySnapshot.pathFor(dataPath.toString()));
+        if (Files.isRegularFile(snapshot)
+                && Files.getLastModifiedTime(snapshot).compareTo(Files.getLastModifiedTime(dataPath)) >= 0) {
+            throw new IOException(dataPath + " is superseded by its binary snapshot");
+        }
+    }
+
+    public synchronized int getEntryCount() {
+        return slots == null ? 0 : entryCount;
+    }
+
+    /** Times the index was built by this instance */
+    public synchronized long getBuildCount() {
+        return builds;
+    }
+
+    public String getIndexPath() {
+        return indexPath.toString();
+    }
+
+    private static int slotFor(long hash, int capacity) {
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    /**
+     * @param json one {@code "id": {...}} member of the file's object
+     * @return the key and value, or null if the bytes are not one such member
+     */
+    private static Map.Entry<String, JsonElement> parseMember(byte[] json) {
+        try {
+            JsonElement parsed = JsonParser.parseString("{" + new String(json, StandardCharsets.UTF_8) + "}");
+            Set<Map.Entry<String, JsonElement>> members = parsed.getAsJsonObject().entrySet();
+            return members.size() == 1 ? members.iterator().next() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 ID with a final mix; never 0, which marks an empty slot
+     */
+    private static long hash(String id) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /** A slot points at something that is not the record it was built for */
+    private static final class StaleIndexException extends IOException {
+        StaleIndexException() {
+            super("Index does not match the data file");
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import library.utils.GsonUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Upgrades the data files to the schema the models expect.
+ * <p>
+ * The version of each file is kept in {@code schema.json} in the data
+ * directory; a file that is not listed there is at version 1. A file behind
+ * its target version is streamed record by record through its pending
+ * {@link MigrationStep}s into a temporary file, which then replaces it, so
+ * memory use does not depend on the file size. Files are migrated in parallel,
+ * each under the exclusive {@link DataFileLock} so processes using file locking
+ * wait for it and reload afterwards.
+ * <p>
+ * Usage: {@code SchemaMigrator [dataDirectory] [workers]}
+ * @author Library Team
+ * @version 1.0
+ */
+public class SchemaMigrator {
+    public static final String SCHEMA_FILE = "schema.json";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    private final Path directory;
+    private final int workers;
+    private final Map<String, List<MigrationStep>> steps = new LinkedHashMap<>();
+    private final Gson manifestGson = GsonUtils.createGson();
+
+    public SchemaMigrator(String dataDirectory) {
+        this(dataDirectory, defaultSteps(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param dataDirectory directory holding the data files
+     * @param steps every step of every file; per file they must cover 1, 2, 3, ... without gaps
+     * @param workers maximum number of files migrated at the same time
+     */
+    public SchemaMigrator(String dataDirectory, List<MigrationStep> steps, int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive");
+        }
+        this.directory = Paths.get(dataDirectory);
+        this.workers = workers;
+        for (MigrationStep step : steps) {
+            List<MigrationStep> fileSteps = this.steps.computeIfAbsent(step.getFileName(), name -> new ArrayList<>());
+            if (step.getFromVersion() != fileSteps.size() + 1) {
+                throw new IllegalArgumentException("Expected step from version " + (fileSteps.size() + 1)
+                        + " of " + step.getFileName() + ", got " + step.getFromVersion());
+            }
+            fileSteps.add(step);
+        }
+    }
+
+    /**
+     * The schema changes made to the models so far
+     * @return steps in version order
+     */
+    public static List<MigrationStep> defaultSteps() {
+        return List.of(
+                new MigrationStep("books.json", 1, "drop the type field, books are always BOOK", record ->
+                        record.remove("type")),
+                new MigrationStep("cdloans.json", 1, "store date-only dates as start of day", record -> {
+                    for (String field : List.of("borrowDate", "dueDate", "returnDate")) {
+                        JsonElement value = record.get(field);
+                        if (value != null && value.isJsonPrimitive()
+                                && value.getAsString().matches("\\d{4}-\\d{2}-\\d{2}")) {
+                            record.addProperty(field, value.getAsString() + "T00:00:00");
+                        }
+                    }
+                }),
+                new MigrationStep("cdfines.json", 1, "persist remainingAmount", record -> {
+                    if (!record.has("remainingAmount")) {
+                        double remaining = number(record, "amount") - number(record, "paidAmount");
+                        record.addProperty("remainingAmount", Math.max(0, remaining));
+                    }
+                }));
+    }
+
+    private static double number(JsonObject record, String field) {
+        JsonElement value = record.get(field);
+        return value != null && value.isJsonPrimitive() ? value.getAsDouble() : 0;
+    }
+
+    /**
+     * Version a file is at
+     * @param fileName data file name, e.g. "books.json"
+     * @return version from the schema file, 1 if not listed
+     * @throws IOException if the schema file cannot be read
+     */
+    public synchronized int getVersion(String fileName) throws IOException {
+        return readVersions().getOrDefault(fileName, 1);
+    }
+
+    /**
+     * Version a file has after all registered steps
+     * @param fileName data file name
+     * @return target version
+     */
+    public int getTargetVersion(String fileName) {
+        return steps.getOrDefault(fileName, List.of()).size() + 1;
+    }
+
+    /**
+     * Migrate every file that is behind, several at a time, and wait for all of them.
+     * A failing file keeps its old content and version and does not stop the others.
+     * @return what was migrated
+     */
+    public Report migrate() {
+        Report report = new Report();
+        List<String> pending = new ArrayList<>();
+        try {
+            Map<String, Integer> versions = readVersions();
+            for (String fileName : steps.keySet()) {
+                if (versions.getOrDefault(fileName, 1) < getTargetVersion(fileName)) {
+                    pending.add(fileName);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            report.failures.put(SCHEMA_FILE, String.valueOf(e.getMessage()));
+            return report;
+        }
+        if (pending.isEmpty()) {
+            return report;
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, pending.size()), task -> {
+            Thread thread = new Thread(task, "migration-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (String fileName : pending) {
+                futures.add(executor.submit(() -> migrateFile(fileName)));
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                String fileName = pending.get(i);
+                try {
+                    report.migrated.put(fileName, futures.get(i).get());
+                } catch (ExecutionException e) {
+                    report.failures.put(fileName, String.valueOf(e.getCause().getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    report.failures.put(fileName, "interrupted");
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return report;
+    }
+
+    /**
+     * Stream one file through its pending steps and record the new version
+     * @return number of records written
+     */
+    private long migrateFile(String fileName) throws IOException {
+        Path source = directory.resolve(fileName);
+        return new DataFileLock(source.toString()).write(unused -> {
+            int from = getVersion(fileName);
+            List<MigrationStep> fileSteps = steps.get(fileName);
+            List<MigrationStep> pending = fileSteps.subList(Math.min(from - 1, fileSteps.size()), fileSteps.size());
+            long records = 0;
+            Path snapshot = Paths.get(BinarySnapshot.pathFor(source.toString()));
+            if (Files.isRegularFile(snapshot) && (!Files.exists(source)
+                    || Files.getLastModifiedTime(snapshot).compareTo(Files.getLastModifiedTime(source)) >= 0)) {
+                throw new IOException("the binary snapshot is newer; run SnapshotConverter to-json first");
+            }
+            if (Files.isRegularFile(source) && Files.size(source) > 0) {
+                Path target = directory.resolve(fileName + ".migrating");
+                try {
+                    records = rewrite(source, target, gsonFor(fileName), pending);
+                    DataFileChecksum.invalidate(source.toString());
+                    FileWrites.replace(target, source, true);
+                } finally {
+                    Files.deleteIfExists(target);
+                }
+            }
+            setVersion(fileName, getTargetVersion(fileName));
+            return records;
+        });
+    }
+
+    private static long rewrite(Path source, Path target, Gson gson, List<MigrationStep> pending) throws IOException {
+        boolean compressed = isGzip(source);
+        long records = 0;
+        try (JsonReader reader = new JsonReader(openReader(source, compressed));
+             JsonWriter writer = gson.newJsonWriter(openWriter(target, compressed))) {
+            reader.setLenient(true);
+            if (reader.peek() == JsonToken.END_DOCUMENT) {
+                writer.beginObject().endObject();
+                return 0;
+            }
+            reader.beginObject();
+            writer.beginObject();
+            while (reader.hasNext()) {
+                String id = reader.nextName();
+                JsonElement record = JsonParser.parseReader(reader);
+                if (record.isJsonObject()) {
+                    for (MigrationStep step : pending) {
+                        step.apply(record.getAsJsonObject());
+                    }
+                }
+                writer.name(id);
+                gson.toJson(record, writer);
+                records++;
+            }
+            reader.endObject();
+            writer.endObject();
+        }
+        return records;
+    }
+
+    private static boolean isGzip(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return in.read() == GZIP_MAGIC_1 && in.read() == GZIP_MAGIC_2;
+        }
+    }
+
+    private static BufferedReader openReader(Path file, boolean compressed) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), STREAM_BUFFER_SIZE);
+        if (compressed) {
+            in = new GZIPInputStream(in, STREAM_BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE);
+    }
+
+    private static BufferedWriter openWriter(Path file, boolean compressed) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (compressed) {
+            out = new GZIPOutputStream(out, STREAM_BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * Gson formatted like the repository that owns the file
+     */
+    private static Gson gsonFor(String fileName) {
+        for (DataFile<?> dataFile : DataFile.ALL) {
+            if (dataFile.getFileName().equals(fileName)) {
+                return dataFile.gson();
+            }
+        }
+        return GsonUtils.createCompactGson();
+    }
+
+    private Map<String, Integer> readVersions() throws IOException {
+        Path schema = directory.resolve(SCHEMA_FILE);
+        if (!Files.isRegularFile(schema)) {
+            return new TreeMap<>();
+        }
+        Map<String, Integer> versions = manifestGson.fromJson(Files.readString(schema),
+                TypeToken.getParameterized(TreeMap.class, String.class, Integer.class).getType());
+        return versions != null ? versions : new TreeMap<>();
+    }
+
+    private synchronized void setVersion(String fileName, int version) throws IOException {
+        Map<String, Integer> versions = readVersions();
+        versions.put(fileName, version);
+        FileWrites.write(directory.resolve(SCHEMA_FILE).toString(), manifestGson.toJson(versions), true);
+    }
+
+    /**
+     * Outcome of one migration run
+     */
+    public static final class Report {
+        private final Map<String, Long> migrated = new LinkedHashMap<>();
+        private final Map<String, String> failures = new LinkedHashMap<>();
+
+        /**
+         * Records written per migrated file
+         * @return record count by file name
+         */
+        public Map<String, Long> getMigrated() {
+            return Collections.unmodifiableMap(migrated);
+        }
+
+        /**
+         * Error message per file that could not be migrated
+         * @return failures by file name
+         */
+        public Map<String, String> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        public boolean isSuccessful() {
+            return failures.isEmpty();
+        }
+
+        /**
+         * Print one line per file
+         * @param out target stream
+         */
+        public void print(PrintStream out) {
+            for (Map.Entry<String, Long> entry : migrated.entrySet()) {
+                out.printf("Migrated %-14s %,d records%n", entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, String> entry : failures.entrySet()) {
+                out.printf("Failed   %-14s %s%n", entry.getKey(), entry.getValue());
+            }
+            if (migrated.isEmpty() && failures.isEmpty()) {
+                out.println("All data files are up to date");
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        SchemaMigrator migrator = new SchemaMigrator(
+                args.length > 0 ? args[0] : DataFile.DEFAULT_DIRECTORY,
+                defaultSteps(),
+                args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors());
+        Report report = migrator.migrate();
+        report.print(System.out);
+        System.exit(report.isSuccessful() ? 0 : 1);
+    }
+}
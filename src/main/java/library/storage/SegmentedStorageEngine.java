@@ -0,0 +1,284 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.utils.JsonFileHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Storage engine that splits the records over fixed-size segment files in one directory.
+ * A record stays in the segment it was first written to; a segment is marked dirty
+ * whenever the repository saves, updates or deletes one of its records, and only
+ * dirty segments are rewritten. Changing one record therefore costs one segment
+ * write instead of a rewrite of the whole data set.
+ * <p>
+ * With write-through (the default) every change writes its segment immediately,
+ * like the single-file engine. Otherwise changes stay in memory until {@link #flush()}.
+ * @param <T> entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public class SegmentedStorageEngine<T> implements StorageEngine<T> {
+    public static final int DEFAULT_SEGMENT_SIZE = 1000;
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d{5})\\.json");
+
+    private final Path directory;
+    private final Class<T> type;
+    private final Gson gson;
+    private final JsonFileHandler fileHandler;
+    private final int segmentSize;
+    private final boolean writeThrough;
+
+    private final List<Map<String, T>> segments = new ArrayList<>();
+    private final Map<String, Integer> segmentOf = new HashMap<>();
+    private final TreeSet<Integer> segmentsWithRoom = new TreeSet<>();
+    private final BitSet dirty = new BitSet();
+    private long segmentWrites;
+    private LoadReport loadReport;
+
+    public SegmentedStorageEngine(String directory, Class<T> type, Gson gson, JsonFileHandler fileHandler) {
+        this(directory, type, gson, fileHandler, DEFAULT_SEGMENT_SIZE, true);
+    }
+
+    /**
+     * @param directory directory holding the segment files
+     * @param segmentSize maximum number of records per segment
+     * @param writeThrough true to write a segment on every change, false to wait for {@link #flush()}
+     */
+    public SegmentedStorageEngine(String directory, Class<T> type, Gson gson, JsonFileHandler fileHandler,
+                                  int segmentSize, boolean writeThrough) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        this.directory = Paths.get(directory);
+        this.type = type;
+        this.gson = gson;
+        this.fileHandler = fileHandler;
+        this.segmentSize = segmentSize;
+        this.writeThrough = writeThrough;
+    }
+
+    /**
+     * Replace the records in memory with the content of the segment files
+     * @return this engine
+     */
+    public synchronized SegmentedStorageEngine<T> load() {
+        segments.clear();
+        segmentOf.clear();
+        segmentsWithRoom.clear();
+        dirty.clear();
+        loadReport = new LoadReport(directory.toString());
+
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> listing = Files.list(directory)) {
+                listing.filter(path -> SEGMENT_FILE.matcher(path.getFileName().toString()).matches())
+                        .sorted()
+                        .forEach(files::add);
+            } catch (IOException e) {
+                loadReport.markIncomplete(e.getMessage());
+            }
+        }
+
+        for (Path file : files) {
+            Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+            matcher.matches();
+            int index = Integer.parseInt(matcher.group(1));
+            while (segments.size() <= index) {
+                segments.add(new LinkedHashMap<>());
+            }
+            Map<String, T> segment = segments.get(index);
+            loadReport.include(fileHandler.readRecords(file.toString(), gson, type, segment));
+            for (String id : segment.keySet()) {
+                Integer previous = segmentOf.put(id, index);
+                if (previous != null) {
+                    // a record found twice keeps the copy in the later segment
+                    segments.get(previous).remove(id);
+                    dirty.set(previous);
+                }
+            }
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.get(i).size() < segmentSize) {
+                segmentsWithRoom.add(i);
+            }
+        }
+        loadReport.printErrors();
+        return this;
+    }
+
+    private int segmentForNewRecord() {
+        if (segmentsWithRoom.isEmpty()) {
+            segments.add(new LinkedHashMap<>());
+            segmentsWithRoom.add(segments.size() - 1);
+        }
+        return segmentsWithRoom.first();
+    }
+
+    private void store(String id, T entity) {
+        Integer index = segmentOf.get(id);
+        if (index == null) {
+            index = segmentForNewRecord();
+            segmentOf.put(id, index);
+        }
+        Map<String, T> segment = segments.get(index);
+        segment.put(id, entity);
+        if (segment.size() >= segmentSize) {
+            segmentsWithRoom.remove(index);
+        }
+        dirty.set(index);
+    }
+
+    private boolean remove(String id) {
+        Integer index = segmentOf.remove(id);
+        if (index == null) {
+            return false;
+        }
+        segments.get(index).remove(id);
+        segmentsWithRoom.add(index);
+        dirty.set(index);
+        return true;
+    }
+
+    private boolean changed() {
+        return !writeThrough || writeDirtySegments();
+    }
+
+    private boolean writeDirtySegments() {
+        boolean success = true;
+        for (int index = dirty.nextSetBit(0); index >= 0; index = dirty.nextSetBit(index + 1)) {
+            if (fileHandler.writeRecords(segmentPath(index), gson, segments.get(index))) {
+                dirty.clear(index);
+                segmentWrites++;
+            } else {
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    private String segmentPath(int index) {
+        return directory.resolve(String.format("segment-%05d.json", index)).toString();
+    }
+
+    @Override
+    public synchronized T get(String id) {
+        Integer index = segmentOf.get(id);
+        return index == null ? null : segments.get(index).get(id);
+    }
+
+    @Override
+    public synchronized boolean put(String id, T entity) {
+        store(id, entity);
+        return changed();
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        return remove(id) && changed();
+    }
+
+    @Override
+    public synchronized boolean contains(String id) {
+        return segmentOf.containsKey(id);
+    }
+
+    @Override
+    public synchronized List<T> scan(Predicate<? super T> filter) {
+        List<T> result = new ArrayList<>();
+        for (Map<String, T> segment : segments) {
+            for (T entity : segment.values()) {
+                if (filter.test(entity)) {
+                    result.add(entity);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized boolean putAll(Map<String, ? extends T> entities) {
+        for (Map.Entry<String, ? extends T> entry : entities.entrySet()) {
+            store(entry.getKey(), entry.getValue());
+        }
+        return changed();
+    }
+
+    @Override
+    public synchronized boolean deleteAll(Collection<String> ids) {
+        for (String id : ids) {
+            remove(id);
+        }
+        return changed();
+    }
+
+    @Override
+    public synchronized boolean clear() {
+        for (int i = 0; i < segments.size(); i++) {
+            segments.get(i).clear();
+            segmentsWithRoom.add(i);
+            dirty.set(i);
+        }
+        segmentOf.clear();
+        return changed();
+    }
+
+    @Override
+    public synchronized int size() {
+        return segmentOf.size();
+    }
+
+    @Override
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+
+    /**
+     * Write every dirty segment and wait for the handler to reach the disk
+     */
+    @Override
+    public synchronized boolean flush() {
+        return writeDirtySegments() && fileHandler.sync();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized int getDirtySegmentCount() {
+        return dirty.cardinality();
+    }
+
+    /**
+     * Number of segment files written since the engine was created
+     * @return segment writes
+     */
+    public synchronized long getSegmentWrites() {
+        return segmentWrites;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+}
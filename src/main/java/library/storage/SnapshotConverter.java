@@ -0,0 +1,97 @@
+package library.storage;
+
+import library.utils.JsonFileHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts the library data files between JSON and binary snapshots.
+ * Usage: {@code SnapshotConverter to-binary|to-json|verify [dataDirectory]}
+ * @author Library Team
+ * @version 1.0
+ */
+public class SnapshotConverter {
+    private final String dataDirectory;
+    private final JsonFileHandler fileHandler;
+
+    public SnapshotConverter(String dataDirectory, JsonFileHandler fileHandler) {
+        this.dataDirectory = dataDirectory;
+        this.fileHandler = fileHandler;
+    }
+
+    /**
+     * Write a binary snapshot for every data file
+     * @return true if all snapshots were written
+     */
+    public boolean toBinary() {
+        boolean success = true;
+        for (JsonFileStorageEngine<?> engine : engines()) {
+            success &= engine.load().writeBinarySnapshot();
+        }
+        return success;
+    }
+
+    /**
+     * Write every data file back as JSON from its most recent format
+     * @return true if all files were written
+     */
+    public boolean toJson() {
+        boolean success = true;
+        for (JsonFileStorageEngine<?> engine : engines()) {
+            success &= engine.load().writeJson();
+        }
+        return success;
+    }
+
+    /**
+     * Check the checksums of every binary snapshot in the data directory
+     * @return true if all existing snapshots are intact
+     */
+    public boolean verify() {
+        boolean success = true;
+        for (DataFile<?> dataFile : DataFile.ALL) {
+            String snapshotPath = BinarySnapshot.pathFor(dataFile.path(dataDirectory));
+            if (!Files.isRegularFile(Paths.get(snapshotPath))) {
+                continue;
+            }
+            try {
+                LoadReport report = new BinarySnapshot<>(dataFile.getType()).verify(snapshotPath);
+                report.printErrors();
+                System.out.println(snapshotPath + ": " + report.getLoadedCount() + " records"
+                        + (report.isComplete() ? ", intact" : ", damaged"));
+                success &= report.isComplete();
+            } catch (IOException e) {
+                System.err.println("Error verifying " + snapshotPath + ": " + e.getMessage());
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    private List<JsonFileStorageEngine<?>> engines() {
+        List<JsonFileStorageEngine<?>> engines = new ArrayList<>();
+        for (DataFile<?> dataFile : DataFile.ALL) {
+            engines.add(dataFile.engine(dataDirectory, fileHandler));
+        }
+        return engines;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0 || !List.of("to-binary", "to-json", "verify").contains(args[0])) {
+            System.err.println("Usage: SnapshotConverter to-binary|to-json|verify [dataDirectory]");
+            System.exit(2);
+        }
+        SnapshotConverter converter = new SnapshotConverter(
+                args.length > 1 ? args[1] : DataFile.DEFAULT_DIRECTORY, new JsonFileHandler());
+        if (args[0].equals("verify")) {
+            System.exit(converter.verify() ? 0 : 1);
+        }
+        boolean success = args[0].equals("to-binary") ? converter.toBinary() : converter.toJson();
+        System.out.println(success ? "Conversion finished" : "Conversion finished with errors");
+        System.exit(success ? 0 : 1);
+    }
+}
@@ -0,0 +1,384 @@
+package library.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable file of records sorted by ID, written once by a memtable flush or a
+ * compaction. Deleted records are kept as tombstones until a compaction into
+ * the last level drops them.
+ * <p>
+ * Layout: the entries, then a sparse index holding the key and offset of every
+ * {@value #INDEX_INTERVAL}th entry, then the Bloom filter of all keys, then a
+ * fixed footer. The index and filter are loaded on open, so a point lookup
+ * reads at most one block of entries from the file.
+ * @author Library Team
+ * @version 1.0
+ */
+final class SortedRun implements Closeable {
+    /** Value of a deleted record; compared by identity */
+    static final byte[] TOMBSTONE = new byte[0];
+    static final int INDEX_INTERVAL = 16;
+
+    private static final int MAGIC = 0x4C534D52; // "LSMR"
+    private static final int FOOTER_BYTES = 8 + 8 + 4 + 4;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final String[] indexKeys;
+    private final long[] indexOffsets;
+    private final long dataEnd;
+    private final int entryCount;
+    private final BloomFilter bloom;
+
+    private SortedRun(Path path, FileChannel channel, String[] indexKeys, long[] indexOffsets,
+                      long dataEnd, int entryCount, BloomFilter bloom) {
+        this.path = path;
+        this.channel = channel;
+        this.indexKeys = indexKeys;
+        this.indexOffsets = indexOffsets;
+        this.dataEnd = dataEnd;
+        this.entryCount = entryCount;
+        this.bloom = bloom;
+    }
+
+    /**
+     * Write a run from entries in key order and open it
+     * @param path file to create
+     * @param entries entries sorted by key, without duplicates
+     * @param expectedEntries upper bound of the entry count, sizes the Bloom filter
+     * @return opened run
+     * @throws IOException if the file cannot be written
+     */
+    static SortedRun write(Path path, Cursor entries, int expectedEntries) throws IOException {
+        BloomFilter bloom = new BloomFilter(Math.max(1, expectedEntries), BloomFilter.DEFAULT_BITS_PER_KEY);
+        List<String> indexKeys = new ArrayList<>();
+        List<Long> indexOffsets = new ArrayList<>();
+        long offset = 0;
+        int count = 0;
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), 65536));
+            while (entries.advance()) {
+                if (count % INDEX_INTERVAL == 0) {
+                    indexKeys.add(entries.key());
+                    indexOffsets.add(offset);
+                }
+                bloom.add(entries.key());
+                offset += writeEntry(data, entries.key(), entries.value());
+                count++;
+            }
+            long indexOffset = offset;
+            data.writeInt(indexKeys.size());
+            for (int i = 0; i < indexKeys.size(); i++) {
+                byte[] key = indexKeys.get(i).getBytes(StandardCharsets.UTF_8);
+                data.writeInt(key.length);
+                data.write(key);
+                data.writeLong(indexOffsets.get(i));
+            }
+            data.flush();
+            long bloomOffset = out.position();
+            bloom.writeTo(data);
+            data.writeLong(indexOffset);
+            data.writeLong(bloomOffset);
+            data.writeInt(count);
+            data.writeInt(MAGIC);
+            data.flush();
+            out.force(true);
+        }
+        return open(path);
+    }
+
+    /**
+     * Open an existing run, loading its index and Bloom filter
+     * @param path run file
+     * @return opened run
+     * @throws IOException if the file cannot be read or is not a run
+     */
+    static SortedRun open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FOOTER_BYTES) {
+                throw new IOException(path + " is not a sorted run");
+            }
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+            readFully(channel, footer, size - FOOTER_BYTES);
+            footer.flip();
+            long indexOffset = footer.getLong();
+            long bloomOffset = footer.getLong();
+            int count = footer.getInt();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a sorted run");
+            }
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel.position(indexOffset)), 65536));
+            String[] keys = new String[in.readInt()];
+            long[] offsets = new long[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                keys[i] = new String(key, StandardCharsets.UTF_8);
+                offsets[i] = in.readLong();
+            }
+            channel.position(bloomOffset);
+            BloomFilter bloom = BloomFilter.readFrom(new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel), 65536)));
+            return new SortedRun(path, channel, keys, offsets, indexOffset, count, bloom);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param key record ID
+     * @return false if the run certainly does not hold the key
+     */
+    boolean mightContain(String key) {
+        return bloom.mightContain(key);
+    }
+
+    /**
+     * Look a key up, reading the one block of entries that could hold it
+     * @param key record ID
+     * @return stored JSON, {@link #TOMBSTONE} if the record was deleted, or null if absent
+     * @throws IOException if the block cannot be read
+     */
+    byte[] find(String key) throws IOException {
+        int block = floorBlock(key);
+        if (block < 0) {
+            return null;
+        }
+        long start = indexOffsets[block];
+        long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        readFully(channel, buffer, start);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            byte[] keyBytes = new byte[buffer.getInt()];
+            buffer.get(keyBytes);
+            int length = buffer.getInt();
+            int comparison = new String(keyBytes, StandardCharsets.UTF_8).compareTo(key);
+            if (comparison == 0) {
+                if (length < 0) {
+                    return TOMBSTONE;
+                }
+                byte[] value = new byte[length];
+                buffer.get(value);
+                return value;
+            }
+            if (comparison > 0) {
+                return null;
+            }
+            buffer.position(buffer.position() + Math.max(length, 0));
+        }
+        return null;
+    }
+
+    /**
+     * Read the entries in key order. The file is read sequentially through its own stream.
+     * @return cursor; close it when done
+     * @throws IOException if the file cannot be opened
+     */
+    Cursor cursor() throws IOException {
+        InputStream stream = Files.newInputStream(path);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 65536));
+        return new Cursor() {
+            private int remaining = entryCount;
+            private String key;
+            private byte[] value;
+
+            @Override
+            public boolean advance() throws IOException {
+                if (remaining == 0) {
+                    return false;
+                }
+                remaining--;
+                byte[] keyBytes = new byte[in.readInt()];
+                in.readFully(keyBytes);
+                key = new String(keyBytes, StandardCharsets.UTF_8);
+                int length = in.readInt();
+                if (length < 0) {
+                    value = TOMBSTONE;
+                } else {
+                    value = new byte[length];
+                    in.readFully(value);
+                }
+                return true;
+            }
+
+            @Override
+            public String key() {
+                return key;
+            }
+
+            @Override
+            public byte[] value() {
+                return value;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Append one entry in the run and log format
+     * @return bytes written
+     */
+    static int writeEntry(OutputStream out, String key, byte[] value) throws IOException {
+        DataOutputStream data = out instanceof DataOutputStream ? (DataOutputStream) out : new DataOutputStream(out);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(keyBytes.length);
+        data.write(keyBytes);
+        if (value == TOMBSTONE) {
+            data.writeInt(-1);
+            return 8 + keyBytes.length;
+        }
+        data.writeInt(value.length);
+        data.write(value);
+        return 8 + keyBytes.length + value.length;
+    }
+
+    /**
+     * Read one entry written by {@link #writeEntry}
+     * @param in source holding the whole remaining input, e.g. a log batch in memory
+     * @param into receives the entry
+     * @return false at a clean end of the stream
+     * @throws EOFException if the stream ends inside an entry
+     * @throws IOException if the stream cannot be read or a length is impossible
+     */
+    static boolean readEntry(DataInputStream in, Map<String, byte[]> into) throws IOException {
+        int keyLength;
+        try {
+            keyLength = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        if (keyLength < 0 || keyLength > in.available()) {
+            throw new IOException("Bad key length " + keyLength);
+        }
+        byte[] key = new byte[keyLength];
+        in.readFully(key);
+        int length = in.readInt();
+        if (length < -1 || length > in.available()) {
+            throw new IOException("Bad value length " + length);
+        }
+        byte[] value = TOMBSTONE;
+        if (length >= 0) {
+            value = new byte[length];
+            in.readFully(value);
+        }
+        into.put(new String(key, StandardCharsets.UTF_8), value);
+        return true;
+    }
+
+    /**
+     * Cursor over the entries of a map in key order, e.g. a memtable
+     * @param entries sorted map of ID to JSON or {@link #TOMBSTONE}
+     * @return cursor
+     */
+    static Cursor cursor(Map<String, byte[]> entries) {
+        Iterator<Map.Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+        return new Cursor() {
+            private Map.Entry<String, byte[]> current;
+
+            @Override
+            public boolean advance() {
+                current = iterator.hasNext() ? iterator.next() : null;
+                return current != null;
+            }
+
+            @Override
+            public String key() {
+                return current.getKey();
+            }
+
+            @Override
+            public byte[] value() {
+                return current.getValue();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private int floorBlock(String key) {
+        int low = 0;
+        int high = indexKeys.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (indexKeys[middle].compareTo(key) <= 0) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of sorted run");
+            }
+        }
+    }
+
+    /**
+     * Entries in key order, from a run, a memtable or a merge of several
+     */
+    interface Cursor extends Closeable {
+        /**
+         * Move to the next entry
+         * @return false when there are no more entries
+         * @throws IOException if the entry cannot be read
+         */
+        boolean advance() throws IOException;
+
+        String key();
+
+        /**
+         * @return stored JSON or {@link #TOMBSTONE}
+         */
+        byte[] value();
+    }
+}
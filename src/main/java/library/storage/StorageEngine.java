@@ -0,0 +1,180 @@
+package library.storage;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Storage for entities keyed by a string ID.
+ * Repositories keep their query logic and delegate every read and write to an
+ * engine, so a different engine can be plugged in without touching the services.
+ * @param <T> entity type
+ * @author Library Team
+ * @version 1.0
+ */
+public interface StorageEngine<T> {
+
+    /**
+     * Find an entity by ID
+     * @param id entity ID
+     * @return entity or null if not found
+     */
+    T get(String id);
+
+    /**
+     * Insert or replace an entity
+     * @param id entity ID
+     * @param entity entity to store
+     * @return true if the change was persisted, false otherwise
+     */
+    boolean put(String id, T entity);
+
+    /**
+     * Remove an entity
+     * @param id entity ID
+     * @return true if the entity existed and the removal was persisted
+     */
+    boolean delete(String id);
+
+    /**
+     * Check if an entity exists
+     * @param id entity ID
+     * @return true if stored
+     */
+    boolean contains(String id);
+
+    /**
+     * Return all entities accepted by a filter
+     * @param filter condition to match
+     * @return matching entities
+     */
+    List<T> scan(Predicate<? super T> filter);
+
+    /**
+     * Insert or replace several entities as one write
+     * @param entities entities keyed by ID
+     * @return true if the batch was persisted
+     */
+    boolean putAll(Map<String, ? extends T> entities);
+
+    /**
+     * Remove several entities as one write
+     * @param ids IDs to remove
+     * @return true if the batch was persisted
+     */
+    boolean deleteAll(Collection<String> ids);
+
+    /**
+     * Number of stored entities
+     * @return entity count
+     */
+    int size();
+
+    /**
+     * Return all entities
+     * @return every stored entity
+     */
+    default List<T> findAll() {
+        return scan(entity -> true);
+    }
+
+    /**
+     * Find entities whose key equals the given value.
+     * Engines that maintain an index with this name can answer without a full scan;
+     * the default implementation scans.
+     * @param index name of the indexed attribute, e.g. "userId"
+     * @param key value to look up
+     * @param keyOf reads the attribute from an entity
+     * @return matching entities
+     */
+    default List<T> findBy(String index, String key, Function<? super T, String> keyOf) {
+        return scan(entity -> key.equals(keyOf.apply(entity)));
+    }
+
+    /**
+     * Narrow to entities whose key sorts before the bound, e.g. ISO due dates before now.
+     * Entities without a key are included, so callers that re-check each result
+     * with their own rule see every entity that could match. Engines with an
+     * ordered index on this attribute answer with a range query; the default
+     * implementation scans.
+     * @param index name of the indexed attribute, e.g. "dueDate"
+     * @param bound exclusive upper bound
+     * @param keyOf reads the attribute from an entity
+     * @return matching entities
+     */
+    default List<T> findBefore(String index, String bound, Function<? super T, String> keyOf) {
+        return scan(entity -> {
+            String key = keyOf.apply(entity);
+            return key == null || key.compareTo(bound) < 0;
+        });
+    }
+
+    /**
+     * Up to {@code limit} entities whose key is not below {@code fromKey}, in key
+     * order, e.g. one page of a catalog listing. Engines with an ordered index on
+     * this attribute read only that page; the default implementation scans and sorts.
+     * @param index name of the indexed attribute, e.g. "title"
+     * @param fromKey inclusive lower bound
+     * @param limit maximum number of entities
+     * @param keyOf reads the attribute from an entity
+     * @return matching entities in key order
+     */
+    default List<T> findFrom(String index, String fromKey, int limit, Function<? super T, String> keyOf) {
+        List<T> matches = scan(entity -> {
+            String key = keyOf.apply(entity);
+            return key != null && key.compareTo(fromKey) >= 0;
+        });
+        matches.sort(Comparator.comparing(keyOf));
+        return matches.subList(0, Math.min(Math.max(limit, 0), matches.size()));
+    }
+
+    /**
+     * Remove every entity
+     * @return true if the removal was persisted
+     */
+    boolean clear();
+
+    /**
+     * Run an action once the records are available: right away for engines that
+     * load eagerly, on first access for lazy ones. Used for fix-ups after loading.
+     * @param action action receiving the loaded engine
+     */
+    default void whenLoaded(Consumer<? super StorageEngine<T>> action) {
+        action.accept(this);
+    }
+
+    /**
+     * Result of the last load, if the engine loads from a file
+     * @return load report or null
+     */
+    default LoadReport getLoadReport() {
+        return null;
+    }
+
+    /**
+     * Reload the records if another process changed the underlying data since
+     * they were loaded. Engines that do not detect outside changes return false.
+     * @return true if the records were reloaded
+     */
+    default boolean reloadIfChanged() {
+        return false;
+    }
+
+    /**
+     * Make sure every accepted write is on disk
+     * @return true if successful
+     */
+    default boolean flush() {
+        return true;
+    }
+
+    /**
+     * Release files and background resources
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,40 @@
+package library.storage;
+
+import java.util.function.Supplier;
+
+/**
+ * Helpers for working with storage engines.
+ * @author Library Team
+ * @version 1.0
+ */
+public final class StorageEngines {
+
+    private StorageEngines() {
+    }
+
+    /**
+     * Wrap an engine so it is only created and loaded on first access
+     * @param name name used in timings and log messages
+     * @param loader creates the loaded engine
+     * @param <T> entity type
+     * @return lazy engine
+     */
+    public static <T> LazyStorageEngine<T> lazy(String name, Supplier<? extends StorageEngine<T>> loader) {
+        return new LazyStorageEngine<>(name, loader);
+    }
+
+    /**
+     * Return the engine as a JSON file engine, for features only that format supports
+     * @param engine engine used by a repository
+     * @param <T> entity type
+     * @return the same engine
+     * @throws IllegalStateException if the engine is not file based
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JsonFileStorageEngine<T> json(StorageEngine<T> engine) {
+        if (!(engine instanceof JsonFileStorageEngine)) {
+            throw new IllegalStateException(engine.getClass().getSimpleName() + " is not a JSON file engine");
+        }
+        return (JsonFileStorageEngine<T>) engine;
+    }
+}
@@ -0,0 +1,259 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import library.utils.GsonUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Append-only journal of repository mutations.
+ * Every put or delete is appended as one compact JSON line, so the cost of a
+ * write depends on the size of the change instead of the size of the whole
+ * collection. The repository's regular JSON file acts as the snapshot: on
+ * startup the journal is replayed over it, and once enough entries have
+ * accumulated the snapshot is rewritten and the journal truncated.
+ * <p>
+ * Every append is forced to disk before it is reported as successful, so an
+ * accepted mutation survives a power failure.
+ * @author Library Team
+ * @version 1.0
+ */
+public class WriteAheadJournal {
+    public static final int DEFAULT_SNAPSHOT_THRESHOLD = 500;
+
+    private static final String OP_PUT = "PUT";
+    private static final String OP_DELETE = "DEL";
+
+    private final Path journalPath;
+    private final int snapshotThreshold;
+    private final Gson gson;
+    private int entriesSinceSnapshot;
+
+    public WriteAheadJournal(String journalPath) {
+        this(journalPath, DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+
+    public WriteAheadJournal(String journalPath, int snapshotThreshold) {
+        if (snapshotThreshold <= 0) {
+            throw new IllegalArgumentException("Snapshot threshold must be positive");
+        }
+        this.journalPath = Paths.get(journalPath);
+        this.snapshotThreshold = snapshotThreshold;
+        this.gson = GsonUtils.createCompactGson();
+    }
+
+    /**
+     * Create a journal that lives next to a data file,
+     * e.g. data/books.json is journaled to data/books.journal
+     * @param dataFilePath path of the snapshot file
+     * @return journal for that file
+     */
+    public static WriteAheadJournal forDataFile(String dataFilePath) {
+        String base = dataFilePath.endsWith(".json")
+                ? dataFilePath.substring(0, dataFilePath.length() - ".json".length())
+                : dataFilePath;
+        return new WriteAheadJournal(base + ".journal");
+    }
+
+    /**
+     * Append an insert or update of a record
+     * @param id record ID
+     * @param entity record state after the change
+     * @return true if the entry was appended, false otherwise
+     */
+    public synchronized boolean appendPut(String id, Object entity) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("op", OP_PUT);
+        entry.addProperty("id", id);
+        entry.add("data", gson.toJsonTree(entity));
+        return append(entry);
+    }
+
+    /**
+     * Append a deletion of a record
+     * @param id record ID
+     * @return true if the entry was appended, false otherwise
+     */
+    public synchronized boolean appendDelete(String id) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("op", OP_DELETE);
+        entry.addProperty("id", id);
+        return append(entry);
+    }
+
+    private boolean append(JsonObject entry) {
+        byte[] line = (gson.toJson(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            createParentDirectories();
+            try (FileChannel channel = FileChannel.open(journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            entriesSinceSnapshot++;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error appending to journal " + journalPath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Replay journal entries over a map loaded from the snapshot.
+     * A torn last line (crash during append) ends the replay and is cut off
+     * so later appends start from a clean record boundary. A complete last
+     * entry that lost only its newline is kept and the newline is added back,
+     * otherwise the next append would be glued onto it.
+     * @param target map to apply the entries to
+     * @param type record class
+     * @param <T> record type
+     * @return number of entries applied
+     */
+    public synchronized <T> int replay(Map<String, T> target, Class<T> type) {
+        entriesSinceSnapshot = 0;
+        if (!Files.exists(journalPath)) {
+            return 0;
+        }
+
+        long validBytes = 0;
+        boolean torn = false;
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    try {
+                        apply(JsonParser.parseString(line).getAsJsonObject(), target, type);
+                        entriesSinceSnapshot++;
+                    } catch (RuntimeException e) {
+                        torn = true;
+                        break;
+                    }
+                }
+                validBytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        } catch (IOException e) {
+            System.err.println("Error replaying journal " + journalPath + ": " + e.getMessage());
+            return entriesSinceSnapshot;
+        }
+
+        if (torn) {
+            System.err.println("Journal " + journalPath + " has a torn entry after "
+                    + entriesSinceSnapshot + " records, truncating");
+            truncate(validBytes);
+        } else {
+            terminateLastLine(validBytes);
+        }
+        return entriesSinceSnapshot;
+    }
+
+    private <T> void apply(JsonObject entry, Map<String, T> target, Class<T> type) {
+        String op = entry.get("op").getAsString();
+        String id = entry.get("id").getAsString();
+        if (OP_DELETE.equals(op)) {
+            target.remove(id);
+        } else if (OP_PUT.equals(op)) {
+            JsonElement data = entry.get("data");
+            target.put(id, gson.fromJson(data, type));
+        } else {
+            throw new IllegalStateException("Unknown journal operation: " + op);
+        }
+    }
+
+    /**
+     * Rewrite the snapshot and truncate the journal once the snapshot threshold is reached
+     * @param snapshotWriter writes the full snapshot, returns true on success
+     * @return true if no snapshot was due or it was written successfully
+     */
+    public boolean checkpointIfNeeded(BooleanSupplier snapshotWriter) {
+        if (!needsSnapshot()) {
+            return true;
+        }
+        return snapshotWriter.getAsBoolean() && reset();
+    }
+
+    /**
+     * Check if enough entries have accumulated to justify a new snapshot
+     * @return true if a snapshot is due
+     */
+    public synchronized boolean needsSnapshot() {
+        return entriesSinceSnapshot >= snapshotThreshold;
+    }
+
+    /**
+     * Discard all journal entries, called after the snapshot has been written
+     * @return true if the journal was truncated
+     */
+    public synchronized boolean reset() {
+        if (!truncate(0)) {
+            return false;
+        }
+        entriesSinceSnapshot = 0;
+        return true;
+    }
+
+    /**
+     * Every counted line includes its newline, so a count beyond the file size
+     * means the last line has none
+     */
+    private void terminateLastLine(long validBytes) {
+        try {
+            if (validBytes <= Files.size(journalPath)) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(new byte[] {'\n'}));
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            System.err.println("Error repairing journal " + journalPath + ": " + e.getMessage());
+        }
+    }
+
+    private boolean truncate(long size) {
+        if (!Files.exists(journalPath)) {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error truncating journal " + journalPath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void createParentDirectories() throws IOException {
+        Path parent = journalPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    public synchronized int getEntriesSinceSnapshot() {
+        return entriesSinceSnapshot;
+    }
+
+    public int getSnapshotThreshold() {
+        return snapshotThreshold;
+    }
+
+    public String getJournalPath() {
+        return journalPath.toString();
+    }
+}
@@ -0,0 +1,322 @@
+package library.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence with a bounded queue.
+ * Repository writes are queued and written by a background thread, so the
+ * console flow does not block on disk. When the queue is full, callers block
+ * until there is room again (backpressure). On close the queue is drained.
+ * <p>
+ * A write that fails stays pending and is retried when the queue is idle and
+ * at every flush, unless newer content for the file replaced it. A flush
+ * fsyncs everything written since the previous one, in every mode, and
+ * reports whether all of it is on disk now.
+ * @author Library Team
+ * @version 1.0
+ */
+public class WriteBehindQueue implements DeferredWriter {
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+    private final DurabilityMode mode;
+    private final long fsyncIntervalMillis;
+    private final BlockingQueue<PendingWrite> queue;
+    private final ConcurrentHashMap<String, String> pending = new ConcurrentHashMap<>();
+    private final Set<String> unsyncedFiles = new LinkedHashSet<>();
+    /** Latest content that could not be written, by file; only the writer thread changes it */
+    private final Map<String, String> failedWrites = new ConcurrentHashMap<>();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong maxFlushLagMillis = new AtomicLong();
+    private long lastFsyncMillis = System.currentTimeMillis();
+
+    public WriteBehindQueue(DurabilityMode mode) {
+        this(mode, DEFAULT_CAPACITY, DEFAULT_FSYNC_INTERVAL_MILLIS);
+    }
+
+    public WriteBehindQueue(DurabilityMode mode, int capacity, long fsyncIntervalMillis) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Durability mode is required");
+        }
+        if (capacity <= 0 || fsyncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Capacity and fsync interval must be positive");
+        }
+        this.mode = mode;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::runWriter, "write-behind");
+        writerThread.setDaemon(true);
+        if (mode != DurabilityMode.SYNC) {
+            writerThread.start();
+        }
+    }
+
+    @Override
+    public boolean submit(String filePath, String content) {
+        if (closed) {
+            return false;
+        }
+        if (mode == DurabilityMode.SYNC) {
+            return write(filePath, content, true);
+        }
+
+        pending.put(filePath, content);
+        try {
+            queue.put(new PendingWrite(filePath, content, null, false));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.remove(filePath, content);
+            return false;
+        }
+    }
+
+    @Override
+    public String pendingContent(String filePath) {
+        return pending.get(filePath);
+    }
+
+    @Override
+    public boolean flush() {
+        if (mode == DurabilityMode.SYNC) {
+            // every write was forced and reported to its caller
+            return true;
+        }
+        if (!writerThread.isAlive()) {
+            return failedWrites.isEmpty();
+        }
+        return awaitBarrier(false);
+    }
+
+    /**
+     * Queue a barrier and wait until the writer has passed it
+     * @param last true for the barrier that stops the writer
+     * @return true if everything before the barrier was written and synced
+     */
+    private boolean awaitBarrier(boolean last) {
+        CompletableFuture<Boolean> barrier = new CompletableFuture<>();
+        try {
+            queue.put(new PendingWrite(null, null, barrier, last));
+            while (true) {
+                try {
+                    return barrier.get(fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (!writerThread.isAlive()) {
+                        // queued after the writer stopped; nothing will pass it
+                        return barrier.isDone() ? barrier.join() : failedWrites.isEmpty();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            PendingWrite next;
+            try {
+                next = queue.poll(fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (next == null) {
+                retryFailed();
+                fsyncIfDue();
+                continue;
+            }
+
+            if (next.last) {
+                // writes that raced with close() may still follow the last barrier
+                PendingWrite rest;
+                while ((rest = queue.poll()) != null) {
+                    handle(rest);
+                }
+                next.barrier.complete(retryFailed() && fsyncUnsynced());
+                return;
+            }
+            handle(next);
+        }
+    }
+
+    private void handle(PendingWrite next) {
+        if (next.barrier != null) {
+            boolean written = retryFailed();
+            boolean synced = fsyncUnsynced();
+            next.barrier.complete(written && synced);
+            return;
+        }
+        long lag = (System.nanoTime() - next.enqueuedAtNanos) / 1_000_000;
+        maxFlushLagMillis.accumulateAndGet(lag, Math::max);
+        writeBehind(next.filePath, next.content);
+        fsyncIfDue();
+    }
+
+    private void writeBehind(String filePath, String content) {
+        // newer content replaces a failed write of the same file
+        failedWrites.remove(filePath);
+        if (write(filePath, content, false)) {
+            unsyncedFiles.add(filePath);
+            pending.remove(filePath, content);
+        } else if (content.equals(pending.get(filePath))) {
+            failedWrites.put(filePath, content);
+        }
+    }
+
+    /**
+     * Write the failed files again
+     * @return true if nothing is left failed
+     */
+    private boolean retryFailed() {
+        for (Map.Entry<String, String> failed : new ArrayList<>(failedWrites.entrySet())) {
+            writeBehind(failed.getKey(), failed.getValue());
+        }
+        return failedWrites.isEmpty();
+    }
+
+    private boolean write(String filePath, String content, boolean force) {
+        try {
+            DataFileChecksum.invalidate(filePath);
+            FileWrites.write(filePath, content, force);
+            writtenCount.incrementAndGet();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failedCount.incrementAndGet();
+            System.err.println("Error writing " + filePath + " behind: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void fsyncIfDue() {
+        if (mode == DurabilityMode.PERIODIC_FSYNC
+                && System.currentTimeMillis() - lastFsyncMillis >= fsyncIntervalMillis) {
+            fsyncUnsynced();
+        }
+    }
+
+    private boolean fsyncUnsynced() {
+        boolean success = true;
+        for (String filePath : unsyncedFiles) {
+            try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.WRITE)) {
+                channel.force(false);
+            } catch (IOException e) {
+                System.err.println("Error syncing " + filePath + ": " + e.getMessage());
+                success = false;
+            }
+        }
+        unsyncedFiles.clear();
+        lastFsyncMillis = System.currentTimeMillis();
+        return success;
+    }
+
+    /**
+     * Stop accepting writes, drain the queue and fsync what was written
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        // set before the last barrier, so no write is accepted that the writer would not reach
+        closed = true;
+        if (mode != DurabilityMode.SYNC && writerThread.isAlive()) {
+            awaitBarrier(true);
+        }
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Number of writes waiting for the background thread
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (PendingWrite write : queue) {
+            if (write.barrier == null) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * How long the oldest queued write has been waiting
+     * @return lag in milliseconds, 0 when the queue is empty
+     */
+    public long getFlushLagMillis() {
+        for (PendingWrite write : queue) {
+            if (write.barrier == null) {
+                return (System.nanoTime() - write.enqueuedAtNanos) / 1_000_000;
+            }
+        }
+        return 0;
+    }
+
+    public long getMaxFlushLagMillis() {
+        return maxFlushLagMillis.get();
+    }
+
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Total number of failed write attempts, including retries
+     * @return failure count
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public DurabilityMode getMode() {
+        return mode;
+    }
+
+    private static final class PendingWrite {
+        private final String filePath;
+        private final String content;
+        private final CompletableFuture<Boolean> barrier;
+        /** Barrier queued by close(); the writer stops after it */
+        private final boolean last;
+        private final long enqueuedAtNanos = System.nanoTime();
+
+        private PendingWrite(String filePath, String content, CompletableFuture<Boolean> barrier, boolean last) {
+            this.filePath = filePath;
+            this.content = content;
+            this.barrier = barrier;
+            this.last = last;
+        }
+    }
+}
@@ -2,11 +2,14 @@ package library.utils;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import library.serialization.GeneratedJsonAdapters;
 import java.time.LocalDateTime;
 
 /**
  * Utility class for creating configured Gson instances.
- * Provides support for LocalDateTime through a custom adapter.
+ * Provides support for LocalDateTime through a custom adapter and registers the
+ * build-time generated adapters of the models, so they are (de)serialized
+ * without reflection.
  */
 public final class GsonUtils {
 
@@ -26,6 +29,7 @@ public final class GsonUtils {
     public static Gson createGson() {
         return new GsonBuilder()
                 .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapterFactory(new GeneratedJsonAdapters())
                 .setPrettyPrinting()
                 .create();
     }
@@ -39,6 +43,7 @@ public final class GsonUtils {
     public static Gson createCompactGson() {
         return new GsonBuilder()
                 .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapterFactory(new GeneratedJsonAdapters())
                 .create();
     }
 }
@@ -0,0 +1,194 @@
+package library.utils;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free generator of unique 64-bit IDs that increase with creation time.
+ * <p>
+ * Layout: 41 bits of milliseconds since 2024-01-01 UTC, 10 bits of node number
+ * and a 12-bit sequence, so one node hands out 4096 IDs per millisecond. When a
+ * millisecond runs out of sequence numbers, or the clock steps back, the
+ * generator continues on the following millisecond instead of waiting, so IDs
+ * never repeat and never decrease.
+ * <p>
+ * As strings the IDs keep the repository prefix and encode the number in
+ * 11 fixed-width base-62 characters, e.g. {@code BOOK_0AbC12xYz09}. The
+ * characters are in ASCII order, so string order equals creation order.
+ * @author Library Team
+ * @version 1.0
+ */
+public final class IdGenerator {
+    /** 2024-01-01T00:00:00Z */
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    public static final int MAX_NODE = 1023;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 11;
+    private static final char[] ALPHABET =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private static final IdGenerator SHARED = new IdGenerator(
+            configuredNode(System.getProperty("library.idNode"), ProcessHandle.current().pid()),
+            System::currentTimeMillis);
+
+    private final long node;
+    private final LongSupplier clock;
+    /** Last timestamp and sequence, packed as (millis since epoch << 12) | sequence */
+    private final AtomicLong last = new AtomicLong(-1);
+
+    /**
+     * @param node number of this process, 0 to 1023, when several write the same data
+     * @param clock current time in epoch milliseconds
+     */
+    public IdGenerator(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be between 0 and " + MAX_NODE);
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    /**
+     * Generator used by the repositories; its node comes from the system property library.idNode,
+     * or from the process ID when the property is not set
+     * @return shared generator
+     */
+    public static IdGenerator shared() {
+        return SHARED;
+    }
+
+    /**
+     * Node for the shared generator. Without a configured node the low bits of the
+     * process ID are used, so processes running side by side get different nodes.
+     * @param property value of library.idNode, may be null
+     * @param pid ID of the current process
+     * @return node between 0 and {@link #MAX_NODE}
+     */
+    static int configuredNode(String property, long pid) {
+        int fallback = (int) (pid & MAX_NODE);
+        if (property == null || property.isBlank()) {
+            return fallback;
+        }
+        try {
+            int node = Integer.parseInt(property.trim());
+            if (node >= 0 && node <= MAX_NODE) {
+                return node;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.err.println("Invalid library.idNode '" + property + "': must be between 0 and " + MAX_NODE
+                + ", using node " + fallback);
+        return fallback;
+    }
+
+    /**
+     * Next numeric ID
+     * @return ID greater than every ID this generator returned before
+     */
+    public long next() {
+        while (true) {
+            long previous = last.get();
+            long now = Math.max(0, clock.getAsLong() - EPOCH_MILLIS);
+            long candidate = now << SEQUENCE_BITS;
+            if (candidate <= previous) {
+                // same millisecond, clock behind, or sequence used up: continue after the last value
+                candidate = previous + 1;
+            }
+            if (last.compareAndSet(previous, candidate)) {
+                long millis = candidate >>> SEQUENCE_BITS;
+                long sequence = candidate & SEQUENCE_MASK;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    /**
+     * Next ID as a string
+     * @param prefix entity prefix, e.g. "BOOK"
+     * @return e.g. BOOK_0AbC12xYz09
+     */
+    public String nextId(String prefix) {
+        return prefix + "_" + encode(next());
+    }
+
+    /**
+     * Smallest string ID with this prefix created at or after the given time,
+     * for range scans over IDs
+     * @param prefix entity prefix
+     * @param time creation time
+     * @return lower bound ID
+     */
+    public static String lowerBound(String prefix, Instant time) {
+        long millis = Math.max(0, time.toEpochMilli() - EPOCH_MILLIS);
+        return prefix + "_" + encode(millis << (NODE_BITS + SEQUENCE_BITS));
+    }
+
+    /**
+     * Creation time of an ID
+     * @param id numeric ID
+     * @return time the ID was generated
+     */
+    public static Instant timeOf(long id) {
+        return Instant.ofEpochMilli((id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS);
+    }
+
+    /**
+     * Node that generated an ID
+     * @param id numeric ID
+     * @return node number
+     */
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE);
+    }
+
+    /**
+     * Fixed-width base-62 encoding that sorts like the number
+     * @param id non-negative ID
+     * @return 11 characters
+     */
+    public static String encode(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID must not be negative");
+        }
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id % ALPHABET.length)];
+            id /= ALPHABET.length;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Numeric ID from a string ID, with or without prefix
+     * @param id e.g. BOOK_0AbC12xYz09
+     * @return numeric ID
+     * @throws IllegalArgumentException if the ID was not made by this generator
+     */
+    public static long decode(String id) {
+        String encoded = id.substring(id.lastIndexOf('_') + 1);
+        if (encoded.length() != ENCODED_LENGTH) {
+            throw new IllegalArgumentException("Not a generated ID: " + id);
+        }
+        long value = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'A' && c <= 'Z') {
+                digit = c - 'A' + 10;
+            } else if (c >= 'a' && c <= 'z') {
+                digit = c - 'a' + 36;
+            } else {
+                throw new IllegalArgumentException("Not a generated ID: " + id);
+            }
+            value = value * ALPHABET.length + digit;
+        }
+        return value;
+    }
+}
@@ -1,9 +1,34 @@
 package library.utils;
 
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import library.storage.DataFileChecksum;
+import library.storage.DeferredWriter;
+import library.storage.FileWrites;
+import library.storage.LoadReport;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Utility class for handling JSON file operations
@@ -11,6 +36,47 @@ import java.nio.file.Paths;
  * @version 1.0
  */
 public class JsonFileHandler {
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    private DeferredWriter deferredWriter;
+    private ByteBuffer writeBuffer;
+    private boolean compressed;
+
+    public JsonFileHandler() {
+    }
+
+    /**
+     * Create a handler whose writes go through a deferred writer,
+     * e.g. a {@link library.storage.GroupCommitScheduler}
+     * @param deferredWriter layer that performs the actual file writes
+     */
+    public JsonFileHandler(DeferredWriter deferredWriter) {
+        this.deferredWriter = deferredWriter;
+    }
+
+    public DeferredWriter getDeferredWriter() {
+        return deferredWriter;
+    }
+
+    public void setDeferredWriter(DeferredWriter deferredWriter) {
+        this.deferredWriter = deferredWriter;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Write files as compact, GZIP-compressed JSON.
+     * Reading detects the format per file, so plain and compressed files can be mixed.
+     * Writes that go through a deferred writer stay uncompressed.
+     * @param compressed true to compress written files
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
     
     /**
      * Read content from file
@@ -18,15 +84,148 @@ public class JsonFileHandler {
      * @return file content as string
      */
     public String readFromFile(String filePath) {
+        if (deferredWriter != null) {
+            String pending = deferredWriter.pendingContent(filePath);
+            if (pending != null) {
+                return pending;
+            }
+        }
         try {
             createFileIfNotExists(filePath);
-            return new String(Files.readAllBytes(Paths.get(filePath)));
+            byte[] bytes = Files.readAllBytes(Paths.get(filePath));
+            if (isGzip(bytes)) {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes), STREAM_BUFFER_SIZE)) {
+                    return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+            return new String(bytes);
         } catch (IOException e) {
             System.err.println("Error reading file " + filePath + ": " + e.getMessage());
             return "";
         }
     }
     
+    private static boolean isGzip(byte[] bytes) {
+        return bytes.length >= 2 && (bytes[0] & 0xff) == GZIP_MAGIC_1 && (bytes[1] & 0xff) == GZIP_MAGIC_2;
+    }
+
+    /**
+     * Open a buffered reader over a file channel, or over the pending
+     * content when the latest write has not reached the disk yet.
+     * Compressed files are decompressed while reading
+     * @param filePath path to the file
+     * @return reader positioned at the start of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public Reader openReader(String filePath) throws IOException {
+        String pending = pendingContent(filePath);
+        if (pending != null) {
+            return new StringReader(pending);
+        }
+        return openFile(filePath, null);
+    }
+
+    private String pendingContent(String filePath) {
+        return deferredWriter == null ? null : deferredWriter.pendingContent(filePath);
+    }
+
+    private Reader openFile(String filePath, DataFileChecksum checksum) throws IOException {
+        createFileIfNotExists(filePath);
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        InputStream raw = Channels.newInputStream(channel);
+        if (checksum != null) {
+            raw = checksum.wrap(raw);
+        }
+        BufferedInputStream in = new BufferedInputStream(raw, STREAM_BUFFER_SIZE);
+        in.mark(2);
+        byte[] magic = new byte[2];
+        int read = in.readNBytes(magic, 0, 2);
+        in.reset();
+        InputStream source = read == 2 && isGzip(magic) ? new GZIPInputStream(in, STREAM_BUFFER_SIZE) : in;
+        return new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * Load a JSON object of records keyed by ID, one record at a time.
+     * Only the current record is held as a parse tree, and a record that
+     * cannot be mapped to the target type is reported and skipped. The bytes
+     * read are checked against the file's checksum sidecar, and a mismatch
+     * marks the report incomplete.
+     * @param filePath path to the file
+     * @param gson Gson used to map each record
+     * @param type record class
+     * @param target map the records are inserted into
+     * @param <T> record type
+     * @return report with the number of records loaded and the errors found
+     */
+    public <T> LoadReport readRecords(String filePath, Gson gson, Class<T> type, Map<String, T> target) {
+        String pending = pendingContent(filePath);
+        if (pending != null) {
+            return readRecords(new StringReader(pending), filePath, gson, type, target);
+        }
+        DataFileChecksum checksum = new DataFileChecksum();
+        try {
+            LoadReport report = readRecords(openFile(filePath, checksum), filePath, gson, type, target);
+            String mismatch = report.isComplete() ? checksum.verify(filePath) : null;
+            if (mismatch != null) {
+                report.markIncomplete(mismatch);
+            }
+            return report;
+        } catch (IOException e) {
+            LoadReport report = new LoadReport(filePath);
+            report.markIncomplete(e.getMessage());
+            return report;
+        }
+    }
+
+    /**
+     * Load a JSON object of records keyed by ID from a reader, one record at a time
+     * @param source reader over the JSON, closed when done
+     * @param sourceName name used in the report, e.g. the file path
+     * @param gson Gson used to map each record
+     * @param type record class
+     * @param target map the records are inserted into
+     * @param <T> record type
+     * @return report with the number of records loaded and the errors found
+     */
+    public <T> LoadReport readRecords(Reader source, String sourceName, Gson gson, Class<T> type,
+                                      Map<String, T> target) {
+        LoadReport report = new LoadReport(sourceName);
+        try (JsonReader reader = new JsonReader(source)) {
+            reader.setLenient(true);
+            if (isEmptyDocument(reader)) {
+                return report;
+            }
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String id = reader.nextName();
+                JsonElement element = JsonParser.parseReader(reader);
+                try {
+                    T record = gson.fromJson(element, type);
+                    if (record != null) {
+                        target.put(id, record);
+                        report.recordLoaded();
+                    }
+                } catch (RuntimeException e) {
+                    report.recordError(id, e.getMessage());
+                }
+            }
+            reader.endObject();
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            report.markIncomplete(e.getMessage());
+        }
+        return report;
+    }
+
+    private boolean isEmptyDocument(JsonReader reader) throws IOException {
+        try {
+            return reader.peek() == JsonToken.END_DOCUMENT;
+        } catch (EOFException e) {
+            return true;
+        }
+    }
+
     /**
      * Write content to file
      * @param filePath path to the file
@@ -34,8 +233,19 @@ public class JsonFileHandler {
      * @return true if write successful, false otherwise
      */
     public boolean writeToFile(String filePath, String content) {
+        if (deferredWriter != null) {
+            return deferredWriter.submit(filePath, content);
+        }
         try {
             createFileIfNotExists(filePath);
+            DataFileChecksum.invalidate(filePath);
+            if (compressed) {
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(Paths.get(filePath)),
+                        STREAM_BUFFER_SIZE)) {
+                    out.write(content.getBytes(StandardCharsets.UTF_8));
+                }
+                return true;
+            }
             Files.write(Paths.get(filePath), content.getBytes());
             return true;
         } catch (IOException e) {
@@ -44,6 +254,113 @@ public class JsonFileHandler {
         }
     }
     
+    /**
+     * Serialize records keyed by ID into the file. The records are streamed
+     * into a temporary file that then replaces the data file, so a failed save
+     * leaves the previous content in place. The checksum of the new content is
+     * recorded in the file's checksum sidecar before the replace.
+     * Entries are encoded incrementally into a reusable direct buffer that is
+     * drained to a FileChannel whenever it fills up, so a save uses the same
+     * amount of memory no matter how many records there are. The output is
+     * identical to writing {@code gson.toJson(records)} with {@link #writeToFile},
+     * or compact JSON through a GZIP stream when compression is enabled.
+     * @param filePath path to the file
+     * @param gson Gson used to serialize each record
+     * @param records records to write
+     * @return true if write successful, false otherwise
+     */
+    public boolean writeRecords(String filePath, Gson gson, Map<String, ?> records) {
+        if (deferredWriter != null) {
+            // deferred layers keep whole file contents, so there is nothing to stream into
+            return writeToFile(filePath, gson.toJson(records));
+        }
+        Path temporary = null;
+        DataFileChecksum checksum = new DataFileChecksum();
+        try {
+            Path target = Paths.get(filePath).toAbsolutePath();
+            Files.createDirectories(target.getParent());
+            temporary = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+            synchronized (this) {
+                if (writeBuffer == null) {
+                    writeBuffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+                }
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                    if (compressed) {
+                        // closing the gzip stream releases its Deflater and closes the channel too
+                        try (GZIPOutputStream gzip = new GZIPOutputStream(
+                                Channels.newOutputStream(checksum.wrap(channel)), STREAM_BUFFER_SIZE)) {
+                            writeRecords(new ChannelWriter(Channels.newChannel(gzip), writeBuffer),
+                                    gson, records, true);
+                            gzip.finish();
+                            channel.force(false);
+                        }
+                    } else {
+                        writeRecords(new ChannelWriter(checksum.wrap(channel), writeBuffer), gson, records, false);
+                        channel.force(false);
+                    }
+                }
+            }
+            checksum.record(filePath);
+            FileWrites.replace(temporary, target);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error writing to file " + filePath + ": " + e.getMessage());
+            deleteTemporary(temporary);
+            return false;
+        }
+    }
+
+    private static void deleteTemporary(Path temporary) {
+        if (temporary == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+            System.err.println("Error deleting " + temporary + ": " + e.getMessage());
+        }
+    }
+
+    private void writeRecords(ChannelWriter target, Gson gson, Map<String, ?> records,
+                              boolean compact) throws IOException {
+        JsonWriter writer = gson.newJsonWriter(target);
+        if (compact) {
+            writer.setIndent("");
+        }
+        writer.beginObject();
+        for (Map.Entry<String, ?> entry : records.entrySet()) {
+            writer.name(entry.getKey());
+            Object record = entry.getValue();
+            if (record == null) {
+                writer.nullValue();
+            } else {
+                gson.toJson(record, record.getClass(), writer);
+            }
+        }
+        writer.endObject();
+        writer.flush();
+        target.finish();
+    }
+
+    /**
+     * Write content to file and wait until it is on disk,
+     * even when writes are normally deferred
+     * @param filePath path to the file
+     * @param content content to write
+     * @return true if the content was written, false otherwise
+     */
+    public boolean writeToFileDurably(String filePath, String content) {
+        return writeToFile(filePath, content) && sync();
+    }
+
+    /**
+     * Wait for all deferred writes to reach the disk
+     * @return true if every pending write succeeded
+     */
+    public boolean sync() {
+        return deferredWriter == null || deferredWriter.flush();
+    }
+
     /**
      * Create file and directories if they don't exist
      * @param filePath path to the file
@@ -64,4 +381,79 @@ public class JsonFileHandler {
         }
     }
 
+
+    /**
+     * Writer that encodes characters into a direct buffer and drains it to a channel
+     */
+    private static final class ChannelWriter extends Writer {
+        private final WritableByteChannel channel;
+        private final ByteBuffer bytes;
+        private final CharBuffer chars = CharBuffer.allocate(8 * 1024);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+        private ChannelWriter(WritableByteChannel channel, ByteBuffer bytes) {
+            this.channel = channel;
+            this.bytes = bytes;
+            bytes.clear();
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            while (length > 0) {
+                int count = Math.min(length, chars.remaining());
+                chars.put(buffer, offset, count);
+                offset += count;
+                length -= count;
+                if (!chars.hasRemaining()) {
+                    encode(false);
+                }
+            }
+        }
+
+        private void encode(boolean endOfInput) throws IOException {
+            chars.flip();
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isError()) {
+                    result.throwException();
+                } else {
+                    break;
+                }
+            }
+            chars.compact();
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        /**
+         * Encode what is left and push every byte to the channel
+         */
+        private void finish() throws IOException {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            encode(false);
+            drain();
+        }
+
+        @Override
+        public void close() {
+            // the channel is owned by the caller
+        }
+    }
+
 }
\ No newline at end of file
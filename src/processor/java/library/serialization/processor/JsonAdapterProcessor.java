@@ -0,0 +1,354 @@
+package library.serialization.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates a streaming Gson {@code TypeAdapter} for every class annotated with
+ * {@code library.serialization.GenerateJsonAdapter}, plus one
+ * {@code library.serialization.GeneratedJsonAdapters} factory that returns them.
+ * <p>
+ * An adapter is written to the package of its model as {@code <Model>JsonAdapter}
+ * and writes the fields in declaration order and under their field names, like
+ * Gson's reflective adapter. The fields stay private: values are written through
+ * the model's getters and read into a non-private constructor that takes every
+ * persisted field in declaration order, so no setter logic runs while loading.
+ * Fields missing from the JSON keep the value the no-argument constructor gives
+ * them, and JSON nulls leave primitive fields at that value too. Unknown names
+ * are skipped.
+ * <p>
+ * This class only uses the JDK, so it can be compiled before the rest of the
+ * project; see the {@code compile-processor} execution in the pom.
+ * @author Library Team
+ * @version 1.0
+ */
+@SupportedAnnotationTypes(JsonAdapterProcessor.ANNOTATION)
+public class JsonAdapterProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "library.serialization.GenerateJsonAdapter";
+    private static final String FACTORY_PACKAGE = "library.serialization";
+    private static final String FACTORY_NAME = "GeneratedJsonAdapters";
+    private static final String SUPPORT = "library.serialization.JsonAdapterSupport";
+
+    private final List<String> adapters = new ArrayList<>();
+    private final List<String> models = new ArrayList<>();
+    private boolean factoryWritten;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : round.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@GenerateJsonAdapter only applies to classes");
+                    continue;
+                }
+                generateAdapter((TypeElement) element);
+            }
+        }
+        if (!factoryWritten && !models.isEmpty() && !round.processingOver()) {
+            generateFactory();
+            factoryWritten = true;
+        }
+        return true;
+    }
+
+    private void generateAdapter(TypeElement model) {
+        List<VariableElement> fields = new ArrayList<>();
+        boolean valid = true;
+        if (model.getSuperclass().getKind() == TypeKind.DECLARED
+                && !model.getSuperclass().toString().equals("java.lang.Object")) {
+            error(model, "@GenerateJsonAdapter does not support superclasses");
+            valid = false;
+        }
+        if (!hasNoArgConstructor(model)) {
+            error(model, model.getSimpleName() + " needs a non-private no-argument constructor");
+            valid = false;
+        }
+        List<String> getters = new ArrayList<>();
+        for (Element member : model.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+            Set<Modifier> modifiers = member.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            if (kindOf(member.asType()) == null) {
+                error(member, "Unsupported field type " + member.asType() + " for a generated adapter");
+                valid = false;
+            }
+            String getter = getterFor(model, (VariableElement) member);
+            if (getter == null) {
+                error(member, "Field " + member.getSimpleName()
+                        + " needs a non-private getter for the generated adapter");
+                valid = false;
+            }
+            fields.add((VariableElement) member);
+            getters.add(getter);
+        }
+        if (valid && !hasFieldConstructor(model, fields)) {
+            error(model, model.getSimpleName() + " needs a non-private constructor taking "
+                    + fieldList(fields) + " for the generated adapter");
+            valid = false;
+        }
+        if (!valid) {
+            return;
+        }
+
+        String packageName = ((PackageElement) model.getEnclosingElement()).getQualifiedName().toString();
+        String modelName = model.getSimpleName().toString();
+        String adapterName = modelName + "JsonAdapter";
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(packageName + "." + adapterName, model);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                writeAdapter(out, packageName, modelName, adapterName, fields, getters);
+            }
+            models.add(packageName + "." + modelName);
+            adapters.add(packageName + "." + adapterName);
+        } catch (IOException e) {
+            error(model, "Could not write " + adapterName + ": " + e.getMessage());
+        }
+    }
+
+    private void writeAdapter(PrintWriter out, String packageName, String modelName, String adapterName,
+                              List<VariableElement> fields, List<String> getters) {
+        out.println("package " + packageName + ";");
+        out.println();
+        out.println("import com.google.gson.TypeAdapter;");
+        out.println("import com.google.gson.stream.JsonReader;");
+        out.println("import com.google.gson.stream.JsonToken;");
+        out.println("import com.google.gson.stream.JsonWriter;");
+        out.println("import " + SUPPORT + ";");
+        out.println();
+        out.println("import java.io.IOException;");
+        out.println();
+        out.println("/**");
+        out.println(" * Streaming JSON adapter for {@link " + modelName + "}.");
+        out.println(" * Generated by JsonAdapterProcessor; do not edit.");
+        out.println(" */");
+        out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+        out.println("public final class " + adapterName + " extends TypeAdapter<" + modelName + "> {");
+        out.println();
+        out.println("    @Override");
+        out.println("    public void write(JsonWriter out, " + modelName + " value) throws IOException {");
+        out.println("        if (value == null) {");
+        out.println("            out.nullValue();");
+        out.println("            return;");
+        out.println("        }");
+        out.println("        out.beginObject();");
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.get(i).getSimpleName().toString();
+            out.println("        out.name(\"" + name + "\").value(value." + getters.get(i) + "());");
+        }
+        out.println("        out.endObject();");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public " + modelName + " read(JsonReader in) throws IOException {");
+        out.println("        if (in.peek() == JsonToken.NULL) {");
+        out.println("            in.nextNull();");
+        out.println("            return null;");
+        out.println("        }");
+        out.println("        " + modelName + " defaults = new " + modelName + "();");
+        for (int i = 0; i < fields.size(); i++) {
+            VariableElement field = fields.get(i);
+            out.println("        " + field.asType() + " " + field.getSimpleName()
+                    + " = defaults." + getters.get(i) + "();");
+        }
+        out.println("        in.beginObject();");
+        out.println("        while (in.hasNext()) {");
+        out.println("            switch (in.nextName()) {");
+        for (VariableElement field : fields) {
+            String name = field.getSimpleName().toString();
+            String kind = kindOf(field.asType());
+            out.println("                case \"" + name + "\":");
+            if (kind.equals("String")) {
+                out.println("                    " + name + " = JsonAdapterSupport.readString(in);");
+            } else {
+                out.println("                    if (!JsonAdapterSupport.skipNull(in)) {");
+                out.println("                        " + name + " = JsonAdapterSupport.read" + kind + "(in);");
+                out.println("                    }");
+            }
+            out.println("                    break;");
+        }
+        out.println("                default:");
+        out.println("                    in.skipValue();");
+        out.println("                    break;");
+        out.println("            }");
+        out.println("        }");
+        out.println("        in.endObject();");
+        StringBuilder arguments = new StringBuilder();
+        for (VariableElement field : fields) {
+            if (arguments.length() > 0) {
+                arguments.append(", ");
+            }
+            arguments.append(field.getSimpleName());
+        }
+        out.println("        return new " + modelName + "(" + arguments + ");");
+        out.println("    }");
+        out.println("}");
+    }
+
+    private void generateFactory() {
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(FACTORY_PACKAGE + "." + FACTORY_NAME);
+            try (Writer writer = file.openWriter(); PrintWriter out = new PrintWriter(writer)) {
+                out.println("package " + FACTORY_PACKAGE + ";");
+                out.println();
+                out.println("import com.google.gson.Gson;");
+                out.println("import com.google.gson.TypeAdapter;");
+                out.println("import com.google.gson.TypeAdapterFactory;");
+                out.println("import com.google.gson.reflect.TypeToken;");
+                out.println();
+                out.println("/**");
+                out.println(" * Returns the build-time generated adapters for the annotated models.");
+                out.println(" * Generated by JsonAdapterProcessor; do not edit.");
+                out.println(" */");
+                out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+                out.println("public final class " + FACTORY_NAME + " implements TypeAdapterFactory {");
+                for (int i = 0; i < models.size(); i++) {
+                    out.println("    private static final TypeAdapter<" + models.get(i) + "> ADAPTER_" + i
+                            + " = new " + adapters.get(i) + "();");
+                }
+                out.println();
+                out.println("    @Override");
+                out.println("    @SuppressWarnings(\"unchecked\")");
+                out.println("    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {");
+                out.println("        Class<? super T> raw = type.getRawType();");
+                for (int i = 0; i < models.size(); i++) {
+                    out.println("        if (raw == " + models.get(i) + ".class) {");
+                    out.println("            return (TypeAdapter<T>) ADAPTER_" + i + ";");
+                    out.println("        }");
+                }
+                out.println("        return null;");
+                out.println("    }");
+                out.println("}");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write " + FACTORY_NAME + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean hasNoArgConstructor(TypeElement model) {
+        for (Element member : model.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR
+                    && ((ExecutableElement) member).getParameters().isEmpty()
+                    && !member.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Name of the getter for a field: getName(), or isName() and the field name itself
+     * for booleans, e.g. isAvailable() for a field isAvailable; null if there is none
+     */
+    private String getterFor(TypeElement model, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        List<String> candidates = new ArrayList<>(List.of("get" + capitalized));
+        if (field.asType().getKind() == TypeKind.BOOLEAN) {
+            candidates.add("is" + capitalized);
+            if (name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2))) {
+                candidates.add(name);
+            }
+        }
+        for (Element member : model.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.METHOD || member.getModifiers().contains(Modifier.PRIVATE)
+                    || member.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) member;
+            if (method.getParameters().isEmpty()
+                    && candidates.contains(method.getSimpleName().toString())
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())) {
+                return method.getSimpleName().toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the model has a non-private constructor whose parameters are the fields, in order
+     */
+    private boolean hasFieldConstructor(TypeElement model, List<VariableElement> fields) {
+        for (Element member : model.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.CONSTRUCTOR || member.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            List<? extends VariableElement> parameters = ((ExecutableElement) member).getParameters();
+            if (parameters.size() != fields.size()) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < fields.size() && matches; i++) {
+                matches = processingEnv.getTypeUtils().isSameType(parameters.get(i).asType(), fields.get(i).asType())
+                        && parameters.get(i).getSimpleName().contentEquals(fields.get(i).getSimpleName());
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String fieldList(List<VariableElement> fields) {
+        StringBuilder list = new StringBuilder("(");
+        for (VariableElement field : fields) {
+            if (list.length() > 1) {
+                list.append(", ");
+            }
+            list.append(field.asType()).append(' ').append(field.getSimpleName());
+        }
+        return list.append(')').toString();
+    }
+
+    /**
+     * Name of the JsonAdapterSupport reader for a field type, or null if unsupported
+     */
+    private static String kindOf(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "Boolean";
+            case INT:
+                return "Int";
+            case LONG:
+                return "Long";
+            case DOUBLE:
+                return "Double";
+            case DECLARED:
+                return type.toString().equals("java.lang.String") ? "String" : null;
+            default:
+                return null;
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,60 @@
+package library.config;
+
+import library.repositories.LazyRepositories;
+import library.services.NotificationService;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApplicationContextTest {
+
+    @TempDir
+    Path dataDir;
+
+    private ApplicationContext context;
+
+    @BeforeEach
+    void setUp() {
+        context = new ApplicationContext(new LazyRepositories(dataDir.toString(), new JsonFileHandler()),
+                new NotificationService());
+    }
+
+    @Test
+    void testRepositoriesAreSharedInstances() {
+        assertSame(context.getUserRepository(), context.getRepositories().getUserRepository());
+        assertSame(context.getUserRepository(), context.getUserRepository());
+        assertSame(context.getBookRepository(), context.getRepositories().getBookRepository());
+        assertSame(context.getLoanService(), context.getLoanService());
+        assertNotNull(context.getLoanController());
+        assertNotNull(context.getNotificationController());
+    }
+
+    @Test
+    void testSeededAdminIsVisibleToAuthService() {
+        assertTrue(context.seedDefaultAdmin("admin@library.com", "admin123"));
+        assertFalse(context.seedDefaultAdmin("admin@library.com", "admin123"));
+
+        assertTrue(context.getAuthService().login("admin@library.com", "admin123"));
+        assertTrue(context.getAuthService().isAdmin());
+    }
+
+    @Test
+    void testSeedAdminWithoutCredentials() {
+        assertFalse(context.seedDefaultAdmin(null, "secret"));
+        assertTrue(context.getUserRepository().findAll().isEmpty());
+    }
+
+    @Test
+    void testSampleCatalogSeededOnceAndVisibleToServices() {
+        assertEquals(7, context.seedSampleCatalog());
+        assertEquals(0, context.seedSampleCatalog());
+
+        assertEquals(3, context.getBookService().getAllBooks().size());
+        assertEquals(4, context.getCdService().getAllCDs().size());
+    }
+}
@@ -1,11 +1,16 @@
 package library.repositories;
 
 import library.models.Book;
+import library.storage.StorageEngine;
+import library.storage.WriteAheadJournal;
+import library.utils.HandlerStubs;
 import library.utils.JsonFileHandler;
 import library.utils.GsonUtils;
 import com.google.gson.Gson;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,7 +27,7 @@ class BookRepositoryTest {
         gson = GsonUtils.createGson();
         fileHandlerMock = mock(JsonFileHandler.class);
 
-        when(fileHandlerMock.readFromFile(anyString())).thenReturn("{}");
+        HandlerStubs.stubContent(fileHandlerMock, "{}");
 
         bookRepository = new BookRepository(gson, fileHandlerMock);
     }
@@ -30,7 +35,7 @@ class BookRepositoryTest {
     @Test
     void shouldLoadBooksSuccessfully() {
         String json = "{\"1\":{\"id\":\"1\",\"title\":\"Book A\",\"author\":\"Author A\",\"isbn\":\"111\",\"type\":\"BOOK\"}}";
-        when(fileHandlerMock.readFromFile(anyString())).thenReturn(json);
+        HandlerStubs.stubContent(fileHandlerMock, json);
 
         BookRepository repo = new BookRepository(gson, fileHandlerMock);
         List<Book> books = repo.findAll();
@@ -41,7 +46,7 @@ class BookRepositoryTest {
 
     @Test
     void shouldSaveBooksSuccessfully() {
-        when(fileHandlerMock.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandlerMock, true);
 
         Book book = new Book("Test", "Author", "123", "BOOK");
 
@@ -52,7 +57,7 @@ class BookRepositoryTest {
 
     @Test
     void shouldFailSavingBooksWhenWritingFails() {
-        when(fileHandlerMock.writeToFile(anyString(), anyString())).thenReturn(false);
+        HandlerStubs.stubWrites(fileHandlerMock, false);
 
         Book book = new Book("Fail", "Author", "999", "BOOK");
 
@@ -63,7 +68,7 @@ class BookRepositoryTest {
 
     @Test
     void shouldFindBookById() {
-        when(fileHandlerMock.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandlerMock, true);
 
         Book book = new Book("Test", "Author", "101", "BOOK");
         bookRepository.save(book);
@@ -76,7 +81,7 @@ class BookRepositoryTest {
 
     @Test
     void shouldDeleteExistingBook() {
-        when(fileHandlerMock.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandlerMock, true);
 
         Book book = new Book("Delete", "Author", "555", "BOOK");
         bookRepository.save(book);
@@ -98,7 +103,7 @@ class BookRepositoryTest {
         Book b1 = new Book("Java Basics", "Alice", "111", "BOOK");
         Book b2 = new Book("Python Guide", "Bob", "222", "BOOK");
 
-        when(fileHandlerMock.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandlerMock, true);
 
         bookRepository.save(b1);
         bookRepository.save(b2);
@@ -111,7 +116,7 @@ class BookRepositoryTest {
 
     @Test
     void shouldLoadEmptyMapWhenJsonIsEmpty() {
-        when(fileHandlerMock.readFromFile(anyString())).thenReturn("");
+        HandlerStubs.stubContent(fileHandlerMock, "");
 
         BookRepository repo = new BookRepository(gson, fileHandlerMock);
 
@@ -120,7 +125,7 @@ class BookRepositoryTest {
 
     @Test
     void shouldHandleJsonLoadingError() {
-        when(fileHandlerMock.readFromFile(anyString())).thenReturn("{invalid json");
+        HandlerStubs.stubContent(fileHandlerMock, "{invalid json");
 
         BookRepository repo = new BookRepository(gson, fileHandlerMock);
 
@@ -139,7 +144,7 @@ class BookRepositoryTest {
 
     @Test
     void shouldUpdateBookSuccessfully() {
-        when(fileHandlerMock.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandlerMock, true);
 
         Book book = new Book("Old Title", "Author A", "12345", "BOOK");
         bookRepository.save(book);
@@ -161,7 +166,7 @@ class BookRepositoryTest {
 
     @Test
     void shouldReturnAllBooksWhenSearchQueryIsEmpty() {
-        when(fileHandlerMock.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandlerMock, true);
 
         Book b1 = new Book("A", "AA", "111", "BOOK");
         Book b2 = new Book("B", "BB", "222", "BOOK");
@@ -180,7 +185,7 @@ class BookRepositoryTest {
 
     @Test
     void shouldGenerateIdWhenSavingBookWithoutId() {
-        when(fileHandlerMock.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandlerMock, true);
 
         Book book = new Book("Generated", "Author", "333", "BOOK");
 
@@ -204,7 +209,7 @@ class BookRepositoryTest {
         Gson brokenGson = mock(Gson.class);
         JsonFileHandler handler = mock(JsonFileHandler.class);
 
-        when(handler.readFromFile(anyString())).thenReturn("{}");
+        HandlerStubs.stubContent(handler, "{}");
 
         when(brokenGson.fromJson(anyString(), any(java.lang.reflect.Type.class)))
                 .thenThrow(new RuntimeException("GSON FAILED"));
@@ -214,4 +219,44 @@ class BookRepositoryTest {
         assertTrue(repo.findAll().isEmpty());
     }
 
+    @Test
+    void shouldAppendToJournalInsteadOfRewritingFile(@TempDir Path dir) {
+        WriteAheadJournal journal = new WriteAheadJournal(dir.resolve("books.journal").toString());
+        bookRepository.enableJournal(journal);
+
+        Book book = new Book("Journaled", "Author", "444", "BOOK");
+
+        assertTrue(bookRepository.save(book));
+        assertTrue(bookRepository.delete(book.getId()));
+
+        verify(fileHandlerMock, never()).writeRecords(anyString(), any(), anyMap());
+        assertEquals(2, journal.getEntriesSinceSnapshot());
+    }
+
+    @Test
+    void shouldReplayJournalOnTopOfSnapshot(@TempDir Path dir) {
+        String journalPath = dir.resolve("books.journal").toString();
+        bookRepository.enableJournal(new WriteAheadJournal(journalPath));
+        bookRepository.save(new Book("Survivor", "Author", "777", "BOOK"));
+
+        BookRepository restarted = new BookRepository(gson, fileHandlerMock);
+        restarted.enableJournal(new WriteAheadJournal(journalPath));
+
+        assertNotNull(restarted.findByIsbn("777"));
+    }
+
+    @Test
+    void shouldDelegateToPluggedEngine() {
+        @SuppressWarnings("unchecked")
+        StorageEngine<Book> engine = mock(StorageEngine.class);
+        Book book = new Book("Indexed", "Author", "555", "BOOK");
+        when(engine.findBy(eq("isbn"), eq("555"), any())).thenReturn(List.of(book));
+        when(engine.put(anyString(), any(Book.class))).thenReturn(true);
+
+        BookRepository repo = new BookRepository(engine);
+
+        assertSame(book, repo.findByIsbn("555"));
+        assertTrue(repo.save(new Book("New", "Author", "666", "BOOK")));
+        verify(engine).put(startsWith("BOOK_"), any(Book.class));
+    }
 }
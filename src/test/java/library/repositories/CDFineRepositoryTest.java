@@ -1,6 +1,7 @@
 package library.repositories;
 
 import library.models.CDFine;
+import library.utils.HandlerStubs;
 import library.utils.JsonFileHandler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -21,7 +22,7 @@ public class CDFineRepositoryTest {
         fileHandlerMock = mock(JsonFileHandler.class);
 
      
-        when(fileHandlerMock.readFromFile("data/cdfines.json")).thenReturn(null);
+        HandlerStubs.stubContent(fileHandlerMock, null);
 
         repository = new CDFineRepository(fileHandlerMock);
     }
@@ -156,8 +157,7 @@ public class CDFineRepositoryTest {
     @Test
     void testLoadCDFines_InvalidJson_TriggersCatch() {
         JsonFileHandler handler = mock(JsonFileHandler.class);
-        when(handler.readFromFile("data/cdfines.json"))
-                .thenReturn("{ invalid json");
+        HandlerStubs.stubContent(handler, "{ invalid json");
 
         CDFineRepository repo = new CDFineRepository(handler);
 
@@ -169,9 +169,8 @@ public class CDFineRepositoryTest {
     void testSaveCDFines_WriteFailure_TriggersCatch() {
         JsonFileHandler handler = mock(JsonFileHandler.class);
 
-        when(handler.readFromFile("data/cdfines.json")).thenReturn(null);
-        when(handler.writeToFile(anyString(), anyString()))
-                .thenThrow(new RuntimeException("write failed"));
+        HandlerStubs.stubContent(handler, null);
+        doThrow(new RuntimeException("write failed")).when(handler).writeRecords(anyString(), any(), anyMap());
 
         CDFineRepository repo = new CDFineRepository(handler);
 
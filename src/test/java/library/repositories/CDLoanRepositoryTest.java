@@ -1,6 +1,7 @@
 package library.repositories;
 
 import library.models.CDLoan;
+import library.utils.HandlerStubs;
 import library.utils.JsonFileHandler;
 import library.utils.GsonUtils;
 
@@ -29,8 +30,8 @@ public class CDLoanRepositoryTest {
         gson = GsonUtils.createGson();
 
         // By default, simulate empty JSON
-        when(fileHandler.readFromFile(anyString())).thenReturn("{}");
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubContent(fileHandler, "{}");
+        HandlerStubs.stubWrites(fileHandler, true);
 
         repo = new CDLoanRepository(fileHandler, gson, "test.json");
     }
@@ -41,7 +42,7 @@ public class CDLoanRepositoryTest {
 
     @Test
     void testLoad_NullJson() {
-        when(fileHandler.readFromFile(anyString())).thenReturn(null);
+        HandlerStubs.stubContent(fileHandler, null);
 
         CDLoanRepository r = new CDLoanRepository(fileHandler, gson, "x.json");
         assertEquals(0, r.findAll().size());
@@ -49,7 +50,7 @@ public class CDLoanRepositoryTest {
 
     @Test
     void testLoad_EmptyJson() {
-        when(fileHandler.readFromFile(anyString())).thenReturn("   ");
+        HandlerStubs.stubContent(fileHandler, "   ");
 
         CDLoanRepository r = new CDLoanRepository(fileHandler, gson, "x.json");
         assertEquals(0, r.findAll().size());
@@ -57,7 +58,7 @@ public class CDLoanRepositoryTest {
 
     @Test
     void testLoad_InvalidJson() {
-        when(fileHandler.readFromFile(anyString())).thenReturn("{ invalid }");
+        HandlerStubs.stubContent(fileHandler, "{ invalid }");
 
         CDLoanRepository r = new CDLoanRepository(fileHandler, gson, "x.json");
         assertEquals(0, r.findAll().size());
@@ -67,7 +68,7 @@ public class CDLoanRepositoryTest {
     void testLoad_ValidJson() {
         String json = "{ \"L1\": { \"id\":\"L1\", \"userId\":\"U1\", \"cdId\":\"CD1\", \"borrowDate\":\"2025-01-01T10:00\" } }";
 
-        when(fileHandler.readFromFile(anyString())).thenReturn(json);
+        HandlerStubs.stubContent(fileHandler, json);
 
         CDLoanRepository r = new CDLoanRepository(fileHandler, gson, "x.json");
 
@@ -77,7 +78,7 @@ public class CDLoanRepositoryTest {
 
     @Test
     void testLoad_ThrowsException() {
-        when(fileHandler.readFromFile(anyString())).thenThrow(new RuntimeException("ERROR"));
+        doThrow(new RuntimeException("ERROR")).when(fileHandler).readRecords(anyString(), any(), any(), anyMap());
 
         CDLoanRepository r = new CDLoanRepository(fileHandler, gson, "x.json");
 
@@ -99,7 +100,7 @@ public class CDLoanRepositoryTest {
 
     @Test
     void testSave_WriteFailsButMethodReturnsTrue() {
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(false);
+        HandlerStubs.stubWrites(fileHandler, false);
 
         CDLoan loan = new CDLoan("U1", "CD1");
         assertTrue(repo.save(loan));  // Repo always returns true
@@ -1,16 +1,21 @@
 package library.repositories;
 
 import library.models.CD;
+import library.storage.BinarySnapshot;
 import library.utils.GsonUtils;
+import library.utils.HandlerStubs;
 import library.utils.JsonFileHandler;
 
 import com.google.gson.Gson;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -45,7 +50,7 @@ public class CDRepositoryTest {
         setPrivate(repository, "fileHandler", fileHandler);
         setPrivate(repository, "cds", new HashMap<>());
 
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandler, true);
     }
 
     // ---------------------------------------------------
@@ -97,10 +102,10 @@ public class CDRepositoryTest {
 
     @Test
     void testSave_FailsWrite() {
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(false);
+        HandlerStubs.stubWrites(fileHandler, false);
 
         CD cd = new CD("X", "Y", "Z");
-        assertTrue(repository.save(cd)); // save() دائماً يرجّع true حسب الكود
+        assertFalse(repository.save(cd));
     }
 
     // ---------------------------------------------------
@@ -250,4 +255,80 @@ public class CDRepositoryTest {
 
         assertNotEquals(cd1.getId(), cd2.getId());
     }
+
+    // ---------------------------------------------------
+    // Persisted catalog
+    // ---------------------------------------------------
+
+    @Test
+    void testPersistedCatalogSurvivesRestart(@TempDir Path dataDir) {
+        CDRepository first = new CDRepository(dataDir.toString(), new JsonFileHandler(), false);
+        CD cd = new CD("Kind of Blue", "Miles Davis", "Jazz");
+        first.save(cd);
+
+        CDRepository restarted = new CDRepository(dataDir.toString(), new JsonFileHandler(), false);
+
+        assertEquals("Kind of Blue", restarted.findById(cd.getId()).getTitle());
+        assertEquals(1, restarted.getLoadReport().getLoadedCount());
+        assertFalse(Files.exists(Path.of(BinarySnapshot.pathFor(dataDir.resolve("cds.json").toString()))));
+    }
+
+    @Test
+    void testBinarySnapshotIsPrebuiltAndUsedOnRestart(@TempDir Path dataDir) throws Exception {
+        CDRepository seeded = new CDRepository(dataDir.toString(), new JsonFileHandler(), false);
+        for (int i = 0; i < 20; i++) {
+            seeded.save(new CD("Title " + i, "Artist", "Rock"));
+        }
+        String snapshot = BinarySnapshot.pathFor(dataDir.resolve("cds.json").toString());
+
+        new CDRepository(dataDir.toString(), new JsonFileHandler(), true);
+        assertTrue(Files.exists(Path.of(snapshot)));
+
+        CDRepository restarted = new CDRepository(dataDir.toString(), new JsonFileHandler(), true);
+
+        assertEquals(snapshot, restarted.getLoadReport().getFilePath());
+        assertEquals(20, restarted.findByGenre("Rock").size());
+    }
+
+    @Test
+    void testSavesWithSnapshotStillReachCdsJson(@TempDir Path dataDir) {
+        CDRepository withSnapshot = new CDRepository(dataDir.toString(), new JsonFileHandler(), true);
+        CD kept = new CD("Blue Train", "John Coltrane", "Jazz");
+        CD removed = new CD("Giant Steps", "John Coltrane", "Jazz");
+        withSnapshot.save(kept);
+        withSnapshot.save(removed);
+        withSnapshot.delete(removed.getId());
+
+        Map<String, CD> inJson = new LinkedHashMap<>();
+        new JsonFileHandler().readRecords(dataDir.resolve("cds.json").toString(), GsonUtils.createGson(),
+                CD.class, inJson);
+        CDRepository fromSnapshot = new CDRepository(dataDir.toString(), new JsonFileHandler(), true);
+
+        assertEquals(Set.of(kept.getId()), inJson.keySet());
+        assertEquals(BinarySnapshot.pathFor(dataDir.resolve("cds.json").toString()),
+                fromSnapshot.getLoadReport().getFilePath());
+        assertEquals(List.of(kept.getId()), fromSnapshot.findAll().stream().map(CD::getId).toList());
+    }
+
+    @Test
+    void testFailedWriteDropsTheSnapshot(@TempDir Path dataDir) {
+        JsonFileHandler handler = spy(new JsonFileHandler());
+        CDRepository withSnapshot = new CDRepository(dataDir.toString(), handler, true);
+        CD saved = new CD("Blue Train", "John Coltrane", "Jazz");
+        assertTrue(withSnapshot.save(saved));
+        Path snapshot = Path.of(BinarySnapshot.pathFor(dataDir.resolve("cds.json").toString()));
+        assertTrue(Files.exists(snapshot));
+
+        HandlerStubs.stubWrites(handler, false);
+
+        assertFalse(withSnapshot.save(new CD("Giant Steps", "John Coltrane", "Jazz")));
+        assertFalse(Files.exists(snapshot));
+        assertFalse(withSnapshot.delete(saved.getId()));
+    }
+
+    @Test
+    void testInMemoryConstructorStillReadsNothing() {
+        assertEquals(0, new CDRepository(fileHandler).findAll().size());
+        verify(fileHandler, never()).readRecords(anyString(), any(), any(), anyMap());
+    }
 }
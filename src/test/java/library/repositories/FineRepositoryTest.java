@@ -1,6 +1,7 @@
 package library.repositories;
 
 import library.models.Fine;
+import library.utils.HandlerStubs;
 import library.utils.JsonFileHandler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,7 +21,7 @@ public class FineRepositoryTest {
         fileHandlerMock = mock(JsonFileHandler.class);
 
         
-        when(fileHandlerMock.readFromFile(anyString())).thenReturn("");
+        HandlerStubs.stubContent(fileHandlerMock, "");
 
         fineRepository = new FineRepository();
 
@@ -31,7 +32,7 @@ public class FineRepositoryTest {
         assertDoesNotThrow(() -> fileHandlerField.set(fineRepository, fileHandlerMock));
 
       
-        when(fileHandlerMock.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandlerMock, true);
     }
 
     @Test
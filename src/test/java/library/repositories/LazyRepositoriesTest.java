@@ -0,0 +1,169 @@
+package library.repositories;
+
+import library.models.CD;
+import library.models.Fine;
+import library.models.Loan;
+import library.storage.BackgroundPrefetch;
+import library.storage.DataDirectoryWatcher;
+import library.storage.LazyStorageEngine;
+import library.storage.ParallelBootstrap;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyRepositoriesTest {
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void testNoFileIsReadUntilARepositoryIsUsed() throws Exception {
+        LazyRepositories repositories = new LazyRepositories(dataDir.toString(), new JsonFileHandler());
+
+        try (var files = Files.list(dataDir)) {
+            assertEquals(0, files.count());
+        }
+        for (LazyStorageEngine<?> engine : repositories.getEngines()) {
+            assertFalse(engine.isLoaded());
+        }
+
+        assertNull(repositories.getUserRepository().findByEmail("nobody@example.com"));
+
+        assertTrue(repositories.getEngines().get(0).isLoaded());
+        assertFalse(repositories.getEngines().get(3).isLoaded());
+    }
+
+    @Test
+    void testPrefetchLoadsTheRest() {
+        LazyRepositories repositories = new LazyRepositories(dataDir.toString(), new JsonFileHandler());
+        repositories.getUserRepository().findAll();
+
+        BackgroundPrefetch prefetch = repositories.startPrefetch();
+
+        assertTrue(prefetch.await(10, TimeUnit.SECONDS));
+        for (LazyStorageEngine<?> engine : repositories.getEngines()) {
+            assertTrue(engine.isLoaded(), engine.getName());
+        }
+    }
+
+    @Test
+    void testLoansWithoutIdGetOneOnLazyLoad() throws Exception {
+        Files.writeString(dataDir.resolve("loans.json"), "{\"old\":{\"userId\":\"U1\",\"bookId\":\"B1\"}}");
+        LazyRepositories repositories = new LazyRepositories(dataDir.toString(), new JsonFileHandler());
+
+        Loan loan = repositories.getLoanRepository().findByUserId("U1").get(0);
+
+        assertNotNull(loan.getId());
+        assertTrue(loan.getId().startsWith("LOAN_"));
+    }
+
+    @Test
+    void testLoadAllReportsEveryRepository() throws Exception {
+        Files.writeString(dataDir.resolve("books.json"), "{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\"}}");
+        LazyRepositories repositories = new LazyRepositories(dataDir.toString(), new JsonFileHandler());
+
+        ParallelBootstrap.Report report = repositories.loadAll(new ParallelBootstrap(3));
+
+        assertTrue(report.isSuccessful());
+        assertEquals(7, report.getLoadMillis().size());
+        assertTrue(report.getLoadMillis().containsKey("cdfines"));
+        assertEquals("Dune", repositories.getBookRepository().findById("B1").getTitle());
+    }
+
+    @Test
+    void testFindByIdReadsOneRecordBeforeLoading() throws Exception {
+        Files.writeString(dataDir.resolve("books.json"),
+                "{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\"},\"B2\":{\"id\":\"B2\",\"title\":\"Emma\"}}");
+        LazyRepositories repositories = new LazyRepositories(dataDir.toString(), new JsonFileHandler(), true);
+
+        assertEquals("Emma", repositories.getBookRepository().findById("B2").getTitle());
+        assertNull(repositories.getLoanRepository().findById("L1"));
+
+        assertFalse(repositories.getEngines().get(1).isLoaded());
+        assertFalse(repositories.getEngines().get(3).isLoaded());
+        assertTrue(Files.exists(dataDir.resolve("books.json.idx")));
+    }
+
+    @Test
+    void testReloadChangedOnlyReloadsRepositoriesAnotherProcessWrote() {
+        LazyRepositories console = new LazyRepositories(dataDir.toString(), new JsonFileHandler(), true);
+        LazyRepositories report = new LazyRepositories(dataDir.toString(), new JsonFileHandler(), true);
+        report.getBookRepository().findAll();
+        report.getLoanRepository().findAll();
+        report.getUserRepository().findAll();
+
+        Loan loan = new Loan("U1", "B1", 14);
+        assertTrue(console.getLoanRepository().save(loan));
+
+        assertEquals(List.of("loans"), report.reloadChanged());
+        assertEquals(1, report.getLoanRepository().findByUserId("U1").size());
+        assertTrue(report.reloadChanged().isEmpty());
+    }
+
+    @Test
+    void testWatchingPicksUpReplacedFilesOfLoadedRepositories() throws Exception {
+        LazyRepositories repositories = new LazyRepositories(dataDir.toString(), new JsonFileHandler());
+        assertTrue(repositories.getBookRepository().findAll().isEmpty());
+
+        try (DataDirectoryWatcher watcher = repositories.startWatching()) {
+            Files.writeString(dataDir.resolve("books.json"), "{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\"}}");
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (repositories.getBookRepository().findById("B1") == null && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        }
+        assertEquals("Dune", repositories.getBookRepository().findById("B1").getTitle());
+    }
+
+    @Test
+    void testArchivedHistoryLeavesTheHotQueries() {
+        LazyRepositories repositories = new LazyRepositories(dataDir.toString(), new JsonFileHandler());
+        LoanRepository loans = repositories.getLoanRepository();
+        Loan old = new Loan("U1", "B1", 14);
+        old.setReturned(true);
+        old.setReturnDateTime(LocalDateTime.now().minusDays(400));
+        loans.save(old);
+        loans.save(new Loan("U1", "B2", 14));
+        FineRepository fines = repositories.getFineRepository();
+        Fine paid = new Fine("U1", old.getId(), 2.0);
+        paid.makePayment(2.0);
+        paid.setPaidDateTime(LocalDateTime.now().minusDays(400));
+        fines.save(paid);
+        fines.save(new Fine("U1", "L2", 1.0));
+
+        assertEquals(2, repositories.archiveHistory(365));
+
+        assertEquals(1, loans.findByUserId("U1").size());
+        assertEquals(2, loans.findHistoryByUserId("U1").size());
+        assertNull(loans.findById(old.getId()));
+        assertEquals("B1", loans.findInHistoryById(old.getId()).getBookId());
+        assertEquals(1, fines.findByUserId("U1").size());
+        assertEquals(2, fines.findHistoryByUserId("U1").size());
+        assertEquals(1, fines.findUnpaidFines().size());
+        assertTrue(Files.exists(dataDir.resolve("archive").resolve("loans-000001.json.gz")));
+        assertEquals(0, repositories.archiveHistory(365));
+    }
+
+    @Test
+    void testCdCatalogIsLoadedAfterRestart() {
+        LazyRepositories first = new LazyRepositories(dataDir.toString(), new JsonFileHandler());
+        CD cd = new CD("Blue Train", "John Coltrane", "Jazz");
+        first.getCdRepository().save(cd);
+        first.getCdRepository().save(new CD("Giant Steps", "John Coltrane", "Jazz"));
+
+        LazyRepositories restarted = new LazyRepositories(dataDir.toString(), new JsonFileHandler());
+
+        assertEquals("Blue Train", restarted.getCdRepository().findById(cd.getId()).getTitle());
+        assertFalse(restarted.getEngines().get(2).isLoaded());
+        assertEquals(2, restarted.getCdRepository().findByArtist("John Coltrane").size());
+    }
+}
@@ -1,6 +1,7 @@
 package library.repositories;
 
 import library.models.Loan;
+import library.utils.HandlerStubs;
 import library.utils.JsonFileHandler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -25,10 +26,10 @@ public class LoanRepositoryTest {
         fileHandlerMock = Mockito.mock(JsonFileHandler.class);
 
         // JSON فارغ عند التحميل
-        when(fileHandlerMock.readFromFile(anyString())).thenReturn("");
+        HandlerStubs.stubContent(fileHandlerMock, "");
 
         // عملية الكتابة دايماً ناجحة
-        when(fileHandlerMock.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandlerMock, true);
 
         // نعمل repository باستخدام Reflection لتبديل fileHandler
         repository = new LoanRepository();
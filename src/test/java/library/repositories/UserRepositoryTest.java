@@ -3,10 +3,15 @@ package library.repositories;
 import com.google.gson.Gson;
 import library.models.User;
 import library.utils.GsonUtils;
+import library.utils.HandlerStubs;
 import library.utils.JsonFileHandler;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -26,7 +31,7 @@ public class UserRepositoryTest {
         gson = GsonUtils.createGson();
 
         // Mock: أول تحميل يرجع null ↦ users = {}
-        when(fileHandler.readFromFile(anyString())).thenReturn(null);
+        HandlerStubs.stubContent(fileHandler, null);
 
         repo = new UserRepository("data/users.json", fileHandler, gson);
     }
@@ -37,7 +42,7 @@ public class UserRepositoryTest {
 
     @Test
     void testLoadUsers_NullJson() {
-        when(fileHandler.readFromFile(anyString())).thenReturn(null);
+        HandlerStubs.stubContent(fileHandler, null);
 
         UserRepository r = new UserRepository("data/users.json", fileHandler, gson);
 
@@ -46,7 +51,7 @@ public class UserRepositoryTest {
 
     @Test
     void testLoadUsers_EmptyJson() {
-        when(fileHandler.readFromFile(anyString())).thenReturn("  ");
+        HandlerStubs.stubContent(fileHandler, "  ");
 
         UserRepository r = new UserRepository("data/users.json", fileHandler, gson);
 
@@ -55,7 +60,7 @@ public class UserRepositoryTest {
 
     @Test
     void testLoadUsers_EmptyObject() {
-        when(fileHandler.readFromFile(anyString())).thenReturn("{}");
+        HandlerStubs.stubContent(fileHandler, "{}");
 
         UserRepository r = new UserRepository("data/users.json", fileHandler, gson);
 
@@ -64,7 +69,7 @@ public class UserRepositoryTest {
 
     @Test
     void testLoadUsers_InvalidJson() {
-        when(fileHandler.readFromFile(anyString())).thenReturn("{ invalid");
+        HandlerStubs.stubContent(fileHandler, "{ invalid");
 
         UserRepository r = new UserRepository("data/users.json", fileHandler, gson);
 
@@ -74,7 +79,7 @@ public class UserRepositoryTest {
     @Test
     void testLoadUsers_ValidJson() {
         String json = "{ \"U1\": { \"id\":\"U1\", \"name\":\"A\", \"email\":\"a@test.com\" } }";
-        when(fileHandler.readFromFile(anyString())).thenReturn(json);
+        HandlerStubs.stubContent(fileHandler, json);
 
         UserRepository r = new UserRepository("data/users.json", fileHandler, gson);
 
@@ -89,7 +94,7 @@ public class UserRepositoryTest {
 
     @Test
     void testSave_NewUser_GeneratesId() {
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandler, true);
 
         User u = new User();
         u.setName("Test");
@@ -101,7 +106,7 @@ public class UserRepositoryTest {
 
     @Test
     void testSave_UpdateExistingUser() {
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandler, true);
 
         User u = new User();
         u.setName("Test");
@@ -124,7 +129,7 @@ public class UserRepositoryTest {
 
     @Test
     void testSave_FailureWrite() {
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(false);
+        HandlerStubs.stubWrites(fileHandler, false);
 
         User u = new User();
         u.setName("X");
@@ -143,7 +148,7 @@ public class UserRepositoryTest {
 
     @Test
     void testFindById_Found() {
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandler, true);
 
         User u = new User();
         u.setName("A");
@@ -158,7 +163,7 @@ public class UserRepositoryTest {
 
     @Test
     void testFindByEmail_Found() {
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandler, true);
 
         User u1 = new User();
         u1.setEmail("a@test.com");
@@ -184,7 +189,7 @@ public class UserRepositoryTest {
 
     @Test
     void testDelete_Success() {
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandler, true);
 
         User u = new User();
         repo.save(u);
@@ -208,7 +213,7 @@ public class UserRepositoryTest {
 
     @Test
     void testClearAll() {
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandler, true);
 
         repo.save(new User());
         repo.save(new User());
@@ -224,12 +229,24 @@ public class UserRepositoryTest {
 
     @Test
     void testFindAll() {
-        when(fileHandler.writeToFile(anyString(), anyString())).thenReturn(true);
+        HandlerStubs.stubWrites(fileHandler, true);
 
         repo.save(new User());
         repo.save(new User());
 
         assertEquals(2, repo.findAll().size());
     }
-}
 
+    @Test
+    void testStreamingLoadSkipsOnlyBrokenUsers(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("users.json");
+        Files.writeString(file, "{\"U1\":{\"id\":\"U1\",\"email\":\"a@test.com\"},"
+                + "\"U2\":{\"id\":\"U2\",\"isActive\":[1,2]}}");
+
+        UserRepository streamed = new UserRepository(file.toString(), new JsonFileHandler(), gson);
+
+        assertNotNull(streamed.findByEmail("a@test.com"));
+        assertNull(streamed.findById("U2"));
+        assertEquals(1, streamed.getLoadReport().getErrors().size());
+    }
+}
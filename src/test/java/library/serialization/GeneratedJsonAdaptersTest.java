@@ -0,0 +1,100 @@
+package library.serialization;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import library.models.Book;
+import library.models.BookJsonAdapter;
+import library.models.CD;
+import library.models.CDFine;
+import library.models.CDLoan;
+import library.models.Fine;
+import library.models.Loan;
+import library.models.User;
+import library.utils.GsonUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneratedJsonAdaptersTest {
+
+    private final Gson reflective = new Gson();
+    private final Gson reflectivePretty = new GsonBuilder().setPrettyPrinting().create();
+    private final Gson generated = GsonUtils.createCompactGson();
+
+    private List<Object> samples() {
+        Book book = new Book("Dune", "Frank Herbert", "978-0441013593", "BOOK");
+        book.setId("BOOK_1");
+        Book empty = new Book();
+        CD cd = new CD("Kind of Blue", "Miles Davis", "Jazz", 5, "Columbia", 1959);
+        User user = new User("Ann \"the reader\"", "ann@example.com", "hash", "USER");
+        Loan loan = new Loan("USER_1", "BOOK_1", 14);
+        loan.setFineAmount(2.5);
+        CDLoan cdLoan = new CDLoan("USER_1", "CD_1");
+        Fine fine = new Fine("USER_1", "LOAN_1", 10.0);
+        CDFine cdFine = new CDFine("USER_1", "CDLOAN_1", 7.25);
+        cdFine.makePayment(2.0);
+        return List.of(book, empty, cd, user, loan, cdLoan, fine, cdFine);
+    }
+
+    @Test
+    void testGsonUsesGeneratedAdapters() {
+        assertTrue(generated.getAdapter(Book.class) instanceof BookJsonAdapter);
+        assertTrue(GsonUtils.createGson().getAdapter(Book.class) instanceof BookJsonAdapter);
+    }
+
+    @Test
+    void testWritesSameJsonAsReflectiveGson() {
+        for (Object sample : samples()) {
+            assertEquals(reflective.toJson(sample), generated.toJson(sample), sample.getClass().getSimpleName());
+            assertEquals(reflectivePretty.toJson(sample), GsonUtils.createGson().toJson(sample));
+        }
+    }
+
+    @Test
+    void testReadsBackWhatReflectiveGsonReads() {
+        for (Object sample : samples()) {
+            String json = reflective.toJson(sample);
+            Object parsed = generated.fromJson(json, sample.getClass());
+            assertEquals(json, reflective.toJson(parsed), sample.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    void testLenientValuesUnknownNamesAndNulls() {
+        String json = "{\"id\":\"F1\",\"amount\":\"12.5\",\"isPaid\":\"true\",\"note\":{\"x\":[1,2]},"
+                + "\"paidAmount\":null,\"userId\":null}";
+
+        Fine expected = reflective.fromJson(json, Fine.class);
+        Fine actual = generated.fromJson(json, Fine.class);
+
+        assertEquals(reflective.toJson(expected), reflective.toJson(actual));
+        assertEquals(12.5, actual.getAmount());
+        assertTrue(actual.isPaid());
+        assertNull(actual.getUserId());
+        assertNull(generated.fromJson("null", Fine.class));
+    }
+
+    @Test
+    void testReadingDoesNotRunSetters() {
+        String json = "{\"id\":\"CD_1\",\"title\":\"Old\",\"updatedAt\":\"2020-01-01T10:00:00\"}";
+
+        CD cd = generated.fromJson(json, CD.class);
+
+        assertEquals("2020-01-01T10:00:00", cd.getUpdatedAt());
+    }
+
+    @Test
+    void testMapsOfModelsMatchDataFileFormat() {
+        Map<String, Loan> loans = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            Loan loan = new Loan("USER_" + i, "BOOK_" + i, 7);
+            loan.setId("LOAN_" + i);
+            loans.put(loan.getId(), loan);
+        }
+        assertEquals(reflective.toJson(loans), generated.toJson(loans));
+    }
+}
@@ -0,0 +1,109 @@
+package library.serialization;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import library.models.Book;
+import library.models.Loan;
+import library.utils.GsonUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares Gson's reflective adapters with the build-time generated ones:
+ * first use on a fresh Gson instance, steady-state write and read time, and
+ * bytes allocated per record. Not a unit test; run it by hand:
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=library.serialization.SerializerBenchmark -Dexec.args="100000 7"
+ * </pre>
+ * Arguments: number of records (default 100000) and rounds (default 7).
+ * Reported times are medians; the first two rounds are warm-up and not counted.
+ */
+public class SerializerBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = Math.max(3, args.length > 1 ? Integer.parseInt(args[1]) : 7);
+        System.out.printf("%,d records, %d rounds%n%n", records, rounds);
+
+        System.out.printf("%-8s %-11s %15s %11s %11s %14s %14s%n", "data", "adapters",
+                "first use (us)", "write (ms)", "read (ms)", "write (B/rec)", "read (B/rec)");
+        run("books", Book.class, books(records), rounds);
+        run("loans", Loan.class, loans(records), rounds);
+    }
+
+    private static <T> void run(String name, Class<T> type, Map<String, T> data, int rounds) {
+        T sample = data.values().iterator().next();
+        measure(name, "reflective", type, data, rounds, new Gson(), sample);
+        measure(name, "generated", type, data, rounds, GsonUtils.createCompactGson(), sample);
+    }
+
+    private static <T> void measure(String name, String adapters, Class<T> type, Map<String, T> data,
+                                    int rounds, Gson gson, T sample) {
+        long start = System.nanoTime();
+        gson.fromJson(gson.toJson(sample), type);
+        long firstUseMicros = (System.nanoTime() - start) / 1_000;
+
+        Type mapType = TypeToken.getParameterized(Map.class, String.class, type).getType();
+        String json = gson.toJson(data, mapType);
+        long[] writes = new long[rounds - 2];
+        long[] reads = new long[rounds - 2];
+        long writeBytes = 0;
+        long readBytes = 0;
+        for (int round = 0; round < rounds; round++) {
+            long allocated = THREADS.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            gson.toJson(data, mapType);
+            long write = System.nanoTime() - start;
+            long afterWrite = THREADS.getCurrentThreadAllocatedBytes();
+
+            start = System.nanoTime();
+            Map<String, T> parsed = gson.fromJson(json, mapType);
+            long read = System.nanoTime() - start;
+            long afterRead = THREADS.getCurrentThreadAllocatedBytes();
+            if (parsed.size() != data.size()) {
+                throw new IllegalStateException("Read " + parsed.size() + " of " + data.size() + " records");
+            }
+            if (round >= 2) {
+                writes[round - 2] = write / 1_000_000;
+                reads[round - 2] = read / 1_000_000;
+                writeBytes = afterWrite - allocated;
+                readBytes = afterRead - afterWrite;
+            }
+        }
+        System.out.printf("%-8s %-11s %,15d %,11d %,11d %,14d %,14d%n", name, adapters, firstUseMicros,
+                median(writes), median(reads), writeBytes / data.size(), readBytes / data.size());
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static Map<String, Book> books(int count) {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Book book = new Book("Title " + i, "Author " + (i % 500), "978-" + (1_000_000_000L + i), "BOOK");
+            book.setId("BOOK_" + i);
+            books.put(book.getId(), book);
+        }
+        return books;
+    }
+
+    private static Map<String, Loan> loans(int count) {
+        Map<String, Loan> loans = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Loan loan = new Loan("USER_" + (i % 1000), "BOOK_" + i, 14);
+            loan.setId("LOAN_" + i);
+            loans.put(loan.getId(), loan);
+        }
+        return loans;
+    }
+}
@@ -0,0 +1,115 @@
+package library.serialization.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonAdapterProcessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private boolean compile(String className, String source, DiagnosticCollector<JavaFileObject> diagnostics)
+            throws IOException {
+        Path sourceFile = tempDir.resolve("src/sample/" + className + ".java");
+        Files.createDirectories(sourceFile.getParent());
+        Files.writeString(sourceFile, source);
+        Path classes = Files.createDirectories(tempDir.resolve("classes"));
+        Path generated = Files.createDirectories(tempDir.resolve("generated"));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics,
+                    List.of("-classpath", System.getProperty("java.class.path"),
+                            "-d", classes.toString(), "-s", generated.toString()),
+                    null, files.getJavaFileObjects(sourceFile));
+            task.setProcessors(List.of(new JsonAdapterProcessor()));
+            return task.call();
+        }
+    }
+
+    @Test
+    void testGeneratesAdapterAndFactory() throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean success = compile("Sample", "package sample;\n"
+                + "@library.serialization.GenerateJsonAdapter\n"
+                + "public class Sample {\n"
+                + "    private String name;\n"
+                + "    private int count;\n"
+                + "    private boolean isOpen;\n"
+                + "    static int ignored;\n"
+                + "    transient String skipped;\n"
+                + "    public Sample() {}\n"
+                + "    Sample(String name, int count, boolean isOpen) {\n"
+                + "        this.name = name; this.count = count; this.isOpen = isOpen;\n"
+                + "    }\n"
+                + "    public String getName() { return name; }\n"
+                + "    public int getCount() { return count; }\n"
+                + "    public boolean isOpen() { return isOpen; }\n"
+                + "}\n", diagnostics);
+
+        assertTrue(success, diagnostics.getDiagnostics().toString());
+        String adapter = Files.readString(tempDir.resolve("generated/sample/SampleJsonAdapter.java"));
+        assertTrue(adapter.contains("out.name(\"name\").value(value.getName());"));
+        assertTrue(adapter.contains("out.name(\"isOpen\").value(value.isOpen());"));
+        assertTrue(adapter.contains("case \"count\":"));
+        assertTrue(adapter.contains("return new Sample(name, count, isOpen);"));
+        assertFalse(adapter.contains("ignored"));
+        assertFalse(adapter.contains("skipped"));
+        assertTrue(Files.exists(tempDir.resolve("generated/library/serialization/GeneratedJsonAdapters.java")));
+    }
+
+    @Test
+    void testRejectsFieldsWithoutGetterAndUnsupportedFields() throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean success = compile("Broken", "package sample;\n"
+                + "@library.serialization.GenerateJsonAdapter\n"
+                + "public class Broken {\n"
+                + "    private String hidden;\n"
+                + "    private java.util.List<String> tags;\n"
+                + "    public java.util.List<String> getTags() { return tags; }\n"
+                + "}\n", diagnostics);
+
+        assertFalse(success);
+        assertTrue(errors(diagnostics).contains("hidden needs a non-private getter"), errors(diagnostics));
+        assertTrue(errors(diagnostics).contains("Unsupported field type"), errors(diagnostics));
+    }
+
+    @Test
+    void testRequiresAConstructorTakingTheFields() throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean success = compile("NoConstructor", "package sample;\n"
+                + "@library.serialization.GenerateJsonAdapter\n"
+                + "public class NoConstructor {\n"
+                + "    private String name;\n"
+                + "    private int count;\n"
+                + "    NoConstructor(int count, String name) {}\n"
+                + "    public NoConstructor() {}\n"
+                + "    public String getName() { return name; }\n"
+                + "    public int getCount() { return count; }\n"
+                + "}\n", diagnostics);
+
+        assertFalse(success);
+        String expected = "needs a non-private constructor taking (java.lang.String name, int count)";
+        assertTrue(errors(diagnostics).contains(expected), errors(diagnostics));
+    }
+
+    private static String errors(DiagnosticCollector<JavaFileObject> diagnostics) {
+        return diagnostics.getDiagnostics().stream()
+                .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+                .map(d -> d.getMessage(null))
+                .reduce("", String::concat);
+    }
+}
@@ -0,0 +1,117 @@
+package library.storage;
+
+import library.models.Loan;
+import library.utils.GsonUtils;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchivalPolicyTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    @TempDir
+    Path tempDir;
+
+    private JsonFileStorageEngine<Loan> engine;
+    private ColdArchive<Loan> archive;
+    private ArchivalPolicy<Loan> policy;
+
+    @BeforeEach
+    void setUp() {
+        engine = DataFile.LOANS.engine(tempDir.toString(), new JsonFileHandler()).load();
+        archive = DataFile.LOANS.archive(tempDir.toString());
+        policy = new ArchivalPolicy<>(Loan::getId, loan -> loan.isReturned() ? loan.getReturnDateTime() : null);
+    }
+
+    private Loan loan(String id, String userId, Integer returnedDaysAgo) {
+        Loan loan = new Loan(userId, "B1", 14);
+        loan.setId(id);
+        if (returnedDaysAgo != null) {
+            loan.setReturned(true);
+            loan.setReturnDateTime(NOW.minusDays(returnedDaysAgo));
+        }
+        assertTrue(engine.put(id, loan));
+        return loan;
+    }
+
+    @Test
+    void testOnlyLoansClosedLongerThanTheRetentionAreMoved() {
+        loan("L1", "U1", 400);
+        loan("L2", "U1", 10);
+        loan("L3", "U1", null);
+
+        assertEquals(1, policy.archive(engine, archive, 365, NOW));
+
+        assertNull(engine.get("L1"));
+        assertNotNull(engine.get("L2"));
+        assertNotNull(engine.get("L3"));
+        assertEquals("L1", archive.get("L1").getId());
+        assertEquals(1, archive.listSegments().size());
+    }
+
+    @Test
+    void testNothingToArchiveWritesNoSegment() {
+        loan("L1", "U1", 5);
+
+        assertEquals(0, policy.archive(engine, archive, 30, NOW));
+
+        assertTrue(archive.listSegments().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> policy.archive(engine, archive, -1, NOW));
+    }
+
+    @Test
+    void testArchivedLoansStayDeletedAfterReload() {
+        loan("L1", "U1", 100);
+        policy.archive(engine, archive, 30, NOW);
+
+        JsonFileStorageEngine<Loan> reloaded = DataFile.LOANS.engine(tempDir.toString(), new JsonFileHandler()).load();
+
+        assertEquals(0, reloaded.size());
+    }
+
+    @Test
+    void testUnreadableDateKeepsTheRecordLive() {
+        Loan loan = loan("L1", "U1", 100);
+        loan.setReturnDate("last spring");
+
+        assertFalse(policy.isArchivable(loan, 30, NOW));
+    }
+
+    @Test
+    void testHistoryAddsArchivedRecordsThatAreNotLive() {
+        loan("L1", "U1", 100);
+        loan("L2", "U2", 100);
+        policy.archive(engine, archive, 30, NOW);
+        loan("L3", "U1", null);
+        // archived again after a failed delete: the live copy wins
+        Loan copy = new Loan("U1", "B2", 14);
+        copy.setId("L1");
+        assertTrue(engine.put("L1", copy));
+
+        List<Loan> history = policy.withHistory(engine.findBy("userId", "U1", Loan::getUserId), archive,
+                loan -> "U1".equals(loan.getUserId()));
+
+        assertEquals(2, history.size());
+        assertEquals("B2", history.stream().filter(l -> l.getId().equals("L1")).findFirst().get().getBookId());
+        assertEquals(1, policy.withHistory(List.of(copy), null, loan -> true).size());
+    }
+
+    @Test
+    void testCompactGsonRoundTripsArchivedDates() {
+        Loan loan = loan("L1", "U1", 100);
+        policy.archive(engine, archive, 30, NOW);
+
+        ColdArchive<Loan> reopened = new ColdArchive<>(archive.getDirectory(), "loans", Loan.class,
+                GsonUtils.createGson());
+
+        assertEquals(loan.getReturnDate(), reopened.get("L1").getReturnDate());
+    }
+}
@@ -0,0 +1,112 @@
+package library.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BPlusTreeTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileChannel channel;
+    private BufferPool pool;
+    private BPlusTree tree;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        channel = FileChannel.open(tempDir.resolve("tree.btree"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        pool = new BufferPool(channel, 1024, 4, 1);
+        tree = BPlusTree.create(pool);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        channel.close();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testMatchesASortedMapThroughSplitsAndEvictions() throws Exception {
+        TreeMap<String, String> expected = new TreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 3000; i++) {
+            String key = "K" + random.nextInt(5000);
+            String value = "value-" + i + "-" + "x".repeat(random.nextInt(60));
+            if (random.nextInt(5) == 0) {
+                assertEquals(expected.remove(key), toString(tree.remove(bytes(key))));
+            } else {
+                assertEquals(expected.put(key, value), toString(tree.put(bytes(key), bytes(value))));
+            }
+        }
+
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), string(tree.get(bytes(entry.getKey()))));
+        }
+        List<String> scanned = new ArrayList<>();
+        tree.scan(null, (key, value) -> scanned.add(string(key)));
+        assertEquals(new ArrayList<>(expected.keySet()), scanned);
+        assertTrue(pool.getPageCount() > 10, "expected the tree to split");
+        assertTrue(pool.getResidentCount() <= pool.getFrameCount());
+    }
+
+    private static String toString(byte[] value) {
+        return value == null ? null : string(value);
+    }
+
+    @Test
+    void testScanStartsAtTheFirstKeyNotBelowTheBound() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            tree.put(bytes(String.format("K%04d", i * 2)), bytes("v"));
+        }
+
+        List<String> scanned = new ArrayList<>();
+        tree.scan(bytes("K0101"), (key, value) -> {
+            scanned.add(string(key));
+            return scanned.size() < 3;
+        });
+
+        assertEquals(List.of("K0102", "K0104", "K0106"), scanned);
+    }
+
+    @Test
+    void testReopenedTreeReadsFlushedPages() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            tree.put(bytes("key" + i), bytes("value" + i));
+        }
+        pool.flushDirty();
+
+        BPlusTree reopened = new BPlusTree(new BufferPool(channel, 1024, 4, pool.getPageCount()), tree.getRoot());
+
+        assertEquals("value123", string(reopened.get(bytes("key123"))));
+        assertNull(reopened.get(bytes("missing")));
+    }
+
+    @Test
+    void testOversizedEntryIsRejected() {
+        byte[] value = new byte[tree.maxEntrySize()];
+
+        assertThrows(IllegalArgumentException.class, () -> tree.put(bytes("key"), value));
+    }
+}
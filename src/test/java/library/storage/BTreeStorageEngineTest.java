@@ -0,0 +1,188 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.models.Book;
+import library.utils.GsonUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BTreeStorageEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Gson gson;
+    private String file;
+    private BTreeStorageEngine<Book> engine;
+
+    @BeforeEach
+    void setUp() {
+        gson = GsonUtils.createCompactGson();
+        file = tempDir.resolve("books.btree").toString();
+        engine = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    private BTreeStorageEngine<Book> open() {
+        return new BTreeStorageEngine<>(file, Book.class, gson, 1024, 8)
+                .index("isbn", Book::getIsbn)
+                .index("title", Book::getTitle)
+                .open();
+    }
+
+    private Book book(String id, String title, String isbn) {
+        Book book = new Book(title, "Author", isbn, "BOOK");
+        book.setId(id);
+        return book;
+    }
+
+    private Map<String, Book> catalog(int count) {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String id = String.format("B%05d", i);
+            books.put(id, book(id, "Title " + (count - i), "978-" + i));
+        }
+        return books;
+    }
+
+    @Test
+    void testPutGetDeleteAndReopen() {
+        assertTrue(engine.put("B1", book("B1", "Dune", "111")));
+        assertTrue(engine.put("B2", book("B2", "Emma", "222")));
+        assertTrue(engine.delete("B2"));
+        assertFalse(engine.delete("B2"));
+        engine.close();
+
+        engine = open();
+        assertEquals(1, engine.size());
+        assertEquals("Dune", engine.get("B1").getTitle());
+        assertTrue(engine.contains("B1"));
+        assertFalse(engine.contains("B2"));
+    }
+
+    @Test
+    void testLargeCatalogStaysWithinTheBufferPool() {
+        assertTrue(engine.putAll(catalog(2000)));
+
+        assertEquals(2000, engine.size());
+        assertTrue(engine.getPageCount() > 100);
+        assertTrue(engine.getCachedPageCount() <= 8);
+        assertEquals("978-1234", engine.get("B01234").getIsbn());
+        assertEquals("B00000", engine.findAll().get(0).getId());
+        assertEquals(2000, engine.findAll().size());
+    }
+
+    @Test
+    void testSecondaryTreesAnswerLookupsAndRanges() {
+        engine.putAll(catalog(500));
+
+        assertEquals("B00042", engine.findBy("isbn", "978-42", Book::getIsbn).get(0).getId());
+        assertTrue(engine.findBy("isbn", "978-9999", Book::getIsbn).isEmpty());
+        assertEquals(1, engine.findBy("title", "Title 7", Book::getTitle).size());
+
+        List<String> page = engine.findFrom("title", "Title 2", 3, Book::getTitle).stream()
+                .map(Book::getTitle).collect(Collectors.toList());
+        assertEquals(List.of("Title 2", "Title 20", "Title 200"), page);
+        assertEquals(List.of("B00100", "B00101"), engine.findFrom(BTreeStorageEngine.ID, "B00100", 2, Book::getId)
+                .stream().map(Book::getId).collect(Collectors.toList()));
+
+        // Title 1, Title 10 and Title 100 to Title 109
+        List<Book> before = engine.findBefore("title", "Title 11", Book::getTitle);
+        assertEquals(12, before.size());
+        assertTrue(before.stream().allMatch(book -> book.getTitle().compareTo("Title 11") < 0));
+    }
+
+    @Test
+    void testUpdateMovesSecondaryKeys() {
+        engine.put("B1", book("B1", "Dune", "111"));
+        engine.put("B1", book("B1", "Dune Messiah", "112"));
+
+        assertTrue(engine.findBy("isbn", "111", Book::getIsbn).isEmpty());
+        assertTrue(engine.findBy("title", "Dune", Book::getTitle).isEmpty());
+        assertEquals("B1", engine.findBy("isbn", "112", Book::getIsbn).get(0).getId());
+        assertEquals(1, engine.size());
+
+        engine.delete("B1");
+        assertTrue(engine.findBy("isbn", "112", Book::getIsbn).isEmpty());
+    }
+
+    @Test
+    void testLongTitlesStillMatchExactly() {
+        String prefix = "A".repeat(70);
+        engine.put("B1", book("B1", prefix + " one", "1"));
+        engine.put("B2", book("B2", prefix + " two", "2"));
+
+        List<Book> found = engine.findBy("title", prefix + " two", Book::getTitle);
+
+        assertEquals(1, found.size());
+        assertEquals("B2", found.get(0).getId());
+    }
+
+    @Test
+    void testMissingIndexIsBuiltOnOpen() {
+        engine.close();
+        engine = new BTreeStorageEngine<>(file, Book.class, gson, 1024, 8).open();
+        engine.putAll(catalog(50));
+        engine.close();
+
+        engine = open();
+
+        assertEquals("B00007", engine.findBy("isbn", "978-7", Book::getIsbn).get(0).getId());
+    }
+
+    @Test
+    void testScanAndClear() {
+        engine.putAll(catalog(100));
+
+        assertEquals(12, engine.scan(book -> book.getTitle().startsWith("Title 1")).size());
+        assertTrue(engine.clear());
+        assertEquals(0, engine.size());
+        assertNull(engine.get("B00001"));
+        assertTrue(engine.put("B1", book("B1", "Dune", "111")));
+        assertEquals(1, engine.findBy("isbn", "111", Book::getIsbn).size());
+    }
+
+    @Test
+    void testOversizedRecordIsRejected() {
+        assertFalse(engine.put("B1", book("B1", "x".repeat(2000), "1")));
+        assertEquals(0, engine.size());
+        assertNull(engine.get("B1"));
+    }
+
+    @Test
+    void testForeignFileIsRejected() throws Exception {
+        Path other = Files.writeString(tempDir.resolve("other.btree"), "not a tree file, just some text here");
+
+        assertThrows(IllegalStateException.class,
+                () -> new BTreeStorageEngine<>(other.toString(), Book.class, gson).open());
+    }
+
+    @Test
+    void testDataFileCreatesIndexedEngine() {
+        Path dataDir = tempDir.resolve("data");
+        BTreeStorageEngine<Book> books = DataFile.BOOKS.btreeEngine(dataDir.toString());
+        try {
+            books.put("B1", book("B1", "Dune", "111"));
+
+            assertEquals(dataDir.resolve("books.btree").toString(), books.getFilePath());
+            assertEquals(1, books.findBy("title", "Dune", Book::getTitle).size());
+        } finally {
+            books.close();
+        }
+    }
+}
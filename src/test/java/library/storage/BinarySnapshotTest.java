@@ -0,0 +1,259 @@
+package library.storage;
+
+import library.models.Book;
+import library.models.CD;
+import library.models.CDFine;
+import library.models.CDLoan;
+import library.models.Fine;
+import library.models.Loan;
+import library.models.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    private <T> Map<String, T> roundTrip(Class<T> type, Map<String, T> records) throws IOException {
+        String file = tempDir.resolve(type.getSimpleName() + ".snap").toString();
+        BinarySnapshot<T> snapshot = new BinarySnapshot<>(type);
+        snapshot.write(file, records);
+
+        Map<String, T> loaded = new LinkedHashMap<>();
+        LoadReport report = snapshot.read(file, loaded);
+        assertFalse(report.hasErrors());
+        assertEquals(records.size(), report.getLoadedCount());
+        return loaded;
+    }
+
+    @Test
+    void testBookRoundTripKeepsOrderNullsAndUnicode() throws IOException {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            Book book = new Book("كتاب " + i, i % 2 == 0 ? "Author" : null, "ISBN" + i, "BOOK");
+            book.setId("BOOK_" + i);
+            book.setAvailable(i % 3 == 0);
+            books.put(book.getId(), book);
+        }
+
+        Map<String, Book> loaded = roundTrip(Book.class, books);
+
+        assertEquals(books.keySet().stream().toList(), loaded.keySet().stream().toList());
+        Book first = loaded.get("BOOK_0");
+        assertEquals("كتاب 0", first.getTitle());
+        assertEquals("Author", first.getAuthor());
+        assertTrue(first.isAvailable());
+        assertNull(loaded.get("BOOK_1").getAuthor());
+        assertEquals(books.get("BOOK_7").getCreatedAt(), loaded.get("BOOK_7").getCreatedAt());
+    }
+
+    @Test
+    void testAllModelsRoundTrip() throws IOException {
+        CD cd = new CD("Kind of Blue", "Miles Davis", "Jazz");
+        cd.setId("CD_1");
+        cd.setTrackCount(5);
+        cd.setReleaseYear(1959);
+        assertEquals(1959, roundTrip(CD.class, Map.of("CD_1", cd)).get("CD_1").getReleaseYear());
+
+        User user = new User("Sara", "sara@example.com", "hash", "ADMIN");
+        user.setId("USER_1");
+        assertEquals("sara@example.com", roundTrip(User.class, Map.of("USER_1", user)).get("USER_1").getEmail());
+
+        Loan loan = new Loan("USER_1", "BOOK_1", 14);
+        loan.setId("LOAN_1");
+        loan.setFineAmount(2.5);
+        assertEquals(2.5, roundTrip(Loan.class, Map.of("LOAN_1", loan)).get("LOAN_1").getFineAmount());
+
+        CDLoan cdLoan = new CDLoan("USER_1", "CD_1");
+        cdLoan.setId("CDLOAN_1");
+        assertEquals("CD_1", roundTrip(CDLoan.class, Map.of("CDLOAN_1", cdLoan)).get("CDLOAN_1").getCdId());
+
+        Fine fine = new Fine("USER_1", "LOAN_1", 10.0);
+        fine.setId("FINE_1");
+        assertEquals(10.0, roundTrip(Fine.class, Map.of("FINE_1", fine)).get("FINE_1").getAmount());
+
+        CDFine cdFine = new CDFine("USER_1", "CDLOAN_1", 20.0);
+        cdFine.setId("CDFINE_1");
+        cdFine.setPaidAmount(5.0);
+        CDFine loadedFine = roundTrip(CDFine.class, Map.of("CDFINE_1", cdFine)).get("CDFINE_1");
+        assertEquals(15.0, loadedFine.getRemainingAmount());
+    }
+
+    @Test
+    void testRepeatedStringsAreStoredOnce() throws IOException {
+        Map<String, Loan> loans = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            Loan loan = new Loan("USER_WITH_A_RATHER_LONG_IDENTIFIER", "BOOK_1", 14);
+            loan.setId("LOAN_" + i);
+            loans.put(loan.getId(), loan);
+        }
+        Path file = tempDir.resolve("loans.snap");
+
+        new BinarySnapshot<>(Loan.class).write(file.toString(), loans);
+
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertEquals(content.indexOf("USER_WITH_A_RATHER_LONG_IDENTIFIER"),
+                content.lastIndexOf("USER_WITH_A_RATHER_LONG_IDENTIFIER"));
+    }
+
+    @Test
+    void testWriteLeavesNoTemporaryFiles() throws IOException {
+        Path file = tempDir.resolve("books.snap");
+        BinarySnapshot<Book> snapshot = new BinarySnapshot<>(Book.class);
+
+        snapshot.write(file.toString(), new LinkedHashMap<>());
+        snapshot.write(file.toString(), new LinkedHashMap<>());
+
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void testTruncatedSnapshotKeepsCompleteRecords() throws IOException {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            Book book = new Book("Title " + i, "Author", "ISBN" + i, "BOOK");
+            book.setId("BOOK_" + i);
+            books.put(book.getId(), book);
+        }
+        Path file = tempDir.resolve("books.snap");
+        BinarySnapshot<Book> snapshot = new BinarySnapshot<>(Book.class, 1);
+        snapshot.write(file.toString(), books);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+
+        Map<String, Book> loaded = new LinkedHashMap<>();
+        LoadReport report = snapshot.read(file.toString(), loaded);
+
+        assertEquals(9, loaded.size());
+        assertFalse(report.isComplete());
+    }
+
+    @Test
+    void testRejectsOtherFilesAndTypes() throws IOException {
+        Path json = tempDir.resolve("books.json");
+        Files.writeString(json, "{\"BOOK_1\":{}}");
+        assertThrows(IOException.class,
+                () -> new BinarySnapshot<>(Book.class).read(json.toString(), new LinkedHashMap<>()));
+
+        Path cds = tempDir.resolve("cds.snap");
+        new BinarySnapshot<>(CD.class).write(cds.toString(), new LinkedHashMap<>());
+        assertThrows(IOException.class,
+                () -> new BinarySnapshot<>(Book.class).read(cds.toString(), new LinkedHashMap<>()));
+    }
+
+    @Test
+    void testPathForJsonFile() {
+        assertEquals("data/books.snap", BinarySnapshot.pathFor("data/books.json"));
+        assertEquals("data/books.db.snap", BinarySnapshot.pathFor("data/books.db"));
+    }
+
+    private Map<String, Book> books(int count) {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Book book = new Book("Title " + i, "Author " + i, "ISBN" + i, "BOOK");
+            book.setId("BOOK_" + i);
+            books.put(book.getId(), book);
+        }
+        return books;
+    }
+
+    @Test
+    void testCorruptBlockKeepsValidPrefix() throws IOException {
+        Path file = tempDir.resolve("books.snap");
+        BinarySnapshot<Book> snapshot = new BinarySnapshot<>(Book.class, 10);
+        snapshot.write(file.toString(), books(30));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 20] ^= 0x01; // inside the last block
+        Files.write(file, bytes);
+
+        Map<String, Book> loaded = new LinkedHashMap<>();
+        LoadReport report = snapshot.read(file.toString(), loaded);
+
+        assertEquals(20, loaded.size());
+        assertTrue(loaded.containsKey("BOOK_19"));
+        assertFalse(report.isComplete());
+        assertTrue(report.getErrors().get(0).contains("block 3 of 3"), report.getErrors().toString());
+        assertTrue(report.getErrors().get(0).contains("checksum"));
+    }
+
+    @Test
+    void testVerifyChecksWithoutDecoding() throws IOException {
+        Path file = tempDir.resolve("books.snap");
+        BinarySnapshot<Book> snapshot = new BinarySnapshot<>(Book.class, 4);
+        snapshot.write(file.toString(), books(10));
+
+        LoadReport intact = snapshot.verify(file.toString());
+        assertTrue(intact.isComplete());
+        assertEquals(10, intact.getLoadedCount());
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 0x7F;
+        Files.write(file, bytes);
+
+        LoadReport damaged = snapshot.verify(file.toString());
+        assertFalse(damaged.isComplete());
+        assertEquals(8, damaged.getLoadedCount());
+    }
+
+    @Test
+    void testDamagedHeaderIsRejected() throws IOException {
+        Path file = tempDir.resolve("books.snap");
+        BinarySnapshot<Book> snapshot = new BinarySnapshot<>(Book.class);
+        snapshot.write(file.toString(), books(3));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[20] ^= 0x01; // inside the class name
+        Files.write(file, bytes);
+
+        IOException error = assertThrows(IOException.class,
+                () -> snapshot.read(file.toString(), new LinkedHashMap<>()));
+        assertTrue(error.getMessage().contains("checksum"));
+    }
+
+    @Test
+    void testVersionOneSnapshotIsStillRead() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x4C42534E);
+        out.writeInt(1);
+        byte[] typeName = Book.class.getName().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(typeName.length);
+        out.write(typeName);
+        out.writeInt(0); // no fields
+        out.writeInt(1); // one string
+        out.writeInt(2);
+        out.write("B1".getBytes(StandardCharsets.UTF_8));
+        out.writeInt(1); // one record
+        out.writeInt(4);
+        out.writeInt(0);
+        Path file = tempDir.resolve("old.snap");
+        Files.write(file, bytes.toByteArray());
+
+        Map<String, Book> loaded = new LinkedHashMap<>();
+        LoadReport report = new BinarySnapshot<>(Book.class).read(file.toString(), loaded);
+
+        assertTrue(report.isComplete());
+        assertTrue(loaded.containsKey("B1"));
+    }
+
+    @Test
+    void testLargeRecordSetsSpanSeveralBlocks() throws IOException {
+        Map<String, Book> loaded = roundTrip(Book.class, books(1500));
+        assertEquals(1500, loaded.size());
+        assertEquals("Title 1499", loaded.get("BOOK_1499").getTitle());
+    }
+}
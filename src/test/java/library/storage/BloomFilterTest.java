@@ -0,0 +1,56 @@
+package library.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testAddedKeysAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(1000, BloomFilter.DEFAULT_BITS_PER_KEY);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("L" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("L" + i));
+        }
+    }
+
+    @Test
+    void testFalsePositiveRateIsLow() {
+        BloomFilter filter = new BloomFilter(1000, BloomFilter.DEFAULT_BITS_PER_KEY);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("L" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("M" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testWriteAndReadBack() throws IOException {
+        BloomFilter filter = new BloomFilter(10, BloomFilter.DEFAULT_BITS_PER_KEY);
+        filter.add("L1");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+
+        BloomFilter read = BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertTrue(read.mightContain("L1"));
+        assertFalse(read.mightContain("L2") && read.mightContain("L3") && read.mightContain("L4"));
+    }
+}
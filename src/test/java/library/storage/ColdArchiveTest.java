@@ -0,0 +1,97 @@
+package library.storage;
+
+import library.models.Loan;
+import library.utils.GsonUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColdArchiveTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ColdArchive<Loan> archive;
+
+    @BeforeEach
+    void setUp() {
+        archive = new ColdArchive<>(tempDir.resolve("archive").toString(), "loans", Loan.class,
+                GsonUtils.createCompactGson());
+    }
+
+    private static Map<String, Loan> loans(String userId, int from, int to) {
+        Map<String, Loan> loans = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            Loan loan = new Loan(userId, "B" + i, 14);
+            loan.setId("L" + i);
+            loans.put(loan.getId(), loan);
+        }
+        return loans;
+    }
+
+    @Test
+    void testEmptyArchiveHasNoRecords() {
+        assertNull(archive.get("L1"));
+        assertEquals(0, archive.size());
+        assertTrue(archive.listSegments().isEmpty());
+        assertFalse(Files.exists(tempDir.resolve("archive")));
+    }
+
+    @Test
+    void testEveryAppendWritesANewCompressedSegment() throws IOException {
+        assertTrue(archive.append(loans("U1", 0, 3)));
+        assertTrue(archive.append(loans("U2", 3, 5)));
+        assertTrue(archive.append(Map.of()));
+
+        assertEquals(List.of("loans-000001.json.gz", "loans-000002.json.gz"), archive.listSegments());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(tempDir.resolve("archive/loans-000001.json.gz")))) {
+            assertTrue(new String(in.readAllBytes()).startsWith("{\"L0\":{"));
+        }
+        assertEquals(5, archive.size());
+        assertEquals("U2", archive.get("L4").getUserId());
+        assertEquals(List.of("L3", "L4"),
+                archive.scan(loan -> "U2".equals(loan.getUserId())).stream().map(Loan::getId).toList());
+    }
+
+    @Test
+    void testNewestSegmentWins() {
+        archive.append(loans("U1", 0, 2));
+        archive.append(loans("U9", 1, 2));
+
+        assertEquals("U9", archive.get("L1").getUserId());
+        assertEquals(2, archive.size());
+        assertEquals(1, archive.scan(loan -> "U1".equals(loan.getUserId())).size());
+    }
+
+    @Test
+    void testOtherFilesInTheDirectoryAreIgnored() throws IOException {
+        archive.append(loans("U1", 0, 1));
+        Files.writeString(tempDir.resolve("archive/loans-000009.tmp"), "partial");
+        Files.writeString(tempDir.resolve("archive/cdloans-000001.json.gz"), "not ours");
+
+        assertTrue(archive.append(loans("U1", 1, 2)));
+
+        assertEquals(List.of("loans-000001.json.gz", "loans-000002.json.gz"), archive.listSegments());
+        assertEquals(2, archive.size());
+    }
+
+    @Test
+    void testDataFileArchiveLivesInTheDataDirectory() {
+        ColdArchive<Loan> loans = DataFile.LOANS.archive(tempDir.toString());
+
+        assertTrue(loans.append(loans("U1", 0, 1)));
+
+        assertTrue(Files.exists(tempDir.resolve("archive").resolve("loans-000001.json.gz")));
+    }
+}
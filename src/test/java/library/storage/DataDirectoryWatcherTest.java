@@ -0,0 +1,88 @@
+package library.storage;
+
+import library.models.Book;
+import library.utils.GsonUtils;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataDirectoryWatcherTest {
+
+    @TempDir
+    Path dataDir;
+
+    private JsonFileStorageEngine<Book> booksEngine() {
+        return new JsonFileStorageEngine<>(dataDir.resolve("books.json").toString(), Book.class,
+                GsonUtils.createGson(), new JsonFileHandler()).load();
+    }
+
+    @Test
+    void testReplacedFileIsAppliedInTheBackground() throws Exception {
+        Files.writeString(dataDir.resolve("books.json"), "{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\"}}");
+        JsonFileStorageEngine<Book> engine = booksEngine();
+        BlockingQueue<RecordChanges> seen = new LinkedBlockingQueue<>();
+
+        try (DataDirectoryWatcher watcher = new DataDirectoryWatcher(dataDir.toString(), 50)) {
+            watcher.watch(engine).onChange(seen::add);
+            watcher.start();
+            assertTrue(watcher.isRunning());
+
+            // like the import: write elsewhere, then move over the data file
+            Path imported = Files.writeString(dataDir.resolve("import.tmp"),
+                    "{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\"},\"B2\":{\"id\":\"B2\",\"title\":\"Emma\"}}");
+            Files.move(imported, dataDir.resolve("books.json"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            RecordChanges changes = seen.poll(10, TimeUnit.SECONDS);
+            assertNotNull(changes, "no reload within 10 seconds");
+            assertEquals(List.of("B2"), changes.getAdded());
+            assertEquals("Emma", engine.get("B2").getTitle());
+        }
+    }
+
+    @Test
+    void testRefreshIgnoresFilesThatAreNotWatched() {
+        try (DataDirectoryWatcher watcher = new DataDirectoryWatcher(dataDir.toString())) {
+            watcher.watch(booksEngine());
+
+            assertNull(watcher.refresh("users.json"));
+            assertFalse(watcher.isRunning());
+        }
+    }
+
+    @Test
+    void testRefreshReportsChangesToTheListener() throws Exception {
+        JsonFileStorageEngine<Book> engine = booksEngine();
+        BlockingQueue<RecordChanges> seen = new LinkedBlockingQueue<>();
+        try (DataDirectoryWatcher watcher = new DataDirectoryWatcher(dataDir.toString())) {
+            watcher.watch(engine).onChange(seen::add);
+
+            Files.writeString(dataDir.resolve("books.json"), "{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\"}}");
+            assertEquals(1, watcher.refresh("books.json").getAdded().size());
+            assertTrue(watcher.refresh("books.json").isEmpty());
+        }
+
+        assertEquals(1, seen.size());
+    }
+
+    @Test
+    void testEngineOutsideTheDirectoryIsRejected() throws Exception {
+        Path other = Files.createDirectory(dataDir.resolve("other"));
+        JsonFileStorageEngine<Book> engine = new JsonFileStorageEngine<>(other.resolve("books.json").toString(),
+                Book.class, GsonUtils.createGson(), new JsonFileHandler());
+
+        try (DataDirectoryWatcher watcher = new DataDirectoryWatcher(dataDir.toString())) {
+            assertThrows(IllegalArgumentException.class, () -> watcher.watch(engine));
+        }
+    }
+}
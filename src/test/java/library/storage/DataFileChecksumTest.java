@@ -0,0 +1,180 @@
+package library.storage;
+
+import library.models.Book;
+import library.utils.GsonUtils;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataFileChecksumTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private JsonFileHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        file = tempDir.resolve("books.json");
+        handler = new JsonFileHandler();
+    }
+
+    private Map<String, Book> books(String... titles) {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < titles.length; i++) {
+            Book book = new Book(titles[i], "Author", "ISBN-" + i, "BOOK");
+            book.setId("B" + i);
+            books.put(book.getId(), book);
+        }
+        return books;
+    }
+
+    private LoadReport load() {
+        return handler.readRecords(file.toString(), GsonUtils.createGson(), Book.class, new LinkedHashMap<>());
+    }
+
+    /** Damage the file the way a bad disk would: same size, same modification time */
+    private void flipByte(String from, String to) throws Exception {
+        FileTime written = Files.getLastModifiedTime(file);
+        String content = Files.readString(file);
+        Files.writeString(file, content.replace(from, to));
+        Files.setLastModifiedTime(file, written);
+    }
+
+    @Test
+    void testWriteRecordsKeepsASidecarThatVerifies() {
+        assertTrue(handler.writeRecords(file.toString(), GsonUtils.createGson(), books("Dune", "Emma")));
+
+        assertTrue(Files.exists(Path.of(DataFileChecksum.pathFor(file.toString()))));
+        LoadReport report = load();
+        assertTrue(report.isComplete());
+        assertFalse(report.hasErrors());
+        assertEquals(2, report.getLoadedCount());
+    }
+
+    @Test
+    void testDamageThatStillParsesIsReported() throws Exception {
+        handler.writeRecords(file.toString(), GsonUtils.createGson(), books("Dune", "Emma"));
+        flipByte("Dune", "Dunf");
+
+        LoadReport report = load();
+
+        assertFalse(report.isComplete());
+        assertTrue(report.getErrors().get(0).contains("checksum mismatch"));
+        assertEquals(2, report.getLoadedCount());
+    }
+
+    @Test
+    void testCompressedFilesAreVerifiedOnTheBytesOnDisk() throws Exception {
+        handler.setCompressed(true);
+        handler.writeRecords(file.toString(), GsonUtils.createGson(), books("Dune"));
+        assertTrue(load().isComplete());
+
+        FileTime written = Files.getLastModifiedTime(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1; // last byte of the gzip trailer
+        Files.write(file, bytes);
+        Files.setLastModifiedTime(file, written);
+
+        assertFalse(load().isComplete());
+    }
+
+    @Test
+    void testFileEditedAfterTheSidecarIsNotChecked() throws Exception {
+        handler.writeRecords(file.toString(), GsonUtils.createGson(), books("Dune"));
+        Files.writeString(file, "{\"B9\":{\"id\":\"B9\",\"title\":\"Edited\"}}");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        LoadReport report = load();
+
+        assertTrue(report.isComplete());
+        assertEquals(1, report.getLoadedCount());
+    }
+
+    @Test
+    void testCrashBeforeTheReplaceStillVerifiesTheOldFile() throws Exception {
+        handler.writeRecords(file.toString(), GsonUtils.createGson(), books("Dune"));
+        FileTime written = Files.getLastModifiedTime(file);
+
+        DataFileChecksum next = new DataFileChecksum();
+        try (InputStream in = next.wrap(new ByteArrayInputStream("{\"other\":{}}".getBytes(StandardCharsets.UTF_8)))) {
+            assertEquals('{', in.read());
+        }
+        next.record(file.toString());
+        Files.setLastModifiedTime(file, written);
+
+        assertEquals(2, Files.readAllLines(Path.of(DataFileChecksum.pathFor(file.toString()))).size());
+        assertTrue(load().isComplete());
+    }
+
+    private void assertReplacedFileLoads(FileTime sidecarTime) throws Exception {
+        // a replace within the timestamp resolution must not be reported as damage
+        Files.setLastModifiedTime(file, sidecarTime);
+        assertFalse(Files.exists(Path.of(DataFileChecksum.pathFor(file.toString()))));
+        assertTrue(load().isComplete());
+    }
+
+    @Test
+    void testWriteToFileDropsTheSidecar() throws Exception {
+        handler.writeRecords(file.toString(), GsonUtils.createGson(), books("Dune"));
+        FileTime written = Files.getLastModifiedTime(file);
+
+        assertTrue(handler.writeToFile(file.toString(), "{\"B9\":{\"id\":\"B9\",\"title\":\"Other\"}}"));
+
+        assertReplacedFileLoads(written);
+    }
+
+    @Test
+    void testDeferredWriteDropsTheSidecar() throws Exception {
+        handler.writeRecords(file.toString(), GsonUtils.createGson(), books("Dune"));
+        FileTime written = Files.getLastModifiedTime(file);
+        GroupCommitScheduler scheduler = new GroupCommitScheduler(60_000, 100);
+        try {
+            handler.setDeferredWriter(scheduler);
+            assertTrue(handler.writeRecords(file.toString(), GsonUtils.createGson(), books("Dune", "Emma")));
+            assertTrue(handler.sync());
+        } finally {
+            scheduler.close();
+            handler.setDeferredWriter(null);
+        }
+
+        assertReplacedFileLoads(written);
+    }
+
+    @Test
+    void testMigrationDropsTheSidecar() throws Exception {
+        handler.writeRecords(file.toString(), GsonUtils.createGson(), books("Dune"));
+        FileTime written = Files.getLastModifiedTime(file);
+        MigrationStep addShelf = new MigrationStep("books.json", 1, "add shelf", record ->
+                record.addProperty("shelf", "A1"));
+
+        assertTrue(new SchemaMigrator(tempDir.toString(), List.of(addShelf), 1).migrate().isSuccessful());
+
+        assertTrue(Files.readString(file).contains("\"shelf\""));
+        assertReplacedFileLoads(written);
+    }
+
+    @Test
+    void testFileWithoutSidecarLoadsUnchecked() throws Exception {
+        Files.writeString(file, "{\"B1\":{\"id\":\"B1\",\"title\":\"Plain\"}}");
+
+        LoadReport report = load();
+
+        assertTrue(report.isComplete());
+        assertEquals(1, report.getLoadedCount());
+    }
+}
@@ -0,0 +1,94 @@
+package library.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataFileLockTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testVersionStartsAtZeroAndEachWriteIncreasesIt() throws Exception {
+        String file = tempDir.resolve("books.json").toString();
+        DataFileLock lock = new DataFileLock(file);
+
+        assertEquals(0, lock.version());
+        assertEquals("first", lock.write(version -> {
+            assertEquals(0, version);
+            return "first";
+        }));
+        lock.write(version -> null);
+
+        assertEquals(2, lock.version());
+        assertEquals(2, new DataFileLock(file).version());
+        assertTrue(Files.exists(tempDir.resolve("books.json.lock")));
+    }
+
+    @Test
+    void testReadDoesNotChangeTheVersion() throws Exception {
+        DataFileLock lock = new DataFileLock(tempDir.resolve("books.json").toString());
+        lock.write(version -> null);
+
+        long read = lock.read(version -> version);
+        assertEquals(1, read);
+        assertEquals(1, lock.version());
+    }
+
+    @Test
+    void testWritersOnTheSameFileTakeTurns() throws Exception {
+        String file = tempDir.resolve("loans.json").toString();
+        AtomicBoolean inside = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] writers = new Future<?>[4];
+            for (int i = 0; i < writers.length; i++) {
+                writers[i] = pool.submit(() -> {
+                    start.await();
+                    DataFileLock lock = new DataFileLock(file);
+                    for (int n = 0; n < 25; n++) {
+                        lock.write(version -> {
+                            if (!inside.compareAndSet(false, true)) {
+                                overlapped.set(true);
+                            }
+                            Thread.yield();
+                            inside.set(false);
+                            return null;
+                        });
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertFalse(overlapped.get());
+        assertEquals(100, new DataFileLock(file).version());
+    }
+
+    @Test
+    void testNestedLockIsRejected() throws Exception {
+        DataFileLock lock = new DataFileLock(tempDir.resolve("users.json").toString());
+
+        assertThrows(IllegalStateException.class, () -> lock.read(version -> lock.write(inner -> null)));
+        assertEquals(0, lock.version());
+    }
+}
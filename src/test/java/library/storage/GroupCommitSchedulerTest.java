@@ -0,0 +1,203 @@
+package library.storage;
+
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitSchedulerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private GroupCommitScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        // long interval so only explicit flushes and batch limits trigger commits
+        scheduler = new GroupCommitScheduler(60_000, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void testWritesAreCoalescedPerFile() throws Exception {
+        String loans = tempDir.resolve("loans.json").toString();
+        String books = tempDir.resolve("books.json").toString();
+
+        scheduler.submit(loans, "{\"v\":1}");
+        scheduler.submit(books, "{\"v\":1}");
+        scheduler.submit(loans, "{\"v\":2}");
+
+        assertFalse(Files.exists(Path.of(loans)));
+        assertTrue(scheduler.flush());
+
+        assertEquals("{\"v\":2}", Files.readString(Path.of(loans)));
+        assertEquals("{\"v\":1}", Files.readString(Path.of(books)));
+        assertEquals(3, scheduler.getSubmittedWrites());
+        assertEquals(2, scheduler.getFileWrites());
+        assertEquals(1, scheduler.getCommitCount());
+    }
+
+    @Test
+    void testPendingContentIsVisibleBeforeCommit() {
+        String file = tempDir.resolve("users.json").toString();
+        scheduler.submit(file, "{\"pending\":true}");
+
+        assertEquals("{\"pending\":true}", scheduler.pendingContent(file));
+        scheduler.flush();
+        assertNull(scheduler.pendingContent(file));
+    }
+
+    @Test
+    void testBatchSizeTriggersCommit() throws Exception {
+        try (GroupCommitScheduler small = new GroupCommitScheduler(60_000, 2)) {
+            String file = tempDir.resolve("fines.json").toString();
+            var commit = small.pendingCommit();
+
+            small.submit(file, "{}");
+            small.submit(file, "{\"a\":1}");
+
+            assertTrue(commit.get(5, TimeUnit.SECONDS));
+            assertEquals("{\"a\":1}", Files.readString(Path.of(file)));
+        }
+    }
+
+    @Test
+    void testIntervalTriggersCommit() throws Exception {
+        try (GroupCommitScheduler fast = new GroupCommitScheduler(10, 1000)) {
+            String file = tempDir.resolve("cds.json").toString();
+            var commit = fast.pendingCommit();
+            fast.submit(file, "{\"b\":2}");
+
+            assertTrue(commit.get(5, TimeUnit.SECONDS));
+            assertTrue(Files.exists(Path.of(file)));
+        }
+    }
+
+    @Test
+    void testFlushWithNothingPending() {
+        assertTrue(scheduler.flush());
+        assertEquals(0, scheduler.getFileWrites());
+    }
+
+    @Test
+    void testCloseFlushesAndRejectsNewWrites() throws Exception {
+        String file = tempDir.resolve("cdloans.json").toString();
+        scheduler.submit(file, "{\"c\":3}");
+
+        scheduler.close();
+
+        assertEquals("{\"c\":3}", Files.readString(Path.of(file)));
+        assertFalse(scheduler.submit(file, "{}"));
+    }
+
+    @Test
+    void testWritesRacingCloseNeverThrow() throws Exception {
+        String file = tempDir.resolve("fines.json").toString();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        for (int round = 0; round < 50 && errors.isEmpty(); round++) {
+            GroupCommitScheduler racing = new GroupCommitScheduler(60_000, 1);
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread writer = new Thread(() -> {
+                    try {
+                        for (int i = 0; racing.submit(file, "{\"v\":" + i + "}"); i++) {
+                            racing.flush();
+                        }
+                        racing.flush();
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                });
+                writer.start();
+                writers.add(writer);
+            }
+            Thread.sleep(2);
+
+            racing.close();
+            for (Thread writer : writers) {
+                writer.join(10_000);
+                assertFalse(writer.isAlive());
+            }
+            assertTrue(racing.flush());
+        }
+        assertEquals(List.of(), errors);
+    }
+
+    @Test
+    void testFlushAfterCloseReportsUnwrittenFiles() {
+        scheduler.submit(tempDir.toString(), "{}");
+
+        scheduler.close();
+
+        assertFalse(scheduler.flush());
+    }
+
+    @Test
+    void testFailedWriteCompletesWithFalse() {
+        scheduler.submit(tempDir.toString(), "{}");
+        assertFalse(scheduler.flush());
+    }
+
+    @Test
+    void testFailedWriteStaysQueuedUntilItSucceeds() throws Exception {
+        Path blocker = tempDir.resolve("data");
+        Files.writeString(blocker, "not a directory");
+        String file = blocker.resolve("loans.json").toString();
+
+        scheduler.submit(file, "{\"v\":1}");
+        assertFalse(scheduler.flush());
+        assertEquals("{\"v\":1}", scheduler.pendingContent(file));
+
+        Files.delete(blocker);
+        assertTrue(scheduler.flush());
+        assertEquals("{\"v\":1}", Files.readString(Path.of(file)));
+        assertNull(scheduler.pendingContent(file));
+    }
+
+    @Test
+    void testCommitReplacesTheFileWithoutLeavingTemporaryFiles() throws Exception {
+        Path file = tempDir.resolve("books.json");
+        Files.writeString(file, "{\"old\":true}");
+
+        scheduler.submit(file.toString(), "{\"new\":true}");
+        assertTrue(scheduler.flush());
+
+        assertEquals("{\"new\":true}", Files.readString(file));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void testJsonFileHandlerDelegatesToScheduler() throws Exception {
+        JsonFileHandler handler = new JsonFileHandler(scheduler);
+        String file = tempDir.resolve("books.json").toString();
+
+        assertTrue(handler.writeToFile(file, "{\"x\":1}"));
+        assertEquals("{\"x\":1}", handler.readFromFile(file));
+
+        assertTrue(handler.writeToFileDurably(file, "{\"x\":2}"));
+        assertEquals("{\"x\":2}", Files.readString(Path.of(file)));
+    }
+
+    @Test
+    void testInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new GroupCommitScheduler(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new GroupCommitScheduler(1, 0));
+    }
+}
@@ -0,0 +1,228 @@
+package library.storage;
+
+import library.models.Book;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalBackupTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path dataDir;
+    private Path backupDir;
+    private IncrementalBackup backup;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataDir = Files.createDirectories(tempDir.resolve("data"));
+        backupDir = tempDir.resolve("backup");
+        backup = new IncrementalBackup(dataDir.toString(), backupDir.toString(), 256);
+    }
+
+    private JsonFileStorageEngine<Book> books() {
+        return DataFile.BOOKS.engine(dataDir.toString(), new JsonFileHandler()).load();
+    }
+
+    private void writeCatalog(int count) {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Book book = new Book("Title " + i, "Author " + i, "978-" + i, "BOOK");
+            book.setId(String.format("B%04d", i));
+            books.put(book.getId(), book);
+        }
+        assertTrue(books().putAll(books));
+    }
+
+    @Test
+    void testFirstBackupCopiesEveryFile() throws IOException {
+        writeCatalog(50);
+        Files.writeString(dataDir.resolve("users.json"), "{}");
+
+        IncrementalBackup.Point point = backup.backup();
+
+        assertEquals(List.of("books.json", "users.json"), point.getFiles());
+        assertEquals(Files.size(dataDir.resolve("books.json")) + 2, point.getBytesCopied());
+        assertEquals(List.of(point.getId()), backup.listPoints());
+    }
+
+    @Test
+    void testUnchangedFilesAreNotCopiedAgain() throws IOException {
+        writeCatalog(50);
+        backup.backup();
+
+        IncrementalBackup.Point second = backup.backup();
+
+        assertEquals(1, second.getFilesUnchanged());
+        assertEquals(0, second.getChunksCopied());
+        assertEquals(0, second.getBytesCopied());
+        assertEquals(2, backup.listPoints().size());
+    }
+
+    @Test
+    void testChangedRecordOnlyCopiesTheChunksAroundIt() throws IOException {
+        writeCatalog(300);
+        backup.backup();
+        long fileSize = Files.size(dataDir.resolve("books.json"));
+
+        Book book = books().get("B0150");
+        book.setTitle("A much longer title that shifts everything after it");
+        assertTrue(books().put(book.getId(), book));
+        Files.setLastModifiedTime(dataDir.resolve("books.json"), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        IncrementalBackup.Point second = backup.backup();
+
+        assertTrue(second.getChunksReused() > 0);
+        assertTrue(second.getBytesCopied() < fileSize / 5,
+                "copied " + second.getBytesCopied() + " of " + fileSize + " bytes");
+    }
+
+    @Test
+    void testRestoreReturnsToTheBackupPoint() throws IOException {
+        writeCatalog(100);
+        String first = backup.backup().getId();
+        byte[] original = Files.readAllBytes(dataDir.resolve("books.json"));
+
+        assertTrue(books().delete("B0007"));
+        Files.writeString(dataDir.resolve("fines.json"), "{}");
+        backup.backup();
+
+        assertEquals(1, backup.restore(first, dataDir.toString()));
+
+        assertArrayEquals(original, Files.readAllBytes(dataDir.resolve("books.json")));
+        assertFalse(Files.exists(dataDir.resolve("fines.json")));
+        assertNotNull(books().get("B0007"));
+    }
+
+    @Test
+    void testRestoreKeepsAStaleSnapshotOlderThanItsJson() throws IOException {
+        JsonFileStorageEngine<Book> engine = books();
+        Book book = new Book("Old title", "Author", "978-1", "BOOK");
+        book.setId("B0001");
+        engine.put("B0001", book);
+        assertTrue(engine.writeBinarySnapshot());
+        Path snapshot = Path.of(BinarySnapshot.pathFor(dataDir.resolve("books.json").toString()));
+        Files.setLastModifiedTime(snapshot, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        Book renamed = new Book("New title", "Author", "978-1", "BOOK");
+        renamed.setId("B0001");
+        engine.put("B0001", renamed);
+        assertEquals("New title", books().get("B0001").getTitle());
+
+        String point = backup.backup().getId();
+        backup.restore(point, dataDir.toString());
+
+        assertEquals("New title", books().get("B0001").getTitle());
+        assertFalse(Files.exists(Path.of(DataFileChecksum.pathFor(dataDir.resolve("books.json").toString()))));
+    }
+
+    @Test
+    void testRestoreBumpsTheLockVersionForRunningProcesses() throws IOException {
+        writeCatalog(10);
+        String point = backup.backup().getId();
+        DataFileLock lock = new DataFileLock(dataDir.resolve("books.json").toString());
+        long before = lock.version();
+
+        backup.restore(point, dataDir.toString());
+
+        assertEquals(before + 1, lock.version());
+    }
+
+    @Test
+    void testRestoreIntoAnotherDirectory() throws IOException {
+        writeCatalog(20);
+        Files.createDirectories(dataDir.resolve("loans.lsm"));
+        Files.writeString(dataDir.resolve("loans.lsm").resolve("MANIFEST"), "next 1\n");
+        String point = backup.backup().getId();
+        Path copy = tempDir.resolve("copy");
+
+        assertEquals(2, backup.restore(point, copy.toString()));
+
+        assertArrayEquals(Files.readAllBytes(dataDir.resolve("books.json")), Files.readAllBytes(copy.resolve("books.json")));
+        assertEquals("next 1\n", Files.readString(copy.resolve("loans.lsm").resolve("MANIFEST")));
+    }
+
+    @Test
+    void testLockAndIndexFilesAreSkipped() throws IOException {
+        writeCatalog(5);
+        DataFile.BOOKS.offsetIndex(dataDir.toString()).find("B0001");
+        assertTrue(Files.exists(dataDir.resolve("books.json.idx")));
+        assertTrue(Files.exists(dataDir.resolve("books.json.crc")));
+
+        IncrementalBackup.Point point = backup.backup();
+
+        assertEquals(List.of("books.json"), point.getFiles());
+    }
+
+    @Test
+    void testPruneDeletesOldPointsAndUnusedChunks() throws IOException {
+        writeCatalog(100);
+        String first = backup.backup().getId();
+        writeCatalog(200);
+        Files.setLastModifiedTime(dataDir.resolve("books.json"), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        String second = backup.backup().getId();
+
+        int deleted = backup.prune(1);
+
+        assertTrue(deleted > 0);
+        assertEquals(List.of(second), backup.listPoints());
+        assertThrows(IOException.class, () -> backup.restore(first, dataDir.toString()));
+        byte[] current = Files.readAllBytes(dataDir.resolve("books.json"));
+        Files.delete(dataDir.resolve("books.json"));
+        backup.restore(second, dataDir.toString());
+        assertArrayEquals(current, Files.readAllBytes(dataDir.resolve("books.json")));
+    }
+
+    @Test
+    void testBackupWaitsForAWriteInProgress() throws Exception {
+        writeCatalog(10);
+        DataFileLock lock = new DataFileLock(dataDir.resolve("loans.json").toString());
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> writer = executor.submit(() -> lock.write(version -> {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            Future<IncrementalBackup.Point> running = executor.submit(() -> backup.backup());
+            assertThrows(TimeoutException.class, () -> running.get(300, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            writer.get(5, TimeUnit.SECONDS);
+            assertEquals(List.of("books.json"), running.get(5, TimeUnit.SECONDS).getFiles());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testUnknownPointCannotBeRestored() {
+        assertThrows(IOException.class, () -> backup.restore("missing", dataDir.toString()));
+        assertThrows(IllegalArgumentException.class, () -> new IncrementalBackup("a", "b", 100));
+    }
+}
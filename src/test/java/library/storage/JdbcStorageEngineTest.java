@@ -0,0 +1,176 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.models.Book;
+import library.models.Fine;
+import library.models.Loan;
+import library.models.User;
+import library.repositories.FineRepository;
+import library.repositories.LoanRepository;
+import library.repositories.UserRepository;
+import library.utils.DateUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcStorageEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = new ConnectionPool("jdbc:h2:" + tempDir.resolve("library").toAbsolutePath(), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private Book book(String id, String isbn) {
+        Book book = new Book("Title " + id, "Author", isbn, "BOOK");
+        book.setId(id);
+        return book;
+    }
+
+    @Test
+    void testBasicOperationsKeepInsertionOrder() {
+        JdbcStorageEngine<Book> engine = DataFile.BOOKS.jdbcEngine(pool);
+
+        assertTrue(engine.put("B2", book("B2", "222")));
+        assertTrue(engine.put("B1", book("B1", "111")));
+        assertTrue(engine.put("B2", book("B2", "999")));
+
+        assertEquals(2, engine.size());
+        assertTrue(engine.contains("B1"));
+        assertEquals("999", engine.get("B2").getIsbn());
+        assertEquals(List.of("B2", "B1"), engine.findAll().stream().map(Book::getId).collect(Collectors.toList()));
+        assertEquals("B1", engine.findBy("isbn", "111", Book::getIsbn).get(0).getId());
+        assertTrue(engine.findBy("isbn", "222", Book::getIsbn).isEmpty());
+
+        assertTrue(engine.delete("B1"));
+        assertFalse(engine.delete("B1"));
+        assertNull(engine.get("B1"));
+
+        assertTrue(engine.putAll(Map.of("B3", book("B3", "333"), "B4", book("B4", "444"))));
+        assertTrue(engine.deleteAll(List.of("B3", "B2")));
+        assertEquals(List.of("B4"), engine.scan(b -> true).stream().map(Book::getId).collect(Collectors.toList()));
+
+        assertTrue(engine.clear());
+        assertEquals(0, engine.size());
+    }
+
+    @Test
+    void testDataSurvivesReopeningTheDatabase() throws Exception {
+        DataFile.BOOKS.jdbcEngine(pool).put("B1", book("B1", "111"));
+        pool.close();
+
+        pool = new ConnectionPool("jdbc:h2:" + tempDir.resolve("library").toAbsolutePath(), 1);
+        assertEquals("111", DataFile.BOOKS.jdbcEngine(pool).get("B1").getIsbn());
+    }
+
+    @Test
+    void testLookupsUseIndexes() throws Exception {
+        DataFile.LOANS.jdbcEngine(pool);
+
+        try (ConnectionPool.PooledConnection connection = pool.borrow();
+             ResultSet plan = connection.getConnection().createStatement()
+                     .executeQuery("EXPLAIN SELECT data FROM loans WHERE k_userId = 'U1'")) {
+            assertTrue(plan.next());
+            assertTrue(plan.getString(1).toUpperCase().contains("LOANS_K_USERID"), plan.getString(1));
+        }
+    }
+
+    @Test
+    void testPreparedStatementsAreReused() throws Exception {
+        try (ConnectionPool single = new ConnectionPool("jdbc:h2:mem:reuse", 1)) {
+            JdbcStorageEngine<Book> engine = DataFile.BOOKS.jdbcEngine(single);
+            for (int i = 0; i < 20; i++) {
+                engine.put("B" + i, book("B" + i, String.valueOf(i)));
+                engine.get("B" + i);
+                engine.findBy("isbn", String.valueOf(i), Book::getIsbn);
+            }
+            assertEquals(20, engine.size());
+
+            try (ConnectionPool.PooledConnection connection = single.borrow()) {
+                assertEquals(4, connection.getCachedStatementCount());
+            }
+        }
+    }
+
+    @Test
+    void testPoolHandsOutEachConnectionOnce() throws Exception {
+        ConnectionPool.PooledConnection first = pool.borrow();
+        ConnectionPool.PooledConnection second = pool.borrow();
+        assertNotSame(first, second);
+        assertEquals(0, pool.getIdleCount());
+
+        first.prepare("SELECT 1");
+        first.prepare("SELECT 1");
+        assertEquals(1, first.getCachedStatementCount());
+
+        first.close();
+        assertEquals(1, pool.getIdleCount());
+        assertSame(first, pool.borrow());
+        second.close();
+    }
+
+    @Test
+    void testRepositoriesRunIndexedQueries() {
+        LoanRepository loans = new LoanRepository(DataFile.LOANS.jdbcEngine(pool));
+        Loan current = new Loan("U1", "B1", 14);
+        Loan late = new Loan("U1", "B2", 14);
+        late.setDueDate(DateUtils.toString(LocalDateTime.now().minusDays(3)));
+        Loan returned = new Loan("U2", "B3", 14);
+        returned.setDueDate(DateUtils.toString(LocalDateTime.now().minusDays(3)));
+        returned.setReturned(true);
+        loans.save(current);
+        loans.save(late);
+        loans.save(returned);
+
+        assertEquals(2, loans.findByUserId("U1").size());
+        assertEquals(1, loans.findByBookId("B3").size());
+        List<Loan> overdue = loans.findOverdueLoans();
+        assertEquals(1, overdue.size());
+        assertEquals("B2", overdue.get(0).getBookId());
+
+        FineRepository fines = new FineRepository(DataFile.FINES.jdbcEngine(pool));
+        Fine open = new Fine("U1", "L1", 5.0);
+        Fine paid = new Fine("U1", "L2", 3.0);
+        paid.setPaid(true);
+        fines.save(open);
+        fines.save(paid);
+        open.setPaid(true);
+        fines.update(open);
+        open.setPaid(false);
+        fines.update(open);
+
+        assertEquals(1, fines.findUnpaidFines().size());
+        assertEquals(2, fines.findByUserId("U1").size());
+
+        UserRepository users = new UserRepository(DataFile.USERS.jdbcEngine(pool));
+        users.save(new User("Ann", "ann@example.com", "hash", "USER"));
+        assertEquals("Ann", users.findByEmail("ann@example.com").getName());
+    }
+
+    @Test
+    void testInvalidNamesAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new JdbcStorageEngine<>(pool, "books; DROP", Book.class, new Gson()));
+        assertThrows(IllegalArgumentException.class,
+                () -> new JdbcStorageEngine<>(pool, "books", Book.class, new Gson()).index("a b", Book::getIsbn));
+    }
+}
@@ -0,0 +1,323 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.models.Book;
+import library.utils.GsonUtils;
+import library.utils.HandlerStubs;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JsonFileStorageEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Gson gson;
+    private String file;
+
+    @BeforeEach
+    void setUp() {
+        gson = GsonUtils.createGson();
+        file = tempDir.resolve("books.json").toString();
+    }
+
+    private JsonFileStorageEngine<Book> newEngine() {
+        return new JsonFileStorageEngine<>(file, Book.class, gson, new JsonFileHandler()).load();
+    }
+
+    private Book book(String id, String title, String isbn) {
+        Book book = new Book(title, "Author", isbn, "BOOK");
+        book.setId(id);
+        return book;
+    }
+
+    @Test
+    void testPutGetAndReload() {
+        JsonFileStorageEngine<Book> engine = newEngine();
+
+        assertTrue(engine.put("B1", book("B1", "Dune", "111")));
+        assertTrue(engine.put("B2", book("B2", "Emma", "222")));
+
+        JsonFileStorageEngine<Book> reloaded = newEngine();
+        assertEquals(2, reloaded.size());
+        assertEquals("Dune", reloaded.get("B1").getTitle());
+        assertTrue(reloaded.contains("B2"));
+    }
+
+    @Test
+    void testDeleteMissingReturnsFalse() {
+        JsonFileStorageEngine<Book> engine = newEngine();
+        engine.put("B1", book("B1", "Dune", "111"));
+
+        assertFalse(engine.delete("missing"));
+        assertTrue(engine.delete("B1"));
+        assertEquals(0, newEngine().size());
+    }
+
+    @Test
+    void testScanAndFindBy() {
+        JsonFileStorageEngine<Book> engine = newEngine();
+        engine.putAll(Map.of("B1", book("B1", "Dune", "111"), "B2", book("B2", "Emma", "222")));
+
+        List<Book> found = engine.findBy("isbn", "222", Book::getIsbn);
+        assertEquals(1, found.size());
+        assertEquals("Emma", found.get(0).getTitle());
+        assertEquals(1, engine.scan(b -> b.getTitle().startsWith("D")).size());
+        assertEquals(2, engine.findAll().size());
+    }
+
+    @Test
+    void testBatchOperationsWriteOnce() {
+        JsonFileHandler handler = mock(JsonFileHandler.class);
+        HandlerStubs.stubWrites(handler, true);
+        JsonFileStorageEngine<Book> engine = new JsonFileStorageEngine<>(file, Book.class, gson, handler).load();
+
+        assertTrue(engine.putAll(Map.of("B1", book("B1", "Dune", "111"), "B2", book("B2", "Emma", "222"))));
+        assertTrue(engine.deleteAll(List.of("B1", "B2", "missing")));
+
+        verify(handler, times(2)).writeRecords(anyString(), any(), anyMap());
+        assertEquals(0, engine.size());
+    }
+
+    @Test
+    void testClearEmptiesFileAndJournal() throws Exception {
+        JsonFileStorageEngine<Book> engine = newEngine();
+        WriteAheadJournal journal = new WriteAheadJournal(tempDir.resolve("books.journal").toString());
+        engine.enableJournal(journal);
+        engine.put("B1", book("B1", "Dune", "111"));
+
+        assertTrue(engine.clear());
+
+        assertEquals(0, engine.size());
+        assertEquals(0, journal.getEntriesSinceSnapshot());
+        assertEquals("{}", Files.readString(Path.of(file)).trim());
+    }
+
+    @Test
+    void testUnreadableFileLoadsEmpty() throws Exception {
+        Files.writeString(Path.of(file), "not json");
+        JsonFileHandler handler = mock(JsonFileHandler.class);
+        HandlerStubs.stubContent(handler, "not json");
+
+        JsonFileStorageEngine<Book> engine = new JsonFileStorageEngine<>(file, Book.class, gson, handler).load();
+
+        assertEquals(0, engine.size());
+    }
+
+    @Test
+    void testFailedWriteReturnsFalse() {
+        JsonFileHandler handler = mock(JsonFileHandler.class);
+        doThrow(new RuntimeException("disk full")).when(handler).writeRecords(anyString(), any(), anyMap());
+        JsonFileStorageEngine<Book> engine = new JsonFileStorageEngine<>(file, Book.class, gson, handler);
+
+        assertFalse(engine.put("B1", book("B1", "Dune", "111")));
+        assertNotNull(engine.get("B1"));
+    }
+
+    @Test
+    void testHandlerIsResolvedOnEveryWrite() {
+        JsonFileHandler first = mock(JsonFileHandler.class);
+        JsonFileHandler second = mock(JsonFileHandler.class);
+        HandlerStubs.stubWrites(second, true);
+        JsonFileHandler[] current = {first};
+        JsonFileStorageEngine<Book> engine = new JsonFileStorageEngine<>(file, Book.class, gson, () -> current[0]);
+
+        current[0] = second;
+        assertTrue(engine.put("B1", book("B1", "Dune", "111")));
+
+        verify(first, never()).writeRecords(anyString(), any(), anyMap());
+    }
+
+    @Test
+    void testJsonEngineLookup() {
+        JsonFileStorageEngine<Book> engine = newEngine();
+        assertSame(engine, StorageEngines.json(engine));
+
+        @SuppressWarnings("unchecked")
+        StorageEngine<Book> other = mock(StorageEngine.class);
+        assertThrows(IllegalStateException.class, () -> StorageEngines.json(other));
+    }
+
+    @Test
+    void testLoadsBinarySnapshotWhenItIsNewer() throws Exception {
+        JsonFileStorageEngine<Book> engine = newEngine();
+        engine.put("B1", book("B1", "Dune", "111"));
+        engine.useBinarySnapshot(true);
+        engine.put("B2", book("B2", "Emma", "222"));
+
+        JsonFileHandler handler = mock(JsonFileHandler.class);
+        JsonFileStorageEngine<Book> reloaded = new JsonFileStorageEngine<>(file, Book.class, gson, handler).load();
+
+        assertEquals(2, reloaded.size());
+        verify(handler, never()).readRecords(anyString(), any(), any(), anyMap());
+        assertTrue(Files.exists(Path.of(engine.getSnapshotPath())));
+    }
+
+    @Test
+    void testNewerJsonWinsOverSnapshot() throws Exception {
+        JsonFileStorageEngine<Book> engine = newEngine();
+        engine.put("B1", book("B1", "Dune", "111"));
+        assertTrue(engine.writeBinarySnapshot());
+        engine.put("B2", book("B2", "Emma", "222"));
+        Files.setLastModifiedTime(Path.of(file),
+                FileTime.fromMillis(Files.getLastModifiedTime(Path.of(engine.getSnapshotPath())).toMillis() + 1000));
+
+        assertEquals(2, newEngine().size());
+    }
+
+    @Test
+    void testCorruptSnapshotFallsBackToJson() throws Exception {
+        JsonFileStorageEngine<Book> engine = newEngine();
+        engine.put("B1", book("B1", "Dune", "111"));
+        Files.writeString(Path.of(engine.getSnapshotPath()), "garbage");
+
+        JsonFileStorageEngine<Book> reloaded = newEngine();
+
+        assertEquals(1, reloaded.size());
+        assertEquals("Dune", reloaded.get("B1").getTitle());
+    }
+
+    @Test
+    void testConvertSnapshotBackToJson() throws Exception {
+        JsonFileStorageEngine<Book> engine = newEngine().useBinarySnapshot(true);
+        engine.put("B1", book("B1", "Dune", "111"));
+
+        assertTrue(newEngine().writeJson());
+        Files.delete(Path.of(engine.getSnapshotPath()));
+
+        assertEquals("Dune", newEngine().get("B1").getTitle());
+    }
+
+    private JsonFileStorageEngine<Book> newLockedEngine() {
+        return new JsonFileStorageEngine<>(file, Book.class, gson, new JsonFileHandler()).useFileLocking(true).load();
+    }
+
+    @Test
+    void testLockedEngineDetectsWritesFromAnotherProcess() {
+        JsonFileStorageEngine<Book> console = newLockedEngine();
+        JsonFileStorageEngine<Book> report = newLockedEngine();
+        console.put("B1", book("B1", "Dune", "111"));
+
+        assertFalse(console.hasChangedOnDisk());
+        assertTrue(report.hasChangedOnDisk());
+        assertTrue(report.reloadIfChanged());
+        assertEquals("Dune", report.get("B1").getTitle());
+        assertFalse(report.reloadIfChanged());
+    }
+
+    @Test
+    void testLockedWriteKeepsChangesFromAnotherProcess() {
+        JsonFileStorageEngine<Book> first = newLockedEngine();
+        JsonFileStorageEngine<Book> second = newLockedEngine();
+
+        assertTrue(first.put("B1", book("B1", "Dune", "111")));
+        assertTrue(second.put("B2", book("B2", "Emma", "222")));
+        assertFalse(second.delete("missing"));
+        assertTrue(first.delete("B2"));
+
+        JsonFileStorageEngine<Book> reloaded = newEngine();
+        assertEquals(1, reloaded.size());
+        assertTrue(reloaded.contains("B1"));
+        assertTrue(second.reloadIfChanged());
+        assertTrue(second.contains("B1"));
+        assertFalse(second.contains("B2"));
+    }
+
+    @Test
+    void testFailedLockedWriteKeepsVersionAndUndoesChange() throws Exception {
+        JsonFileHandler handler = spy(new JsonFileHandler());
+        JsonFileStorageEngine<Book> engine = new JsonFileStorageEngine<>(file, Book.class, gson, handler)
+                .useFileLocking(true).load();
+        assertTrue(engine.put("B1", book("B1", "Dune", "111")));
+        long version = new DataFileLock(file).version();
+
+        HandlerStubs.stubWrites(handler, false);
+
+        assertFalse(engine.put("B2", book("B2", "Emma", "222")));
+        assertFalse(engine.contains("B2"));
+        assertTrue(engine.contains("B1"));
+        assertEquals(version, new DataFileLock(file).version());
+        assertFalse(engine.hasChangedOnDisk());
+    }
+
+    @Test
+    void testFileLockingAndJournalCannotBeCombined() {
+        JsonFileStorageEngine<Book> engine = newLockedEngine();
+        WriteAheadJournal journal = new WriteAheadJournal(tempDir.resolve("books.journal").toString());
+
+        assertThrows(IllegalStateException.class, () -> engine.enableJournal(journal));
+    }
+
+    @Test
+    void testEngineWithoutLockingNeverReportsChanges() {
+        JsonFileStorageEngine<Book> engine = newEngine();
+        newLockedEngine().put("B1", book("B1", "Dune", "111"));
+
+        assertFalse(engine.hasChangedOnDisk());
+        assertFalse(engine.reloadIfChanged());
+    }
+
+    @Test
+    void testExternalChangesApplyOnlyChangedRecords() throws Exception {
+        Files.writeString(Path.of(file), "{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\"},"
+                + "\"B2\":{\"id\":\"B2\",\"title\":\"Emma\"},\"B3\":{\"id\":\"B3\",\"title\":\"Ulysses\"}}");
+        JsonFileStorageEngine<Book> engine = newEngine();
+        Book unchanged = engine.get("B1");
+
+        Files.writeString(Path.of(file), "{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\"},"
+                + "\"B2\":{\"id\":\"B2\",\"title\":\"Emma (2nd ed.)\"},\"B4\":{\"id\":\"B4\",\"title\":\"Kim\"}}");
+        RecordChanges changes = engine.applyExternalChanges();
+
+        assertEquals(List.of("B4"), changes.getAdded());
+        assertEquals(List.of("B2"), changes.getUpdated());
+        assertEquals(List.of("B3"), changes.getRemoved());
+        assertSame(unchanged, engine.get("B1"));
+        assertEquals("Emma (2nd ed.)", engine.get("B2").getTitle());
+        assertEquals(3, engine.size());
+    }
+
+    @Test
+    void testExternalChangesSkipEmptyOrBrokenFiles() throws Exception {
+        JsonFileStorageEngine<Book> engine = newEngine();
+        engine.put("B1", book("B1", "Dune", "111"));
+
+        Files.writeString(Path.of(file), "");
+        assertNull(engine.applyExternalChanges());
+        Files.writeString(Path.of(file), "{\"B1\":{\"id\":\"B1\",\"title\":\"Du");
+        assertNull(engine.applyExternalChanges());
+
+        assertEquals(1, engine.size());
+        assertEquals("Dune", engine.get("B1").getTitle());
+    }
+
+    @Test
+    void testExternalChangesKeepJournaledRecords() {
+        JsonFileStorageEngine<Book> engine = newEngine();
+        engine.enableJournal(new WriteAheadJournal(tempDir.resolve("books.journal").toString(), 2));
+        engine.put("A", book("A", "Dune", "111"));
+        engine.put("B", book("B", "Emma", "222"));
+        engine.put("C", book("C", "Kim", "333"));
+
+        // the checkpoint rewrote books.json, which the watcher reports after C was journaled
+        RecordChanges changes = engine.applyExternalChanges();
+
+        assertTrue(changes.getRemoved().isEmpty());
+        assertTrue(engine.contains("C"));
+        engine.put("D", book("D", "Ulysses", "444"));
+        JsonFileStorageEngine<Book> restarted = newEngine();
+        restarted.enableJournal(new WriteAheadJournal(tempDir.resolve("books.journal").toString(), 2));
+        assertEquals(List.of("A", "B", "C", "D"), List.copyOf(restarted.getRecords().keySet()));
+    }
+}
@@ -0,0 +1,134 @@
+package library.storage;
+
+import library.models.Book;
+import library.utils.GsonUtils;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyStorageEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JsonFileStorageEngine<Book> fileEngine() {
+        return new JsonFileStorageEngine<>(tempDir.resolve("books.json").toString(), Book.class,
+                GsonUtils.createGson(), new JsonFileHandler());
+    }
+
+    @Test
+    void testLoadsOnFirstAccessOnly() {
+        AtomicInteger loads = new AtomicInteger();
+        LazyStorageEngine<Book> engine = new LazyStorageEngine<>("books", () -> {
+            loads.incrementAndGet();
+            return fileEngine().load();
+        });
+
+        assertFalse(engine.isLoaded());
+        assertEquals(-1, engine.getLoadMillis());
+        assertTrue(engine.flush());
+
+        Book book = new Book("Lazy", "Author", "1", "BOOK");
+        book.setId("B1");
+        engine.put("B1", book);
+        assertEquals("Lazy", engine.get("B1").getTitle());
+
+        assertTrue(engine.isLoaded());
+        assertTrue(engine.getLoadMillis() >= 0);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testPointReadsAnswerLookupsWithoutLoading() {
+        JsonFileStorageEngine<Book> writer = fileEngine();
+        Book book = new Book("Indexed", "Author", "1", "BOOK");
+        book.setId("B1");
+        writer.put("B1", book);
+        LazyStorageEngine<Book> engine = new LazyStorageEngine<Book>("books", () -> fileEngine().load())
+                .usePointReads(new RecordOffsetIndex<>(tempDir.resolve("books.json").toString(), Book.class,
+                        GsonUtils.createGson()));
+
+        assertEquals("Indexed", engine.get("B1").getTitle());
+        assertTrue(engine.contains("B1"));
+        assertFalse(engine.contains("B2"));
+        assertFalse(engine.isLoaded());
+
+        book.setTitle("Changed");
+        engine.put("B1", book);
+        assertTrue(engine.isLoaded());
+        assertEquals("Changed", engine.get("B1").getTitle());
+    }
+
+    @Test
+    void testConcurrentFirstAccessLoadsOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        LazyStorageEngine<Book> engine = new LazyStorageEngine<>("books", () -> {
+            loads.incrementAndGet();
+            return fileEngine().load();
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> sizes = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                sizes.add(pool.submit(() -> {
+                    start.await();
+                    return engine.size();
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> size : sizes) {
+                assertEquals(0, size.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testWhenLoadedRunsBeforeFirstUse() {
+        LazyStorageEngine<Book> engine = new LazyStorageEngine<>("books", () -> fileEngine().load());
+        List<String> events = new ArrayList<>();
+
+        engine.whenLoaded(loaded -> events.add("loaded with " + loaded.size()));
+        assertTrue(events.isEmpty());
+
+        engine.findAll();
+        assertEquals(List.of("loaded with 0"), events);
+
+        engine.whenLoaded(loaded -> events.add("again"));
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void testBackgroundPrefetchWarmsEngines() {
+        LazyStorageEngine<Book> first = new LazyStorageEngine<>("first", () -> fileEngine().load());
+        LazyStorageEngine<Book> failing = new LazyStorageEngine<>("failing", () -> {
+            throw new IllegalStateException("broken");
+        });
+        LazyStorageEngine<Book> last = new LazyStorageEngine<>("last", () -> fileEngine().load());
+
+        BackgroundPrefetch prefetch = new BackgroundPrefetch().add(first).add(failing).add(last);
+        prefetch.start();
+
+        assertTrue(prefetch.await(5, TimeUnit.SECONDS));
+        assertTrue(first.isLoaded());
+        assertFalse(failing.isLoaded());
+        assertTrue(last.isLoaded());
+        assertThrows(IllegalStateException.class, () -> prefetch.add(first));
+    }
+}
@@ -0,0 +1,295 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.models.Loan;
+import library.utils.GsonUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LsmStorageEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Gson gson;
+    private String directory;
+    private LsmStorageEngine<Loan> engine;
+
+    @BeforeEach
+    void setUp() {
+        gson = GsonUtils.createCompactGson();
+        directory = tempDir.resolve("loans.lsm").toString();
+        engine = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    private LsmStorageEngine<Loan> open() {
+        return new LsmStorageEngine<>(directory, Loan.class, gson, 10).open();
+    }
+
+    private Loan loan(String id, String userId) {
+        Loan loan = new Loan(userId, "B" + id, 28);
+        loan.setId(id);
+        return loan;
+    }
+
+    private Map<String, Loan> history(int from, int to) {
+        Map<String, Loan> loans = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            String id = String.format("L%05d", i);
+            loans.put(id, loan(id, "U" + (i % 7)));
+        }
+        return loans;
+    }
+
+    private long files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(directory))) {
+            return files.filter(file -> file.toString().endsWith(suffix)).count();
+        }
+    }
+
+    @Test
+    void testPutGetAndDeleteInMemtable() {
+        assertTrue(engine.put("L1", loan("L1", "U1")));
+
+        assertEquals("U1", engine.get("L1").getUserId());
+        assertTrue(engine.contains("L1"));
+        assertEquals(1, engine.size());
+
+        assertTrue(engine.delete("L1"));
+        assertNull(engine.get("L1"));
+        assertFalse(engine.delete("L1"));
+        assertEquals(0, engine.size());
+    }
+
+    @Test
+    void testFullMemtablesAreFlushedToRuns() throws IOException {
+        history(0, 35).forEach(engine::put);
+        assertTrue(engine.awaitBackgroundWork());
+
+        assertEquals(3, engine.getFlushCount());
+        assertEquals(List.of(3), engine.getRunCounts());
+        assertEquals(3, files(".sst"));
+        assertEquals(5, engine.getMemtableSize());
+        assertEquals(35, engine.size());
+        assertEquals("L00003", engine.get("L00003").getId());
+        assertEquals("L00034", engine.get("L00034").getId());
+    }
+
+    @Test
+    void testLevelZeroIsCompactedIntoLevelOne() {
+        engine.putAll(history(0, 10));
+        engine.putAll(history(10, 20));
+        engine.putAll(history(20, 30));
+        engine.putAll(history(30, 40));
+        assertTrue(engine.awaitBackgroundWork());
+
+        assertEquals(1, engine.getCompactionCount());
+        assertEquals(List.of(0, 1), engine.getRunCounts());
+        assertEquals(40, engine.size());
+        assertEquals(40, engine.findAll().size());
+    }
+
+    @Test
+    void testNewestVersionWinsAcrossRuns() {
+        engine.putAll(history(0, 10));
+        Loan returned = loan("L00004", "U4");
+        returned.setReturnDate("2026-01-01T10:00:00");
+        engine.put("L00004", returned);
+        engine.putAll(history(10, 19));
+        assertTrue(engine.awaitBackgroundWork());
+
+        assertEquals("2026-01-01T10:00:00", engine.get("L00004").getReturnDate());
+        assertEquals(1, engine.scan(loan -> loan.getReturnDate() != null).size());
+        assertEquals(19, engine.size());
+    }
+
+    @Test
+    void testTombstonesHideOlderRunsAndAreDroppedByCompaction() {
+        engine.putAll(history(0, 10));
+        engine.deleteAll(List.of("L00001", "L00002"));
+        engine.putAll(history(10, 18));
+        assertTrue(engine.awaitBackgroundWork());
+
+        assertNull(engine.get("L00001"));
+        assertFalse(engine.findAll().stream().anyMatch(loan -> loan.getId().equals("L00002")));
+        assertEquals(16, engine.size());
+
+        engine.putAll(history(18, 40));
+        assertTrue(engine.awaitBackgroundWork());
+
+        assertNull(engine.get("L00002"));
+        assertEquals(38, engine.size());
+        assertEquals(38, engine.findAll().size());
+    }
+
+    @Test
+    void testBloomFiltersSkipRunsWithoutTheKey() {
+        engine.putAll(history(0, 10));
+        engine.putAll(history(10, 20));
+        engine.putAll(history(20, 30));
+        assertTrue(engine.awaitBackgroundWork());
+        long readsBefore = engine.getRunReads();
+
+        for (int i = 0; i < 30; i++) {
+            assertNotNull(engine.get(String.format("L%05d", i)));
+        }
+
+        // every key lives in one of three runs; the filters spare most of the other reads
+        assertTrue(engine.getRunReads() - readsBefore < 45, "runs read: " + (engine.getRunReads() - readsBefore));
+        assertTrue(engine.getBloomSkips() > 0);
+        assertNull(engine.get("missing"));
+    }
+
+    @Test
+    void testReopenReplaysLogAndKeepsRuns() throws IOException {
+        engine.putAll(history(0, 10));
+        engine.put("L00050", loan("L00050", "U1"));
+        engine.delete("L00003");
+        assertTrue(engine.awaitBackgroundWork());
+        engine.close();
+
+        engine = open();
+
+        assertEquals(10, engine.size());
+        assertNotNull(engine.get("L00050"));
+        assertNull(engine.get("L00003"));
+        assertEquals(2, engine.getMemtableSize());
+        assertTrue(files(".log") >= 1);
+    }
+
+    @Test
+    void testTornLogEntryIsCutOff() throws IOException {
+        engine.put("L1", loan("L1", "U1"));
+        engine.put("L2", loan("L2", "U2"));
+        engine.close();
+        Path log;
+        try (Stream<Path> files = Files.list(Path.of(directory))) {
+            log = files.filter(file -> file.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        engine = open();
+
+        assertNotNull(engine.get("L1"));
+        assertNull(engine.get("L2"));
+        assertTrue(engine.put("L3", loan("L3", "U3")));
+        engine.close();
+        engine = open();
+        assertEquals(List.of("L1", "L3"),
+                engine.findAll().stream().map(Loan::getId).collect(Collectors.toList()));
+    }
+
+    private Path onlyLog() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(directory))) {
+            return files.filter(file -> file.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+    }
+
+    @Test
+    void testGarbageLogTailIsCutOff() throws IOException {
+        engine.put("L1", loan("L1", "U1"));
+        engine.close();
+        Path log = onlyLog();
+        long valid = Files.size(log);
+        // a length that would not fit in memory, then a length that fits but fails the checksum
+        Files.write(log, new byte[] {0x7f, -1, -1, -1, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        engine = open();
+
+        assertEquals(1, engine.size());
+        assertEquals(valid, Files.size(log));
+        engine.close();
+        Files.write(log, new byte[] {0, 0, 0, 4, 1, 2, 3, 4, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        engine = open();
+
+        assertEquals(List.of("L1"), engine.findAll().stream().map(Loan::getId).collect(Collectors.toList()));
+        assertEquals(valid, Files.size(log));
+    }
+
+    @Test
+    void testZeroFilledLogTailIsNotReplayed() throws IOException {
+        engine.put("L1", loan("L1", "U1"));
+        engine.close();
+        Path log = onlyLog();
+        long valid = Files.size(log);
+        Files.write(log, new byte[4096], StandardOpenOption.APPEND);
+
+        engine = open();
+
+        assertNull(engine.get(""));
+        assertEquals(List.of("L1"), engine.findAll().stream().map(Loan::getId).collect(Collectors.toList()));
+        assertEquals(valid, Files.size(log));
+    }
+
+    @Test
+    void testRunMissingFromManifestIsDeletedOnOpen() throws IOException {
+        engine.close();
+        Files.writeString(Path.of(directory, "run-999999.sst"), "partial");
+
+        engine = open();
+
+        assertEquals(0, files(".sst"));
+        assertTrue(engine.put("L1", loan("L1", "U1")));
+    }
+
+    @Test
+    void testFindByMergesRunsAndMemtable() {
+        engine.putAll(history(0, 25));
+        assertTrue(engine.awaitBackgroundWork());
+
+        List<Loan> forUser = engine.findBy("userId", "U3", Loan::getUserId);
+
+        assertEquals(IntStream.range(0, 25).filter(i -> i % 7 == 3).count(), forUser.size());
+    }
+
+    @Test
+    void testClearRemovesRunsAndLogs() throws IOException {
+        engine.putAll(history(0, 30));
+        assertTrue(engine.awaitBackgroundWork());
+
+        assertTrue(engine.clear());
+        assertTrue(engine.awaitBackgroundWork());
+
+        assertEquals(0, engine.size());
+        assertTrue(engine.findAll().isEmpty());
+        assertEquals(0, files(".sst"));
+        engine.close();
+        engine = open();
+        assertEquals(0, engine.size());
+    }
+
+    @Test
+    void testDataFileCreatesEngineInDataDirectory() {
+        LsmStorageEngine<Loan> loans = DataFile.LOANS.lsmEngine(tempDir.resolve("data").toString());
+        try {
+            assertTrue(loans.put("L1", loan("L1", "U1")));
+            assertEquals(tempDir.resolve("data").resolve("loans.lsm"), loans.getDirectory());
+        } finally {
+            loans.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package library.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ParallelBootstrapTest {
+
+    @SuppressWarnings("unchecked")
+    private LazyStorageEngine<Object> slowEngine(String name, long millis, Set<String> threads) {
+        return new LazyStorageEngine<>(name, () -> {
+            threads.add(Thread.currentThread().getName());
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return mock(StorageEngine.class);
+        });
+    }
+
+    @Test
+    void testEnginesLoadConcurrently() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<LazyStorageEngine<Object>> engines = List.of(
+                slowEngine("users", 300, threads), slowEngine("books", 300, threads),
+                slowEngine("loans", 300, threads), slowEngine("fines", 300, threads));
+
+        ParallelBootstrap.Report report = new ParallelBootstrap(4).load(engines);
+
+        assertTrue(report.isSuccessful());
+        assertEquals(4, threads.size());
+        assertTrue(report.getWallMillis() < 1000, "took " + report.getWallMillis() + " ms");
+        assertTrue(report.getLoadMillis().get("books") >= 300);
+        engines.forEach(engine -> assertTrue(engine.isLoaded()));
+    }
+
+    @Test
+    void testThreadCountIsBounded() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<LazyStorageEngine<Object>> engines = List.of(
+                slowEngine("a", 10, threads), slowEngine("b", 10, threads),
+                slowEngine("c", 10, threads), slowEngine("d", 10, threads));
+
+        new ParallelBootstrap(2).load(engines);
+
+        assertTrue(threads.size() <= 2);
+    }
+
+    @Test
+    void testFailureIsReportedAndOthersStillLoad() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        LazyStorageEngine<Object> broken = new LazyStorageEngine<>("cdfines", () -> {
+            throw new IllegalStateException("corrupt file");
+        });
+        LazyStorageEngine<Object> fine = slowEngine("users", 1, threads);
+
+        ParallelBootstrap.Report report = new ParallelBootstrap(2).load(List.of(broken, fine));
+
+        assertFalse(report.isSuccessful());
+        assertEquals("corrupt file", report.getFailures().get("cdfines"));
+        assertTrue(fine.isLoaded());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        report.print(new PrintStream(out, true, StandardCharsets.UTF_8));
+        String printed = out.toString(StandardCharsets.UTF_8);
+        assertTrue(printed.contains("Loaded users"));
+        assertTrue(printed.contains("Failed cdfines"));
+    }
+
+    @Test
+    void testEmptyListAndInvalidThreads() {
+        assertTrue(new ParallelBootstrap().load(List.of()).isSuccessful());
+        assertThrows(IllegalArgumentException.class, () -> new ParallelBootstrap(0));
+    }
+}
@@ -0,0 +1,158 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.models.Book;
+import library.utils.GsonUtils;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordOffsetIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Gson gson;
+    private Path dataFile;
+    private RecordOffsetIndex<Book> index;
+
+    @BeforeEach
+    void setUp() {
+        gson = GsonUtils.createGson();
+        dataFile = tempDir.resolve("books.json");
+        index = new RecordOffsetIndex<>(dataFile.toString(), Book.class, gson);
+    }
+
+    private Book book(String id, String title) {
+        Book book = new Book(title, "Author", "978-" + id, "BOOK");
+        book.setId(id);
+        return book;
+    }
+
+    private void writeCatalog(int count) {
+        JsonFileStorageEngine<Book> engine = new JsonFileStorageEngine<>(dataFile.toString(), Book.class, gson,
+                new JsonFileHandler());
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            books.put("B" + i, book("B" + i, "Title \"" + i + "\" {vol. " + i + "}"));
+        }
+        assertTrue(engine.putAll(books));
+    }
+
+    @Test
+    void testFindsEveryRecordWrittenByTheEngine() throws IOException {
+        writeCatalog(300);
+
+        for (int i = 0; i < 300; i++) {
+            assertEquals("Title \"" + i + "\" {vol. " + i + "}", index.find("B" + i).getTitle());
+        }
+        assertNull(index.find("B300"));
+        assertNull(index.find(null));
+        assertEquals(300, index.getEntryCount());
+        assertEquals(1, index.getBuildCount());
+        assertTrue(Files.exists(Path.of(index.getIndexPath())));
+    }
+
+    @Test
+    void testMissingFileHasNoRecords() throws IOException {
+        assertNull(index.find("B1"));
+        assertFalse(Files.exists(Path.of(index.getIndexPath())));
+    }
+
+    @Test
+    void testIndexFileIsReusedByANewInstance() throws IOException {
+        writeCatalog(10);
+        index.find("B1");
+
+        RecordOffsetIndex<Book> reopened = new RecordOffsetIndex<>(dataFile.toString(), Book.class, gson);
+
+        assertTrue(reopened.isCurrent());
+        assertEquals("B7", reopened.find("B7").getId());
+        assertEquals(0, reopened.getBuildCount());
+    }
+
+    @Test
+    void testRebuildLeavesAnotherProcessTemporaryFileAlone() throws IOException {
+        writeCatalog(10);
+        Path foreign = Path.of(index.getIndexPath() + ".tmp");
+        Files.writeString(foreign, "being written elsewhere");
+
+        index.rebuild();
+
+        assertEquals("being written elsewhere", Files.readString(foreign));
+        assertEquals("B3", index.find("B3").getId());
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().endsWith(".tmp")).count());
+        }
+    }
+
+    @Test
+    void testChangedFileIsReindexed() throws IOException {
+        writeCatalog(10);
+        assertNotNull(index.find("B9"));
+
+        writeCatalog(5);
+        Files.setLastModifiedTime(dataFile, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        assertFalse(index.isCurrent());
+        assertNull(index.find("B9"));
+        assertEquals("B4", index.find("B4").getId());
+        assertEquals(2, index.getBuildCount());
+    }
+
+    @Test
+    void testRewriteWithSameSizeAndTimestampIsDetected() throws IOException {
+        Files.writeString(dataFile, "{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\"},\"B2\":{\"id\":\"B2\",\"title\":\"Emma\"}}");
+        FileTime modified = Files.getLastModifiedTime(dataFile);
+        assertEquals("Emma", index.find("B2").getTitle());
+
+        Files.writeString(dataFile, "{\"B2\":{\"id\":\"B2\",\"title\":\"Emma\"},\"B1\":{\"id\":\"B1\",\"title\":\"Dune\"}}");
+        Files.setLastModifiedTime(dataFile, modified);
+
+        assertEquals("Emma", index.find("B2").getTitle());
+        assertEquals("Dune", index.find("B1").getTitle());
+    }
+
+    @Test
+    void testLastDuplicateWins() throws IOException {
+        Files.writeString(dataFile, "{\"B1\":{\"title\":\"Old\"},\"B2\":null,\"B1\":{\"title\":\"New\"}}");
+
+        assertEquals("New", index.find("B1").getTitle());
+        assertNull(index.find("B2"));
+    }
+
+    @Test
+    void testCompressedFileCannotBeIndexed() throws IOException {
+        JsonFileHandler handler = new JsonFileHandler();
+        handler.setCompressed(true);
+        new JsonFileStorageEngine<>(dataFile.toString(), Book.class, gson, handler).put("B1", book("B1", "Dune"));
+
+        assertThrows(IOException.class, () -> index.find("B1"));
+    }
+
+    @Test
+    void testPendingJournalPreventsIndexing() throws IOException {
+        writeCatalog(3);
+        WriteAheadJournal journal = WriteAheadJournal.forDataFile(dataFile.toString());
+        assertTrue(journal.appendDelete("B1"));
+
+        assertThrows(IOException.class, () -> index.find("B1"));
+    }
+
+    @Test
+    void testFileThatIsNotAnObjectIsRejected() throws IOException {
+        Files.writeString(dataFile, "[{\"id\":\"B1\"}]");
+
+        assertThrows(IOException.class, () -> index.find("B1"));
+    }
+}
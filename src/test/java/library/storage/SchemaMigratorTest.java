@@ -0,0 +1,136 @@
+package library.storage;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import library.models.Book;
+import library.models.CDFine;
+import library.models.CDLoan;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigratorTest {
+
+    @TempDir
+    Path dataDir;
+
+    private SchemaMigrator migrator() {
+        return new SchemaMigrator(dataDir.toString(), SchemaMigrator.defaultSteps(), 2);
+    }
+
+    @Test
+    void testDefaultStepsUpgradeOldRecords() throws Exception {
+        Files.writeString(dataDir.resolve("books.json"),
+                "{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\",\"type\":\"BOOK\"}}");
+        Files.writeString(dataDir.resolve("cdloans.json"),
+                "{\"L1\":{\"id\":\"L1\",\"dueDate\":\"2024-05-01\",\"borrowDate\":\"2024-04-24T10:15:00\"}}");
+        Files.writeString(dataDir.resolve("cdfines.json"),
+                "{\"F1\":{\"id\":\"F1\",\"amount\":10.0,\"paidAmount\":4.0}}");
+
+        SchemaMigrator.Report report = migrator().migrate();
+
+        assertTrue(report.isSuccessful(), report.getFailures().toString());
+        assertEquals(3, report.getMigrated().size());
+        assertFalse(Files.readString(dataDir.resolve("books.json")).contains("type"));
+
+        CDLoan loan = DataFile.CD_LOANS.engine(dataDir.toString(), new JsonFileHandler()).load().get("L1");
+        assertEquals("2024-05-01T00:00:00", loan.getDueDate());
+        assertEquals(2024, loan.getDueDateTime().getYear());
+        assertEquals("2024-04-24T10:15:00", loan.getBorrowDate());
+
+        CDFine fine = DataFile.CD_FINES.engine(dataDir.toString(), new JsonFileHandler()).load().get("F1");
+        assertEquals(6.0, fine.getRemainingAmount(), 0.001);
+        Book book = DataFile.BOOKS.engine(dataDir.toString(), new JsonFileHandler()).load().get("B1");
+        assertEquals("Dune", book.getTitle());
+    }
+
+    @Test
+    void testVersionsAreRecordedAndFilesMigrateOnce() throws Exception {
+        Files.writeString(dataDir.resolve("books.json"), "{\"B1\":{\"id\":\"B1\",\"type\":\"BOOK\"}}");
+        SchemaMigrator migrator = migrator();
+        assertEquals(1, migrator.getVersion("books.json"));
+        assertEquals(2, migrator.getTargetVersion("books.json"));
+        assertEquals(1, migrator.getTargetVersion("users.json"));
+
+        migrator.migrate();
+
+        assertEquals(2, migrator.getVersion("books.json"));
+        assertEquals(2, migrator.getVersion("cdfines.json"));
+        assertTrue(Files.exists(dataDir.resolve(SchemaMigrator.SCHEMA_FILE)));
+        assertTrue(migrator.migrate().getMigrated().isEmpty());
+    }
+
+    @Test
+    void testLaterStepsRunOnlyForFilesBehind() throws Exception {
+        Files.writeString(dataDir.resolve("users.json"), "{\"U1\":{\"id\":\"U1\",\"name\":\"Ann\"}}");
+        MigrationStep addRole = new MigrationStep("users.json", 1, "add role", record ->
+                record.addProperty("role", "MEMBER"));
+        MigrationStep renameName = new MigrationStep("users.json", 2, "rename name", record ->
+                record.add("fullName", record.remove("name")));
+
+        new SchemaMigrator(dataDir.toString(), List.of(addRole), 1).migrate();
+        Files.writeString(dataDir.resolve("users.json"), "{\"U1\":{\"id\":\"U1\",\"name\":\"Ann\"}}");
+        SchemaMigrator.Report report = new SchemaMigrator(dataDir.toString(), List.of(addRole, renameName), 1).migrate();
+
+        assertEquals(1L, report.getMigrated().get("users.json"));
+        JsonObject user = JsonParser.parseString(Files.readString(dataDir.resolve("users.json")))
+                .getAsJsonObject().getAsJsonObject("U1");
+        assertEquals("Ann", user.get("fullName").getAsString());
+        assertFalse(user.has("role"));
+    }
+
+    @Test
+    void testCompressedFilesStayCompressed() throws Exception {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dataDir.resolve("books.json")))) {
+            out.write("{\"B1\":{\"id\":\"B1\",\"title\":\"Dune\",\"type\":\"BOOK\"}}".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertTrue(migrator().migrate().isSuccessful());
+
+        byte[] bytes = Files.readAllBytes(dataDir.resolve("books.json"));
+        assertEquals(0x1f, bytes[0] & 0xff);
+        assertEquals("Dune", DataFile.BOOKS.engine(dataDir.toString(), new JsonFileHandler()).load()
+                .get("B1").getTitle());
+    }
+
+    @Test
+    void testBrokenFileKeepsItsContentAndVersion() throws Exception {
+        Files.writeString(dataDir.resolve("books.json"), "{\"B1\":{\"id\":");
+        SchemaMigrator migrator = migrator();
+
+        SchemaMigrator.Report report = migrator.migrate();
+
+        assertTrue(report.getFailures().containsKey("books.json"));
+        assertEquals("{\"B1\":{\"id\":", Files.readString(dataDir.resolve("books.json")));
+        assertEquals(1, migrator.getVersion("books.json"));
+        assertFalse(Files.exists(dataDir.resolve("books.json.migrating")));
+        assertEquals(2, migrator.getVersion("cdfines.json"));
+    }
+
+    @Test
+    void testNewerBinarySnapshotBlocksMigration() throws Exception {
+        Files.writeString(dataDir.resolve("books.json"), "{}");
+        Files.writeString(dataDir.resolve("books.snap"), "snapshot");
+
+        SchemaMigrator.Report report = migrator().migrate();
+
+        assertTrue(report.getFailures().get("books.json").contains("to-json"));
+    }
+
+    @Test
+    void testStepsMustStartAtOneWithoutGaps() {
+        MigrationStep second = new MigrationStep("books.json", 2, "second", record -> { });
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new SchemaMigrator(dataDir.toString(), List.of(second), 1));
+    }
+}
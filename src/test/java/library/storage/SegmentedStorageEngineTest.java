@@ -0,0 +1,144 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.models.CD;
+import library.repositories.CDRepository;
+import library.utils.GsonUtils;
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedStorageEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Gson gson;
+    private String directory;
+
+    @BeforeEach
+    void setUp() {
+        gson = GsonUtils.createGson();
+        directory = tempDir.resolve("cds").toString();
+    }
+
+    private SegmentedStorageEngine<CD> newEngine(boolean writeThrough) {
+        return new SegmentedStorageEngine<>(directory, CD.class, gson, new JsonFileHandler(), 100, writeThrough).load();
+    }
+
+    private Map<String, CD> catalog(int count) {
+        Map<String, CD> cds = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            CD cd = new CD("Album " + i, "Artist " + (i % 10), "Rock");
+            cd.setId("CD_" + i);
+            cds.put(cd.getId(), cd);
+        }
+        return cds;
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(Path.of(directory))) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".json")).count();
+        }
+    }
+
+    @Test
+    void testRecordsAreSplitIntoSegments() throws Exception {
+        SegmentedStorageEngine<CD> engine = newEngine(true);
+
+        assertTrue(engine.putAll(catalog(250)));
+
+        assertEquals(3, engine.getSegmentCount());
+        assertEquals(3, segmentFiles());
+        SegmentedStorageEngine<CD> reloaded = newEngine(true);
+        assertEquals(250, reloaded.size());
+        assertEquals("Album 249", reloaded.get("CD_249").getTitle());
+        assertEquals(250, reloaded.getLoadReport().getLoadedCount());
+    }
+
+    @Test
+    void testUpdateRewritesOnlyItsSegment() {
+        newEngine(true).putAll(catalog(1000));
+        SegmentedStorageEngine<CD> engine = newEngine(true);
+
+        CD cd = engine.get("CD_555");
+        cd.setAvailable(false);
+        assertTrue(engine.put(cd.getId(), cd));
+
+        assertEquals(1, engine.getSegmentWrites());
+        assertFalse(newEngine(true).get("CD_555").isAvailable());
+    }
+
+    @Test
+    void testDeferredWritesWaitForFlush() {
+        SegmentedStorageEngine<CD> engine = newEngine(false);
+        engine.putAll(catalog(300));
+        assertEquals(3, engine.getDirtySegmentCount());
+        assertEquals(0, newEngine(false).size());
+
+        assertTrue(engine.flush());
+
+        assertEquals(0, engine.getDirtySegmentCount());
+        assertEquals(300, newEngine(false).size());
+    }
+
+    @Test
+    void testDeletedSlotsAreReused() {
+        SegmentedStorageEngine<CD> engine = newEngine(true);
+        engine.putAll(catalog(200));
+
+        assertTrue(engine.delete("CD_10"));
+        assertFalse(engine.delete("CD_10"));
+        CD extra = new CD("Extra", "Someone", "Jazz");
+        extra.setId("CD_EXTRA");
+        engine.put(extra.getId(), extra);
+
+        assertEquals(2, engine.getSegmentCount());
+        SegmentedStorageEngine<CD> reloaded = newEngine(true);
+        assertNull(reloaded.get("CD_10"));
+        assertNotNull(reloaded.get("CD_EXTRA"));
+        assertEquals(200, reloaded.size());
+    }
+
+    @Test
+    void testScanAndClear() {
+        SegmentedStorageEngine<CD> engine = newEngine(true);
+        engine.putAll(catalog(150));
+
+        List<CD> found = engine.scan(cd -> "Artist 3".equals(cd.getArtist()));
+        assertEquals(15, found.size());
+
+        assertTrue(engine.clear());
+        assertEquals(0, newEngine(true).size());
+    }
+
+    @Test
+    void testCDRepositoryUpdateWritesOneSegment() {
+        newEngine(true).putAll(catalog(500));
+        SegmentedStorageEngine<CD> engine = newEngine(true);
+        CDRepository repository = new CDRepository(engine);
+
+        CD cd = repository.findById("CD_42");
+        cd.setAvailable(false);
+        assertTrue(repository.update(cd));
+
+        assertEquals(1, engine.getSegmentWrites());
+        assertEquals(500, repository.findAll().size());
+    }
+
+    @Test
+    void testInvalidSegmentSize() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SegmentedStorageEngine<>(directory, CD.class, gson, new JsonFileHandler(), 0, true));
+    }
+}
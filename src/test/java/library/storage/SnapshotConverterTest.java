@@ -0,0 +1,52 @@
+package library.storage;
+
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotConverterTest {
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void testConvertsDataFilesBothWays() throws Exception {
+        Files.writeString(dataDir.resolve("books.json"),
+                "{\"BOOK_1\":{\"id\":\"BOOK_1\",\"title\":\"Dune\",\"isAvailable\":true}}");
+        Files.writeString(dataDir.resolve("fines.json"),
+                "{\"FINE_1\":{\"id\":\"FINE_1\",\"userId\":\"USER_1\",\"amount\":5.0}}");
+        SnapshotConverter converter = new SnapshotConverter(dataDir.toString(), new JsonFileHandler());
+
+        assertTrue(converter.toBinary());
+        assertTrue(Files.exists(dataDir.resolve("books.snap")));
+        assertTrue(Files.exists(dataDir.resolve("cdfines.snap")));
+
+        Files.delete(dataDir.resolve("books.json"));
+        assertTrue(converter.toJson());
+
+        String books = Files.readString(dataDir.resolve("books.json"));
+        assertTrue(books.contains("Dune"));
+        assertTrue(Files.readString(dataDir.resolve("fines.json")).contains("USER_1"));
+    }
+
+    @Test
+    void testVerifyReportsDamagedSnapshots() throws Exception {
+        Files.writeString(dataDir.resolve("books.json"),
+                "{\"BOOK_1\":{\"id\":\"BOOK_1\",\"title\":\"Dune\"}}");
+        SnapshotConverter converter = new SnapshotConverter(dataDir.toString(), new JsonFileHandler());
+        assertTrue(converter.toBinary());
+        assertTrue(converter.verify());
+
+        Path books = dataDir.resolve("books.snap");
+        byte[] bytes = Files.readAllBytes(books);
+        bytes[bytes.length - 2] ^= 0x10;
+        Files.write(books, bytes);
+
+        assertFalse(converter.verify());
+    }
+}
@@ -0,0 +1,108 @@
+package library.storage;
+
+import com.google.gson.Gson;
+import library.models.Book;
+import library.models.Loan;
+import library.utils.GsonUtils;
+import library.utils.JsonFileHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compares file size, write latency and load time of the data file formats
+ * on synthetic data. Not a unit test; run it by hand:
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=library.storage.StorageFormatBenchmark -Dexec.args="200000 5"
+ * </pre>
+ * Arguments: number of records per file (default 100000) and rounds (default 5).
+ * Reported times are medians.
+ */
+public class StorageFormatBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path dir = Files.createTempDirectory("storage-benchmark");
+        try {
+            System.out.printf("%,d records per file, %d rounds%n%n", records, rounds);
+            System.out.printf("%-10s %-22s %14s %12s %12s%n", "data", "format", "size (bytes)", "write (ms)", "load (ms)");
+            run("books", Book.class, books(records), dir, rounds);
+            run("loans", Loan.class, loans(records), dir, rounds);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static <T> void run(String name, Class<T> type, Map<String, T> data, Path dir, int rounds) throws IOException {
+        Gson pretty = GsonUtils.createGson();
+        Gson compact = GsonUtils.createCompactGson();
+        measure(name, "pretty JSON (current)", type, data, dir, rounds, pretty, false);
+        measure(name, "compact JSON", type, data, dir, rounds, compact, false);
+        measure(name, "compact JSON + GZIP", type, data, dir, rounds, pretty, true);
+    }
+
+    private static <T> void measure(String name, String format, Class<T> type, Map<String, T> data, Path dir,
+                                    int rounds, Gson gson, boolean compressed) throws IOException {
+        JsonFileHandler handler = new JsonFileHandler();
+        handler.setCompressed(compressed);
+        String file = dir.resolve(name + "-" + format.hashCode() + ".json").toString();
+
+        long[] writes = new long[rounds];
+        long[] loads = new long[rounds];
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            if (!handler.writeRecords(file, gson, data)) {
+                throw new IOException("Write failed for " + file);
+            }
+            writes[round] = System.nanoTime() - start;
+
+            Map<String, T> loaded = new LinkedHashMap<>();
+            start = System.nanoTime();
+            LoadReport report = handler.readRecords(file, gson, type, loaded);
+            loads[round] = System.nanoTime() - start;
+            if (loaded.size() != data.size() || report.hasErrors()) {
+                throw new IllegalStateException("Load mismatch for " + file);
+            }
+        }
+
+        System.out.printf("%-10s %-22s %,14d %12.1f %12.1f%n",
+                name, format, Files.size(Path.of(file)), medianMillis(writes), medianMillis(loads));
+    }
+
+    private static double medianMillis(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1_000_000.0;
+    }
+
+    private static Map<String, Book> books(int count) {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Book book = new Book("Synthetic title number " + i, "Author " + (i % 997), "978-" + (1_000_000 + i), "BOOK");
+            book.setId("BOOK_" + i);
+            book.setAvailable(i % 4 != 0);
+            books.put(book.getId(), book);
+        }
+        return books;
+    }
+
+    private static Map<String, Loan> loans(int count) {
+        Map<String, Loan> loans = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Loan loan = new Loan("USER_" + (i % 5000), "BOOK_" + (i % 20_000), 28);
+            loan.setId("LOAN_" + i);
+            loans.put(loan.getId(), loan);
+        }
+        return loans;
+    }
+}
@@ -0,0 +1,143 @@
+package library.storage;
+
+import library.models.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path journalFile;
+    private WriteAheadJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        journalFile = tempDir.resolve("books.journal");
+        journal = new WriteAheadJournal(journalFile.toString(), 3);
+    }
+
+    private Book book(String id, String title) {
+        Book book = new Book(title, "Author", "ISBN-" + id, "BOOK");
+        book.setId(id);
+        return book;
+    }
+
+    @Test
+    void testAppendAndReplay() {
+        assertTrue(journal.appendPut("B1", book("B1", "First")));
+        assertTrue(journal.appendPut("B2", book("B2", "Second")));
+        assertTrue(journal.appendDelete("B1"));
+
+        Map<String, Book> books = new HashMap<>();
+        int applied = new WriteAheadJournal(journalFile.toString()).replay(books, Book.class);
+
+        assertEquals(3, applied);
+        assertEquals(1, books.size());
+        assertEquals("Second", books.get("B2").getTitle());
+    }
+
+    @Test
+    void testReplayOverridesSnapshotValues() {
+        Map<String, Book> snapshot = new HashMap<>();
+        snapshot.put("B1", book("B1", "Old Title"));
+
+        journal.appendPut("B1", book("B1", "New Title"));
+        journal.replay(snapshot, Book.class);
+
+        assertEquals("New Title", snapshot.get("B1").getTitle());
+    }
+
+    @Test
+    void testReplayWithoutJournalFile() {
+        Map<String, Book> books = new HashMap<>();
+        assertEquals(0, journal.replay(books, Book.class));
+        assertTrue(books.isEmpty());
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws Exception {
+        journal.appendPut("B1", book("B1", "Kept"));
+        long goodSize = Files.size(journalFile);
+        Files.write(journalFile, "{\"op\":\"PUT\",\"id\":\"B2\",\"da".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        Map<String, Book> books = new HashMap<>();
+        int applied = journal.replay(books, Book.class);
+
+        assertEquals(1, applied);
+        assertTrue(books.containsKey("B1"));
+        assertEquals(goodSize, Files.size(journalFile));
+    }
+
+    @Test
+    void testLastEntryWithoutNewlineIsKeptAndTerminated() throws Exception {
+        journal.appendPut("B1", book("B1", "First"));
+        journal.appendPut("B2", book("B2", "Second"));
+        // crash lost only the final newline
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(journalFile) - 1);
+        }
+
+        assertEquals(2, journal.replay(new HashMap<>(), Book.class));
+        journal.appendDelete("B1");
+
+        Map<String, Book> books = new HashMap<>();
+        assertEquals(3, new WriteAheadJournal(journalFile.toString()).replay(books, Book.class));
+        assertEquals(1, books.size());
+        assertTrue(books.containsKey("B2"));
+    }
+
+    @Test
+    void testCheckpointRunsAtThreshold() {
+        int[] snapshots = {0};
+
+        journal.appendPut("B1", book("B1", "A"));
+        journal.appendPut("B2", book("B2", "B"));
+        assertTrue(journal.checkpointIfNeeded(() -> { snapshots[0]++; return true; }));
+        assertEquals(0, snapshots[0]);
+
+        journal.appendPut("B3", book("B3", "C"));
+        assertTrue(journal.needsSnapshot());
+        assertTrue(journal.checkpointIfNeeded(() -> { snapshots[0]++; return true; }));
+
+        assertEquals(1, snapshots[0]);
+        assertEquals(0, journal.getEntriesSinceSnapshot());
+    }
+
+    @Test
+    void testFailedSnapshotKeepsJournal() throws Exception {
+        journal.appendPut("B1", book("B1", "A"));
+        journal.appendPut("B2", book("B2", "B"));
+        journal.appendPut("B3", book("B3", "C"));
+
+        assertFalse(journal.checkpointIfNeeded(() -> false));
+        assertTrue(Files.size(journalFile) > 0);
+        assertEquals(3, journal.getEntriesSinceSnapshot());
+    }
+
+    @Test
+    void testForDataFileUsesJournalExtension() {
+        WriteAheadJournal forData = WriteAheadJournal.forDataFile("data/books.json");
+        assertEquals(Path.of("data/books.journal").toString(), forData.getJournalPath());
+        assertEquals(WriteAheadJournal.DEFAULT_SNAPSHOT_THRESHOLD, forData.getSnapshotThreshold());
+    }
+
+    @Test
+    void testInvalidThreshold() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new WriteAheadJournal(journalFile.toString(), 0));
+    }
+}
@@ -0,0 +1,184 @@
+package library.storage;
+
+import library.utils.JsonFileHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindQueueTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSyncModeWritesOnCallerThread() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.SYNC)) {
+            Path file = tempDir.resolve("books.json");
+
+            assertTrue(queue.submit(file.toString(), "{\"sync\":true}"));
+
+            assertEquals("{\"sync\":true}", Files.readString(file));
+            assertEquals(0, queue.getQueueDepth());
+            assertEquals(1, queue.getWrittenCount());
+        }
+    }
+
+    @Test
+    void testAsyncModeWritesInBackground() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.ASYNC)) {
+            Path file = tempDir.resolve("loans.json");
+
+            queue.submit(file.toString(), "{\"a\":1}");
+            queue.submit(file.toString(), "{\"a\":2}");
+
+            assertTrue(queue.flush());
+            assertEquals("{\"a\":2}", Files.readString(file));
+            assertNull(queue.pendingContent(file.toString()));
+        }
+    }
+
+    @Test
+    void testPeriodicFsyncModeFlushes() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.PERIODIC_FSYNC, 8, 20)) {
+            Path file = tempDir.resolve("fines.json");
+            queue.submit(file.toString(), "{\"f\":1}");
+
+            assertTrue(queue.flush());
+            assertEquals("{\"f\":1}", Files.readString(file));
+            assertEquals(DurabilityMode.PERIODIC_FSYNC, queue.getMode());
+        }
+    }
+
+    @Test
+    void testCloseDrainsQueue() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.ASYNC, 64, 20);
+        for (int i = 0; i < 20; i++) {
+            queue.submit(tempDir.resolve("file" + i + ".json").toString(), "{\"i\":" + i + "}");
+        }
+
+        queue.close();
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("{\"i\":" + i + "}", Files.readString(tempDir.resolve("file" + i + ".json")));
+        }
+        assertEquals(0, queue.getQueueDepth());
+        assertFalse(queue.submit(tempDir.resolve("late.json").toString(), "{}"));
+    }
+
+    @Test
+    void testCloseDoesNotWaitOutTheFsyncInterval() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.PERIODIC_FSYNC, 8, 60_000);
+        queue.submit(tempDir.resolve("books.json").toString(), "{\"v\":1}");
+        assertTrue(queue.flush());
+        queue.submit(tempDir.resolve("books.json").toString(), "{\"v\":2}");
+
+        long start = System.nanoTime();
+        queue.close();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals("{\"v\":2}", Files.readString(tempDir.resolve("books.json")));
+        assertTrue(queue.flush());
+    }
+
+    @Test
+    void testFullQueueBlocksCaller() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.ASYNC, 1, 1000)) {
+            CountDownLatch submitted = new CountDownLatch(50);
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    queue.submit(tempDir.resolve("busy.json").toString(), "{\"n\":" + i + "}");
+                    submitted.countDown();
+                }
+            });
+            producer.start();
+
+            assertTrue(submitted.await(10, TimeUnit.SECONDS));
+            assertTrue(queue.getCapacity() >= 1);
+            producer.join();
+            assertTrue(queue.flush());
+            assertEquals("{\"n\":49}", Files.readString(tempDir.resolve("busy.json")));
+        }
+    }
+
+    @Test
+    void testFailedWritesAreCounted() {
+        try (WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.ASYNC)) {
+            queue.submit(tempDir.toString(), "{}");
+
+            assertFalse(queue.flush());
+            assertTrue(queue.getFailedCount() >= 1);
+            assertEquals("{}", queue.pendingContent(tempDir.toString()));
+        }
+    }
+
+    @Test
+    void testFailedWriteIsRetriedAndLaterFlushesSucceed() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.ASYNC, 8, 60_000)) {
+            Path blocker = tempDir.resolve("data");
+            Files.writeString(blocker, "not a directory");
+            Path file = blocker.resolve("loans.json");
+
+            queue.submit(file.toString(), "{\"l\":1}");
+            assertFalse(queue.flush());
+
+            Files.delete(blocker);
+            assertTrue(queue.flush());
+            assertEquals("{\"l\":1}", Files.readString(file));
+            assertNull(queue.pendingContent(file.toString()));
+            assertTrue(queue.flush());
+        }
+    }
+
+    @Test
+    void testNewerContentReplacesAFailedWrite() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.ASYNC, 8, 60_000)) {
+            Path blocker = tempDir.resolve("data");
+            Files.writeString(blocker, "not a directory");
+            Path file = blocker.resolve("loans.json");
+            queue.submit(file.toString(), "{\"l\":1}");
+            assertFalse(queue.flush());
+
+            Files.delete(blocker);
+            queue.submit(file.toString(), "{\"l\":2}");
+
+            assertTrue(queue.flush());
+            assertEquals("{\"l\":2}", Files.readString(file));
+        }
+    }
+
+    @Test
+    void testMetricsOnIdleQueue() {
+        try (WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.ASYNC, 16, 100)) {
+            assertEquals(0, queue.getQueueDepth());
+            assertEquals(0, queue.getFlushLagMillis());
+            assertEquals(16, queue.getCapacity());
+            assertTrue(queue.getMaxFlushLagMillis() >= 0);
+        }
+    }
+
+    @Test
+    void testJsonFileHandlerReadsPendingContent() {
+        try (WriteBehindQueue queue = new WriteBehindQueue(DurabilityMode.ASYNC)) {
+            JsonFileHandler handler = new JsonFileHandler(queue);
+            String file = tempDir.resolve("users.json").toString();
+
+            handler.writeToFile(file, "{\"u\":1}");
+
+            assertEquals("{\"u\":1}", handler.readFromFile(file));
+            assertTrue(handler.sync());
+        }
+    }
+
+    @Test
+    void testInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new WriteBehindQueue(null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new WriteBehindQueue(DurabilityMode.ASYNC, 0, 10));
+    }
+}
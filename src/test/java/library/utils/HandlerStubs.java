@@ -0,0 +1,41 @@
+package library.utils;
+
+import java.io.StringReader;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Stubs for mocked {@link JsonFileHandler}s used under a storage engine,
+ * which reads with {@code readRecords} and writes with {@code writeRecords}.
+ */
+public final class HandlerStubs {
+
+    private HandlerStubs() {
+    }
+
+    /**
+     * Make every load through the handler parse the given content,
+     * as if the data file held it
+     * @param handler mocked handler
+     * @param content file content; null reads like an empty file
+     */
+    public static void stubContent(JsonFileHandler handler, String content) {
+        doAnswer(invocation -> new JsonFileHandler().readRecords(
+                new StringReader(content == null ? "" : content), invocation.getArgument(0),
+                invocation.getArgument(1), invocation.getArgument(2), invocation.getArgument(3)))
+                .when(handler).readRecords(anyString(), any(), any(), anyMap());
+    }
+
+    /**
+     * Make every save through the handler report the given result
+     * @param handler mocked handler
+     * @param result value returned by writeRecords
+     */
+    public static void stubWrites(JsonFileHandler handler, boolean result) {
+        doReturn(result).when(handler).writeRecords(anyString(), any(), anyMap());
+    }
+}
@@ -0,0 +1,123 @@
+package library.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorTest {
+
+    private static final long NOW = IdGenerator.EPOCH_MILLIS + 1_000_000L;
+
+    @Test
+    void testIdsAreUniqueAcrossThreads() throws Exception {
+        IdGenerator generator = new IdGenerator(3, System::currentTimeMillis);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                tasks.add(pool.submit(() -> {
+                    long previous = -1;
+                    for (int i = 0; i < 50_000; i++) {
+                        long id = generator.next();
+                        assertTrue(id > previous);
+                        previous = id;
+                        ids.add(id);
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(400_000, ids.size());
+    }
+
+    @Test
+    void testSequenceOverflowMovesToNextMillisecond() {
+        IdGenerator generator = new IdGenerator(0, () -> NOW);
+
+        long first = generator.next();
+        long last = first;
+        for (int i = 1; i < 5000; i++) {
+            long id = generator.next();
+            assertTrue(id > last);
+            last = id;
+        }
+
+        assertEquals(Instant.ofEpochMilli(NOW), IdGenerator.timeOf(first));
+        assertEquals(Instant.ofEpochMilli(NOW + 1), IdGenerator.timeOf(last));
+    }
+
+    @Test
+    void testClockGoingBackwardsStillIncreases() {
+        AtomicLong clock = new AtomicLong(NOW);
+        IdGenerator generator = new IdGenerator(0, clock::get);
+
+        long before = generator.next();
+        clock.set(NOW - 5_000);
+        long after = generator.next();
+
+        assertTrue(after > before);
+    }
+
+    @Test
+    void testStringIdsSortByCreationTime() {
+        AtomicLong clock = new AtomicLong(NOW);
+        IdGenerator generator = new IdGenerator(7, clock::get);
+
+        String first = generator.nextId("BOOK");
+        clock.addAndGet(1);
+        String second = generator.nextId("BOOK");
+        clock.addAndGet(86_400_000L * 365 * 10);
+        String third = generator.nextId("BOOK");
+
+        assertTrue(first.startsWith("BOOK_"));
+        assertEquals("BOOK_".length() + 11, first.length());
+        assertTrue(first.compareTo(second) < 0);
+        assertTrue(second.compareTo(third) < 0);
+        assertTrue(IdGenerator.lowerBound("BOOK", Instant.ofEpochMilli(NOW + 1)).compareTo(second) <= 0);
+        assertTrue(IdGenerator.lowerBound("BOOK", Instant.ofEpochMilli(NOW + 1)).compareTo(first) > 0);
+    }
+
+    @Test
+    void testEncodeDecodeRoundTrip() {
+        IdGenerator generator = new IdGenerator(IdGenerator.MAX_NODE, () -> NOW);
+        long id = generator.next();
+
+        assertEquals(id, IdGenerator.decode(generator.nextId("LOAN")) - 1);
+        assertEquals(IdGenerator.MAX_NODE, IdGenerator.nodeOf(id));
+        assertEquals(Long.MAX_VALUE, IdGenerator.decode(IdGenerator.encode(Long.MAX_VALUE)));
+        assertEquals("00000000000", IdGenerator.encode(0));
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.decode("LOAN_1234"));
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.decode("LOAN_0000000000-"));
+    }
+
+    @Test
+    void testInvalidNodeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(-1, () -> NOW));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(1024, () -> NOW));
+    }
+
+    @Test
+    void testSharedNodeDefaultsToProcessIdAndIgnoresBadProperty() {
+        assertEquals(5, IdGenerator.configuredNode("5", 4242));
+        assertEquals(4242 & IdGenerator.MAX_NODE, IdGenerator.configuredNode(null, 4242));
+        assertEquals(4242 & IdGenerator.MAX_NODE, IdGenerator.configuredNode("node-a", 4242));
+        assertEquals(4242 & IdGenerator.MAX_NODE, IdGenerator.configuredNode("2048", 4242));
+        assertEquals(IdGenerator.nodeOf(IdGenerator.shared().next()),
+                IdGenerator.configuredNode(System.getProperty("library.idNode"), ProcessHandle.current().pid()));
+    }
+}
@@ -1,9 +1,17 @@
 package library.utils;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSerializer;
+import library.models.Book;
+import library.storage.LoadReport;
 import org.junit.jupiter.api.*;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -118,6 +126,177 @@ public class JsonFileHandlerTest {
 
         assertEquals("", broken.readFromFile("ignored.json"));
     }
-}
 
+    // -------------------------------------------------------
+    // STREAMING READ TESTS
+    // -------------------------------------------------------
+
+    @Test
+    void testReadRecords_LoadsEachRecord() throws Exception {
+        Files.write(Paths.get(testFilePath), ("{\"B1\":{\"id\":\"B1\",\"title\":\"One\"},"
+                + "\"B2\":{\"id\":\"B2\",\"title\":\"Two\"}}").getBytes());
+
+        Map<String, Book> books = new LinkedHashMap<>();
+        LoadReport report = handler.readRecords(testFilePath, GsonUtils.createGson(), Book.class, books);
+
+        assertEquals(2, report.getLoadedCount());
+        assertFalse(report.hasErrors());
+        assertTrue(report.isComplete());
+        assertEquals("Two", books.get("B2").getTitle());
+    }
+
+    @Test
+    void testReadRecords_ReportsBrokenRecordAndKeepsOthers() throws Exception {
+        Files.write(Paths.get(testFilePath), ("{\"B1\":{\"id\":\"B1\",\"title\":{\"nested\":1}},"
+                + "\"B2\":{\"id\":\"B2\",\"title\":\"Good\"}}").getBytes());
+
+        Map<String, Book> books = new LinkedHashMap<>();
+        LoadReport report = handler.readRecords(testFilePath, GsonUtils.createGson(), Book.class, books);
+
+        assertEquals(1, report.getLoadedCount());
+        assertEquals(1, report.getErrors().size());
+        assertTrue(report.getErrors().get(0).startsWith("B1"));
+        assertTrue(report.isComplete());
+        assertTrue(books.containsKey("B2"));
+    }
+
+    @Test
+    void testReadRecords_TruncatedFileKeepsPrefix() throws Exception {
+        Files.write(Paths.get(testFilePath), ("{\"B1\":{\"id\":\"B1\",\"title\":\"One\"},"
+                + "\"B2\":{\"id\":\"B2\",\"ti").getBytes());
+
+        Map<String, Book> books = new LinkedHashMap<>();
+        LoadReport report = handler.readRecords(testFilePath, GsonUtils.createGson(), Book.class, books);
+
+        assertFalse(report.isComplete());
+        assertEquals(1, books.size());
+    }
+
+    @Test
+    void testReadRecords_EmptyFile() throws Exception {
+        Files.write(Paths.get(testFilePath), new byte[0]);
+
+        Map<String, Book> books = new LinkedHashMap<>();
+        LoadReport report = handler.readRecords(testFilePath, GsonUtils.createGson(), Book.class, books);
+
+        assertTrue(books.isEmpty());
+        assertTrue(report.isComplete());
+    }
+
+    // -------------------------------------------------------
+    // STREAMING WRITE TESTS
+    // -------------------------------------------------------
+
+    @Test
+    void testWriteRecords_MatchesToJsonOutput() throws Exception {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            Book book = new Book("Title " + i + " \u00e9\u00e8 \ud83d\udcda", "Author " + i, "ISBN-" + i, "BOOK");
+            book.setId("B" + i);
+            books.put(book.getId(), book);
+        }
+        Gson gson = GsonUtils.createGson();
+
+        assertTrue(handler.writeRecords(testFilePath, gson, books));
+
+        String written = new String(Files.readAllBytes(Paths.get(testFilePath)), StandardCharsets.UTF_8);
+        assertEquals(gson.toJson(books), written);
+    }
+
+    @Test
+    void testWriteRecords_EmptyMapAndCompactGson() throws Exception {
+        assertTrue(handler.writeRecords(testFilePath, GsonUtils.createCompactGson(), new LinkedHashMap<>()));
+        assertEquals("{}", handler.readFromFile(testFilePath));
+    }
+
+    @Test
+    void testWriteRecords_RoundTripsThroughReadRecords() {
+        Map<String, Book> books = new LinkedHashMap<>();
+        Book book = new Book("Round", "Trip", "123", "BOOK");
+        book.setId("B1");
+        books.put("B1", book);
+
+        handler.writeRecords(testFilePath, GsonUtils.createGson(), books);
+        Map<String, Book> loaded = new LinkedHashMap<>();
+        handler.readRecords(testFilePath, GsonUtils.createGson(), Book.class, loaded);
+
+        assertEquals("Round", loaded.get("B1").getTitle());
+    }
+
+    @Test
+    void testWriteRecords_IOException_Real() {
+        assertFalse(handler.writeRecords("target/test-tmp", GsonUtils.createGson(), new LinkedHashMap<>()));
+    }
+
+    @Test
+    void testWriteRecords_FailurePartWayKeepsOldFile() throws Exception {
+        Files.writeString(Paths.get(testFilePath), "{\"old\":{}}");
+        Gson failing = new GsonBuilder()
+                .registerTypeAdapter(Book.class, (JsonSerializer<Book>) (book, type, context) -> {
+                    throw new IllegalStateException("cannot serialize " + book.getId());
+                })
+                .create();
+        Map<String, Object> records = new LinkedHashMap<>();
+        records.put("first", "plain value");
+        Book book = new Book("Broken", "Author", "1", "BOOK");
+        book.setId("B1");
+        records.put("B1", book);
+
+        assertFalse(handler.writeRecords(testFilePath, failing, records));
+
+        assertEquals("{\"old\":{}}", Files.readString(Paths.get(testFilePath)));
+        try (var files = Files.list(Paths.get("target/test-tmp"))) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    // -------------------------------------------------------
+    // COMPRESSION TESTS
+    // -------------------------------------------------------
+
+    @Test
+    void testCompressedWriteRecords_IsCompactGzip() throws Exception {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            Book book = new Book("Title " + i + " \u00e9", "Author", "ISBN-" + i, "BOOK");
+            book.setId("B" + i);
+            books.put(book.getId(), book);
+        }
+        Gson gson = GsonUtils.createGson();
+        handler.setCompressed(true);
+
+        assertTrue(handler.writeRecords(testFilePath, gson, books));
+
+        byte[] bytes = Files.readAllBytes(Paths.get(testFilePath));
+        assertEquals((byte) 0x1f, bytes[0]);
+        assertEquals((byte) 0x8b, bytes[1]);
+        assertTrue(bytes.length < gson.toJson(books).length() / 4);
+        assertEquals(GsonUtils.createCompactGson().toJson(books), handler.readFromFile(testFilePath));
+    }
+
+    @Test
+    void testCompressedFile_ReadRecordsDetectsFormat() {
+        Map<String, Book> books = new LinkedHashMap<>();
+        Book book = new Book("Zipped", "Author", "123", "BOOK");
+        book.setId("B1");
+        books.put("B1", book);
+        handler.setCompressed(true);
+        handler.writeRecords(testFilePath, GsonUtils.createGson(), books);
+
+        Map<String, Book> loaded = new LinkedHashMap<>();
+        LoadReport report = new JsonFileHandler().readRecords(testFilePath, GsonUtils.createGson(), Book.class, loaded);
+
+        assertFalse(report.hasErrors());
+        assertEquals("Zipped", loaded.get("B1").getTitle());
+    }
 
+    @Test
+    void testCompressedWriteToFile_AndPlainFilesStillReadable() {
+        handler.setCompressed(true);
+        assertTrue(handler.writeToFile(testFilePath, "{\"a\":1}"));
+        assertEquals("{\"a\":1}", new JsonFileHandler().readFromFile(testFilePath));
+
+        new JsonFileHandler().writeToFile(testFilePath, "{\"b\":2}");
+        assertEquals("{\"b\":2}", handler.readFromFile(testFilePath));
+    }
+}